@@ -0,0 +1,158 @@
+package com.playfab.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.playfab.PlayFabErrors.PlayFabJsonSuccess;
+import com.playfab.PlayFabServerModels.*;
+
+/**
+ * Builds large, deterministic response payloads shaped like real titles' data
+ */
+public class BenchmarkPayloads {
+    // Same configuration as the API classes
+    public static final Gson gson = new GsonBuilder().setDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").create();
+
+    private static final Date DATE = new Date(1489363200000L);
+
+    public static <T> String Envelope(final T data) {
+        PlayFabJsonSuccess<T> envelope = new PlayFabJsonSuccess<T>();
+        envelope.code = 200;
+        envelope.status = "OK";
+        envelope.data = data;
+        return gson.toJson(envelope);
+    }
+
+    public static CatalogItem CatalogItem(final int i) {
+        CatalogItem item = new CatalogItem();
+        item.ItemId = "item_" + i;
+        item.ItemClass = "class_" + (i % 20);
+        item.CatalogVersion = "Main";
+        item.DisplayName = "Item number " + i;
+        item.Description = "A moderately long description for catalog item " + i + " used to pad the payload like real content does.";
+        item.VirtualCurrencyPrices = new HashMap<String, Long>();
+        item.VirtualCurrencyPrices.put("GC", (long)(i % 500) + 10);
+        item.VirtualCurrencyPrices.put("RM", 99L);
+        item.Tags = new ArrayList<String>();
+        item.Tags.add("tag_" + (i % 7));
+        item.Tags.add("tag_" + (i % 13));
+        item.CustomData = "{\"power\":" + i + ",\"rarity\":\"rare\"}";
+        item.IsStackable = i % 3 == 0;
+        item.IsTradable = i % 5 == 0;
+        if (i % 10 == 0) {
+            item.Bundle = new CatalogItemBundleInfo();
+            item.Bundle.BundledItems = new ArrayList<String>();
+            item.Bundle.BundledItems.add("item_" + (i + 1));
+            item.Bundle.BundledItems.add("item_" + (i + 2));
+        }
+        return item;
+    }
+
+    public static ItemInstance ItemInstance(final int i) {
+        ItemInstance item = new ItemInstance();
+        item.ItemId = "item_" + (i % 1000);
+        item.ItemInstanceId = String.format("%016X", i);
+        item.ItemClass = "class_" + (i % 20);
+        item.PurchaseDate = DATE;
+        item.CatalogVersion = "Main";
+        item.DisplayName = "Item number " + (i % 1000);
+        item.UnitCurrency = "GC";
+        item.UnitPrice = 100L;
+        if (i % 4 == 0)
+            item.RemainingUses = 5;
+        if (i % 6 == 0) {
+            item.CustomData = new HashMap<String, String>();
+            item.CustomData.put("level", Integer.toString(i % 50));
+        }
+        return item;
+    }
+
+    public static GetCatalogItemsResult Catalog(final int count) {
+        GetCatalogItemsResult result = new GetCatalogItemsResult();
+        result.Catalog = new ArrayList<CatalogItem>(count);
+        for (int i = 0; i < count; i++)
+            result.Catalog.add(CatalogItem(i));
+        return result;
+    }
+
+    public static GetUserInventoryResult Inventory(final int count) {
+        GetUserInventoryResult result = new GetUserInventoryResult();
+        result.PlayFabId = "0123456789ABCDEF";
+        result.Inventory = new ArrayList<ItemInstance>(count);
+        for (int i = 0; i < count; i++)
+            result.Inventory.add(ItemInstance(i));
+        result.VirtualCurrency = new HashMap<String, Integer>();
+        result.VirtualCurrency.put("GC", 12345);
+        result.VirtualCurrency.put("RM", 50);
+        return result;
+    }
+
+    public static GetPlayerCombinedInfoResult CombinedInfo(final int count) {
+        GetPlayerCombinedInfoResultPayload payload = new GetPlayerCombinedInfoResultPayload();
+        payload.AccountInfo = new UserAccountInfo();
+        payload.AccountInfo.PlayFabId = "0123456789ABCDEF";
+        payload.AccountInfo.Created = DATE;
+        payload.UserInventory = Inventory(count).Inventory;
+        payload.UserVirtualCurrency = Inventory(0).VirtualCurrency;
+        payload.UserData = UserData(count / 4);
+        payload.UserDataVersion = 42L;
+        payload.UserReadOnlyData = UserData(count / 4);
+        payload.UserReadOnlyDataVersion = 7L;
+        payload.TitleData = new HashMap<String, String>();
+        for (int i = 0; i < count / 10; i++)
+            payload.TitleData.put("title_key_" + i, "{\"enabled\":true,\"weight\":" + i + "}");
+        payload.PlayerStatistics = new ArrayList<StatisticValue>();
+        for (int i = 0; i < 20; i++) {
+            StatisticValue statistic = new StatisticValue();
+            statistic.StatisticName = "stat_" + i;
+            statistic.Value = i * 100;
+            statistic.Version = 1L;
+            payload.PlayerStatistics.add(statistic);
+        }
+
+        GetPlayerCombinedInfoResult result = new GetPlayerCombinedInfoResult();
+        result.PlayFabId = "0123456789ABCDEF";
+        result.InfoResultPayload = payload;
+        return result;
+    }
+
+    public static GetPlayersInSegmentResult Segment(final int count) {
+        GetPlayersInSegmentResult result = new GetPlayersInSegmentResult();
+        result.ProfilesInSegment = count;
+        result.ContinuationToken = "continuation";
+        result.PlayerProfiles = new ArrayList<PlayerProfile>(count);
+        for (int i = 0; i < count; i++) {
+            PlayerProfile profile = new PlayerProfile();
+            profile.PlayerId = String.format("%016X", i);
+            profile.TitleId = "ABCD";
+            profile.DisplayName = "player" + i;
+            profile.Created = DATE;
+            profile.LastLogin = DATE;
+            profile.Statistics = new HashMap<String, Integer>();
+            profile.Statistics.put("level", i % 60);
+            profile.Statistics.put("score", i * 7);
+            profile.VirtualCurrencyBalances = new HashMap<String, Integer>();
+            profile.VirtualCurrencyBalances.put("GC", i % 10000);
+            profile.Tags = new ArrayList<String>();
+            profile.Tags.add("title.ABCD.cohort" + (i % 4));
+            result.PlayerProfiles.add(profile);
+        }
+        return result;
+    }
+
+    private static Map<String, UserDataRecord> UserData(final int count) {
+        Map<String, UserDataRecord> data = new HashMap<String, UserDataRecord>();
+        for (int i = 0; i < count; i++) {
+            UserDataRecord record = new UserDataRecord();
+            record.Value = "{\"progress\":" + i + ",\"flags\":[1,2,3]}";
+            record.LastUpdated = DATE;
+            record.Permission = UserDataPermission.Private;
+            data.put("key_" + i, record);
+        }
+        return data;
+    }
+}
@@ -0,0 +1,25 @@
+package com.playfab.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.playfab.PlayFabSettings;
+
+/**
+ * Runs the benchmarks and writes JSON results named after the SDK version, so runs of two versions can be diffed.
+ * Command line arguments are regular JMH options; -rf and -rff override the default result output.
+ */
+public class BenchmarkRunner {
+    public static void main(final String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+        if (!commandLine.getResultFormat().hasValue())
+            options.resultFormat(ResultFormatType.JSON);
+        if (!commandLine.getResult().hasValue())
+            options.result("jmh-" + PlayFabSettings.SdkVersion + ".json");
+        new Runner(options.build()).run();
+    }
+}
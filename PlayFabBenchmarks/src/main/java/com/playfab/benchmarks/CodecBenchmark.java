@@ -0,0 +1,98 @@
+package com.playfab.benchmarks;
+
+import java.lang.reflect.Type;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.google.gson.reflect.TypeToken;
+import com.playfab.PlayFabErrors.PlayFabJsonSuccess;
+import com.playfab.PlayFabServerModels.*;
+
+/**
+ * Gson encode and decode of large responses, through the same envelope and TypeToken the API classes use
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CodecBenchmark {
+    private static final Type CATALOG_TYPE = new TypeToken<PlayFabJsonSuccess<GetCatalogItemsResult>>(){}.getType();
+    private static final Type INVENTORY_TYPE = new TypeToken<PlayFabJsonSuccess<GetUserInventoryResult>>(){}.getType();
+    private static final Type COMBINED_TYPE = new TypeToken<PlayFabJsonSuccess<GetPlayerCombinedInfoResult>>(){}.getType();
+    private static final Type SEGMENT_TYPE = new TypeToken<PlayFabJsonSuccess<GetPlayersInSegmentResult>>(){}.getType();
+
+    @Param({"100", "5000"})
+    public int size;
+
+    private GetCatalogItemsResult catalog;
+    private GetUserInventoryResult inventory;
+    private GetPlayerCombinedInfoResult combined;
+    private GetPlayersInSegmentResult segment;
+    private String catalogJson;
+    private String inventoryJson;
+    private String combinedJson;
+    private String segmentJson;
+
+    @Setup
+    public void setup() {
+        catalog = BenchmarkPayloads.Catalog(size);
+        inventory = BenchmarkPayloads.Inventory(size);
+        combined = BenchmarkPayloads.CombinedInfo(size);
+        segment = BenchmarkPayloads.Segment(size);
+        catalogJson = BenchmarkPayloads.Envelope(catalog);
+        inventoryJson = BenchmarkPayloads.Envelope(inventory);
+        combinedJson = BenchmarkPayloads.Envelope(combined);
+        segmentJson = BenchmarkPayloads.Envelope(segment);
+    }
+
+    @Benchmark
+    public Object decodeCatalog() {
+        return BenchmarkPayloads.gson.fromJson(catalogJson, CATALOG_TYPE);
+    }
+
+    @Benchmark
+    public Object decodeInventory() {
+        return BenchmarkPayloads.gson.fromJson(inventoryJson, INVENTORY_TYPE);
+    }
+
+    @Benchmark
+    public Object decodeCombinedInfo() {
+        return BenchmarkPayloads.gson.fromJson(combinedJson, COMBINED_TYPE);
+    }
+
+    @Benchmark
+    public Object decodeSegment() {
+        return BenchmarkPayloads.gson.fromJson(segmentJson, SEGMENT_TYPE);
+    }
+
+    /**
+     * The API classes build a new TypeToken subclass instance on every call; this measures that overhead
+     */
+    @Benchmark
+    public Object decodeInventoryWithPerCallTypeToken() {
+        return BenchmarkPayloads.gson.fromJson(inventoryJson, new TypeToken<PlayFabJsonSuccess<GetUserInventoryResult>>(){}.getType());
+    }
+
+    @Benchmark
+    public String encodeCatalog() {
+        return BenchmarkPayloads.gson.toJson(catalog);
+    }
+
+    @Benchmark
+    public String encodeInventory() {
+        return BenchmarkPayloads.gson.toJson(inventory);
+    }
+
+    @Benchmark
+    public String encodeCombinedInfo() {
+        return BenchmarkPayloads.gson.toJson(combined);
+    }
+
+    @Benchmark
+    public String encodeSegment() {
+        return BenchmarkPayloads.gson.toJson(segment);
+    }
+}
@@ -0,0 +1,66 @@
+package com.playfab.benchmarks;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.playfab.PlayFabServerAPI;
+import com.playfab.PlayFabServerModels.*;
+import com.playfab.PlayFabSettings;
+import com.playfab.test.PlayFabFakeServer;
+
+/**
+ * Full API calls (serialize, HTTP over loopback, deserialize) against PlayFabFakeServer with no added latency
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EndToEndBenchmark {
+    private PlayFabFakeServer server;
+    private PlayFabServerAPI serverApi;
+    private String sessionTicket;
+
+    @Setup
+    public void setup() throws Exception {
+        server = new PlayFabFakeServer();
+        server.Start(8);
+        server.SetCatalog("Main", BenchmarkPayloads.Catalog(1000).Catalog);
+        server.SetTitleData("motd", "hello");
+        sessionTicket = server.CreateSessionTicket(server.AddPlayer("benchmark"));
+
+        PlayFabSettings settings = new PlayFabSettings("BENCH", "benchmark-secret-key");
+        settings.ServerURL = server.GetURL();
+        serverApi = new PlayFabServerAPI(settings);
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.Stop();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object authenticateSessionTicket() {
+        AuthenticateSessionTicketRequest request = new AuthenticateSessionTicketRequest();
+        request.SessionTicket = sessionTicket;
+        return serverApi.AuthenticateSessionTicket(request);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object getTitleData() {
+        GetTitleDataRequest request = new GetTitleDataRequest();
+        request.Keys = new ArrayList<String>();
+        request.Keys.add("motd");
+        return serverApi.GetTitleData(request);
+    }
+
+    @Benchmark
+    public Object getCatalogItems() {
+        return serverApi.GetCatalogItems(new GetCatalogItemsRequest());
+    }
+}
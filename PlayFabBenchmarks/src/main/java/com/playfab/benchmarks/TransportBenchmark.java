@@ -0,0 +1,54 @@
+package com.playfab.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.playfab.PlayFabErrors.PlayFabErrorCode;
+import com.playfab.internal.PlayFabHTTP;
+
+/**
+ * Transport paths that do not need a socket: response body reading and error code lookup
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransportBenchmark {
+    @Param({"1000", "50000"})
+    public int size;
+
+    private byte[] body;
+    private int[] errorCodes;
+    private int next;
+
+    @Setup
+    public void setup() throws IOException {
+        body = BenchmarkPayloads.Envelope(BenchmarkPayloads.Inventory(size / 100)).getBytes("UTF-8");
+
+        PlayFabErrorCode[] values = PlayFabErrorCode.values();
+        errorCodes = new int[values.length];
+        for (int i = 0; i < values.length; i++)
+            errorCodes[i] = values[(i * 7919) % values.length].id;
+    }
+
+    @Benchmark
+    public String receive() throws IOException {
+        return PlayFabHTTP.receive(new ByteArrayInputStream(body));
+    }
+
+    @Benchmark
+    public PlayFabErrorCode errorCodeLookup() {
+        int code = errorCodes[next++ % errorCodes.length];
+        return PlayFabErrorCode.getFromCode(code);
+    }
+
+    @Benchmark
+    public PlayFabErrorCode errorCodeLookupUnknown() {
+        return PlayFabErrorCode.getFromCode(-1);
+    }
+}
@@ -0,0 +1,63 @@
+package com.playfab.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * One PlayFab API call, from entering the interceptor chain until the transport returned, including retries.
+ * Disabled by default; enable "com.playfab.ApiCall" in the recording settings to collect it.
+ */
+@Name("com.playfab.ApiCall")
+@Label("PlayFab API Call")
+@Category("PlayFab")
+@Description("A call made through PlayFabClientAPI, PlayFabServerAPI, PlayFabAdminAPI or PlayFabMatchmakerAPI")
+@Enabled(false)
+@StackTrace(false)
+public class PlayFabCallEvent extends Event {
+    @Label("Endpoint")
+    @Description("API path, ex: /Server/AuthenticateSessionTicket")
+    public String endpoint;
+
+    @Label("Title")
+    public String titleId;
+
+    @Label("HTTP Status")
+    public int httpCode;
+
+    @Label("Error Code")
+    @Description("PlayFabErrorCode of the final attempt")
+    public String errorCode;
+
+    @Label("Request Size")
+    @DataAmount
+    public long requestBytes;
+
+    @Label("Response Size")
+    @DataAmount
+    public long responseBytes;
+
+    @Label("Serialization Time")
+    @Description("Time spent encoding the request body")
+    @Timespan(Timespan.NANOSECONDS)
+    public long serializationTime;
+
+    @Label("Queue Time")
+    @Description("Time spent waiting for a dispatcher slot")
+    @Timespan(Timespan.NANOSECONDS)
+    public long queueTime;
+
+    @Label("Network Time")
+    @Description("Time spent connecting, sending and receiving on the final attempt")
+    @Timespan(Timespan.NANOSECONDS)
+    public long networkTime;
+
+    @Label("Retries")
+    public int retries;
+}
@@ -0,0 +1,95 @@
+package com.playfab.jfr;
+
+import com.playfab.PlayFabErrors.PlayFabError;
+import com.playfab.PlayFabInterceptor;
+import com.playfab.PlayFabMetrics.MetricsCallback;
+import com.playfab.PlayFabMetrics.RequestMetrics;
+import com.playfab.PlayFabSettings;
+
+/**
+ * Emits a PlayFabCallEvent for every API call.
+ *
+ * Install() adds an outermost interceptor that times the whole call.  While the event is enabled, it also asks the
+ * transport to measure that one call and keeps the measurements of its last attempt for the event.  While the event
+ * is disabled, the interceptor only checks the event state and proceeds, and the transport measures nothing on its
+ * behalf.  PlayFabSettings.GlobalMetricsHandler is left alone.
+ */
+public class PlayFabJfr {
+    // Keeps the measurements of the latest attempt of one call
+    private static final class LastAttempt implements MetricsCallback {
+        RequestMetrics metrics;
+
+        public void callback(final RequestMetrics metrics) {
+            this.metrics = metrics;
+        }
+    }
+
+    private static final PlayFabInterceptor interceptor = new PlayFabInterceptor() {
+        public Object intercept(Call call) throws Exception {
+            PlayFabCallEvent event = new PlayFabCallEvent();
+            if (!event.isEnabled())
+                return call.proceed();
+
+            LastAttempt lastAttempt = new LastAttempt();
+            MetricsCallback previous = call.GetMetricsHandler();
+            call.SetMetricsHandler(lastAttempt);
+            event.begin();
+            Object result;
+            try {
+                result = call.proceed();
+            } finally {
+                event.end();
+                call.SetMetricsHandler(previous);
+            }
+            if (event.shouldCommit()) {
+                RequestMetrics metrics = lastAttempt.metrics;
+                event.titleId = GetTitleId(call.url);
+                event.retries = Math.max(0, call.GetAttempts() - 1);
+                if (metrics != null) {
+                    event.endpoint = metrics.endpoint;
+                    event.httpCode = metrics.httpCode;
+                    event.errorCode = metrics.pfErrorCode == null ? null : metrics.pfErrorCode.name();
+                    event.requestBytes = metrics.requestBytes;
+                    event.responseBytes = metrics.responseBytes;
+                    event.serializationTime = metrics.serializeTimeNanos;
+                    event.queueTime = metrics.queueTimeNanos;
+                    event.networkTime = metrics.totalTimeNanos - metrics.queueTimeNanos - metrics.serializeTimeNanos;
+                } else if (result instanceof PlayFabError) {
+                    // Answered by another interceptor without reaching the transport
+                    event.httpCode = ((PlayFabError)result).httpCode;
+                    event.errorCode = ((PlayFabError)result).pfErrorCode == null ? null : ((PlayFabError)result).pfErrorCode.name();
+                }
+                event.commit();
+            }
+            return result;
+        }
+    };
+
+    /**
+     * Starts emitting events.  Call once at startup, after any other interceptors are installed.
+     */
+    public static synchronized void Install() {
+        PlayFabInterceptor[] current = PlayFabSettings.Interceptors;
+        if (current != null)
+            for (PlayFabInterceptor each : current)
+                if (each == interceptor)
+                    return;
+
+        int count = current == null ? 0 : current.length;
+        PlayFabInterceptor[] updated = new PlayFabInterceptor[count + 1];
+        updated[0] = interceptor;
+        if (count > 0)
+            System.arraycopy(current, 0, updated, 1, count);
+
+        PlayFabSettings.Interceptors = updated;
+    }
+
+    private static String GetTitleId(final String url) {
+        // https://TITLEID.playfabapi.com/Client/... ; other hosts (ex: a local ServerURL) report no title
+        int start = url.indexOf("://");
+        int end = url.indexOf(".playfabapi.com");
+        if (start < 0 || end < start)
+            return null;
+        return url.substring(start + 3, end);
+    }
+}
@@ -0,0 +1,103 @@
+package com.playfab.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.playfab.PlayFabErrors.PlayFabErrorCode;
+import com.playfab.PlayFabServerAPI;
+import com.playfab.PlayFabServerModels.*;
+import com.playfab.PlayFabSettings;
+import com.playfab.jfr.PlayFabJfr;
+
+public class PlayFabJfrTest
+{
+    private static PlayFabFakeServer server;
+    private static PlayFabServerAPI serverApi;
+
+    @BeforeClass
+    public static void oneTimeSetUp() throws Exception
+    {
+        server = PlayFabFakeServer.Started(2);
+        serverApi = new PlayFabServerAPI(server.NewSettings());
+        server.SetTitleData("motd", "hello");
+        PlayFabJfr.Install();
+    }
+
+    @AfterClass
+    public static void oneTimeTearDown()
+    {
+        PlayFabSettings.Interceptors = null;
+        server.Stop();
+    }
+
+    private static List<RecordedEvent> Record(Runnable calls) throws Exception
+    {
+        Path dump = Files.createTempFile("playfab", ".jfr");
+        try (Recording recording = new Recording())
+        {
+            recording.enable("com.playfab.ApiCall").withThreshold(Duration.ZERO);
+            recording.start();
+            calls.run();
+            recording.stop();
+            recording.dump(dump);
+        }
+        List<RecordedEvent> events = new ArrayList<RecordedEvent>();
+        for (RecordedEvent event : RecordingFile.readAllEvents(dump))
+            if (event.getEventType().getName().equals("com.playfab.ApiCall"))
+                events.add(event);
+        Files.delete(dump);
+        return events;
+    }
+
+    @Test
+    public void RecordsCallsWhileEnabled() throws Exception
+    {
+        final GetTitleDataRequest request = new GetTitleDataRequest();
+        List<RecordedEvent> events = Record(new Runnable() {
+            public void run() {
+                assertNull(serverApi.GetTitleData(request).Error);
+                server.FailRequests("/Server/GetTitleData", 0, 1);
+                assertEquals(PlayFabErrorCode.InternalServerError, serverApi.GetTitleData(request).Error.pfErrorCode);
+            }
+        });
+
+        assertEquals(2, events.size());
+        RecordedEvent ok = events.get(0);
+        assertEquals("/Server/GetTitleData", ok.getString("endpoint"));
+        assertEquals(200, ok.getInt("httpCode"));
+        assertEquals("Success", ok.getString("errorCode"));
+        assertTrue(ok.getLong("requestBytes") > 0);
+        assertTrue(ok.getLong("responseBytes") > 0);
+        assertTrue(ok.getLong("networkTime") > 0);
+        assertEquals(0, ok.getInt("retries"));
+        // A loopback ServerURL carries no title
+        assertNull(ok.getString("titleId"));
+
+        RecordedEvent failed = events.get(1);
+        assertEquals(500, failed.getInt("httpCode"));
+        assertEquals("InternalServerError", failed.getString("errorCode"));
+    }
+
+    @Test
+    public void LeavesGlobalMetricsAloneWhileDisabled() throws Exception
+    {
+        assertNull(PlayFabSettings.GlobalMetricsHandler);
+        assertNull(serverApi.GetTitleData(new GetTitleDataRequest()).Error);
+        assertNull(PlayFabSettings.GlobalMetricsHandler);
+    }
+}
@@ -0,0 +1,260 @@
+package com.playfab;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.util.concurrent.TimeUnit;
+
+import com.playfab.PlayFabAdminModels.*;
+import com.playfab.PlayFabErrors.PlayFabError;
+import com.playfab.PlayFabErrors.PlayFabErrorCode;
+import com.playfab.PlayFabErrors.PlayFabResult;
+
+/**
+ * Uploads a dedicated server build archive and registers it once the upload is verified.
+ *
+ * The archive is read from its FileChannel one segment at a time into a single reusable buffer, fed to MD5 and
+ * SHA-256 digests and written to a fixed-length HTTP PUT on the URL from GetServerBuildUploadUrl, so memory use does
+ * not depend on the archive size.  The upload is verified by its byte count and, when the storage returns an MD5
+ * ETag, by the checksum; only then are AddServerBuild and, if given, ModifyServerBuild called.
+ *
+ * A pre-signed URL takes the object in one PUT, so a failed segment fails the whole transfer; it is retried from the
+ * start with a fresh URL, up to maxAttempts times.  The checksums of later attempts must match the first, which
+ * catches an archive that changes while it is being uploaded.
+ */
+public class PlayFabBuildUploader {
+    /**
+     * Receives progress as segments are sent; called on the uploading thread
+     */
+    public static interface ProgressListener {
+        public void Progress(long sentBytes, long totalBytes, double bytesPerSecond);
+    }
+
+    /**
+     * Outcome of an upload
+     */
+    public static final class Report {
+        public String BuildId;
+        public long Size;
+        public String Md5;
+        public String Sha256;
+        public int Attempts;
+        public long ElapsedMillis;
+        /**
+         * Throughput of the successful attempt
+         */
+        public double BytesPerSecond;
+        public AddServerBuildResult Build;
+        /**
+         * Set when a ModifyServerBuild was requested
+         */
+        public ModifyServerBuildResult Modified;
+    }
+
+    private static final long RETRY_BACKOFF_MILLIS = 1000;
+
+    // An archive that changed under the upload; sending it again would not help
+    private static final class ArchiveChanged extends PlayFabError {
+    }
+
+    private final PlayFabAdminAPI adminApi;
+    private final int segmentBytes;
+    private final int maxAttempts;
+
+    /**
+     * @param segmentBytes size of the buffer each read, checksum update and write works on
+     * @param maxAttempts transfers tried before giving up
+     */
+    public PlayFabBuildUploader(final PlayFabAdminAPI adminApi, final int segmentBytes, final int maxAttempts) {
+        if (segmentBytes < 1) throw new IllegalArgumentException("segmentBytes must be at least 1");
+        if (maxAttempts < 1) throw new IllegalArgumentException("maxAttempts must be at least 1");
+        this.adminApi = adminApi;
+        this.segmentBytes = segmentBytes;
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * Uploads archive as build.BuildId, then adds the build and applies modify, if not null
+     *
+     * @param listener may be null
+     * @return the report, or the first error; a build is never added unless its upload was verified
+     */
+    public PlayFabResult<Report> Upload(final File archive, final AddServerBuildRequest build, final ModifyServerBuildRequest modify, final ProgressListener listener) {
+        long startNanos = System.nanoTime();
+        PlayFabResult<Report> output = new PlayFabResult<Report>();
+        Report report = new Report();
+        report.BuildId = build.BuildId;
+        report.Size = archive.length();
+
+        PlayFabError error = null;
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            report.Attempts = attempt;
+            if (attempt > 1) {
+                try {
+                    Thread.sleep(RETRY_BACKOFF_MILLIS * (attempt - 1));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            GetServerBuildUploadURLRequest request = new GetServerBuildUploadURLRequest();
+            request.BuildId = build.BuildId;
+            PlayFabResult<GetServerBuildUploadURLResult> url = adminApi.GetServerBuildUploadUrl(request);
+            if (url == null || url.Error != null || url.Result == null || url.Result.URL == null) {
+                error = Failure(url, "GetServerBuildUploadUrl failed");
+                continue;
+            }
+            error = Transfer(url.Result.URL, archive, report, listener);
+            if (error == null || error instanceof ArchiveChanged)
+                break;
+        }
+        if (error != null) {
+            output.Error = error;
+            return output;
+        }
+
+        PlayFabResult<AddServerBuildResult> added = adminApi.AddServerBuild(build);
+        if (added == null || added.Error != null) {
+            output.Error = Failure(added, "AddServerBuild failed");
+            return output;
+        }
+        report.Build = added.Result;
+        if (modify != null) {
+            PlayFabResult<ModifyServerBuildResult> modified = adminApi.ModifyServerBuild(ForBuild(modify, build.BuildId));
+            if (modified == null || modified.Error != null) {
+                output.Error = Failure(modified, "ModifyServerBuild failed");
+                return output;
+            }
+            report.Modified = modified.Result;
+        }
+        report.ElapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        output.Result = report;
+        return output;
+    }
+
+    /**
+     * Sends the archive once; returns null when the upload was verified
+     */
+    private PlayFabError Transfer(final String url, final File archive, final Report report, final ProgressListener listener) {
+        HttpURLConnection con = null;
+        try {
+            MessageDigest md5 = MessageDigest.getInstance("MD5");
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            long size = report.Size;
+            long sent = 0;
+            long startNanos = System.nanoTime();
+
+            con = (HttpURLConnection)new URL(url).openConnection();
+            con.setRequestMethod("PUT");
+            con.setDoOutput(true);
+            con.setFixedLengthStreamingMode(size);
+            con.setRequestProperty("Content-Type", "application/zip");
+            FileInputStream input = new FileInputStream(archive);
+            try {
+                FileChannel channel = input.getChannel();
+                OutputStream output = con.getOutputStream();
+                // Heap buffer, so its array can go to the stream without another copy
+                ByteBuffer buffer = ByteBuffer.allocate(segmentBytes);
+                int read;
+                while (sent < size && (read = channel.read(buffer)) > 0) {
+                    read = (int)Math.min(read, size - sent);
+                    md5.update(buffer.array(), 0, read);
+                    sha256.update(buffer.array(), 0, read);
+                    output.write(buffer.array(), 0, read);
+                    buffer.clear();
+                    sent += read;
+                    if (listener != null)
+                        listener.Progress(sent, size, Rate(sent, startNanos));
+                }
+                // Before close, which would fail the short fixed-length body as a retryable IOException
+                if (sent != size)
+                    return Changed("Archive shrank while uploading");
+                output.close();
+            } finally {
+                input.close();
+            }
+
+            String md5Hex = Hex(md5.digest());
+            String sha256Hex = Hex(sha256.digest());
+            if (report.Md5 != null && !(report.Md5.equals(md5Hex) && report.Sha256.equals(sha256Hex)))
+                return Changed("Archive changed between upload attempts");
+            report.Md5 = md5Hex;
+            report.Sha256 = sha256Hex;
+
+            int httpCode = con.getResponseCode();
+            if (httpCode < 200 || httpCode >= 300)
+                return Error(httpCode, PlayFabErrorCode.Unknown, "Build upload failed with HTTP " + httpCode);
+            String etag = con.getHeaderField("ETag");
+            if (etag != null) {
+                etag = etag.replace("\"", "").toLowerCase();
+                // Multipart ETags are not an MD5 of the content
+                if (etag.matches("[0-9a-f]{32}") && !etag.equals(md5Hex))
+                    return Error(httpCode, PlayFabErrorCode.Unknown, "Uploaded build does not match the archive checksum");
+            }
+            report.BytesPerSecond = Rate(sent, startNanos);
+            return null;
+        } catch (IOException e) {
+            return Error(503, PlayFabErrorCode.Unknown, "Build upload failed: " + e.getMessage());
+        } catch (Exception e) {
+            return Error(0, PlayFabErrorCode.Unknown, "Build upload failed: " + e.getMessage());
+        } finally {
+            if (con != null)
+                con.disconnect();
+        }
+    }
+
+    /**
+     * Copy of modify aimed at buildId, leaving the caller's request as it was
+     */
+    private static ModifyServerBuildRequest ForBuild(final ModifyServerBuildRequest modify, final String buildId) {
+        ModifyServerBuildRequest request = new ModifyServerBuildRequest();
+        request.BuildId = buildId;
+        request.Timestamp = modify.Timestamp;
+        request.ActiveRegions = modify.ActiveRegions;
+        request.MaxGamesPerHost = modify.MaxGamesPerHost;
+        request.MinFreeGameSlots = modify.MinFreeGameSlots;
+        request.CommandLineTemplate = modify.CommandLineTemplate;
+        request.ExecutablePath = modify.ExecutablePath;
+        request.Comment = modify.Comment;
+        return request;
+    }
+
+    private static double Rate(final long bytes, final long startNanos) {
+        long elapsed = Math.max(1, System.nanoTime() - startNanos);
+        return bytes * 1e9 / elapsed;
+    }
+
+    private static String Hex(final byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes)
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        return hex.toString();
+    }
+
+    private static PlayFabError Error(final int httpCode, final PlayFabErrorCode errorCode, final String message) {
+        PlayFabError error = new PlayFabError();
+        error.httpCode = httpCode;
+        error.pfErrorCode = errorCode;
+        error.errorMessage = message;
+        return error;
+    }
+
+    private static PlayFabError Changed(final String message) {
+        PlayFabError error = new ArchiveChanged();
+        error.pfErrorCode = PlayFabErrorCode.Unknown;
+        error.errorMessage = message;
+        return error;
+    }
+
+    private static PlayFabError Failure(final PlayFabResult<?> result, final String message) {
+        if (result != null && result.Error != null)
+            return result.Error;
+        return Error(0, PlayFabErrorCode.Unknown, message);
+    }
+}
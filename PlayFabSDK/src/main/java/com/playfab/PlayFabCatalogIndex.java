@@ -0,0 +1,368 @@
+package com.playfab;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.playfab.PlayFabErrors.PlayFabError;
+import com.playfab.PlayFabErrors.PlayFabResult;
+
+/**
+ * Read-optimized index of one catalog version, built from GetCatalogItems.
+ *
+ * Lookups by ItemId, Tag and ItemClass, per-currency prices, and bundle/container contents are served from an
+ * immutable Snapshot.  Refresh builds a complete new snapshot and swaps it in with a single volatile write, so any
+ * number of threads can read without locking and never observe a half-built catalog.  Take GetSnapshot() once when
+ * several lookups must agree with each other.  When refreshes overlap, a load that started earlier never replaces the
+ * snapshot of one that started later.
+ *
+ * Works with both the Client and Server catalog models, see ForClient and ForServer.
+ */
+public class PlayFabCatalogIndex<T> {
+    /**
+     * Reads the fields the index needs from one of the CatalogItem models
+     */
+    public static interface ItemAccessor<T> {
+        public String ItemId(T item);
+        public String ItemClass(T item);
+        public List<String> Tags(T item);
+        public Map<String, Long> VirtualCurrencyPrices(T item);
+        public List<String> BundledItems(T item);
+        public List<String> BundledResultTables(T item);
+        public List<String> ContainerItems(T item);
+        public List<String> ContainerResultTables(T item);
+        public String ContainerKeyItemId(T item);
+    }
+
+    /**
+     * Fetches the full catalog for a version
+     */
+    public static interface CatalogLoader<T> {
+        public PlayFabResult<List<T>> Load(String catalogVersion) throws Exception;
+    }
+
+    /**
+     * An immutable, fully built view of one catalog load
+     */
+    public static class Snapshot<T> {
+        private final String catalogVersion;
+        private final List<T> items;
+        private final Map<String, T> byItemId;
+        private final Map<String, List<T>> byTag;
+        private final Map<String, List<T>> byItemClass;
+        private final Map<String, Map<String, Long>> pricesByCurrency;
+        private final Map<String, List<String>> bundleExpansion;
+        private final Map<String, List<String>> containerContents;
+        private final Map<String, List<String>> resultTables;
+        private final Map<String, String> containerKeys;
+
+        Snapshot(final String catalogVersion, final List<T> catalog, final ItemAccessor<T> accessor) {
+            this.catalogVersion = catalogVersion;
+            items = Collections.unmodifiableList(new ArrayList<T>(catalog));
+            byItemId = new HashMap<String, T>(catalog.size() * 2);
+            byTag = new HashMap<String, List<T>>();
+            byItemClass = new HashMap<String, List<T>>();
+            pricesByCurrency = new HashMap<String, Map<String, Long>>();
+            containerContents = new HashMap<String, List<String>>();
+            resultTables = new HashMap<String, List<String>>();
+            containerKeys = new HashMap<String, String>();
+            Map<String, List<String>> bundled = new HashMap<String, List<String>>();
+
+            for (T item : catalog) {
+                String itemId = accessor.ItemId(item);
+                if (itemId == null)
+                    continue;
+                byItemId.put(itemId, item);
+
+                List<String> tags = accessor.Tags(item);
+                if (tags != null)
+                    for (String tag : tags)
+                        AddTo(byTag, tag, item);
+                String itemClass = accessor.ItemClass(item);
+                if (itemClass != null)
+                    AddTo(byItemClass, itemClass, item);
+
+                Map<String, Long> prices = accessor.VirtualCurrencyPrices(item);
+                if (prices != null) {
+                    for (Map.Entry<String, Long> price : prices.entrySet()) {
+                        Map<String, Long> currency = pricesByCurrency.get(price.getKey());
+                        if (currency == null) {
+                            currency = new HashMap<String, Long>();
+                            pricesByCurrency.put(price.getKey(), currency);
+                        }
+                        currency.put(itemId, price.getValue());
+                    }
+                }
+
+                List<String> bundledItems = accessor.BundledItems(item);
+                if (bundledItems != null && !bundledItems.isEmpty())
+                    bundled.put(itemId, bundledItems);
+                List<String> containerItems = accessor.ContainerItems(item);
+                if (containerItems != null && !containerItems.isEmpty())
+                    containerContents.put(itemId, Collections.unmodifiableList(new ArrayList<String>(containerItems)));
+                String keyItemId = accessor.ContainerKeyItemId(item);
+                if (keyItemId != null)
+                    containerKeys.put(itemId, keyItemId);
+
+                List<String> tables = new ArrayList<String>();
+                if (accessor.BundledResultTables(item) != null)
+                    tables.addAll(accessor.BundledResultTables(item));
+                if (accessor.ContainerResultTables(item) != null)
+                    tables.addAll(accessor.ContainerResultTables(item));
+                if (!tables.isEmpty())
+                    resultTables.put(itemId, Collections.unmodifiableList(tables));
+            }
+
+            for (Map.Entry<String, List<T>> entry : byTag.entrySet())
+                entry.setValue(Collections.unmodifiableList(entry.getValue()));
+            for (Map.Entry<String, List<T>> entry : byItemClass.entrySet())
+                entry.setValue(Collections.unmodifiableList(entry.getValue()));
+
+            // Bundles that contain bundles are unpacked all the way down when granted
+            bundleExpansion = new HashMap<String, List<String>>();
+            for (String bundleId : bundled.keySet()) {
+                List<String> expanded = new ArrayList<String>();
+                Expand(bundleId, bundled, new HashSet<String>(), expanded);
+                bundleExpansion.put(bundleId, Collections.unmodifiableList(expanded));
+            }
+        }
+
+        public String GetCatalogVersion() {
+            return catalogVersion;
+        }
+
+        public List<T> GetItems() {
+            return items;
+        }
+
+        public T GetItem(final String itemId) {
+            return byItemId.get(itemId);
+        }
+
+        public List<T> GetItemsWithTag(final String tag) {
+            List<T> result = byTag.get(tag);
+            return result == null ? Collections.<T>emptyList() : result;
+        }
+
+        public List<T> GetItemsOfClass(final String itemClass) {
+            List<T> result = byItemClass.get(itemClass);
+            return result == null ? Collections.<T>emptyList() : result;
+        }
+
+        /**
+         * Returns the price of an item in a virtual currency, or null if it cannot be bought with that currency
+         */
+        public Long GetPrice(final String itemId, final String virtualCurrency) {
+            Map<String, Long> currency = pricesByCurrency.get(virtualCurrency);
+            return currency == null ? null : currency.get(itemId);
+        }
+
+        /**
+         * Returns ItemId to price for every item sold in a virtual currency
+         */
+        public Map<String, Long> GetPrices(final String virtualCurrency) {
+            Map<String, Long> currency = pricesByCurrency.get(virtualCurrency);
+            return currency == null ? Collections.<String, Long>emptyMap() : Collections.unmodifiableMap(currency);
+        }
+
+        /**
+         * Returns every item a bundle grants, with nested bundles replaced by their contents, or an empty list for non-bundles
+         */
+        public List<String> GetBundleContents(final String itemId) {
+            List<String> result = bundleExpansion.get(itemId);
+            return result == null ? Collections.<String>emptyList() : result;
+        }
+
+        /**
+         * Returns the items a container holds when unlocked, or an empty list for non-containers
+         */
+        public List<String> GetContainerContents(final String itemId) {
+            List<String> result = containerContents.get(itemId);
+            return result == null ? Collections.<String>emptyList() : result;
+        }
+
+        /**
+         * Returns the key item needed to unlock a container, or null if it needs none
+         */
+        public String GetContainerKey(final String itemId) {
+            return containerKeys.get(itemId);
+        }
+
+        /**
+         * Returns the random result tables a bundle or container draws from
+         */
+        public List<String> GetResultTables(final String itemId) {
+            List<String> result = resultTables.get(itemId);
+            return result == null ? Collections.<String>emptyList() : result;
+        }
+
+        private static <V> void AddTo(final Map<String, List<V>> index, final String key, final V value) {
+            List<V> values = index.get(key);
+            if (values == null) {
+                values = new ArrayList<V>();
+                index.put(key, values);
+            }
+            values.add(value);
+        }
+
+        private static void Expand(final String itemId, final Map<String, List<String>> bundled, final Set<String> visiting, final List<String> output) {
+            if (!visiting.add(itemId))
+                return; // a cycle in catalog data; stop rather than recurse forever
+            for (String child : bundled.get(itemId)) {
+                if (bundled.containsKey(child))
+                    Expand(child, bundled, visiting, output);
+                else
+                    output.add(child);
+            }
+            visiting.remove(itemId);
+        }
+    }
+
+    private final String catalogVersion;
+    private final ItemAccessor<T> accessor;
+    private final CatalogLoader<T> loader;
+    private volatile Snapshot<T> snapshot;
+    // Numbers each load as it starts; publishedSequence is that of the current snapshot, guarded by this
+    private final AtomicLong loadSequence = new AtomicLong();
+    private long publishedSequence;
+
+    public PlayFabCatalogIndex(final String catalogVersion, final ItemAccessor<T> accessor, final CatalogLoader<T> loader) {
+        this.catalogVersion = catalogVersion;
+        this.accessor = accessor;
+        this.loader = loader;
+        this.snapshot = new Snapshot<T>(catalogVersion, Collections.<T>emptyList(), accessor);
+    }
+
+    /**
+     * Index over PlayFabServerAPI.GetCatalogItems for a catalog version (null for the title's primary catalog)
+     */
+    public static PlayFabCatalogIndex<PlayFabServerModels.CatalogItem> ForServer(final PlayFabServerAPI serverApi, final String catalogVersion) {
+        return new PlayFabCatalogIndex<PlayFabServerModels.CatalogItem>(catalogVersion, new ServerItemAccessor(), new CatalogLoader<PlayFabServerModels.CatalogItem>() {
+            public PlayFabResult<List<PlayFabServerModels.CatalogItem>> Load(String version) {
+                PlayFabServerModels.GetCatalogItemsRequest request = new PlayFabServerModels.GetCatalogItemsRequest();
+                request.CatalogVersion = version;
+                PlayFabResult<PlayFabServerModels.GetCatalogItemsResult> result = serverApi.GetCatalogItems(request);
+                PlayFabResult<List<PlayFabServerModels.CatalogItem>> output = new PlayFabResult<List<PlayFabServerModels.CatalogItem>>();
+                if (result == null || result.Error != null)
+                    output.Error = result == null ? null : result.Error;
+                else
+                    output.Result = result.Result.Catalog;
+                return output;
+            }
+        });
+    }
+
+    /**
+     * Index over PlayFabClientAPI.GetCatalogItems for a catalog version (null for the title's primary catalog)
+     */
+    public static PlayFabCatalogIndex<PlayFabClientModels.CatalogItem> ForClient(final PlayFabClientAPI clientApi, final String catalogVersion) {
+        return new PlayFabCatalogIndex<PlayFabClientModels.CatalogItem>(catalogVersion, new ClientItemAccessor(), new CatalogLoader<PlayFabClientModels.CatalogItem>() {
+            public PlayFabResult<List<PlayFabClientModels.CatalogItem>> Load(String version) {
+                PlayFabClientModels.GetCatalogItemsRequest request = new PlayFabClientModels.GetCatalogItemsRequest();
+                request.CatalogVersion = version;
+                PlayFabResult<PlayFabClientModels.GetCatalogItemsResult> result = clientApi.GetCatalogItems(request);
+                PlayFabResult<List<PlayFabClientModels.CatalogItem>> output = new PlayFabResult<List<PlayFabClientModels.CatalogItem>>();
+                if (result == null || result.Error != null)
+                    output.Error = result == null ? null : result.Error;
+                else
+                    output.Result = result.Result.Catalog;
+                return output;
+            }
+        });
+    }
+
+    /**
+     * Loads the catalog and atomically replaces the current snapshot.  On failure the previous snapshot stays in place
+     * and the error is returned; on success returns null.
+     */
+    public PlayFabError Refresh() throws Exception {
+        long sequence = loadSequence.incrementAndGet();
+        PlayFabResult<List<T>> result = loader.Load(catalogVersion);
+        if (result == null || result.Error != null || result.Result == null) {
+            if (result != null && result.Error != null)
+                return result.Error;
+            PlayFabError error = new PlayFabError();
+            error.pfErrorCode = PlayFabErrors.PlayFabErrorCode.Unknown;
+            error.errorMessage = "Catalog load returned no result";
+            return error;
+        }
+        Publish(sequence, new Snapshot<T>(catalogVersion, result.Result, accessor));
+        return null;
+    }
+
+    /**
+     * Replaces the current snapshot with one built from an already fetched catalog
+     */
+    public void Update(final List<T> catalog) {
+        long sequence = loadSequence.incrementAndGet();
+        Publish(sequence, new Snapshot<T>(catalogVersion, catalog, accessor));
+    }
+
+    private synchronized void Publish(final long sequence, final Snapshot<T> built) {
+        if (sequence < publishedSequence)
+            return;
+        publishedSequence = sequence;
+        snapshot = built;
+    }
+
+    public Snapshot<T> GetSnapshot() {
+        return snapshot;
+    }
+
+    public String GetCatalogVersion() {
+        return catalogVersion;
+    }
+
+    public T GetItem(final String itemId) {
+        return snapshot.GetItem(itemId);
+    }
+
+    public List<T> GetItemsWithTag(final String tag) {
+        return snapshot.GetItemsWithTag(tag);
+    }
+
+    public List<T> GetItemsOfClass(final String itemClass) {
+        return snapshot.GetItemsOfClass(itemClass);
+    }
+
+    public Long GetPrice(final String itemId, final String virtualCurrency) {
+        return snapshot.GetPrice(itemId, virtualCurrency);
+    }
+
+    public List<String> GetBundleContents(final String itemId) {
+        return snapshot.GetBundleContents(itemId);
+    }
+
+    public List<String> GetContainerContents(final String itemId) {
+        return snapshot.GetContainerContents(itemId);
+    }
+
+    public static class ServerItemAccessor implements ItemAccessor<PlayFabServerModels.CatalogItem> {
+        public String ItemId(PlayFabServerModels.CatalogItem item) { return item.ItemId; }
+        public String ItemClass(PlayFabServerModels.CatalogItem item) { return item.ItemClass; }
+        public List<String> Tags(PlayFabServerModels.CatalogItem item) { return item.Tags; }
+        public Map<String, Long> VirtualCurrencyPrices(PlayFabServerModels.CatalogItem item) { return item.VirtualCurrencyPrices; }
+        public List<String> BundledItems(PlayFabServerModels.CatalogItem item) { return item.Bundle == null ? null : item.Bundle.BundledItems; }
+        public List<String> BundledResultTables(PlayFabServerModels.CatalogItem item) { return item.Bundle == null ? null : item.Bundle.BundledResultTables; }
+        public List<String> ContainerItems(PlayFabServerModels.CatalogItem item) { return item.Container == null ? null : item.Container.ItemContents; }
+        public List<String> ContainerResultTables(PlayFabServerModels.CatalogItem item) { return item.Container == null ? null : item.Container.ResultTableContents; }
+        public String ContainerKeyItemId(PlayFabServerModels.CatalogItem item) { return item.Container == null ? null : item.Container.KeyItemId; }
+    }
+
+    public static class ClientItemAccessor implements ItemAccessor<PlayFabClientModels.CatalogItem> {
+        public String ItemId(PlayFabClientModels.CatalogItem item) { return item.ItemId; }
+        public String ItemClass(PlayFabClientModels.CatalogItem item) { return item.ItemClass; }
+        public List<String> Tags(PlayFabClientModels.CatalogItem item) { return item.Tags; }
+        public Map<String, Long> VirtualCurrencyPrices(PlayFabClientModels.CatalogItem item) { return item.VirtualCurrencyPrices; }
+        public List<String> BundledItems(PlayFabClientModels.CatalogItem item) { return item.Bundle == null ? null : item.Bundle.BundledItems; }
+        public List<String> BundledResultTables(PlayFabClientModels.CatalogItem item) { return item.Bundle == null ? null : item.Bundle.BundledResultTables; }
+        public List<String> ContainerItems(PlayFabClientModels.CatalogItem item) { return item.Container == null ? null : item.Container.ItemContents; }
+        public List<String> ContainerResultTables(PlayFabClientModels.CatalogItem item) { return item.Container == null ? null : item.Container.ResultTableContents; }
+        public String ContainerKeyItemId(PlayFabClientModels.CatalogItem item) { return item.Container == null ? null : item.Container.KeyItemId; }
+    }
+}
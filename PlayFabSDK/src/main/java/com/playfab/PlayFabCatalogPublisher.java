@@ -0,0 +1,229 @@
+package com.playfab;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
+import com.playfab.PlayFabAdminModels.*;
+import com.playfab.PlayFabErrors.PlayFabError;
+import com.playfab.PlayFabErrors.PlayFabErrorCode;
+import com.playfab.PlayFabErrors.PlayFabResult;
+
+/**
+ * Publishes a catalog by uploading only the items that differ from the live catalog.
+ *
+ * Every item is reduced to a content hash: its JSON with object keys sorted and CatalogVersion left out, streamed
+ * straight into a SHA-256 digest.  Publish hashes the live catalog from GetCatalogItems, keeps only the hashes, then
+ * walks the wanted items once and sends the new and changed ones with UpdateCatalogItems.  Items are packed into
+ * chunks of at most maxChunkBytes of JSON, measured while hashing, and each chunk is sent as soon as it fills, so only
+ * one chunk of items is ever held for upload and the full catalog JSON is never built.
+ *
+ * UpdateCatalogItems cannot remove items; live items missing from the wanted catalog are reported as orphaned and
+ * left in place.  Use SetCatalogItems to replace a catalog outright.
+ */
+public class PlayFabCatalogPublisher {
+    /**
+     * Outcome of a publish; in a dry run nothing was uploaded and Chunks is the number that would have been sent
+     */
+    public static final class Report {
+        public final List<String> Added = new ArrayList<String>();
+        public final List<String> Changed = new ArrayList<String>();
+        public int Unchanged;
+        public final List<String> Orphaned = new ArrayList<String>();
+        /**
+         * Items of chunks that failed to upload, with the chunk's error
+         */
+        public final Map<String, PlayFabError> Failures = new TreeMap<String, PlayFabError>();
+        public int Chunks;
+        public long UploadedBytes;
+        public boolean DryRun;
+        public long ElapsedMillis;
+    }
+
+    // Counts the bytes written through it, so an item's size is known without keeping its JSON
+    private static final class CountingStream extends OutputStream {
+        long count;
+
+        public void write(final int b) {
+            count++;
+        }
+
+        public void write(final byte[] b, final int off, final int len) {
+            count += len;
+        }
+    }
+
+    private static final Gson gson = new GsonBuilder().setDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").create();
+    // Separators and the request fields around the items
+    private static final int ITEM_OVERHEAD_BYTES = 1;
+    private static final int REQUEST_OVERHEAD_BYTES = 256;
+
+    private final PlayFabAdminAPI adminApi;
+    private final long maxChunkBytes;
+
+    /**
+     * @param maxChunkBytes upper bound on the item JSON in one UpdateCatalogItems call; an item larger than this is
+     *        sent on its own
+     */
+    public PlayFabCatalogPublisher(final PlayFabAdminAPI adminApi, final long maxChunkBytes) {
+        if (maxChunkBytes < 1) throw new IllegalArgumentException("maxChunkBytes must be at least 1");
+        this.adminApi = adminApi;
+        this.maxChunkBytes = maxChunkBytes;
+    }
+
+    /**
+     * Uploads the items of wanted that are new or differ from the live catalog
+     *
+     * @param wanted read once, in order; may be backed by a stream so the whole catalog need not be loaded
+     * @param dryRun compute the diff and chunking without uploading
+     * @return the report, or the error if the live catalog could not be read
+     */
+    public PlayFabResult<Report> Publish(final String catalogVersion, final Iterable<CatalogItem> wanted, final boolean dryRun) {
+        long startNanos = System.nanoTime();
+        PlayFabResult<Report> output = new PlayFabResult<Report>();
+        GetCatalogItemsRequest request = new GetCatalogItemsRequest();
+        request.CatalogVersion = catalogVersion;
+        PlayFabResult<GetCatalogItemsResult> live = adminApi.GetCatalogItems(request);
+        if (live == null || live.Error != null) {
+            output.Error = Failure(live, "GetCatalogItems failed");
+            return output;
+        }
+        Map<String, String> liveHashes = new HashMap<String, String>();
+        if (live.Result != null && live.Result.Catalog != null) {
+            for (CatalogItem item : live.Result.Catalog)
+                liveHashes.put(item.ItemId, Hash(item, null));
+            // Only the hashes are needed from here on
+            live.Result.Catalog = null;
+        }
+
+        Report report = new Report();
+        report.DryRun = dryRun;
+        ArrayList<CatalogItem> chunk = new ArrayList<CatalogItem>();
+        long chunkBytes = 0;
+        long[] size = new long[1];
+        TreeSet<String> seen = new TreeSet<String>();
+        for (CatalogItem item : wanted) {
+            seen.add(item.ItemId);
+            String hash = Hash(item, size);
+            String liveHash = liveHashes.get(item.ItemId);
+            if (hash.equals(liveHash)) {
+                report.Unchanged++;
+                continue;
+            }
+            if (liveHash == null)
+                report.Added.add(item.ItemId);
+            else
+                report.Changed.add(item.ItemId);
+
+            long itemBytes = size[0] + ITEM_OVERHEAD_BYTES;
+            if (!chunk.isEmpty() && chunkBytes + itemBytes > maxChunkBytes) {
+                Upload(catalogVersion, chunk, chunkBytes, dryRun, report);
+                chunk = new ArrayList<CatalogItem>();
+                chunkBytes = 0;
+            }
+            chunk.add(item);
+            chunkBytes += itemBytes;
+        }
+        if (!chunk.isEmpty())
+            Upload(catalogVersion, chunk, chunkBytes, dryRun, report);
+
+        for (String itemId : new TreeSet<String>(liveHashes.keySet()))
+            if (!seen.contains(itemId))
+                report.Orphaned.add(itemId);
+        report.ElapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        output.Result = report;
+        return output;
+    }
+
+    /**
+     * Content hash of an item: hex SHA-256 of its JSON with sorted keys, ignoring CatalogVersion
+     */
+    public static String Hash(final CatalogItem item) {
+        return Hash(item, null);
+    }
+
+    private void Upload(final String catalogVersion, final ArrayList<CatalogItem> chunk, final long chunkBytes, final boolean dryRun, final Report report) {
+        report.Chunks++;
+        if (dryRun)
+            return;
+        UpdateCatalogItemsRequest request = new UpdateCatalogItemsRequest();
+        request.CatalogVersion = catalogVersion;
+        request.Catalog = chunk;
+        PlayFabResult<UpdateCatalogItemsResult> result = adminApi.UpdateCatalogItems(request);
+        if (result == null || result.Error != null) {
+            PlayFabError error = Failure(result, "UpdateCatalogItems failed");
+            for (CatalogItem item : chunk)
+                report.Failures.put(item.ItemId, error);
+            return;
+        }
+        report.UploadedBytes += chunkBytes + REQUEST_OVERHEAD_BYTES;
+    }
+
+    private static String Hash(final CatalogItem item, final long[] size) {
+        JsonObject tree = gson.toJsonTree(item).getAsJsonObject();
+        tree.remove("CatalogVersion");
+        try {
+            CountingStream counter = new CountingStream();
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            JsonWriter writer = new JsonWriter(new OutputStreamWriter(new DigestOutputStream(counter, digest), "UTF-8"));
+            WriteSorted(writer, tree);
+            writer.close();
+            if (size != null)
+                size[0] = counter.count;
+            StringBuilder hex = new StringBuilder(64);
+            for (byte b : digest.digest())
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            return hex.toString();
+        } catch (Exception e) {
+            // SHA-256 and UTF-8 are always available, and the stream never throws
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void WriteSorted(final JsonWriter writer, final JsonElement element) throws IOException {
+        if (element.isJsonObject()) {
+            writer.beginObject();
+            TreeMap<String, JsonElement> sorted = new TreeMap<String, JsonElement>();
+            for (Map.Entry<String, JsonElement> entry : element.getAsJsonObject().entrySet())
+                sorted.put(entry.getKey(), entry.getValue());
+            for (Map.Entry<String, JsonElement> entry : sorted.entrySet()) {
+                writer.name(entry.getKey());
+                WriteSorted(writer, entry.getValue());
+            }
+            writer.endObject();
+        } else if (element.isJsonArray()) {
+            writer.beginArray();
+            for (JsonElement each : (JsonArray)element)
+                WriteSorted(writer, each);
+            writer.endArray();
+        } else if (element.isJsonNull()) {
+            writer.nullValue();
+        } else {
+            writer.jsonValue(element.toString());
+        }
+    }
+
+    private static PlayFabError Failure(final PlayFabResult<?> result, final String message) {
+        if (result != null && result.Error != null)
+            return result.Error;
+        PlayFabError error = new PlayFabError();
+        error.pfErrorCode = PlayFabErrorCode.Unknown;
+        error.errorMessage = message;
+        return error;
+    }
+}
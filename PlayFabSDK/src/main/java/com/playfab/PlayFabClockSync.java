@@ -0,0 +1,263 @@
+package com.playfab;
+
+import java.util.Date;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.playfab.PlayFabErrors.PlayFabError;
+import com.playfab.PlayFabErrors.PlayFabErrorCode;
+import com.playfab.PlayFabErrors.PlayFabResult;
+
+/**
+ * Estimates PlayFab server time locally from a few GetTime samples, so timed offers and events need no round trip.
+ *
+ * Each sample is read NTP-style: the server's timestamp is taken to be the midpoint of the request, so its error is
+ * at most half the round trip.  A sync takes samplesPerSync samples and keeps the one with the shortest round trip.
+ * Successive syncs give a drift estimate, smoothed with an exponential moving average, which ServerNow applies on top
+ * of the local monotonic clock.  The error bound grows from the sample's half round trip at maxDriftPpm; ServerNow
+ * starts a background re-sync once it passes maxErrorMillis.  ServerNow blocks only for the very first sync attempt; if
+ * that fails it returns the local time and retries in the background.  While syncs keep failing, background retries
+ * start at most once a second, whether or not an earlier estimate is still being served.
+ */
+public class PlayFabClockSync {
+    /**
+     * Reads the server clock once
+     */
+    public static interface TimeSource {
+        public PlayFabResult<Date> GetTime() throws Exception;
+    }
+
+    private static final class Estimate {
+        // Server time at localNanos, and its error when sampled
+        final long serverMillis;
+        final long localNanos;
+        final double errorMillis;
+        // Offset of the server clock from the local wall clock, for reporting
+        final long offsetMillis;
+        final double driftPpm;
+
+        Estimate(final long serverMillis, final long localNanos, final double errorMillis, final long offsetMillis, final double driftPpm) {
+            this.serverMillis = serverMillis;
+            this.localNanos = localNanos;
+            this.errorMillis = errorMillis;
+            this.offsetMillis = offsetMillis;
+            this.driftPpm = driftPpm;
+        }
+    }
+
+    private static final double DRIFT_SMOOTHING = 0.25;
+    // Syncs closer together than this say too little about drift
+    private static final long MIN_DRIFT_INTERVAL_NANOS = 60L * 1000 * 1000 * 1000;
+    private static final long RETRY_INTERVAL_NANOS = 1000L * 1000 * 1000;
+
+    private final TimeSource timeSource;
+    private final int samplesPerSync;
+    private final double maxErrorMillis;
+    private final double maxDriftPpm;
+    private volatile Estimate estimate;
+    private final AtomicBoolean syncing = new AtomicBoolean();
+    private final AtomicBoolean firstSyncAttempted = new AtomicBoolean();
+    private volatile boolean failing;
+    private volatile long lastFailureNanos;
+    private final Object syncLock = new Object();
+    // One thread for background syncs, which exits when idle
+    private final ExecutorService background = new ThreadPoolExecutor(0, 1, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+        public Thread newThread(final Runnable runnable) {
+            Thread thread = new Thread(runnable, "PlayFabClockSync");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /**
+     * @param samplesPerSync GetTime calls per sync; the one with the shortest round trip is kept
+     * @param maxErrorMillis error bound past which ServerNow re-syncs in the background
+     * @param maxDriftPpm assumed worst-case drift between the local and server clocks, in parts per million
+     */
+    public PlayFabClockSync(final TimeSource timeSource, final int samplesPerSync, final double maxErrorMillis, final double maxDriftPpm) {
+        if (samplesPerSync < 1) throw new IllegalArgumentException("samplesPerSync must be at least 1");
+        this.timeSource = timeSource;
+        this.samplesPerSync = samplesPerSync;
+        this.maxErrorMillis = maxErrorMillis;
+        this.maxDriftPpm = maxDriftPpm;
+    }
+
+    /**
+     * Samples the server clock and updates the estimate; returns the error if no sample succeeded, null on success
+     */
+    public PlayFabError Sync() {
+        synchronized (syncLock) {
+            long bestRoundTrip = Long.MAX_VALUE;
+            long bestServerMillis = 0;
+            long bestLocalNanos = 0;
+            long bestLocalMillis = 0;
+            PlayFabError error = null;
+            for (int i = 0; i < samplesPerSync; i++) {
+                long sentNanos = System.nanoTime();
+                long sentMillis = System.currentTimeMillis();
+                PlayFabResult<Date> result;
+                try {
+                    result = timeSource.GetTime();
+                } catch (Exception e) {
+                    result = null;
+                }
+                long receivedNanos = System.nanoTime();
+                if (result == null || result.Error != null || result.Result == null) {
+                    error = Failure(result);
+                    continue;
+                }
+                long roundTrip = receivedNanos - sentNanos;
+                if (roundTrip < bestRoundTrip) {
+                    bestRoundTrip = roundTrip;
+                    bestServerMillis = result.Result.getTime();
+                    bestLocalNanos = sentNanos + roundTrip / 2;
+                    bestLocalMillis = sentMillis + roundTrip / 2000000;
+                }
+            }
+            if (bestRoundTrip == Long.MAX_VALUE) {
+                lastFailureNanos = System.nanoTime();
+                failing = true;
+                return error;
+            }
+            failing = false;
+
+            // Server timestamps are whole milliseconds
+            double errorMillis = bestRoundTrip / 2e6 + 1;
+            double driftPpm = 0;
+            Estimate previous = estimate;
+            if (previous != null) {
+                driftPpm = previous.driftPpm;
+                long elapsedNanos = bestLocalNanos - previous.localNanos;
+                if (elapsedNanos >= MIN_DRIFT_INTERVAL_NANOS) {
+                    double predicted = previous.serverMillis + elapsedNanos / 1e6;
+                    double observedPpm = (bestServerMillis - predicted) / (elapsedNanos / 1e6) * 1e6;
+                    driftPpm = driftPpm + DRIFT_SMOOTHING * (observedPpm - driftPpm);
+                }
+            }
+            estimate = new Estimate(bestServerMillis, bestLocalNanos, errorMillis, bestServerMillis - bestLocalMillis, driftPpm);
+            return null;
+        }
+    }
+
+    /**
+     * Estimated server time in milliseconds since the epoch, or the local time if the server was never reached
+     */
+    public long ServerNow() {
+        Estimate current = estimate;
+        if (current == null) {
+            if (firstSyncAttempted.compareAndSet(false, true))
+                Sync();
+            else
+                SyncInBackground();
+            current = estimate;
+            if (current == null)
+                return System.currentTimeMillis();
+        } else if (GetErrorBoundMillis(current) > maxErrorMillis) {
+            SyncInBackground();
+        }
+        return Project(current, System.nanoTime());
+    }
+
+    public Date ServerDate() {
+        return new Date(ServerNow());
+    }
+
+    /**
+     * Current bound on the error of ServerNow, in milliseconds, or infinity before the first sync
+     */
+    public double GetErrorBoundMillis() {
+        Estimate current = estimate;
+        return current == null ? Double.POSITIVE_INFINITY : GetErrorBoundMillis(current);
+    }
+
+    /**
+     * Server clock minus local wall clock at the last sync, in milliseconds
+     */
+    public long GetOffsetMillis() {
+        Estimate current = estimate;
+        return current == null ? 0 : current.offsetMillis;
+    }
+
+    /**
+     * Smoothed rate at which the server clock gains on the local monotonic clock, in parts per million
+     */
+    public double GetDriftPpm() {
+        Estimate current = estimate;
+        return current == null ? 0 : current.driftPpm;
+    }
+
+    private double GetErrorBoundMillis(final Estimate current) {
+        double elapsedMillis = (System.nanoTime() - current.localNanos) / 1e6;
+        return current.errorMillis + elapsedMillis * maxDriftPpm / 1e6;
+    }
+
+    private static long Project(final Estimate current, final long nowNanos) {
+        double elapsedMillis = (nowNanos - current.localNanos) / 1e6;
+        return current.serverMillis + Math.round(elapsedMillis * (1 + current.driftPpm / 1e6));
+    }
+
+    private void SyncInBackground() {
+        if (!syncing.compareAndSet(false, true))
+            return;
+        // Checked once no other sync can be running, so the last one's failure is seen
+        if (failing && System.nanoTime() - lastFailureNanos < RETRY_INTERVAL_NANOS) {
+            syncing.set(false);
+            return;
+        }
+        background.execute(new Runnable() {
+            public void run() {
+                try {
+                    // A sync that finished while this one was queued may have made it unnecessary
+                    Estimate current = estimate;
+                    if (current == null || GetErrorBoundMillis(current) > maxErrorMillis)
+                        Sync();
+                } finally {
+                    syncing.set(false);
+                }
+            }
+        });
+    }
+
+    private static PlayFabError Failure(final PlayFabResult<?> result) {
+        if (result != null && result.Error != null)
+            return result.Error;
+        PlayFabError error = new PlayFabError();
+        error.pfErrorCode = PlayFabErrorCode.Unknown;
+        error.errorMessage = "GetTime failed";
+        return error;
+    }
+
+    public static TimeSource ClientTime(final PlayFabClientAPI clientApi) {
+        return new TimeSource() {
+            public PlayFabResult<Date> GetTime() {
+                PlayFabResult<PlayFabClientModels.GetTimeResult> result = clientApi.GetTime(new PlayFabClientModels.GetTimeRequest());
+                if (result == null)
+                    return null;
+                PlayFabResult<Date> output = new PlayFabResult<Date>();
+                output.Error = result.Error;
+                if (result.Result != null)
+                    output.Result = result.Result.Time;
+                return output;
+            }
+        };
+    }
+
+    public static TimeSource ServerTime(final PlayFabServerAPI serverApi) {
+        return new TimeSource() {
+            public PlayFabResult<Date> GetTime() {
+                PlayFabResult<PlayFabServerModels.GetTimeResult> result = serverApi.GetTime(new PlayFabServerModels.GetTimeRequest());
+                if (result == null)
+                    return null;
+                PlayFabResult<Date> output = new PlayFabResult<Date>();
+                output.Error = result.Error;
+                if (result.Result != null)
+                    output.Result = result.Result.Time;
+                return output;
+            }
+        };
+    }
+}
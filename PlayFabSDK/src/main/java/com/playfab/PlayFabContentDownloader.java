@@ -0,0 +1,474 @@
+package com.playfab;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.playfab.PlayFabErrors.PlayFabError;
+import com.playfab.PlayFabErrors.PlayFabErrorCode;
+import com.playfab.PlayFabErrors.PlayFabResult;
+
+/**
+ * Downloads title content through the URLs from GetContentDownloadUrl into a local cache.
+ *
+ * A download is split into partBytes ranges fetched in parallel with HTTP Range requests and written at their offsets
+ * into a file preallocated to the full size.  The first request doubles as the probe that reports the size and ETag.
+ * Which parts are done is kept in a sidecar state file, so an interrupted download picks up with the missing parts;
+ * the state is thrown away if the ETag or size changed in between, or if the partial file is gone or was truncated.
+ * Empty content, which storage answers with 416 and a total size of 0 in Content-Range, is cached as an empty file.
+ * A completed file is checked against the ETag when that is an MD5 and only then moved into the cache.
+ *
+ * Cached files are keyed by content key and LastModified.  Passing the LastModified from GetContentList (or from a
+ * previous download) lets Download return a cached file without any call; without it the probe's ETag decides.
+ * Storage that ignores Range requests is downloaded in one piece.
+ */
+public class PlayFabContentDownloader {
+    /**
+     * Produces a download URL for a content key
+     */
+    public static interface UrlSource {
+        public PlayFabResult<String> GetDownloadUrl(String key) throws Exception;
+    }
+
+    private static final int COPY_BUFFER_BYTES = 64 * 1024;
+
+    // Serializes downloads of one key; dropped once no call holds or waits for it
+    private static final class KeyLock {
+        int users;
+    }
+
+    private final UrlSource source;
+    private final File cacheDir;
+    private final long partBytes;
+    private final int maxAttempts;
+    private final ExecutorService pool;
+    private final Map<String, KeyLock> keyLocks = new HashMap<String, KeyLock>();
+    private final AtomicLong downloadedBytes = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+
+    /**
+     * @param partBytes size of each range request
+     * @param parallelism range requests in flight at once, across all downloads
+     * @param maxAttempts tries per range within one download
+     */
+    public PlayFabContentDownloader(final UrlSource source, final File cacheDir, final long partBytes, final int parallelism, final int maxAttempts) {
+        if (partBytes < 1) throw new IllegalArgumentException("partBytes must be at least 1");
+        if (parallelism < 1) throw new IllegalArgumentException("parallelism must be at least 1");
+        if (maxAttempts < 1) throw new IllegalArgumentException("maxAttempts must be at least 1");
+        if (!cacheDir.isDirectory() && !cacheDir.mkdirs()) throw new IllegalArgumentException("Cannot create cache directory " + cacheDir);
+        this.source = source;
+        this.cacheDir = cacheDir;
+        this.partBytes = partBytes;
+        this.maxAttempts = maxAttempts;
+        this.pool = Executors.newFixedThreadPool(parallelism, DaemonThreads("PlayFabContentDownloader"));
+    }
+
+    /**
+     * Returns the cached file for a content key, downloading it first if it is missing or out of date
+     *
+     * @param lastModified the content's LastModified if known, or null
+     * @return the file in the cache directory, or the error; a failed download keeps its progress for the next call
+     */
+    public PlayFabResult<File> Download(final String key, final Date lastModified) {
+        KeyLock lock;
+        synchronized (keyLocks) {
+            lock = keyLocks.get(key);
+            if (lock == null) {
+                lock = new KeyLock();
+                keyLocks.put(key, lock);
+            }
+            lock.users++;
+        }
+        try {
+            synchronized (lock) {
+                return DownloadLocked(key, lastModified);
+            }
+        } catch (Exception e) {
+            return Failed("Download of " + key + " failed: " + e.getMessage(), 0);
+        } finally {
+            synchronized (keyLocks) {
+                if (--lock.users == 0)
+                    keyLocks.remove(key);
+            }
+        }
+    }
+
+    public void Close() {
+        pool.shutdownNow();
+    }
+
+    public long GetDownloadedBytes() {
+        return downloadedBytes.get();
+    }
+
+    public long GetCacheHitCount() {
+        return cacheHits.get();
+    }
+
+    private PlayFabResult<File> DownloadLocked(final String key, final Date lastModified) throws Exception {
+        String name = Sha1Hex(key);
+        final File content = new File(cacheDir, name);
+        File metaFile = new File(cacheDir, name + ".meta");
+        final File partFile = new File(cacheDir, name + ".part");
+        final File stateFile = new File(cacheDir, name + ".state");
+
+        Properties meta = content.exists() ? Load(metaFile) : null;
+        if (meta != null && lastModified != null && Long.toString(lastModified.getTime()).equals(meta.getProperty("lastModified")))
+            return Hit(content);
+
+        PlayFabResult<String> url = source.GetDownloadUrl(key);
+        if (url == null || url.Error != null || url.Result == null) {
+            PlayFabResult<File> output = new PlayFabResult<File>();
+            output.Error = url != null && url.Error != null ? url.Error : Failure("GetContentDownloadUrl failed for " + key, 0);
+            return output;
+        }
+        final String downloadUrl = url.Result;
+
+        Properties state = Load(stateFile);
+        if (state != null && (!partFile.exists() || partFile.length() < ParseLong(state.getProperty("size"))))
+            state = null;
+        int probePart = state != null ? FirstMissing(state) : 0;
+        HttpURLConnection probe = Open(downloadUrl, probePart * partBytes, probePart * partBytes + partBytes - 1);
+        try {
+            int httpCode = probe.getResponseCode();
+            if (httpCode == 416 && probePart > 0) {
+                // The content shrank since the state was written; start over
+                state = null;
+                probePart = 0;
+                probe.disconnect();
+                probe = Open(downloadUrl, 0, partBytes - 1);
+                httpCode = probe.getResponseCode();
+            }
+            if (httpCode == 416 && IsEmpty(probe.getHeaderField("Content-Range"))) {
+                new FileOutputStream(partFile).close();
+                stateFile.delete();
+                return Finish(content, metaFile, partFile, probe.getHeaderField("ETag"), lastModified != null ? lastModified.getTime() : probe.getLastModified());
+            }
+            if (httpCode == 200) {
+                // No range support: take the whole body as it comes
+                FileChannel channel = new FileOutputStream(partFile).getChannel();
+                try {
+                    Copy(probe.getInputStream(), channel, 0);
+                } finally {
+                    channel.close();
+                }
+                stateFile.delete();
+                return Finish(content, metaFile, partFile, probe.getHeaderField("ETag"), lastModified != null ? lastModified.getTime() : probe.getLastModified());
+            }
+            if (httpCode != 206)
+                return Failed("Download of " + key + " failed with HTTP " + httpCode, httpCode);
+
+            String contentRange = probe.getHeaderField("Content-Range");
+            final long size = Long.parseLong(contentRange.substring(contentRange.indexOf('/') + 1).trim());
+            String etag = probe.getHeaderField("ETag");
+            long modified = lastModified != null ? lastModified.getTime() : probe.getLastModified();
+            if (meta != null && etag != null && etag.equals(meta.getProperty("etag")) && Long.toString(size).equals(meta.getProperty("size"))) {
+                meta.setProperty("lastModified", Long.toString(modified));
+                Save(meta, metaFile);
+                return Hit(content);
+            }
+
+            final int parts = (int)((size + partBytes - 1) / partBytes);
+            if (state != null && !(Long.toString(size).equals(state.getProperty("size")) && String.valueOf(etag).equals(state.getProperty("etag"))
+                    && Long.toString(partBytes).equals(state.getProperty("partBytes")))) {
+                state = null;
+                probe.disconnect();
+                probePart = 0;
+                probe = Open(downloadUrl, 0, partBytes - 1);
+                if (probe.getResponseCode() != 206)
+                    return Failed("Download of " + key + " failed with HTTP " + probe.getResponseCode(), probe.getResponseCode());
+            }
+            if (state == null) {
+                state = new Properties();
+                state.setProperty("size", Long.toString(size));
+                state.setProperty("etag", String.valueOf(etag));
+                state.setProperty("partBytes", Long.toString(partBytes));
+                char[] done = new char[parts];
+                Arrays.fill(done, '0');
+                state.setProperty("done", new String(done));
+                RandomAccessFile file = new RandomAccessFile(partFile, "rw");
+                try {
+                    file.setLength(size);
+                } finally {
+                    file.close();
+                }
+            }
+
+            final Properties progress = state;
+            final FileChannel channel = new RandomAccessFile(partFile, "rw").getChannel();
+            try {
+                long probeFirst = probePart * partBytes;
+                if (Copy(probe.getInputStream(), channel, probeFirst) != Math.min(size, probeFirst + partBytes) - probeFirst)
+                    return Failed("Download of " + key + " was cut short", 206);
+                MarkDone(progress, probePart, stateFile);
+
+                List<Future<PlayFabError>> fetches = new ArrayList<Future<PlayFabError>>();
+                String done = progress.getProperty("done");
+                for (int part = 0; part < parts; part++) {
+                    if (done.charAt(part) == '1')
+                        continue;
+                    final int index = part;
+                    fetches.add(pool.submit(new Callable<PlayFabError>() {
+                        public PlayFabError call() throws Exception {
+                            return FetchPart(downloadUrl, channel, index, size, progress, stateFile);
+                        }
+                    }));
+                }
+                PlayFabError error = null;
+                for (Future<PlayFabError> fetch : fetches) {
+                    PlayFabError partError = fetch.get();
+                    if (error == null)
+                        error = partError;
+                }
+                if (error != null) {
+                    PlayFabResult<File> output = new PlayFabResult<File>();
+                    output.Error = error;
+                    return output;
+                }
+            } finally {
+                channel.close();
+            }
+            stateFile.delete();
+            return Finish(content, metaFile, partFile, etag, modified);
+        } finally {
+            probe.disconnect();
+        }
+    }
+
+    private PlayFabError FetchPart(final String url, final FileChannel channel, final int part, final long size, final Properties state, final File stateFile) {
+        long first = part * partBytes;
+        long last = Math.min(size, first + partBytes) - 1;
+        PlayFabError error = null;
+        for (int attempt = 0; attempt < maxAttempts; attempt++) {
+            HttpURLConnection con = null;
+            try {
+                con = Open(url, first, last);
+                int httpCode = con.getResponseCode();
+                if (httpCode != 206) {
+                    error = Failure("Range " + first + "-" + last + " failed with HTTP " + httpCode, httpCode);
+                    continue;
+                }
+                long copied = Copy(con.getInputStream(), channel, first);
+                if (copied != last - first + 1) {
+                    error = Failure("Range " + first + "-" + last + " was cut short", httpCode);
+                    continue;
+                }
+                MarkDone(state, part, stateFile);
+                return null;
+            } catch (IOException e) {
+                error = Failure("Range " + first + "-" + last + " failed: " + e.getMessage(), 503);
+            } finally {
+                if (con != null)
+                    con.disconnect();
+            }
+        }
+        return error;
+    }
+
+    private PlayFabResult<File> Finish(final File content, final File metaFile, final File partFile, final String etag, final long lastModified) throws Exception {
+        String md5 = etag == null ? "" : etag.replace("\"", "").toLowerCase();
+        // Multipart ETags are not an MD5 of the content
+        if (md5.matches("[0-9a-f]{32}") && !md5.equals(Md5Hex(partFile))) {
+            partFile.delete();
+            return Failed("Downloaded content does not match its ETag", 0);
+        }
+        Files.move(partFile.toPath(), content.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        Properties meta = new Properties();
+        meta.setProperty("size", Long.toString(content.length()));
+        meta.setProperty("etag", String.valueOf(etag));
+        meta.setProperty("lastModified", Long.toString(lastModified));
+        Save(meta, metaFile);
+        PlayFabResult<File> output = new PlayFabResult<File>();
+        output.Result = content;
+        return output;
+    }
+
+    private PlayFabResult<File> Hit(final File content) {
+        cacheHits.incrementAndGet();
+        PlayFabResult<File> output = new PlayFabResult<File>();
+        output.Result = content;
+        return output;
+    }
+
+    private static HttpURLConnection Open(final String url, final long first, final long last) throws IOException {
+        HttpURLConnection con = (HttpURLConnection)new URL(url).openConnection();
+        con.setRequestProperty("Range", "bytes=" + first + "-" + last);
+        return con;
+    }
+
+    private long Copy(final InputStream input, final FileChannel channel, final long position) throws IOException {
+        byte[] buffer = new byte[COPY_BUFFER_BYTES];
+        long written = 0;
+        try {
+            int read;
+            while ((read = input.read(buffer)) > 0) {
+                ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, read);
+                while (chunk.hasRemaining())
+                    written += channel.write(chunk, position + written);
+            }
+        } finally {
+            input.close();
+        }
+        downloadedBytes.addAndGet(written);
+        return written;
+    }
+
+    private static boolean IsEmpty(final String contentRange) {
+        return contentRange != null && contentRange.trim().endsWith("/0");
+    }
+
+    private static long ParseLong(final String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private static int FirstMissing(final Properties state) {
+        String done = state.getProperty("done", "");
+        int missing = done.indexOf('0');
+        return missing < 0 ? 0 : missing;
+    }
+
+    private static void MarkDone(final Properties state, final int part, final File stateFile) throws IOException {
+        synchronized (state) {
+            char[] done = state.getProperty("done").toCharArray();
+            done[part] = '1';
+            state.setProperty("done", new String(done));
+            Save(state, stateFile);
+        }
+    }
+
+    private static Properties Load(final File file) throws IOException {
+        if (!file.exists())
+            return null;
+        Properties properties = new Properties();
+        FileInputStream input = new FileInputStream(file);
+        try {
+            properties.load(input);
+        } finally {
+            input.close();
+        }
+        return properties;
+    }
+
+    private static void Save(final Properties properties, final File file) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        FileOutputStream output = new FileOutputStream(temp);
+        try {
+            properties.store(output, null);
+        } finally {
+            output.close();
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String Md5Hex(final File file) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("MD5");
+        FileChannel channel = new FileInputStream(file).getChannel();
+        try {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(COPY_BUFFER_BYTES);
+            while (channel.read(buffer) > 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        } finally {
+            channel.close();
+        }
+        return Hex(digest.digest());
+    }
+
+    private static String Sha1Hex(final String key) throws Exception {
+        return Hex(MessageDigest.getInstance("SHA-1").digest(key.getBytes("UTF-8")));
+    }
+
+    private static String Hex(final byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes)
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        return hex.toString();
+    }
+
+    private static PlayFabError Failure(final String message, final int httpCode) {
+        PlayFabError error = new PlayFabError();
+        error.httpCode = httpCode;
+        error.pfErrorCode = PlayFabErrorCode.Unknown;
+        error.errorMessage = message;
+        return error;
+    }
+
+    private static PlayFabResult<File> Failed(final String message, final int httpCode) {
+        PlayFabResult<File> output = new PlayFabResult<File>();
+        output.Error = Failure(message, httpCode);
+        return output;
+    }
+
+    private static ThreadFactory DaemonThreads(final String name) {
+        return new ThreadFactory() {
+            public Thread newThread(final Runnable runnable) {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    public static UrlSource ClientContent(final PlayFabClientAPI clientApi) {
+        return new UrlSource() {
+            public PlayFabResult<String> GetDownloadUrl(final String key) {
+                PlayFabClientModels.GetContentDownloadUrlRequest request = new PlayFabClientModels.GetContentDownloadUrlRequest();
+                request.Key = key;
+                PlayFabResult<PlayFabClientModels.GetContentDownloadUrlResult> result = clientApi.GetContentDownloadUrl(request);
+                if (result == null)
+                    return null;
+                PlayFabResult<String> output = new PlayFabResult<String>();
+                output.Error = result.Error;
+                if (result.Result != null)
+                    output.Result = result.Result.URL;
+                return output;
+            }
+        };
+    }
+
+    public static UrlSource ServerContent(final PlayFabServerAPI serverApi) {
+        return new UrlSource() {
+            public PlayFabResult<String> GetDownloadUrl(final String key) {
+                PlayFabServerModels.GetContentDownloadUrlRequest request = new PlayFabServerModels.GetContentDownloadUrlRequest();
+                request.Key = key;
+                PlayFabResult<PlayFabServerModels.GetContentDownloadUrlResult> result = serverApi.GetContentDownloadUrl(request);
+                if (result == null)
+                    return null;
+                PlayFabResult<String> output = new PlayFabResult<String>();
+                output.Error = result.Error;
+                if (result.Result != null)
+                    output.Result = result.Result.URL;
+                return output;
+            }
+        };
+    }
+}
@@ -0,0 +1,360 @@
+package com.playfab;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import com.playfab.PlayFabAdminModels.*;
+import com.playfab.PlayFabErrors.PlayFabError;
+import com.playfab.PlayFabErrors.PlayFabErrorCode;
+import com.playfab.PlayFabErrors.PlayFabResult;
+
+/**
+ * Uploads files as title content through the pre-signed URLs from GetContentUploadUrl.
+ *
+ * Files are streamed through a small buffer into a fixed-length HTTP PUT, so a file is never read into memory whole.
+ * Keys upload in parallel on a fixed pool of threads.
+ *
+ * GetContentList reports only the Size of stored content, so the uploader keeps a manifest file with the size and MD5
+ * of every key it has uploaded.  A key is skipped when the stored Size and the manifest both match the local file.
+ * Each successful upload appends a line to the manifest, and the run rewrites it compactly when it ends, so a run that
+ * fails part way can simply be repeated: keys already uploaded are skipped and only the rest are sent.  When the
+ * storage returns an MD5 ETag it is checked against the file.
+ */
+public class PlayFabContentUploader {
+    /**
+     * Outcome of an upload run
+     */
+    public static final class Report {
+        public final List<String> Uploaded = new ArrayList<String>();
+        /**
+         * Keys whose stored content already matched
+         */
+        public final List<String> Skipped = new ArrayList<String>();
+        public final Map<String, PlayFabError> Failures = new TreeMap<String, PlayFabError>();
+        public long UploadedBytes;
+        public long ElapsedMillis;
+    }
+
+    private static final class ManifestEntry {
+        final long size;
+        final String md5;
+
+        ManifestEntry(final long size, final String md5) {
+            this.size = size;
+            this.md5 = md5;
+        }
+    }
+
+    private static final int DIGEST_BUFFER_BYTES = 64 * 1024;
+    private static final int COPY_BUFFER_BYTES = 64 * 1024;
+    private static final long RETRY_BACKOFF_MILLIS = 250;
+
+    private final PlayFabAdminAPI adminApi;
+    private final File manifestFile;
+    private final int parallelism;
+    private final int maxAttempts;
+    // Guards manifestLog as well
+    private final Map<String, ManifestEntry> manifest = new HashMap<String, ManifestEntry>();
+    private Writer manifestLog;
+
+    /**
+     * @param manifestFile where uploaded sizes and checksums are kept between runs; created if missing
+     * @param parallelism uploads in flight at once
+     * @param maxAttempts tries per key within one run
+     */
+    public PlayFabContentUploader(final PlayFabAdminAPI adminApi, final File manifestFile, final int parallelism, final int maxAttempts) throws IOException {
+        if (parallelism < 1) throw new IllegalArgumentException("parallelism must be at least 1");
+        if (maxAttempts < 1) throw new IllegalArgumentException("maxAttempts must be at least 1");
+        this.adminApi = adminApi;
+        this.manifestFile = manifestFile;
+        this.parallelism = parallelism;
+        this.maxAttempts = maxAttempts;
+        LoadManifest();
+    }
+
+    /**
+     * Uploads each file under its content key, skipping keys whose stored content already matches.  Runs on one
+     * uploader share its manifest and take turns.
+     *
+     * @return the report, or the error if the stored content could not be listed
+     */
+    public synchronized PlayFabResult<Report> Upload(final Map<String, File> files) {
+        long startNanos = System.nanoTime();
+        PlayFabResult<Report> output = new PlayFabResult<Report>();
+        final Report report = new Report();
+        if (files.isEmpty()) {
+            output.Result = report;
+            return output;
+        }
+
+        GetContentListRequest listRequest = new GetContentListRequest();
+        listRequest.Prefix = CommonPrefix(files.keySet());
+        PlayFabResult<GetContentListResult> list = adminApi.GetContentList(listRequest);
+        if (list == null || list.Error != null) {
+            output.Error = Failure(list, "GetContentList failed");
+            return output;
+        }
+        final Map<String, Long> storedSizes = new HashMap<String, Long>();
+        if (list.Result != null && list.Result.Contents != null)
+            for (ContentInfo info : list.Result.Contents)
+                storedSizes.put(info.Key, info.Size);
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(parallelism, files.size()), DaemonThreads("PlayFabContentUploader"));
+        Map<String, Future<PlayFabError>> uploads = new TreeMap<String, Future<PlayFabError>>();
+        try {
+            synchronized (manifest) {
+                manifestLog = new OutputStreamWriter(new FileOutputStream(manifestFile, true), "UTF-8");
+            }
+            for (final Map.Entry<String, File> file : files.entrySet()) {
+                uploads.put(file.getKey(), pool.submit(new Callable<PlayFabError>() {
+                    public PlayFabError call() throws Exception {
+                        return UploadKey(file.getKey(), file.getValue(), storedSizes.get(file.getKey()), report);
+                    }
+                }));
+            }
+            for (Map.Entry<String, Future<PlayFabError>> upload : uploads.entrySet()) {
+                PlayFabError error;
+                try {
+                    error = upload.getValue().get();
+                } catch (Exception e) {
+                    error = Failure(null, "Upload of " + upload.getKey() + " failed: " + e.getMessage());
+                }
+                if (error != null)
+                    report.Failures.put(upload.getKey(), error);
+            }
+        } catch (IOException e) {
+            output.Error = Failure(null, "Could not open manifest " + manifestFile + ": " + e.getMessage());
+            return output;
+        } finally {
+            pool.shutdownNow();
+            try {
+                CompactManifest();
+            } catch (IOException e) {
+                // Every upload is already in the log; the next run reads it as it is
+            }
+        }
+        synchronized (report) {
+            Collections.sort(report.Uploaded);
+            Collections.sort(report.Skipped);
+        }
+        report.ElapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        output.Result = report;
+        return output;
+    }
+
+    private PlayFabError UploadKey(final String key, final File file, final Long storedSize, final Report report) throws Exception {
+        long size = file.length();
+        String md5 = Md5Hex(file);
+        synchronized (manifest) {
+            ManifestEntry uploaded = manifest.get(key);
+            if (storedSize != null && storedSize == size && uploaded != null && uploaded.size == size && uploaded.md5.equals(md5)) {
+                synchronized (report) {
+                    report.Skipped.add(key);
+                }
+                return null;
+            }
+        }
+
+        String contentType = URLConnection.guessContentTypeFromName(file.getName());
+        if (contentType == null)
+            contentType = "application/octet-stream";
+        PlayFabError error = null;
+        for (int attempt = 0; attempt < maxAttempts; attempt++) {
+            if (attempt > 0)
+                Thread.sleep(RETRY_BACKOFF_MILLIS * attempt);
+            GetContentUploadUrlRequest request = new GetContentUploadUrlRequest();
+            request.Key = key;
+            request.ContentType = contentType;
+            PlayFabResult<GetContentUploadUrlResult> url = adminApi.GetContentUploadUrl(request);
+            if (url == null || url.Error != null || url.Result == null || url.Result.URL == null) {
+                error = Failure(url, "GetContentUploadUrl failed for " + key);
+                continue;
+            }
+            error = Put(url.Result.URL, file, size, contentType, md5);
+            if (error == null)
+                break;
+        }
+        if (error != null)
+            return error;
+
+        synchronized (manifest) {
+            manifest.put(key, new ManifestEntry(size, md5));
+            WriteManifestLine(manifestLog, key, manifest.get(key));
+            manifestLog.flush();
+        }
+        synchronized (report) {
+            report.Uploaded.add(key);
+            report.UploadedBytes += size;
+        }
+        return null;
+    }
+
+    private static PlayFabError Put(final String url, final File file, final long size, final String contentType, final String md5) {
+        HttpURLConnection con = null;
+        try {
+            con = (HttpURLConnection)new URL(url).openConnection();
+            con.setRequestMethod("PUT");
+            con.setDoOutput(true);
+            con.setFixedLengthStreamingMode(size);
+            con.setRequestProperty("Content-Type", contentType);
+            InputStream input = new FileInputStream(file);
+            try {
+                OutputStream output = con.getOutputStream();
+                byte[] buffer = new byte[COPY_BUFFER_BYTES];
+                int read;
+                while ((read = input.read(buffer)) > 0)
+                    output.write(buffer, 0, read);
+                output.close();
+            } finally {
+                input.close();
+            }
+
+            int httpCode = con.getResponseCode();
+            if (httpCode < 200 || httpCode >= 300)
+                return HttpFailure(httpCode, "Upload failed with HTTP " + httpCode);
+            String etag = con.getHeaderField("ETag");
+            if (etag != null) {
+                etag = etag.replace("\"", "").toLowerCase();
+                // Multipart ETags are not an MD5 of the content
+                if (etag.matches("[0-9a-f]{32}") && !etag.equals(md5))
+                    return HttpFailure(httpCode, "Stored content does not match the file checksum");
+            }
+            return null;
+        } catch (IOException e) {
+            return HttpFailure(503, "Upload failed: " + e.getMessage());
+        } finally {
+            if (con != null)
+                con.disconnect();
+        }
+    }
+
+    private static String Md5Hex(final File file) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("MD5");
+        FileInputStream input = new FileInputStream(file);
+        try {
+            FileChannel channel = input.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocateDirect(DIGEST_BUFFER_BYTES);
+            while (channel.read(buffer) > 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        } finally {
+            input.close();
+        }
+        StringBuilder hex = new StringBuilder(32);
+        for (byte b : digest.digest())
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        return hex.toString();
+    }
+
+    // One line per upload: size, MD5, then the key itself so it may hold any character but a line break.  A key may
+    // appear more than once until the manifest is compacted; its last line wins.
+    private void LoadManifest() throws IOException {
+        if (!manifestFile.exists())
+            return;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(manifestFile), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(" ", 3);
+                if (fields.length == 3)
+                    manifest.put(fields[2], new ManifestEntry(Long.parseLong(fields[0]), fields[1]));
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    private void CompactManifest() throws IOException {
+        synchronized (manifest) {
+            if (manifestLog != null) {
+                manifestLog.close();
+                manifestLog = null;
+            }
+            File temp = new File(manifestFile.getPath() + ".tmp");
+            Writer writer = new OutputStreamWriter(new FileOutputStream(temp), "UTF-8");
+            try {
+                for (Map.Entry<String, ManifestEntry> entry : new TreeMap<String, ManifestEntry>(manifest).entrySet())
+                    WriteManifestLine(writer, entry.getKey(), entry.getValue());
+            } finally {
+                writer.close();
+            }
+            Files.move(temp.toPath(), manifestFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    private static void WriteManifestLine(final Writer writer, final String key, final ManifestEntry entry) throws IOException {
+        writer.write(entry.size + " " + entry.md5 + " " + key + "\n");
+    }
+
+    private static String CommonPrefix(final Iterable<String> keys) {
+        String prefix = null;
+        for (String key : keys) {
+            if (prefix == null) {
+                prefix = key;
+                continue;
+            }
+            int length = 0;
+            while (length < prefix.length() && length < key.length() && prefix.charAt(length) == key.charAt(length))
+                length++;
+            prefix = prefix.substring(0, length);
+        }
+        return prefix;
+    }
+
+    private static PlayFabError HttpFailure(final int httpCode, final String message) {
+        PlayFabError error = new PlayFabError();
+        error.httpCode = httpCode;
+        error.pfErrorCode = PlayFabErrorCode.Unknown;
+        error.errorMessage = message;
+        return error;
+    }
+
+    private static PlayFabError Failure(final PlayFabResult<?> result, final String message) {
+        if (result != null && result.Error != null)
+            return result.Error;
+        PlayFabError error = new PlayFabError();
+        error.pfErrorCode = PlayFabErrorCode.Unknown;
+        error.errorMessage = message;
+        return error;
+    }
+
+    private static ThreadFactory DaemonThreads(final String name) {
+        return new ThreadFactory() {
+            public Thread newThread(final Runnable runnable) {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+}
@@ -0,0 +1,216 @@
+package com.playfab;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.playfab.internal.PlayFabHTTP;
+
+/**
+ * Gates concurrent PlayFab API calls through priority lanes.
+ *
+ * Each call is classified by its API path (ex: "/Client/LoginWithCustomID") into a lane.  At most maxConcurrent calls
+ * are in flight at once.  When calls are waiting, freed slots are handed out by smooth weighted round-robin across the
+ * non-empty lanes, and a number of slots are reserved for the Interactive lane so that Normal and Background traffic
+ * can never occupy every connection.  Under saturation Background calls queue first; Interactive calls only wait when
+ * the reserved slots are also busy.
+ *
+ * Install an instance on PlayFabSettings.Dispatcher to enable it.  When no dispatcher is set, calls go straight to
+ * the transport as before.
+ */
+public class PlayFabDispatcher {
+    /**
+     * Dispatch lanes, in order of precedence
+     */
+    public static enum Priority {
+        Interactive,
+        Normal,
+        Background
+    }
+
+    private static final String[] DEFAULT_INTERACTIVE = {
+        "/Client/PurchaseItem", "/Client/StartPurchase", "/Client/PayForPurchase", "/Client/ConfirmPurchase",
+        "/Client/ConsumeItem", "/Client/UnlockContainerItem", "/Client/UnlockContainerInstance", "/Client/RedeemCoupon",
+        "/Client/Matchmake", "/Client/StartGame", "/Client/GetPhotonAuthenticationToken",
+        "/Server/AuthenticateSessionTicket", "/Server/RedeemMatchmakerTicket",
+        "/Matchmaker/AuthUser", "/Matchmaker/PlayerJoined", "/Matchmaker/PlayerLeft", "/Matchmaker/StartGame"
+    };
+    private static final String[] DEFAULT_BACKGROUND = {
+        "/Client/WritePlayerEvent", "/Client/WriteCharacterEvent", "/Client/WriteTitleEvent",
+        "/Client/UpdatePlayerStatistics", "/Client/UpdateCharacterStatistics", "/Client/AttributeInstall",
+        "/Client/ReportPlayer",
+        "/Server/WritePlayerEvent", "/Server/WriteCharacterEvent", "/Server/WriteTitleEvent",
+        "/Server/UpdatePlayerStatistics", "/Server/UpdateCharacterStatistics", "/Server/GetPlayersInSegment",
+        "/Server/GetAllSegments", "/Server/RefreshGameServerInstanceHeartbeat",
+        "/Admin/GetPlayersInSegment", "/Admin/GetAllSegments", "/Admin/GetDataReport"
+    };
+
+    private final Map<String, Priority> priorities = new ConcurrentHashMap<String, Priority>();
+    private final int maxConcurrent;
+    private final int reservedInteractive;
+    private final int[] weights;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final List<ArrayDeque<Waiter>> lanes;
+    private final int[] currentWeights;
+    private int inFlight;
+    private int waiting;
+
+    /**
+     * Creates a dispatcher with lane weights of 8/3/1 and a quarter of the slots (at least one) reserved for Interactive calls
+     */
+    public PlayFabDispatcher(final int maxConcurrent) {
+        this(maxConcurrent, 8, 3, 1, Math.max(1, maxConcurrent / 4));
+    }
+
+    public PlayFabDispatcher(final int maxConcurrent, final int interactiveWeight, final int normalWeight, final int backgroundWeight, final int reservedInteractive) {
+        if (maxConcurrent < 1) throw new IllegalArgumentException("maxConcurrent must be at least 1");
+        if (interactiveWeight < 1 || normalWeight < 1 || backgroundWeight < 1) throw new IllegalArgumentException("Lane weights must be at least 1");
+        if (reservedInteractive < 0 || reservedInteractive >= maxConcurrent) throw new IllegalArgumentException("reservedInteractive must be less than maxConcurrent");
+
+        this.maxConcurrent = maxConcurrent;
+        this.reservedInteractive = reservedInteractive;
+        this.weights = new int[] { interactiveWeight, normalWeight, backgroundWeight };
+        this.currentWeights = new int[weights.length];
+        this.lanes = new ArrayList<ArrayDeque<Waiter>>(weights.length);
+        for (int i = 0; i < weights.length; i++)
+            lanes.add(new ArrayDeque<Waiter>());
+
+        for (String path : DEFAULT_INTERACTIVE)
+            priorities.put(path, Priority.Interactive);
+        for (String path : DEFAULT_BACKGROUND)
+            priorities.put(path, Priority.Background);
+    }
+
+    /**
+     * Overrides the lane for an API path, ex: SetPriority("/Server/GetUserData", Priority.Interactive)
+     */
+    public void SetPriority(final String apiPath, final Priority priority) {
+        priorities.put(apiPath, priority);
+    }
+
+    /**
+     * Returns the lane for a full API url or an API path.  Login calls are always Interactive; unlisted calls are Normal.
+     */
+    public Priority GetPriority(final String url) {
+        String apiPath = PlayFabHTTP.getApiPath(url);
+        Priority priority = priorities.get(apiPath);
+        if (priority != null)
+            return priority;
+        if (apiPath.startsWith("/Client/LoginWith"))
+            return Priority.Interactive;
+        return Priority.Normal;
+    }
+
+    /**
+     * Blocks until the call may proceed, and returns the lane that must be passed to Release
+     */
+    public Priority Acquire(final String url) throws InterruptedException {
+        Priority priority = GetPriority(url);
+        int lane = priority.ordinal();
+
+        lock.lock();
+        try {
+            if (waiting == 0 && canAdmit(lane)) {
+                inFlight++;
+                return priority;
+            }
+
+            Waiter waiter = new Waiter(lock.newCondition());
+            lanes.get(lane).addLast(waiter);
+            waiting++;
+            dispatchLocked();
+            try {
+                while (!waiter.granted)
+                    waiter.condition.await();
+            } catch (InterruptedException e) {
+                if (waiter.granted) {
+                    inFlight--;
+                    dispatchLocked();
+                } else {
+                    lanes.get(lane).remove(waiter);
+                    waiting--;
+                }
+                throw e;
+            }
+            return priority;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Frees the slot taken by Acquire, and hands it to the next waiting call
+     */
+    public void Release(final Priority priority) {
+        lock.lock();
+        try {
+            inFlight--;
+            dispatchLocked();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int GetInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int GetQueueDepth(final Priority priority) {
+        lock.lock();
+        try {
+            return lanes.get(priority.ordinal()).size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean canAdmit(final int lane) {
+        if (lane == Priority.Interactive.ordinal())
+            return inFlight < maxConcurrent;
+        return inFlight < maxConcurrent - reservedInteractive;
+    }
+
+    private void dispatchLocked() {
+        while (waiting > 0 && inFlight < maxConcurrent) {
+            // Smooth weighted round-robin over the lanes that have waiters and are allowed a slot right now
+            int totalWeight = 0;
+            int picked = -1;
+            for (int i = 0; i < lanes.size(); i++) {
+                if (lanes.get(i).isEmpty() || !canAdmit(i))
+                    continue;
+                currentWeights[i] += weights[i];
+                totalWeight += weights[i];
+                if (picked < 0 || currentWeights[i] > currentWeights[picked])
+                    picked = i;
+            }
+            if (picked < 0)
+                return;
+            currentWeights[picked] -= totalWeight;
+
+            Waiter waiter = lanes.get(picked).pollFirst();
+            waiting--;
+            inFlight++;
+            waiter.granted = true;
+            waiter.condition.signal();
+        }
+    }
+
+    private static class Waiter {
+        final Condition condition;
+        boolean granted;
+
+        Waiter(final Condition condition) {
+            this.condition = condition;
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package com.playfab;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.playfab.PlayFabErrors.PlayFabError;
+import com.playfab.PlayFabErrors.PlayFabErrorCode;
+import com.playfab.PlayFabErrors.PlayFabResult;
+import com.playfab.PlayFabServerModels.*;
+
+/**
+ * Collects single-player item grants into GrantItemsToUsers batches.
+ *
+ * Grants are queued per catalog version and sent when a queue reaches maxBatchSize or flushIntervalMillis after its
+ * first grant, with at most maxConcurrentBatches requests in flight.  Each caller's Future completes with the
+ * GrantedItemInstance entries for its own grant: the granted item, followed by any items it unpacked as a bundle.
+ * A grant the service rejected individually has Result false; a failed batch completes every grant in it with the error.
+ * Items unpacked from a bundle are matched to their grant through BundleParent.  Grants made after Close fail at once.
+ *
+ * Usage: new PlayFabGrantAggregator(PlayFabGrantAggregator.ServerSender(serverApi), 100, 50, 4)
+ */
+public class PlayFabGrantAggregator {
+    /**
+     * Sends one GrantItemsToUsers request
+     */
+    public static interface GrantSender {
+        public PlayFabResult<GrantItemsToUsersResult> Send(GrantItemsToUsersRequest request) throws Exception;
+    }
+
+    private static class Pending extends FutureTask<PlayFabResult<List<GrantedItemInstance>>> {
+        private static final Callable<PlayFabResult<List<GrantedItemInstance>>> NONE = new Callable<PlayFabResult<List<GrantedItemInstance>>>() {
+            public PlayFabResult<List<GrantedItemInstance>> call() {
+                return null;
+            }
+        };
+
+        final ItemGrant grant;
+
+        Pending(final ItemGrant grant) {
+            super(NONE);
+            this.grant = grant;
+        }
+
+        void Complete(final PlayFabResult<List<GrantedItemInstance>> result) {
+            set(result);
+        }
+    }
+
+    private final GrantSender sender;
+    private final int maxBatchSize;
+    private final long flushIntervalMillis;
+    private final ScheduledThreadPoolExecutor executor;
+
+    private final Object lock = new Object();
+    // Queued grants by catalog version ("" for the primary catalog), in arrival order
+    private final Map<String, ArrayList<Pending>> queues = new HashMap<String, ArrayList<Pending>>();
+    private final Map<String, ScheduledFuture<?>> flushTimers = new HashMap<String, ScheduledFuture<?>>();
+    private final AtomicLong batches = new AtomicLong();
+    private boolean closed;
+
+    /**
+     * @param maxBatchSize grants per GrantItemsToUsers request
+     * @param flushIntervalMillis how long the first grant of a batch waits for others to join it
+     * @param maxConcurrentBatches requests in flight at once
+     */
+    public PlayFabGrantAggregator(final GrantSender sender, final int maxBatchSize, final long flushIntervalMillis, final int maxConcurrentBatches) {
+        if (maxBatchSize < 1) throw new IllegalArgumentException("maxBatchSize must be at least 1");
+        if (maxConcurrentBatches < 1) throw new IllegalArgumentException("maxConcurrentBatches must be at least 1");
+        this.sender = sender;
+        this.maxBatchSize = maxBatchSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.executor = new ScheduledThreadPoolExecutor(maxConcurrentBatches, new ThreadFactory() {
+            public Thread newThread(final Runnable runnable) {
+                Thread thread = new Thread(runnable, "PlayFabGrantAggregator");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Queues a grant of one item to one player (and optionally character), from the given catalog version or null for the primary catalog
+     */
+    public Future<PlayFabResult<List<GrantedItemInstance>>> Grant(final String catalogVersion, final ItemGrant grant) {
+        final String key = catalogVersion == null ? "" : catalogVersion;
+        Pending pending = new Pending(grant);
+        ArrayList<Pending> full = null;
+        synchronized (lock) {
+            if (closed) {
+                pending.Complete(Failure("PlayFabGrantAggregator is closed"));
+                return pending;
+            }
+            ArrayList<Pending> queue = queues.get(key);
+            if (queue == null) {
+                queue = new ArrayList<Pending>();
+                queues.put(key, queue);
+            }
+            queue.add(pending);
+            if (queue.size() >= maxBatchSize) {
+                full = TakeQueue(key);
+            } else if (queue.size() == 1) {
+                flushTimers.put(key, executor.schedule(new Runnable() {
+                    public void run() {
+                        Flush(key);
+                    }
+                }, flushIntervalMillis, TimeUnit.MILLISECONDS));
+            }
+        }
+        if (full != null)
+            Submit(key, full);
+        return pending;
+    }
+
+    /**
+     * Queues a grant of one item to one player, from the primary catalog
+     */
+    public Future<PlayFabResult<List<GrantedItemInstance>>> Grant(final String playFabId, final String itemId) {
+        ItemGrant grant = new ItemGrant();
+        grant.PlayFabId = playFabId;
+        grant.ItemId = itemId;
+        return Grant(null, grant);
+    }
+
+    /**
+     * Sends every queued grant now, through the same maxConcurrentBatches threads as other batches, and waits for
+     * those batches to finish
+     */
+    public void Flush() throws InterruptedException {
+        Map<String, ArrayList<Pending>> taken = new HashMap<String, ArrayList<Pending>>();
+        synchronized (lock) {
+            for (String key : new ArrayList<String>(queues.keySet())) {
+                ArrayList<Pending> batch = TakeQueue(key);
+                if (batch != null)
+                    taken.put(key, batch);
+            }
+        }
+        List<Future<?>> sent = new ArrayList<Future<?>>();
+        for (Map.Entry<String, ArrayList<Pending>> batch : taken.entrySet())
+            sent.add(Submit(batch.getKey(), batch.getValue()));
+        for (Future<?> batch : sent) {
+            try {
+                batch.get();
+            } catch (ExecutionException e) {
+                // Send completes every grant of the batch itself
+            }
+        }
+    }
+
+    /**
+     * Sends every queued grant, waits for all batches to finish and stops the aggregator's threads
+     */
+    public void Close() throws InterruptedException {
+        synchronized (lock) {
+            closed = true;
+        }
+        Flush();
+        executor.shutdown();
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    }
+
+    public long GetBatchCount() {
+        return batches.get();
+    }
+
+    private void Flush(final String key) {
+        ArrayList<Pending> batch;
+        synchronized (lock) {
+            batch = TakeQueue(key);
+        }
+        if (batch != null)
+            Send(key, batch);
+    }
+
+    private Future<?> Submit(final String key, final ArrayList<Pending> batch) {
+        FutureTask<Void> task = new FutureTask<Void>(new Runnable() {
+            public void run() {
+                Send(key, batch);
+            }
+        }, null);
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.run(); // only while Close is shutting the pool down
+        }
+        return task;
+    }
+
+    private ArrayList<Pending> TakeQueue(final String key) {
+        ArrayList<Pending> queue = queues.remove(key);
+        ScheduledFuture<?> timer = flushTimers.remove(key);
+        if (timer != null)
+            timer.cancel(false);
+        return queue == null || queue.isEmpty() ? null : queue;
+    }
+
+    private void Send(final String key, final List<Pending> batch) {
+        batches.incrementAndGet();
+        GrantItemsToUsersRequest request = new GrantItemsToUsersRequest();
+        request.CatalogVersion = key.length() == 0 ? null : key;
+        request.ItemGrants = new ArrayList<ItemGrant>(batch.size());
+        for (Pending pending : batch)
+            request.ItemGrants.add(pending.grant);
+
+        PlayFabResult<GrantItemsToUsersResult> result;
+        try {
+            result = sender.Send(request);
+        } catch (Exception e) {
+            result = null;
+        }
+        if (result == null || result.Error != null || result.Result == null) {
+            PlayFabResult<List<GrantedItemInstance>> failed = Failure("GrantItemsToUsers failed");
+            if (result != null && result.Error != null)
+                failed.Error = result.Error;
+            for (Pending pending : batch)
+                pending.Complete(failed);
+            return;
+        }
+
+        List<List<GrantedItemInstance>> perGrant = MatchResults(batch, result.Result.ItemGrantResults);
+        for (int i = 0; i < batch.size(); i++) {
+            PlayFabResult<List<GrantedItemInstance>> output = new PlayFabResult<List<GrantedItemInstance>>();
+            output.Result = perGrant.get(i);
+            batch.get(i).Complete(output);
+        }
+    }
+
+    /**
+     * Assigns each top-level result to the first unmatched grant of the same player, character and item, and each
+     * result unpacked from a bundle to the grant that owns its BundleParent instance, wherever it appears in the list
+     */
+    private static List<List<GrantedItemInstance>> MatchResults(final List<Pending> batch, final List<GrantedItemInstance> results) {
+        List<List<GrantedItemInstance>> perGrant = new ArrayList<List<GrantedItemInstance>>(batch.size());
+        for (int i = 0; i < batch.size(); i++)
+            perGrant.add(new ArrayList<GrantedItemInstance>(1));
+        if (results == null)
+            return perGrant;
+
+        int[] owner = new int[results.size()];
+        boolean[] matched = new boolean[batch.size()];
+        Map<String, Integer> ownerByInstanceId = new HashMap<String, Integer>();
+        for (int r = 0; r < results.size(); r++) {
+            GrantedItemInstance granted = results.get(r);
+            owner[r] = -1;
+            if (granted.BundleParent != null)
+                continue;
+            for (int i = 0; i < batch.size() && owner[r] < 0; i++) {
+                ItemGrant grant = batch.get(i).grant;
+                if (!matched[i] && Equal(grant.PlayFabId, granted.PlayFabId) && Equal(grant.ItemId, granted.ItemId) && Equal(grant.CharacterId, granted.CharacterId))
+                    owner[r] = i;
+            }
+            if (owner[r] >= 0) {
+                matched[owner[r]] = true;
+                if (granted.ItemInstanceId != null)
+                    ownerByInstanceId.put(granted.ItemInstanceId, owner[r]);
+            }
+        }
+
+        // Bundles may nest, so resolve children until a pass finds no new parent
+        boolean progress = true;
+        while (progress) {
+            progress = false;
+            for (int r = 0; r < results.size(); r++) {
+                GrantedItemInstance granted = results.get(r);
+                if (owner[r] >= 0 || granted.BundleParent == null)
+                    continue;
+                Integer parent = ownerByInstanceId.get(granted.BundleParent);
+                if (parent == null)
+                    continue;
+                owner[r] = parent;
+                if (granted.ItemInstanceId != null)
+                    ownerByInstanceId.put(granted.ItemInstanceId, parent);
+                progress = true;
+            }
+        }
+
+        for (int r = 0; r < results.size(); r++)
+            if (owner[r] >= 0)
+                perGrant.get(owner[r]).add(results.get(r));
+        return perGrant;
+    }
+
+    private static PlayFabResult<List<GrantedItemInstance>> Failure(final String message) {
+        PlayFabResult<List<GrantedItemInstance>> result = new PlayFabResult<List<GrantedItemInstance>>();
+        result.Error = new PlayFabError();
+        result.Error.pfErrorCode = PlayFabErrorCode.Unknown;
+        result.Error.errorMessage = message;
+        return result;
+    }
+
+    private static boolean Equal(final String a, final String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    public static GrantSender ServerSender(final PlayFabServerAPI serverApi) {
+        return new GrantSender() {
+            public PlayFabResult<GrantItemsToUsersResult> Send(final GrantItemsToUsersRequest request) {
+                return serverApi.GrantItemsToUsers(request);
+            }
+        };
+    }
+
+    /**
+     * Sends through PlayFabAdminAPI.GrantItemsToUsers, whose models mirror the server ones field for field
+     */
+    public static GrantSender AdminSender(final PlayFabAdminAPI adminApi) {
+        final Gson gson = new GsonBuilder().setDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").create();
+        return new GrantSender() {
+            public PlayFabResult<GrantItemsToUsersResult> Send(final GrantItemsToUsersRequest request) {
+                PlayFabAdminModels.GrantItemsToUsersRequest adminRequest = gson.fromJson(gson.toJsonTree(request), PlayFabAdminModels.GrantItemsToUsersRequest.class);
+                PlayFabResult<PlayFabAdminModels.GrantItemsToUsersResult> adminResult = adminApi.GrantItemsToUsers(adminRequest);
+                if (adminResult == null)
+                    return null;
+                PlayFabResult<GrantItemsToUsersResult> output = new PlayFabResult<GrantItemsToUsersResult>();
+                output.Error = adminResult.Error;
+                if (adminResult.Result != null)
+                    output.Result = gson.fromJson(gson.toJsonTree(adminResult.Result), GrantItemsToUsersResult.class);
+                return output;
+            }
+        };
+    }
+}
@@ -0,0 +1,271 @@
+package com.playfab;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.playfab.PlayFabErrors.PlayFabResult;
+import com.playfab.PlayFabMetrics.Histogram;
+import com.playfab.PlayFabServerModels.*;
+
+/**
+ * Sends RefreshGameServerInstanceHeartbeat for every game server instance of a host from one shared timer.
+ *
+ * Instances sit on a hashed timing wheel with one rotation per heartbeat interval, and each new instance takes the
+ * least loaded slot, so heartbeats are spread evenly over the interval instead of bursting.  Every instance uses the
+ * same interval, so an instance stays in its slot and a tick only touches the instances due in it.
+ *
+ * SetState and SetData only record the wanted value; it is sent with the instance's next beat, so several changes
+ * between beats cost one call, and a value equal to the last one sent is not sent again.
+ *
+ * A beat counts as a missed deadline when the previous beat of the instance is still in flight at its next slot, or
+ * when the gap between two successful beats exceeds the interval by more than one tick.
+ */
+public class PlayFabHeartbeatScheduler {
+    private static final class Instance {
+        final String lobbyId;
+        final int slot;
+        GameInstanceState pendingState;
+        String pendingData;
+        GameInstanceState sentState;
+        String sentData;
+        boolean inFlight;
+        boolean removed;
+        long lastBeatNanos;
+
+        Instance(final String lobbyId, final int slot) {
+            this.lobbyId = lobbyId;
+            this.slot = slot;
+        }
+    }
+
+    private final PlayFabServerAPI serverApi;
+    private final long intervalMillis;
+    private final long tickMillis;
+    private final List<List<Instance>> wheel;
+    private final Map<String, Instance> instances = new HashMap<String, Instance>();
+    private final ExecutorService senders;
+    private final ScheduledExecutorService ticker;
+    private int cursor;
+
+    private final AtomicLong heartbeats = new AtomicLong();
+    private final AtomicLong stateSends = new AtomicLong();
+    private final AtomicLong dataSends = new AtomicLong();
+    private final AtomicLong skippedSends = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong missedDeadlines = new AtomicLong();
+    /**
+     * Time from a beat's slot coming due until its calls completed, in nanoseconds
+     */
+    public final Histogram beatLatency = new Histogram();
+
+    /**
+     * @param intervalMillis time between heartbeats of an instance
+     * @param tickMillis wheel resolution; the interval is split into intervalMillis / tickMillis slots
+     * @param senderThreads calls in flight at once across all instances
+     */
+    public PlayFabHeartbeatScheduler(final PlayFabServerAPI serverApi, final long intervalMillis, final long tickMillis, final int senderThreads) {
+        if (tickMillis < 1 || intervalMillis < tickMillis) throw new IllegalArgumentException("tickMillis must be between 1 and intervalMillis");
+        this.serverApi = serverApi;
+        this.intervalMillis = intervalMillis;
+        this.tickMillis = tickMillis;
+        int slots = (int)(intervalMillis / tickMillis);
+        this.wheel = new ArrayList<List<Instance>>(slots);
+        for (int i = 0; i < slots; i++)
+            wheel.add(new ArrayList<Instance>());
+        this.senders = Executors.newFixedThreadPool(senderThreads, DaemonThreads("PlayFabHeartbeatScheduler-send"));
+        this.ticker = Executors.newSingleThreadScheduledExecutor(DaemonThreads("PlayFabHeartbeatScheduler"));
+        this.ticker.scheduleAtFixedRate(new Runnable() {
+            public void run() {
+                Tick();
+            }
+        }, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Starts sending heartbeats for a game server instance
+     */
+    public synchronized void Register(final String lobbyId) {
+        if (instances.containsKey(lobbyId))
+            return;
+        int slot = 0;
+        for (int i = 1; i < wheel.size(); i++)
+            if (wheel.get(i).size() < wheel.get(slot).size())
+                slot = i;
+        Instance instance = new Instance(lobbyId, slot);
+        instances.put(lobbyId, instance);
+        wheel.get(slot).add(instance);
+    }
+
+    /**
+     * Stops sending heartbeats for a game server instance; a beat already in flight still completes
+     */
+    public synchronized void Unregister(final String lobbyId) {
+        Instance instance = instances.remove(lobbyId);
+        if (instance != null) {
+            instance.removed = true;
+            wheel.get(instance.slot).remove(instance);
+        }
+    }
+
+    /**
+     * Sets the state sent with the instance's next beat, replacing any state not yet sent
+     */
+    public synchronized void SetState(final String lobbyId, final GameInstanceState state) {
+        Instance instance = instances.get(lobbyId);
+        if (instance != null)
+            instance.pendingState = state;
+    }
+
+    /**
+     * Sets the custom data sent with the instance's next beat, replacing any data not yet sent
+     */
+    public synchronized void SetData(final String lobbyId, final String gameServerData) {
+        Instance instance = instances.get(lobbyId);
+        if (instance != null)
+            instance.pendingData = gameServerData;
+    }
+
+    public void Close() {
+        ticker.shutdownNow();
+        senders.shutdown();
+    }
+
+    public synchronized int GetInstanceCount() {
+        return instances.size();
+    }
+
+    public long GetHeartbeatCount() {
+        return heartbeats.get();
+    }
+
+    public long GetStateSendCount() {
+        return stateSends.get();
+    }
+
+    public long GetDataSendCount() {
+        return dataSends.get();
+    }
+
+    /**
+     * State and data changes that were not sent because they equalled the last value sent
+     */
+    public long GetSkippedSendCount() {
+        return skippedSends.get();
+    }
+
+    public long GetFailureCount() {
+        return failures.get();
+    }
+
+    public long GetMissedDeadlineCount() {
+        return missedDeadlines.get();
+    }
+
+    private void Tick() {
+        final long dueNanos = System.nanoTime();
+        List<Instance> due;
+        synchronized (this) {
+            due = new ArrayList<Instance>(wheel.get(cursor));
+            cursor = (cursor + 1) % wheel.size();
+        }
+        for (final Instance instance : due) {
+            final GameInstanceState state;
+            final String data;
+            synchronized (this) {
+                if (instance.inFlight) {
+                    missedDeadlines.incrementAndGet();
+                    continue;
+                }
+                instance.inFlight = true;
+                state = instance.pendingState;
+                data = instance.pendingData;
+                instance.pendingState = null;
+                instance.pendingData = null;
+            }
+            senders.execute(new Runnable() {
+                public void run() {
+                    Beat(instance, state, data, dueNanos);
+                }
+            });
+        }
+    }
+
+    private void Beat(final Instance instance, final GameInstanceState state, final String data, final long dueNanos) {
+        boolean stateSent = false;
+        boolean dataSent = false;
+        boolean beatSent = false;
+        try {
+            if (state != null) {
+                if (state == instance.sentState) {
+                    skippedSends.incrementAndGet();
+                } else {
+                    SetGameServerInstanceStateRequest request = new SetGameServerInstanceStateRequest();
+                    request.LobbyId = instance.lobbyId;
+                    request.State = state;
+                    stateSent = Succeeded(serverApi.SetGameServerInstanceState(request));
+                    stateSends.incrementAndGet();
+                }
+            }
+            if (data != null) {
+                if (data.equals(instance.sentData)) {
+                    skippedSends.incrementAndGet();
+                } else {
+                    SetGameServerInstanceDataRequest request = new SetGameServerInstanceDataRequest();
+                    request.LobbyId = instance.lobbyId;
+                    request.GameServerData = data;
+                    dataSent = Succeeded(serverApi.SetGameServerInstanceData(request));
+                    dataSends.incrementAndGet();
+                }
+            }
+            RefreshGameServerInstanceHeartbeatRequest request = new RefreshGameServerInstanceHeartbeatRequest();
+            request.LobbyId = instance.lobbyId;
+            beatSent = Succeeded(serverApi.RefreshGameServerInstanceHeartbeat(request));
+            heartbeats.incrementAndGet();
+        } finally {
+            long now = System.nanoTime();
+            beatLatency.Record(now - dueNanos);
+            synchronized (this) {
+                instance.inFlight = false;
+                if (stateSent)
+                    instance.sentState = state;
+                else if (state != null && state != instance.sentState && instance.pendingState == null && !instance.removed)
+                    instance.pendingState = state; // retry with the next beat
+                if (dataSent)
+                    instance.sentData = data;
+                else if (data != null && !data.equals(instance.sentData) && instance.pendingData == null && !instance.removed)
+                    instance.pendingData = data;
+                if (beatSent) {
+                    long allowedNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis + tickMillis);
+                    if (instance.lastBeatNanos != 0 && now - instance.lastBeatNanos > allowedNanos)
+                        missedDeadlines.incrementAndGet();
+                    instance.lastBeatNanos = now;
+                }
+            }
+        }
+    }
+
+    private boolean Succeeded(final PlayFabResult<?> result) {
+        if (result != null && result.Error == null)
+            return true;
+        failures.incrementAndGet();
+        return false;
+    }
+
+    private static ThreadFactory DaemonThreads(final String name) {
+        return new ThreadFactory() {
+            public Thread newThread(final Runnable runnable) {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+}
@@ -0,0 +1,474 @@
+package com.playfab;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.playfab.PlayFabErrors.PlayFabError;
+import com.playfab.PlayFabErrors.PlayFabErrorCode;
+import com.playfab.PlayFabErrors.PlayFabResult;
+
+/**
+ * Batches single-ID lookups into the list-based GetPlayFabIDsFrom* calls.
+ *
+ * Lookups made from any thread within windowMillis of the first one, or until maxBatchSize IDs are waiting, are sent
+ * as one request, and each caller's Future completes from its share of the result.  Concurrent lookups of the same ID
+ * share one slot in the batch, but each caller gets its own Future, so cancelling one does not affect the others.
+ * Batches are sent on a pool of maxConcurrentBatches threads; a single timer thread only closes the windows.  Found
+ * pairs never change, so they are kept in a bounded cache; IDs with no linked account are not cached, since they may be
+ * linked later.  After Close, lookups that miss the cache fail at once.
+ *
+ * Usage: new PlayFabIdLoader(PlayFabIdLoader.SteamIDs(serverApi), 100, 10, 100000)
+ */
+public class PlayFabIdLoader {
+    /**
+     * Looks up a batch of IDs; the result maps each found ID to its PlayFabId, and omits IDs with no linked account
+     */
+    public static interface BatchFunction {
+        public PlayFabResult<Map<String, String>> Load(List<String> ids) throws Exception;
+    }
+
+    private static class Pending extends FutureTask<PlayFabResult<String>> {
+        private static final Callable<PlayFabResult<String>> NONE = new Callable<PlayFabResult<String>>() {
+            public PlayFabResult<String> call() {
+                return null;
+            }
+        };
+
+        Pending() {
+            super(NONE);
+        }
+
+        void Complete(final PlayFabResult<String> result) {
+            set(result);
+        }
+    }
+
+    private final BatchFunction batchFunction;
+    private final int maxBatchSize;
+    private final long windowMillis;
+    private final int maxCacheEntries;
+    private final ScheduledThreadPoolExecutor timer;
+    private final ExecutorService senders;
+
+    private final Object lock = new Object();
+    private ArrayList<String> batch = new ArrayList<String>();
+    private ScheduledFuture<?> flushTimer;
+    private boolean closed;
+    // Callers waiting on each ID of the current batch or of one in flight
+    private final HashMap<String, List<Pending>> pending = new HashMap<String, List<Pending>>();
+    private final LinkedHashMap<String, String> cache;
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+
+    public PlayFabIdLoader(final BatchFunction batchFunction, final int maxBatchSize, final long windowMillis, final int maxCacheEntries) {
+        this(batchFunction, maxBatchSize, windowMillis, maxCacheEntries, 2);
+    }
+
+    /**
+     * @param maxBatchSize IDs per request; keep within the limit of the underlying call
+     * @param windowMillis how long the first lookup of a batch waits for others to join it
+     * @param maxCacheEntries found pairs kept, least recently used are dropped first
+     * @param maxConcurrentBatches requests in flight at once
+     */
+    public PlayFabIdLoader(final BatchFunction batchFunction, final int maxBatchSize, final long windowMillis, final int maxCacheEntries, final int maxConcurrentBatches) {
+        if (maxBatchSize < 1) throw new IllegalArgumentException("maxBatchSize must be at least 1");
+        if (maxConcurrentBatches < 1) throw new IllegalArgumentException("maxConcurrentBatches must be at least 1");
+        this.batchFunction = batchFunction;
+        this.maxBatchSize = maxBatchSize;
+        this.windowMillis = windowMillis;
+        this.maxCacheEntries = maxCacheEntries;
+        this.cache = new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, String> eldest) {
+                return size() > PlayFabIdLoader.this.maxCacheEntries;
+            }
+        };
+        this.timer = new ScheduledThreadPoolExecutor(1, DaemonThreads("PlayFabIdLoader-timer"));
+        this.senders = Executors.newFixedThreadPool(maxConcurrentBatches, DaemonThreads("PlayFabIdLoader"));
+    }
+
+    /**
+     * Queues a lookup.  The Future's result holds the PlayFabId, null if the ID is not linked to an account, or the
+     * error of the batch request.
+     */
+    public Future<PlayFabResult<String>> LoadAsync(final String id) {
+        String cached;
+        synchronized (cache) {
+            cached = cache.get(id);
+        }
+        if (cached != null) {
+            cacheHits.incrementAndGet();
+            Pending done = new Pending();
+            done.Complete(Success(cached));
+            return done;
+        }
+
+        ArrayList<String> full = null;
+        Pending lookup = new Pending();
+        synchronized (lock) {
+            if (closed) {
+                PlayFabResult<String> failed = new PlayFabResult<String>();
+                failed.Error = Failure("PlayFabIdLoader is closed");
+                lookup.Complete(failed);
+                return lookup;
+            }
+            List<Pending> waiting = pending.get(id);
+            if (waiting != null) {
+                waiting.add(lookup);
+                return lookup;
+            }
+            waiting = new ArrayList<Pending>(1);
+            waiting.add(lookup);
+            pending.put(id, waiting);
+            batch.add(id);
+            if (batch.size() >= maxBatchSize) {
+                full = TakeBatch();
+            } else if (batch.size() == 1) {
+                flushTimer = timer.schedule(new Runnable() {
+                    public void run() {
+                        ArrayList<String> ids;
+                        synchronized (lock) {
+                            if (batch.isEmpty())
+                                return;
+                            ids = TakeBatch();
+                        }
+                        Submit(ids);
+                    }
+                }, windowMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (full != null)
+            Submit(full);
+        return lookup;
+    }
+
+    /**
+     * Looks up one ID, waiting for its batch; returns null if the lookup failed
+     */
+    public PlayFabResult<String> Load(final String id) {
+        try {
+            return LoadAsync(id).get();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Sends the current batch now, on the calling thread, instead of waiting for the window to end
+     */
+    public void Flush() {
+        ArrayList<String> ids;
+        synchronized (lock) {
+            if (batch.isEmpty())
+                return;
+            ids = TakeBatch();
+        }
+        Dispatch(ids);
+    }
+
+    /**
+     * Sends any waiting batch and stops the loader's threads; later lookups fail unless cached
+     */
+    public void Close() {
+        synchronized (lock) {
+            closed = true;
+        }
+        Flush();
+        timer.shutdown();
+        senders.shutdown();
+    }
+
+    public long GetBatchCount() {
+        return batches.get();
+    }
+
+    public long GetCacheHitCount() {
+        return cacheHits.get();
+    }
+
+    private void Submit(final List<String> ids) {
+        Runnable send = new Runnable() {
+            public void run() {
+                Dispatch(ids);
+            }
+        };
+        try {
+            senders.execute(send);
+        } catch (RejectedExecutionException e) {
+            // Only while Close is shutting the pool down
+            send.run();
+        }
+    }
+
+    private ArrayList<String> TakeBatch() {
+        ArrayList<String> ids = batch;
+        batch = new ArrayList<String>();
+        if (flushTimer != null) {
+            flushTimer.cancel(false);
+            flushTimer = null;
+        }
+        return ids;
+    }
+
+    private void Dispatch(final List<String> ids) {
+        batches.incrementAndGet();
+        PlayFabResult<Map<String, String>> result;
+        try {
+            result = batchFunction.Load(ids);
+        } catch (Exception e) {
+            result = null;
+        }
+        if (result == null) {
+            result = new PlayFabResult<Map<String, String>>();
+            result.Error = Failure("PlayFab ID lookup failed");
+        }
+
+        if (result.Error == null && result.Result != null) {
+            synchronized (cache) {
+                for (Map.Entry<String, String> found : result.Result.entrySet())
+                    if (found.getValue() != null)
+                        cache.put(found.getKey(), found.getValue());
+            }
+        }
+
+        for (String id : ids) {
+            List<Pending> waiting;
+            synchronized (lock) {
+                waiting = pending.remove(id);
+            }
+            if (waiting == null)
+                continue;
+            for (Pending lookup : waiting) {
+                if (result.Error != null) {
+                    PlayFabResult<String> failed = new PlayFabResult<String>();
+                    failed.Error = result.Error;
+                    lookup.Complete(failed);
+                } else {
+                    lookup.Complete(Success(result.Result == null ? null : result.Result.get(id)));
+                }
+            }
+        }
+    }
+
+    private static ThreadFactory DaemonThreads(final String name) {
+        return new ThreadFactory() {
+            public Thread newThread(final Runnable runnable) {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    private static PlayFabResult<String> Success(final String playFabId) {
+        PlayFabResult<String> output = new PlayFabResult<String>();
+        output.Result = playFabId;
+        return output;
+    }
+
+    private static PlayFabError Failure(final String message) {
+        PlayFabError error = new PlayFabError();
+        error.pfErrorCode = PlayFabErrorCode.Unknown;
+        error.errorMessage = message;
+        return error;
+    }
+
+    private static <T> PlayFabResult<Map<String, String>> Failed(final PlayFabResult<T> result) {
+        if (result == null)
+            return null;
+        PlayFabResult<Map<String, String>> output = new PlayFabResult<Map<String, String>>();
+        output.Error = result.Error;
+        return output;
+    }
+
+    private static PlayFabResult<Map<String, String>> Found(final Map<String, String> found) {
+        PlayFabResult<Map<String, String>> output = new PlayFabResult<Map<String, String>>();
+        output.Result = found;
+        return output;
+    }
+
+    /**
+     * Joins a GetPlayFabIDsFromGenericIDs service name and user id into a single lookup ID
+     */
+    public static String GenericId(final String serviceName, final String userId) {
+        return serviceName + "\n" + userId;
+    }
+
+    public static BatchFunction SteamIDs(final PlayFabServerAPI serverApi) {
+        return new BatchFunction() {
+            public PlayFabResult<Map<String, String>> Load(final List<String> ids) {
+                PlayFabServerModels.GetPlayFabIDsFromSteamIDsRequest request = new PlayFabServerModels.GetPlayFabIDsFromSteamIDsRequest();
+                request.SteamStringIDs = new ArrayList<String>(ids);
+                PlayFabResult<PlayFabServerModels.GetPlayFabIDsFromSteamIDsResult> result = serverApi.GetPlayFabIDsFromSteamIDs(request);
+                if (result == null || result.Error != null)
+                    return Failed(result);
+                Map<String, String> found = new HashMap<String, String>();
+                if (result.Result.Data != null)
+                    for (PlayFabServerModels.SteamPlayFabIdPair pair : result.Result.Data)
+                        found.put(pair.SteamStringId, pair.PlayFabId);
+                return Found(found);
+            }
+        };
+    }
+
+    public static BatchFunction FacebookIDs(final PlayFabServerAPI serverApi) {
+        return new BatchFunction() {
+            public PlayFabResult<Map<String, String>> Load(final List<String> ids) {
+                PlayFabServerModels.GetPlayFabIDsFromFacebookIDsRequest request = new PlayFabServerModels.GetPlayFabIDsFromFacebookIDsRequest();
+                request.FacebookIDs = new ArrayList<String>(ids);
+                PlayFabResult<PlayFabServerModels.GetPlayFabIDsFromFacebookIDsResult> result = serverApi.GetPlayFabIDsFromFacebookIDs(request);
+                if (result == null || result.Error != null)
+                    return Failed(result);
+                Map<String, String> found = new HashMap<String, String>();
+                if (result.Result.Data != null)
+                    for (PlayFabServerModels.FacebookPlayFabIdPair pair : result.Result.Data)
+                        found.put(pair.FacebookId, pair.PlayFabId);
+                return Found(found);
+            }
+        };
+    }
+
+    public static BatchFunction SteamIDs(final PlayFabClientAPI clientApi) {
+        return new BatchFunction() {
+            public PlayFabResult<Map<String, String>> Load(final List<String> ids) {
+                PlayFabClientModels.GetPlayFabIDsFromSteamIDsRequest request = new PlayFabClientModels.GetPlayFabIDsFromSteamIDsRequest();
+                request.SteamStringIDs = new ArrayList<String>(ids);
+                PlayFabResult<PlayFabClientModels.GetPlayFabIDsFromSteamIDsResult> result = clientApi.GetPlayFabIDsFromSteamIDs(request);
+                if (result == null || result.Error != null)
+                    return Failed(result);
+                Map<String, String> found = new HashMap<String, String>();
+                if (result.Result.Data != null)
+                    for (PlayFabClientModels.SteamPlayFabIdPair pair : result.Result.Data)
+                        found.put(pair.SteamStringId, pair.PlayFabId);
+                return Found(found);
+            }
+        };
+    }
+
+    public static BatchFunction FacebookIDs(final PlayFabClientAPI clientApi) {
+        return new BatchFunction() {
+            public PlayFabResult<Map<String, String>> Load(final List<String> ids) {
+                PlayFabClientModels.GetPlayFabIDsFromFacebookIDsRequest request = new PlayFabClientModels.GetPlayFabIDsFromFacebookIDsRequest();
+                request.FacebookIDs = new ArrayList<String>(ids);
+                PlayFabResult<PlayFabClientModels.GetPlayFabIDsFromFacebookIDsResult> result = clientApi.GetPlayFabIDsFromFacebookIDs(request);
+                if (result == null || result.Error != null)
+                    return Failed(result);
+                Map<String, String> found = new HashMap<String, String>();
+                if (result.Result.Data != null)
+                    for (PlayFabClientModels.FacebookPlayFabIdPair pair : result.Result.Data)
+                        found.put(pair.FacebookId, pair.PlayFabId);
+                return Found(found);
+            }
+        };
+    }
+
+    /**
+     * Lookup IDs are built with GenericId(serviceName, userId)
+     */
+    public static BatchFunction GenericIDs(final PlayFabClientAPI clientApi) {
+        return new BatchFunction() {
+            public PlayFabResult<Map<String, String>> Load(final List<String> ids) {
+                PlayFabClientModels.GetPlayFabIDsFromGenericIDsRequest request = new PlayFabClientModels.GetPlayFabIDsFromGenericIDsRequest();
+                request.GenericIDs = new ArrayList<PlayFabClientModels.GenericServiceId>();
+                for (String id : ids) {
+                    int split = id.indexOf('\n');
+                    PlayFabClientModels.GenericServiceId genericId = new PlayFabClientModels.GenericServiceId();
+                    genericId.ServiceName = id.substring(0, split);
+                    genericId.UserId = id.substring(split + 1);
+                    request.GenericIDs.add(genericId);
+                }
+                PlayFabResult<PlayFabClientModels.GetPlayFabIDsFromGenericIDsResult> result = clientApi.GetPlayFabIDsFromGenericIDs(request);
+                if (result == null || result.Error != null)
+                    return Failed(result);
+                Map<String, String> found = new HashMap<String, String>();
+                if (result.Result.Data != null)
+                    for (PlayFabClientModels.GenericPlayFabIdPair pair : result.Result.Data)
+                        if (pair.GenericId != null)
+                            found.put(GenericId(pair.GenericId.ServiceName, pair.GenericId.UserId), pair.PlayFabId);
+                return Found(found);
+            }
+        };
+    }
+
+    public static BatchFunction GoogleIDs(final PlayFabClientAPI clientApi) {
+        return new BatchFunction() {
+            public PlayFabResult<Map<String, String>> Load(final List<String> ids) {
+                PlayFabClientModels.GetPlayFabIDsFromGoogleIDsRequest request = new PlayFabClientModels.GetPlayFabIDsFromGoogleIDsRequest();
+                request.GoogleIDs = new ArrayList<String>(ids);
+                PlayFabResult<PlayFabClientModels.GetPlayFabIDsFromGoogleIDsResult> result = clientApi.GetPlayFabIDsFromGoogleIDs(request);
+                if (result == null || result.Error != null)
+                    return Failed(result);
+                Map<String, String> found = new HashMap<String, String>();
+                if (result.Result.Data != null)
+                    for (PlayFabClientModels.GooglePlayFabIdPair pair : result.Result.Data)
+                        found.put(pair.GoogleId, pair.PlayFabId);
+                return Found(found);
+            }
+        };
+    }
+
+    public static BatchFunction KongregateIDs(final PlayFabClientAPI clientApi) {
+        return new BatchFunction() {
+            public PlayFabResult<Map<String, String>> Load(final List<String> ids) {
+                PlayFabClientModels.GetPlayFabIDsFromKongregateIDsRequest request = new PlayFabClientModels.GetPlayFabIDsFromKongregateIDsRequest();
+                request.KongregateIDs = new ArrayList<String>(ids);
+                PlayFabResult<PlayFabClientModels.GetPlayFabIDsFromKongregateIDsResult> result = clientApi.GetPlayFabIDsFromKongregateIDs(request);
+                if (result == null || result.Error != null)
+                    return Failed(result);
+                Map<String, String> found = new HashMap<String, String>();
+                if (result.Result.Data != null)
+                    for (PlayFabClientModels.KongregatePlayFabIdPair pair : result.Result.Data)
+                        found.put(pair.KongregateId, pair.PlayFabId);
+                return Found(found);
+            }
+        };
+    }
+
+    public static BatchFunction TwitchIDs(final PlayFabClientAPI clientApi) {
+        return new BatchFunction() {
+            public PlayFabResult<Map<String, String>> Load(final List<String> ids) {
+                PlayFabClientModels.GetPlayFabIDsFromTwitchIDsRequest request = new PlayFabClientModels.GetPlayFabIDsFromTwitchIDsRequest();
+                request.TwitchIds = new ArrayList<String>(ids);
+                PlayFabResult<PlayFabClientModels.GetPlayFabIDsFromTwitchIDsResult> result = clientApi.GetPlayFabIDsFromTwitchIDs(request);
+                if (result == null || result.Error != null)
+                    return Failed(result);
+                Map<String, String> found = new HashMap<String, String>();
+                if (result.Result.Data != null)
+                    for (PlayFabClientModels.TwitchPlayFabIdPair pair : result.Result.Data)
+                        found.put(pair.TwitchId, pair.PlayFabId);
+                return Found(found);
+            }
+        };
+    }
+
+    public static BatchFunction GameCenterIDs(final PlayFabClientAPI clientApi) {
+        return new BatchFunction() {
+            public PlayFabResult<Map<String, String>> Load(final List<String> ids) {
+                PlayFabClientModels.GetPlayFabIDsFromGameCenterIDsRequest request = new PlayFabClientModels.GetPlayFabIDsFromGameCenterIDsRequest();
+                request.GameCenterIDs = new ArrayList<String>(ids);
+                PlayFabResult<PlayFabClientModels.GetPlayFabIDsFromGameCenterIDsResult> result = clientApi.GetPlayFabIDsFromGameCenterIDs(request);
+                if (result == null || result.Error != null)
+                    return Failed(result);
+                Map<String, String> found = new HashMap<String, String>();
+                if (result.Result.Data != null)
+                    for (PlayFabClientModels.GameCenterPlayFabIdPair pair : result.Result.Data)
+                        found.put(pair.GameCenterId, pair.PlayFabId);
+                return Found(found);
+            }
+        };
+    }
+}
@@ -0,0 +1,112 @@
+package com.playfab;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.playfab.PlayFabMetrics.MetricsCallback;
+
+/**
+ * Wraps every API call made through the transport, from all four API classes.
+ *
+ * Interceptors are installed in order on PlayFabSettings.Interceptors; the first one is outermost.  Each receives the
+ * Call, may inspect or change it, and either calls Call.proceed() to continue down the chain or returns its own
+ * result without touching the network.  The result is what the transport produces: the raw JSON response String on
+ * success, or a PlayFabErrors.PlayFabError.
+ *
+ * A single Call object walks the whole chain, so an interceptor costs one virtual call and no allocation.
+ */
+public interface PlayFabInterceptor {
+    public Object intercept(Call call) throws Exception;
+
+    /**
+     * The innermost step of the chain: sends the call over HTTP
+     */
+    public static interface Transport {
+        public Object execute(Call call) throws Exception;
+    }
+
+    public static final class Call {
+        /**
+         * Full url of the call, ex: "https://TITLEID.playfabapi.com/Client/LoginWithCustomID"
+         */
+        public String url;
+        /**
+         * Request model, pre-serialized JSON String, or null for an empty body
+         */
+        public Object request;
+        /**
+         * Auth header name ("X-Authorization" or "X-SecretKey"), or null for anonymous calls
+         */
+        public String authType;
+        public String authKey;
+
+        private final PlayFabInterceptor[] interceptors;
+        private final Transport transport;
+        private Map<String, String> headers;
+        private MetricsCallback metricsHandler;
+        private int index;
+        private int attempts;
+
+        public Call(final String url, final Object request, final String authType, final String authKey, final PlayFabInterceptor[] interceptors, final Transport transport) {
+            this.url = url;
+            this.request = request;
+            this.authType = authType;
+            this.authKey = authKey;
+            this.interceptors = interceptors;
+            this.transport = transport;
+        }
+
+        /**
+         * Runs the rest of the chain.  May be called more than once (ex: to retry), and each call re-runs every
+         * interceptor after this one.
+         */
+        public Object proceed() throws Exception {
+            int current = index;
+            try {
+                if (interceptors != null && current < interceptors.length) {
+                    index = current + 1;
+                    return interceptors[current].intercept(this);
+                }
+                attempts++;
+                return transport.execute(this);
+            } finally {
+                index = current;
+            }
+        }
+
+        /**
+         * Adds or replaces an extra HTTP header sent with this call
+         */
+        public void SetHeader(final String name, final String value) {
+            if (headers == null)
+                headers = new LinkedHashMap<String, String>();
+            headers.put(name, value);
+        }
+
+        /**
+         * Extra headers added by interceptors, or null if there are none
+         */
+        public Map<String, String> GetHeaders() {
+            return headers;
+        }
+
+        /**
+         * Has the transport measure this call's attempts and report them to handler, in addition to any
+         * PlayFabSettings.GlobalMetricsHandler; null stops it.  Only this call pays for the measurements.
+         */
+        public void SetMetricsHandler(final MetricsCallback handler) {
+            metricsHandler = handler;
+        }
+
+        public MetricsCallback GetMetricsHandler() {
+            return metricsHandler;
+        }
+
+        /**
+         * Number of times the call has reached the transport so far
+         */
+        public int GetAttempts() {
+            return attempts;
+        }
+    }
+}
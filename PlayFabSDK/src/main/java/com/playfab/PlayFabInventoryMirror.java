@@ -0,0 +1,534 @@
+package com.playfab;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.playfab.PlayFabErrors.PlayFabError;
+import com.playfab.PlayFabErrors.PlayFabErrorCode;
+import com.playfab.PlayFabErrors.PlayFabResult;
+import com.playfab.PlayFabServerModels.*;
+
+/**
+ * Keeps a local copy of player and character inventories, for servers that read them after every mutation.
+ *
+ * An inventory is fetched once with GetUserInventory or GetCharacterInventory, and then kept current by applying the
+ * results of the mutation calls made through this class (GrantItemsToUser, GrantItemsToCharacter, ConsumeItem,
+ * ModifyItemUses, RevokeInventoryItem, MoveItemToCharacterFromUser, MoveItemToUserFromCharacter,
+ * AddUserVirtualCurrency and SubtractUserVirtualCurrency).  Every applied result is an absolute state (remaining uses,
+ * balance, presence of an instance), so applying one twice is harmless.
+ *
+ * An inventory is re-fetched only when it is suspected stale: a mutation failed or could not be applied, a mutation
+ * ran concurrently with the fetch, a granted bundle may have carried virtual currency, Invalidate was called, or
+ * maxAgeMillis passed.  Mutations made outside this class (other servers, CloudScript, purchases) are only picked up
+ * by those re-fetches.
+ *
+ * Returned results and ItemInstance objects are shared snapshots and must not be modified.
+ */
+public class PlayFabInventoryMirror {
+    private static class Inventory {
+        final String playFabId;
+        final String characterId;
+        // Instances keyed by ItemInstanceId, in server order; ItemInstance objects are replaced, never modified
+        Map<String, ItemInstance> instances;
+        Map<String, List<ItemInstance>> byItemId;
+        Map<String, Integer> virtualCurrency;
+        Map<String, VirtualCurrencyRechargeTime> rechargeTimes;
+        boolean loaded;
+        boolean stale;
+        long fetchedAt;
+        long version;
+        // Mutations waiting for their result
+        int pending;
+
+        Inventory(final String playFabId, final String characterId) {
+            this.playFabId = playFabId;
+            this.characterId = characterId;
+        }
+    }
+
+    private final PlayFabServerAPI serverApi;
+    private final int maxInventories;
+    private final long maxAgeMillis;
+    private final LinkedHashMap<String, Inventory> inventories;
+
+    /**
+     * @param maxInventories inventories kept, least recently used are dropped first
+     * @param maxAgeMillis age after which an inventory is re-fetched even if no staleness was detected, or 0 for never
+     */
+    public PlayFabInventoryMirror(final PlayFabServerAPI serverApi, final int maxInventories, final long maxAgeMillis) {
+        if (maxInventories < 1) throw new IllegalArgumentException("maxInventories must be at least 1");
+        this.serverApi = serverApi;
+        this.maxInventories = maxInventories;
+        this.maxAgeMillis = maxAgeMillis;
+        this.inventories = new LinkedHashMap<String, Inventory>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Inventory> eldest) {
+                return size() > PlayFabInventoryMirror.this.maxInventories;
+            }
+        };
+    }
+
+    /**
+     * Retrieves the specified user's current inventory of virtual goods, from the mirror when it is current
+     */
+    public PlayFabResult<GetUserInventoryResult> GetUserInventory(final GetUserInventoryRequest request) {
+        Inventory inventory = Get(request.PlayFabId, null);
+        synchronized (inventory) {
+            PlayFabResult<GetUserInventoryResult> output = new PlayFabResult<GetUserInventoryResult>();
+            output.Error = Load(inventory);
+            if (output.Error != null)
+                return output;
+            output.Result = new GetUserInventoryResult();
+            output.Result.PlayFabId = inventory.playFabId;
+            output.Result.Inventory = new ArrayList<ItemInstance>(inventory.instances.values());
+            output.Result.VirtualCurrency = new HashMap<String, Integer>(inventory.virtualCurrency);
+            output.Result.VirtualCurrencyRechargeTimes = inventory.rechargeTimes;
+            return output;
+        }
+    }
+
+    /**
+     * Retrieves the specified character's current inventory of virtual goods, from the mirror when it is current.
+     * The mirror always holds the character's full inventory, so CatalogVersion is not applied.
+     */
+    public PlayFabResult<GetCharacterInventoryResult> GetCharacterInventory(final GetCharacterInventoryRequest request) {
+        Inventory inventory = Get(request.PlayFabId, request.CharacterId);
+        synchronized (inventory) {
+            PlayFabResult<GetCharacterInventoryResult> output = new PlayFabResult<GetCharacterInventoryResult>();
+            output.Error = Load(inventory);
+            if (output.Error != null)
+                return output;
+            output.Result = new GetCharacterInventoryResult();
+            output.Result.PlayFabId = inventory.playFabId;
+            output.Result.CharacterId = inventory.characterId;
+            output.Result.Inventory = new ArrayList<ItemInstance>(inventory.instances.values());
+            output.Result.VirtualCurrency = new HashMap<String, Integer>(inventory.virtualCurrency);
+            output.Result.VirtualCurrencyRechargeTimes = inventory.rechargeTimes;
+            return output;
+        }
+    }
+
+    /**
+     * Returns an item instance of a user (characterId null) or character, or null if it is not held or the inventory could not be fetched
+     */
+    public ItemInstance GetItemInstance(final String playFabId, final String characterId, final String itemInstanceId) {
+        Inventory inventory = Get(playFabId, characterId);
+        synchronized (inventory) {
+            return Load(inventory) == null ? inventory.instances.get(itemInstanceId) : null;
+        }
+    }
+
+    /**
+     * Returns every instance of a catalog item held by a user (characterId null) or character, or null if the inventory could not be fetched
+     */
+    public List<ItemInstance> GetItemInstances(final String playFabId, final String characterId, final String itemId) {
+        Inventory inventory = Get(playFabId, characterId);
+        synchronized (inventory) {
+            if (Load(inventory) != null)
+                return null;
+            List<ItemInstance> items = inventory.byItemId.get(itemId);
+            return items == null ? new ArrayList<ItemInstance>() : new ArrayList<ItemInstance>(items);
+        }
+    }
+
+    /**
+     * Returns a virtual currency balance of a user (characterId null) or character, or null if the inventory could not be fetched
+     */
+    public Integer GetBalance(final String playFabId, final String characterId, final String virtualCurrency) {
+        Inventory inventory = Get(playFabId, characterId);
+        synchronized (inventory) {
+            if (Load(inventory) != null)
+                return null;
+            Integer balance = inventory.virtualCurrency.get(virtualCurrency);
+            return balance == null ? 0 : balance;
+        }
+    }
+
+    /**
+     * Number of deltas applied to an inventory since it was last fetched, or -1 if it is not mirrored
+     */
+    public long GetVersion(final String playFabId, final String characterId) {
+        Inventory inventory;
+        synchronized (inventories) {
+            inventory = inventories.get(Key(playFabId, characterId));
+        }
+        if (inventory == null)
+            return -1;
+        synchronized (inventory) {
+            return inventory.loaded ? inventory.version : -1;
+        }
+    }
+
+    /**
+     * Adds the specified items to the specified user's inventory, and to the mirror
+     */
+    public PlayFabResult<GrantItemsToUserResult> GrantItemsToUser(final GrantItemsToUserRequest request) {
+        Inventory inventory = BeginMutation(request.PlayFabId, null);
+        PlayFabResult<GrantItemsToUserResult> result = serverApi.GrantItemsToUser(request);
+        synchronized (inventory) {
+            if (EndMutation(inventory, result))
+                ApplyGrants(inventory, result.Result.ItemGrantResults);
+        }
+        return result;
+    }
+
+    /**
+     * Adds the specified items to the specified character's inventory, and to the mirror
+     */
+    public PlayFabResult<GrantItemsToCharacterResult> GrantItemsToCharacter(final GrantItemsToCharacterRequest request) {
+        Inventory inventory = BeginMutation(request.PlayFabId, request.CharacterId);
+        PlayFabResult<GrantItemsToCharacterResult> result = serverApi.GrantItemsToCharacter(request);
+        synchronized (inventory) {
+            if (EndMutation(inventory, result))
+                ApplyGrants(inventory, result.Result.ItemGrantResults);
+        }
+        return result;
+    }
+
+    /**
+     * Consume uses of a consumable item, and update the mirror.  When all uses are consumed, it will be removed from the player's inventory.
+     */
+    public PlayFabResult<ConsumeItemResult> ConsumeItem(final ConsumeItemRequest request) {
+        Inventory inventory = BeginMutation(request.PlayFabId, request.CharacterId);
+        PlayFabResult<ConsumeItemResult> result = serverApi.ConsumeItem(request);
+        synchronized (inventory) {
+            if (EndMutation(inventory, result))
+                ApplyRemainingUses(inventory, result.Result.ItemInstanceId, result.Result.RemainingUses);
+        }
+        return result;
+    }
+
+    /**
+     * Modifies the number of remaining uses of a player's inventory item, and update the mirror
+     */
+    public PlayFabResult<ModifyItemUsesResult> ModifyItemUses(final ModifyItemUsesRequest request) {
+        Inventory inventory = BeginMutation(request.PlayFabId, null);
+        PlayFabResult<ModifyItemUsesResult> result = serverApi.ModifyItemUses(request);
+        synchronized (inventory) {
+            if (EndMutation(inventory, result))
+                ApplyRemainingUses(inventory, result.Result.ItemInstanceId, result.Result.RemainingUses);
+        }
+        return result;
+    }
+
+    /**
+     * Revokes access to an item in a user's inventory, and removes it from the mirror
+     */
+    public PlayFabResult<RevokeInventoryResult> RevokeInventoryItem(final RevokeInventoryItemRequest request) {
+        Inventory inventory = BeginMutation(request.PlayFabId, request.CharacterId);
+        PlayFabResult<RevokeInventoryResult> result = serverApi.RevokeInventoryItem(request);
+        synchronized (inventory) {
+            if (EndMutation(inventory, result))
+                Remove(inventory, request.ItemInstanceId);
+        }
+        return result;
+    }
+
+    /**
+     * Transfers an item from a user to a character they own, in both the service and the mirror
+     */
+    public PlayFabResult<MoveItemToCharacterFromUserResult> MoveItemToCharacterFromUser(final MoveItemToCharacterFromUserRequest request) {
+        return Move(request.PlayFabId, null, request.CharacterId, request.ItemInstanceId, new Mutation<MoveItemToCharacterFromUserResult>() {
+            public PlayFabResult<MoveItemToCharacterFromUserResult> Run() {
+                return serverApi.MoveItemToCharacterFromUser(request);
+            }
+        });
+    }
+
+    /**
+     * Transfers an item from a character to the owning user, in both the service and the mirror
+     */
+    public PlayFabResult<MoveItemToUserFromCharacterResult> MoveItemToUserFromCharacter(final MoveItemToUserFromCharacterRequest request) {
+        return Move(request.PlayFabId, request.CharacterId, null, request.ItemInstanceId, new Mutation<MoveItemToUserFromCharacterResult>() {
+            public PlayFabResult<MoveItemToUserFromCharacterResult> Run() {
+                return serverApi.MoveItemToUserFromCharacter(request);
+            }
+        });
+    }
+
+    /**
+     * Increments the user's balance of the specified virtual currency by the stated amount, and updates the mirror
+     */
+    public PlayFabResult<ModifyUserVirtualCurrencyResult> AddUserVirtualCurrency(final AddUserVirtualCurrencyRequest request) {
+        Inventory inventory = BeginMutation(request.PlayFabId, null);
+        PlayFabResult<ModifyUserVirtualCurrencyResult> result = serverApi.AddUserVirtualCurrency(request);
+        synchronized (inventory) {
+            if (EndMutation(inventory, result))
+                ApplyBalance(inventory, result.Result);
+        }
+        return result;
+    }
+
+    /**
+     * Decrements the user's balance of the specified virtual currency by the stated amount, and updates the mirror
+     */
+    public PlayFabResult<ModifyUserVirtualCurrencyResult> SubtractUserVirtualCurrency(final SubtractUserVirtualCurrencyRequest request) {
+        Inventory inventory = BeginMutation(request.PlayFabId, null);
+        PlayFabResult<ModifyUserVirtualCurrencyResult> result = serverApi.SubtractUserVirtualCurrency(request);
+        synchronized (inventory) {
+            if (EndMutation(inventory, result))
+                ApplyBalance(inventory, result.Result);
+        }
+        return result;
+    }
+
+    /**
+     * Marks an inventory stale, ex: after a purchase or CloudScript call that changed it outside this mirror
+     */
+    public void Invalidate(final String playFabId, final String characterId) {
+        Inventory inventory;
+        synchronized (inventories) {
+            inventory = inventories.get(Key(playFabId, characterId));
+        }
+        if (inventory != null) {
+            synchronized (inventory) {
+                inventory.stale = true;
+            }
+        }
+    }
+
+    /**
+     * Drops every mirrored inventory of a player, ex: when they leave the server
+     */
+    public void Remove(final String playFabId) {
+        String prefix = playFabId + "/";
+        synchronized (inventories) {
+            for (Iterator<String> it = inventories.keySet().iterator(); it.hasNext(); )
+                if (it.next().startsWith(prefix))
+                    it.remove();
+        }
+    }
+
+    private interface Mutation<T> {
+        PlayFabResult<T> Run();
+    }
+
+    private <T> PlayFabResult<T> Move(final String playFabId, final String fromCharacterId, final String toCharacterId, final String itemInstanceId, final Mutation<T> mutation) {
+        Inventory from = BeginMutation(playFabId, fromCharacterId);
+        Inventory to = BeginMutation(playFabId, toCharacterId);
+        PlayFabResult<T> result = mutation.Run();
+        ItemInstance moved = null;
+        synchronized (from) {
+            if (EndMutation(from, result)) {
+                moved = from.instances.get(itemInstanceId);
+                Remove(from, itemInstanceId);
+            }
+        }
+        synchronized (to) {
+            if (EndMutation(to, result)) {
+                if (moved != null)
+                    Put(to, moved);
+                else if (to.loaded)
+                    to.stale = true; // the source inventory was not mirrored, so the item's details are unknown
+            }
+        }
+        return result;
+    }
+
+    private Inventory Get(final String playFabId, final String characterId) {
+        String key = Key(playFabId, characterId);
+        synchronized (inventories) {
+            Inventory inventory = inventories.get(key);
+            if (inventory == null) {
+                inventory = new Inventory(playFabId, characterId);
+                inventories.put(key, inventory);
+            }
+            return inventory;
+        }
+    }
+
+    private Inventory BeginMutation(final String playFabId, final String characterId) {
+        Inventory inventory = Get(playFabId, characterId);
+        synchronized (inventory) {
+            inventory.pending++;
+        }
+        return inventory;
+    }
+
+    /**
+     * Call holding the inventory lock; returns true if the result should be applied
+     */
+    private static boolean EndMutation(final Inventory inventory, final PlayFabResult<?> result) {
+        inventory.pending--;
+        if (!inventory.loaded)
+            return false;
+        if (result == null || result.Error != null || result.Result == null) {
+            // The mutation may or may not have happened
+            inventory.stale = true;
+            return false;
+        }
+        inventory.version++;
+        return true;
+    }
+
+    /**
+     * Call holding the inventory lock; fetches the inventory if it is missing or stale, and returns the error if that failed
+     */
+    private PlayFabError Load(final Inventory inventory) {
+        if (inventory.loaded && !inventory.stale && (maxAgeMillis <= 0 || System.currentTimeMillis() - inventory.fetchedAt < maxAgeMillis))
+            return null;
+
+        // Mutations cannot start while the lock is held, but one already waiting for its result may or may not be
+        // reflected in the fetch
+        boolean overlapped = inventory.pending > 0;
+        List<ItemInstance> items;
+        Map<String, Integer> virtualCurrency;
+        Map<String, VirtualCurrencyRechargeTime> rechargeTimes;
+        if (inventory.characterId == null) {
+            GetUserInventoryRequest request = new GetUserInventoryRequest();
+            request.PlayFabId = inventory.playFabId;
+            PlayFabResult<GetUserInventoryResult> result = serverApi.GetUserInventory(request);
+            if (result == null || result.Error != null)
+                return Error(result);
+            items = result.Result.Inventory;
+            virtualCurrency = result.Result.VirtualCurrency;
+            rechargeTimes = result.Result.VirtualCurrencyRechargeTimes;
+        } else {
+            GetCharacterInventoryRequest request = new GetCharacterInventoryRequest();
+            request.PlayFabId = inventory.playFabId;
+            request.CharacterId = inventory.characterId;
+            PlayFabResult<GetCharacterInventoryResult> result = serverApi.GetCharacterInventory(request);
+            if (result == null || result.Error != null)
+                return Error(result);
+            items = result.Result.Inventory;
+            virtualCurrency = result.Result.VirtualCurrency;
+            rechargeTimes = result.Result.VirtualCurrencyRechargeTimes;
+        }
+
+        inventory.instances = new LinkedHashMap<String, ItemInstance>();
+        inventory.byItemId = new HashMap<String, List<ItemInstance>>();
+        if (items != null)
+            for (ItemInstance item : items)
+                Put(inventory, item);
+        inventory.virtualCurrency = virtualCurrency == null ? new HashMap<String, Integer>() : new HashMap<String, Integer>(virtualCurrency);
+        inventory.rechargeTimes = rechargeTimes;
+        inventory.loaded = true;
+        inventory.fetchedAt = System.currentTimeMillis();
+        inventory.version = 0;
+        // Serve this copy once, then fetch again
+        inventory.stale = overlapped;
+        return null;
+    }
+
+    private static PlayFabError Error(final PlayFabResult<?> result) {
+        if (result != null)
+            return result.Error;
+        PlayFabError error = new PlayFabError();
+        error.pfErrorCode = PlayFabErrorCode.Unknown;
+        error.errorMessage = "Inventory fetch failed";
+        return error;
+    }
+
+    private static void ApplyGrants(final Inventory inventory, final List<GrantedItemInstance> grants) {
+        if (grants == null)
+            return;
+        for (GrantedItemInstance grant : grants) {
+            if (grant.Result == null || !grant.Result || grant.ItemInstanceId == null) {
+                inventory.stale = true;
+                continue;
+            }
+            // Bundles and containers may carry virtual currency, which grant results do not report
+            if (grant.BundleContents != null && !grant.BundleContents.isEmpty())
+                inventory.stale = true;
+            ItemInstance item = new ItemInstance();
+            item.ItemId = grant.ItemId;
+            item.ItemInstanceId = grant.ItemInstanceId;
+            item.ItemClass = grant.ItemClass;
+            item.PurchaseDate = grant.PurchaseDate;
+            item.Expiration = grant.Expiration;
+            item.RemainingUses = grant.RemainingUses;
+            item.UsesIncrementedBy = grant.UsesIncrementedBy;
+            item.Annotation = grant.Annotation;
+            item.CatalogVersion = grant.CatalogVersion;
+            item.BundleParent = grant.BundleParent;
+            item.DisplayName = grant.DisplayName;
+            item.UnitCurrency = grant.UnitCurrency;
+            item.UnitPrice = grant.UnitPrice;
+            item.BundleContents = grant.BundleContents;
+            item.CustomData = grant.CustomData;
+            Put(inventory, item);
+        }
+    }
+
+    private static void ApplyRemainingUses(final Inventory inventory, final String itemInstanceId, final Integer remainingUses) {
+        ItemInstance current = inventory.instances.get(itemInstanceId);
+        if (current == null || remainingUses == null) {
+            inventory.stale = true;
+            return;
+        }
+        if (remainingUses <= 0) {
+            Remove(inventory, itemInstanceId);
+            return;
+        }
+        ItemInstance item = Copy(current);
+        item.RemainingUses = remainingUses;
+        Put(inventory, item);
+    }
+
+    private static void ApplyBalance(final Inventory inventory, final ModifyUserVirtualCurrencyResult result) {
+        if (result.VirtualCurrency == null || result.Balance == null) {
+            inventory.stale = true;
+            return;
+        }
+        inventory.virtualCurrency.put(result.VirtualCurrency, result.Balance);
+    }
+
+    private static void Put(final Inventory inventory, final ItemInstance item) {
+        ItemInstance previous = inventory.instances.put(item.ItemInstanceId, item);
+        if (previous != null)
+            RemoveFromItemIndex(inventory, previous);
+        List<ItemInstance> items = inventory.byItemId.get(item.ItemId);
+        if (items == null) {
+            items = new ArrayList<ItemInstance>(1);
+            inventory.byItemId.put(item.ItemId, items);
+        }
+        items.add(item);
+    }
+
+    private static void Remove(final Inventory inventory, final String itemInstanceId) {
+        if (!inventory.loaded)
+            return;
+        ItemInstance previous = inventory.instances.remove(itemInstanceId);
+        if (previous == null)
+            inventory.stale = true;
+        else
+            RemoveFromItemIndex(inventory, previous);
+    }
+
+    private static void RemoveFromItemIndex(final Inventory inventory, final ItemInstance item) {
+        List<ItemInstance> items = inventory.byItemId.get(item.ItemId);
+        if (items == null)
+            return;
+        items.remove(item);
+        if (items.isEmpty())
+            inventory.byItemId.remove(item.ItemId);
+    }
+
+    private static ItemInstance Copy(final ItemInstance source) {
+        ItemInstance item = new ItemInstance();
+        item.ItemId = source.ItemId;
+        item.ItemInstanceId = source.ItemInstanceId;
+        item.ItemClass = source.ItemClass;
+        item.PurchaseDate = source.PurchaseDate;
+        item.Expiration = source.Expiration;
+        item.RemainingUses = source.RemainingUses;
+        item.UsesIncrementedBy = source.UsesIncrementedBy;
+        item.Annotation = source.Annotation;
+        item.CatalogVersion = source.CatalogVersion;
+        item.BundleParent = source.BundleParent;
+        item.DisplayName = source.DisplayName;
+        item.UnitCurrency = source.UnitCurrency;
+        item.UnitPrice = source.UnitPrice;
+        item.BundleContents = source.BundleContents;
+        item.CustomData = source.CustomData;
+        return item;
+    }
+
+    private static String Key(final String playFabId, final String characterId) {
+        return characterId == null ? playFabId + "/" : playFabId + "/" + characterId;
+    }
+}
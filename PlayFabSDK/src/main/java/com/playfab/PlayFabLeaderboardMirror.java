@@ -0,0 +1,568 @@
+package com.playfab;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.playfab.PlayFabErrors.PlayFabError;
+import com.playfab.PlayFabErrors.PlayFabErrorCode;
+import com.playfab.PlayFabErrors.PlayFabResult;
+import com.playfab.PlayFabServerModels.*;
+
+/**
+ * Keeps a local copy of the top of one statistic's leaderboard, for lobbies that show the same windows continuously.
+ *
+ * Sync pages the board with GetLeaderboard, maxParallelPages pages at a time, down to maxEntries players, and swaps in
+ * the new copy at once.  Entries are held in an order-statistic tree, so top-N, rank and around-player queries cost
+ * O(log n) plus the window size, and local score changes (Update) keep ranks correct between syncs.  Reads through
+ * GetLeaderboard and GetLeaderboardAroundUser sync first when the copy is older than maxStalenessMillis; players below
+ * the mirrored depth are looked up on the server.  If that sync fails, reads keep serving the previous copy, and
+ * IsStale and GetLastSyncError report it; only a mirror that has never synced returns the error.
+ *
+ * Friend leaderboards depend on each player's friend list and are not mirrored; GetEntries ranks any set of players.
+ */
+public class PlayFabLeaderboardMirror {
+    private static final class Node {
+        final PlayerLeaderboardEntry entry;
+        final int value;
+        // Tie-break: players with equal values keep the server's order, and local updates go after them
+        final long sequence;
+        final int priority;
+        int size = 1;
+        Node left;
+        Node right;
+
+        Node(final PlayerLeaderboardEntry entry, final int value, final long sequence, final int priority) {
+            this.entry = entry;
+            this.value = value;
+            this.sequence = sequence;
+            this.priority = priority;
+        }
+    }
+
+    /**
+     * Size-augmented treap ordered by descending value
+     */
+    private static final class RankTree {
+        private final Random random = new Random();
+        private final Map<String, Node> byPlayer = new HashMap<String, Node>();
+        private Node root;
+        private long nextSequence;
+
+        int Size() {
+            return Size(root);
+        }
+
+        void Put(final PlayerLeaderboardEntry entry) {
+            Node previous = byPlayer.remove(entry.PlayFabId);
+            if (previous != null)
+                root = Delete(root, previous);
+            Node node = new Node(entry, entry.StatValue == null ? 0 : entry.StatValue, nextSequence++, random.nextInt());
+            byPlayer.put(entry.PlayFabId, node);
+            Node[] parts = Split(root, node);
+            root = Merge(Merge(parts[0], node), parts[1]);
+        }
+
+        void Remove(final String playFabId) {
+            Node node = byPlayer.remove(playFabId);
+            if (node != null)
+                root = Delete(root, node);
+        }
+
+        /**
+         * 0-based rank of a player, or -1 if not held
+         */
+        int Rank(final String playFabId) {
+            Node target = byPlayer.get(playFabId);
+            if (target == null)
+                return -1;
+            int rank = 0;
+            Node node = root;
+            while (node != target) {
+                if (Compare(target, node) < 0) {
+                    node = node.left;
+                } else {
+                    rank += Size(node.left) + 1;
+                    node = node.right;
+                }
+            }
+            return rank + Size(node.left);
+        }
+
+        /**
+         * Number of entries with a value above the given one
+         */
+        int CountAbove(final int value) {
+            int count = 0;
+            Node node = root;
+            while (node != null) {
+                if (node.value > value) {
+                    count += Size(node.left) + 1;
+                    node = node.right;
+                } else {
+                    node = node.left;
+                }
+            }
+            return count;
+        }
+
+        /**
+         * Appends entries [start, start + count) in rank order
+         */
+        void Range(final int start, final int count, final List<Node> output) {
+            Range(root, 0, start, start + count, output);
+        }
+
+        Node Lowest() {
+            Node node = root;
+            while (node != null && node.right != null)
+                node = node.right;
+            return node;
+        }
+
+        private static void Range(final Node node, final int offset, final int from, final int to, final List<Node> output) {
+            if (node == null || from >= to)
+                return;
+            int rank = offset + Size(node.left);
+            if (from < rank)
+                Range(node.left, offset, from, to, output);
+            if (from <= rank && rank < to)
+                output.add(node);
+            if (rank + 1 < to)
+                Range(node.right, rank + 1, from, to, output);
+        }
+
+        private static int Compare(final Node a, final Node b) {
+            if (a.value != b.value)
+                return a.value > b.value ? -1 : 1;
+            return a.sequence < b.sequence ? -1 : a.sequence > b.sequence ? 1 : 0;
+        }
+
+        private static int Size(final Node node) {
+            return node == null ? 0 : node.size;
+        }
+
+        private static Node Update(final Node node) {
+            node.size = 1 + Size(node.left) + Size(node.right);
+            return node;
+        }
+
+        /**
+         * Splits into nodes ordered before the key and the rest
+         */
+        private static Node[] Split(final Node node, final Node key) {
+            if (node == null)
+                return new Node[] { null, null };
+            if (Compare(node, key) < 0) {
+                Node[] parts = Split(node.right, key);
+                node.right = parts[0];
+                parts[0] = Update(node);
+                return parts;
+            }
+            Node[] parts = Split(node.left, key);
+            node.left = parts[1];
+            parts[1] = Update(node);
+            return parts;
+        }
+
+        private static Node Merge(final Node left, final Node right) {
+            if (left == null)
+                return right;
+            if (right == null)
+                return left;
+            if (left.priority > right.priority) {
+                left.right = Merge(left.right, right);
+                return Update(left);
+            }
+            right.left = Merge(left, right.left);
+            return Update(right);
+        }
+
+        private static Node Delete(final Node node, final Node target) {
+            if (node == null)
+                return null;
+            if (node == target)
+                return Merge(node.left, node.right);
+            if (Compare(target, node) < 0)
+                node.left = Delete(node.left, target);
+            else
+                node.right = Delete(node.right, target);
+            return Update(node);
+        }
+    }
+
+    private final PlayFabServerAPI serverApi;
+    private final String statisticName;
+    private final int pageSize;
+    private final int maxParallelPages;
+    private final int maxEntries;
+    private final long maxStalenessMillis;
+    private final ExecutorService pager;
+    private ScheduledExecutorService scheduler;
+
+    private final ReentrantReadWriteLock treeLock = new ReentrantReadWriteLock();
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private RankTree tree = new RankTree();
+    private Integer version;
+    private volatile long syncedAt;
+    private volatile PlayFabError lastSyncError;
+    // Local updates made while a sync runs, replayed onto its result
+    private List<PlayerLeaderboardEntry> updatesDuringSync;
+
+    /**
+     * @param pageSize MaxResultsCount of each GetLeaderboard call, at most 100
+     * @param maxParallelPages GetLeaderboard calls in flight at once during a sync
+     * @param maxEntries depth of the board that is mirrored
+     * @param maxStalenessMillis age after which reads sync first
+     */
+    public PlayFabLeaderboardMirror(final PlayFabServerAPI serverApi, final String statisticName, final int pageSize, final int maxParallelPages, final int maxEntries, final long maxStalenessMillis) {
+        if (pageSize < 1) throw new IllegalArgumentException("pageSize must be at least 1");
+        if (maxParallelPages < 1) throw new IllegalArgumentException("maxParallelPages must be at least 1");
+        this.serverApi = serverApi;
+        this.statisticName = statisticName;
+        this.pageSize = pageSize;
+        this.maxParallelPages = maxParallelPages;
+        this.maxEntries = maxEntries;
+        this.maxStalenessMillis = maxStalenessMillis;
+        this.pager = Executors.newFixedThreadPool(maxParallelPages, DaemonThreads("PlayFabLeaderboardMirror"));
+    }
+
+    /**
+     * Pages the board from the server and replaces the mirrored copy; returns the error if paging failed, null on success
+     */
+    public PlayFabError Sync() {
+        syncLock.lock();
+        try {
+            treeLock.writeLock().lock();
+            try {
+                updatesDuringSync = new ArrayList<PlayerLeaderboardEntry>();
+            } finally {
+                treeLock.writeLock().unlock();
+            }
+
+            RankTree fetched = new RankTree();
+            Integer fetchedVersion = null;
+            PlayFabError error = null;
+            int start = 0;
+            boolean done = false;
+            while (!done && error == null && start < maxEntries) {
+                List<Future<PlayFabResult<GetLeaderboardResult>>> wave = new ArrayList<Future<PlayFabResult<GetLeaderboardResult>>>();
+                for (int i = 0; i < maxParallelPages && start < maxEntries; i++, start += pageSize)
+                    wave.add(pager.submit(FetchPage(start, Math.min(pageSize, maxEntries - start))));
+                for (Future<PlayFabResult<GetLeaderboardResult>> page : wave) {
+                    PlayFabResult<GetLeaderboardResult> result = Await(page);
+                    if (error != null || done)
+                        continue;
+                    if (result == null || result.Error != null) {
+                        error = Failure(result);
+                        continue;
+                    }
+                    if (fetchedVersion != null && result.Result.Version != null && !fetchedVersion.equals(result.Result.Version)) {
+                        error = Failure(null);
+                        error.errorMessage = "Leaderboard " + statisticName + " was reset during sync";
+                        continue;
+                    }
+                    fetchedVersion = result.Result.Version;
+                    List<PlayerLeaderboardEntry> entries = result.Result.Leaderboard;
+                    if (entries != null)
+                        for (PlayerLeaderboardEntry entry : entries)
+                            fetched.Put(entry);
+                    if (entries == null || entries.size() < pageSize)
+                        done = true;
+                }
+            }
+
+            treeLock.writeLock().lock();
+            try {
+                if (error == null) {
+                    boolean reset = version != null && fetchedVersion != null && !version.equals(fetchedVersion);
+                    if (!reset)
+                        for (PlayerLeaderboardEntry update : updatesDuringSync)
+                            fetched.Put(update);
+                    tree = fetched;
+                    version = fetchedVersion;
+                    syncedAt = System.currentTimeMillis();
+                }
+                lastSyncError = error;
+                updatesDuringSync = null;
+            } finally {
+                treeLock.writeLock().unlock();
+            }
+            return error;
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    /**
+     * Syncs every maxStalenessMillis on a background thread, so reads never wait for the server
+     */
+    public synchronized void StartBackgroundSync() {
+        if (scheduler != null)
+            return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(DaemonThreads("PlayFabLeaderboardMirror-sync"));
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                Sync();
+            }
+        }, 0, Math.max(1, maxStalenessMillis), TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void Close() {
+        if (scheduler != null)
+            scheduler.shutdownNow();
+        scheduler = null;
+        pager.shutdownNow();
+    }
+
+    /**
+     * Records a local score change, ex: after UpdatePlayerStatistics, so ranks are correct before the next sync.
+     * Players that would fall below the mirrored depth are dropped.
+     */
+    public void Update(final String playFabId, final String displayName, final int statValue) {
+        PlayerLeaderboardEntry entry = new PlayerLeaderboardEntry();
+        entry.PlayFabId = playFabId;
+        entry.DisplayName = displayName;
+        entry.StatValue = statValue;
+        treeLock.writeLock().lock();
+        try {
+            tree.Put(entry);
+            if (updatesDuringSync != null)
+                updatesDuringSync.add(entry);
+            while (tree.Size() > maxEntries)
+                tree.Remove(tree.Lowest().entry.PlayFabId);
+        } finally {
+            treeLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Retrieves a window of the leaderboard, from the mirror when it covers the requested range
+     */
+    public PlayFabResult<GetLeaderboardResult> GetLeaderboard(final GetLeaderboardRequest request) {
+        int start = request.StartPosition == null ? 0 : request.StartPosition;
+        int count = request.MaxResultsCount == null ? 10 : request.MaxResultsCount;
+        if (!statisticName.equals(request.StatisticName) || request.ProfileConstraints != null || start + count > maxEntries)
+            return serverApi.GetLeaderboard(request);
+        PlayFabError error = EnsureFresh();
+        if (error != null)
+            return Failed(error);
+
+        PlayFabResult<GetLeaderboardResult> output = new PlayFabResult<GetLeaderboardResult>();
+        output.Result = new GetLeaderboardResult();
+        treeLock.readLock().lock();
+        try {
+            output.Result.Leaderboard = Window(start, count);
+            output.Result.Version = version;
+        } finally {
+            treeLock.readLock().unlock();
+        }
+        return output;
+    }
+
+    /**
+     * Retrieves the window centered on a player, from the mirror when the player is mirrored
+     */
+    public PlayFabResult<GetLeaderboardAroundUserResult> GetLeaderboardAroundUser(final GetLeaderboardAroundUserRequest request) {
+        if (!statisticName.equals(request.StatisticName) || request.ProfileConstraints != null)
+            return serverApi.GetLeaderboardAroundUser(request);
+        PlayFabError error = EnsureFresh();
+        if (error != null) {
+            PlayFabResult<GetLeaderboardAroundUserResult> failed = new PlayFabResult<GetLeaderboardAroundUserResult>();
+            failed.Error = error;
+            return failed;
+        }
+
+        int count = request.MaxResultsCount == null ? 10 : request.MaxResultsCount;
+        PlayFabResult<GetLeaderboardAroundUserResult> output = new PlayFabResult<GetLeaderboardAroundUserResult>();
+        treeLock.readLock().lock();
+        try {
+            int rank = tree.Rank(request.PlayFabId);
+            // Players near the bottom of the mirror may have neighbours below it; ask the server once the lock is released
+            if (rank >= 0 && (rank + count / 2 < tree.Size() || tree.Size() < maxEntries)) {
+                int start = Math.max(0, Math.min(rank - count / 2, tree.Size() - count));
+                output.Result = new GetLeaderboardAroundUserResult();
+                output.Result.Leaderboard = Window(start, count);
+                output.Result.Version = version;
+            }
+        } finally {
+            treeLock.readLock().unlock();
+        }
+        return output.Result != null ? output : serverApi.GetLeaderboardAroundUser(request);
+    }
+
+    /**
+     * 0-based position of a player, or null if the player is not mirrored
+     */
+    public Integer GetPosition(final String playFabId) {
+        treeLock.readLock().lock();
+        try {
+            int rank = tree.Rank(playFabId);
+            return rank < 0 ? null : rank;
+        } finally {
+            treeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Position a new score would take, ex: to show "you would place 12th"
+     */
+    public int GetPositionForValue(final int statValue) {
+        treeLock.readLock().lock();
+        try {
+            return tree.CountAbove(statValue);
+        } finally {
+            treeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Mirrored entries of the given players in rank order, with their overall positions, ex: to rank a friend list
+     */
+    public List<PlayerLeaderboardEntry> GetEntries(final Collection<String> playFabIds) {
+        List<PlayerLeaderboardEntry> entries = new ArrayList<PlayerLeaderboardEntry>();
+        treeLock.readLock().lock();
+        try {
+            int[] ranks = new int[playFabIds.size()];
+            int count = 0;
+            for (String playFabId : playFabIds) {
+                int rank = tree.Rank(playFabId);
+                if (rank >= 0)
+                    ranks[count++] = rank;
+            }
+            Arrays.sort(ranks, 0, count);
+            List<Node> nodes = new ArrayList<Node>(1);
+            for (int i = 0; i < count; i++) {
+                nodes.clear();
+                tree.Range(ranks[i], 1, nodes);
+                entries.add(Positioned(nodes.get(0), ranks[i]));
+            }
+        } finally {
+            treeLock.readLock().unlock();
+        }
+        return entries;
+    }
+
+    /**
+     * True when the copy is older than maxStalenessMillis, ex: because the last sync failed
+     */
+    public boolean IsStale() {
+        return System.currentTimeMillis() - syncedAt >= maxStalenessMillis;
+    }
+
+    /**
+     * Error of the most recent sync, or null if it succeeded
+     */
+    public PlayFabError GetLastSyncError() {
+        return lastSyncError;
+    }
+
+    public int GetSize() {
+        treeLock.readLock().lock();
+        try {
+            return tree.Size();
+        } finally {
+            treeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Call holding the read lock
+     */
+    private ArrayList<PlayerLeaderboardEntry> Window(final int start, final int count) {
+        List<Node> nodes = new ArrayList<Node>(count);
+        tree.Range(start, count, nodes);
+        ArrayList<PlayerLeaderboardEntry> window = new ArrayList<PlayerLeaderboardEntry>(nodes.size());
+        for (int i = 0; i < nodes.size(); i++)
+            window.add(Positioned(nodes.get(i), start + i));
+        return window;
+    }
+
+    private static PlayerLeaderboardEntry Positioned(final Node node, final int position) {
+        PlayerLeaderboardEntry entry = new PlayerLeaderboardEntry();
+        entry.PlayFabId = node.entry.PlayFabId;
+        entry.DisplayName = node.entry.DisplayName;
+        entry.StatValue = node.value;
+        entry.Position = position;
+        entry.Profile = node.entry.Profile;
+        return entry;
+    }
+
+    private PlayFabError EnsureFresh() {
+        if (System.currentTimeMillis() - syncedAt < maxStalenessMillis)
+            return null;
+        if (!syncLock.tryLock()) {
+            // Another thread is syncing; serve the current copy unless there is none yet
+            if (syncedAt != 0)
+                return null;
+            syncLock.lock();
+        }
+        try {
+            if (System.currentTimeMillis() - syncedAt < maxStalenessMillis)
+                return null;
+            PlayFabError error = Sync();
+            // A failed sync leaves the previous copy in place, which is still worth serving
+            return syncedAt != 0 ? null : error;
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private Callable<PlayFabResult<GetLeaderboardResult>> FetchPage(final int start, final int count) {
+        return new Callable<PlayFabResult<GetLeaderboardResult>>() {
+            public PlayFabResult<GetLeaderboardResult> call() {
+                GetLeaderboardRequest request = new GetLeaderboardRequest();
+                request.StatisticName = statisticName;
+                request.StartPosition = start;
+                request.MaxResultsCount = count;
+                return serverApi.GetLeaderboard(request);
+            }
+        };
+    }
+
+    private static <T> T Await(final Future<T> future) {
+        try {
+            return future.get();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static PlayFabError Failure(final PlayFabResult<?> result) {
+        if (result != null && result.Error != null)
+            return result.Error;
+        PlayFabError error = new PlayFabError();
+        error.pfErrorCode = PlayFabErrorCode.Unknown;
+        error.errorMessage = "GetLeaderboard failed";
+        return error;
+    }
+
+    private static PlayFabResult<GetLeaderboardResult> Failed(final PlayFabError error) {
+        PlayFabResult<GetLeaderboardResult> output = new PlayFabResult<GetLeaderboardResult>();
+        output.Error = error;
+        return output;
+    }
+
+    private static ThreadFactory DaemonThreads(final String name) {
+        return new ThreadFactory() {
+            public Thread newThread(final Runnable runnable) {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+}
@@ -0,0 +1,243 @@
+package com.playfab;
+
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.playfab.PlayFabErrors.PlayFabErrorCode;
+
+public class PlayFabMetrics {
+    /**
+     * Timings and sizes of a single API call, as measured by the transport.
+     * Times are in nanoseconds; a phase that was not reached is left at 0.
+     */
+    public static class RequestMetrics {
+        /**
+         * API path of the call, ex: "/Client/LoginWithCustomID"
+         */
+        public String endpoint;
+        public int httpCode;
+        public PlayFabErrorCode pfErrorCode;
+        /**
+         * Time spent waiting for a PlayFabSettings.Dispatcher slot
+         */
+        public long queueTimeNanos;
+        /**
+         * Time to open (or reuse) the connection
+         */
+        public long connectTimeNanos;
+        /**
+         * Time from leaving the queue until the response headers arrived
+         */
+        public long timeToFirstByteNanos;
+        /**
+         * Time from the call entering the transport until the response was read
+         */
+        public long totalTimeNanos;
+        /**
+         * Time spent encoding the request body (the response is decoded by the API classes, after the transport)
+         */
+        public long serializeTimeNanos;
+        public long requestBytes;
+        public long responseBytes;
+        /**
+         * Number of additional attempts made for this call
+         */
+        public int retryCount;
+    }
+
+    public static interface MetricsCallback {
+        public void callback(RequestMetrics metrics);
+    }
+
+    /**
+     * Lock-free log-linear histogram of non-negative values.
+     *
+     * Values below 32 are counted exactly; larger values fall into buckets 1/16th of a power of two wide, so any
+     * reported percentile is within about 6% of the recorded value.  Recording is a few atomic increments.
+     */
+    public static class Histogram {
+        private static final int SUB_BITS = 5;
+        private static final int SUB_COUNT = 1 << SUB_BITS;
+        private static final int HALF_COUNT = SUB_COUNT >> 1;
+        private static final int BUCKET_COUNT = SUB_COUNT + (63 - SUB_BITS) * HALF_COUNT;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong sum = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        public void Record(final long value) {
+            long v = value < 0 ? 0 : value;
+            buckets.incrementAndGet(BucketIndex(v));
+            count.incrementAndGet();
+            sum.addAndGet(v);
+            long current = max.get();
+            while (v > current && !max.compareAndSet(current, v))
+                current = max.get();
+        }
+
+        public long GetCount() {
+            return count.get();
+        }
+
+        public long GetMax() {
+            return max.get();
+        }
+
+        public double GetMean() {
+            long n = count.get();
+            return n == 0 ? 0 : (double)sum.get() / n;
+        }
+
+        /**
+         * Returns the upper bound of the bucket holding the given percentile (0..100), capped at the recorded max
+         */
+        public long GetPercentile(final double percentile) {
+            long total = count.get();
+            if (total == 0)
+                return 0;
+            long rank = (long)Math.ceil(total * Math.min(100.0, Math.max(0.0, percentile)) / 100.0);
+            if (rank < 1)
+                rank = 1;
+            long seen = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                seen += buckets.get(i);
+                if (seen >= rank)
+                    return Math.min(BucketUpperBound(i), max.get());
+            }
+            return max.get();
+        }
+
+        public void Reset() {
+            for (int i = 0; i < BUCKET_COUNT; i++)
+                buckets.set(i, 0);
+            count.set(0);
+            sum.set(0);
+            max.set(0);
+        }
+
+        private static int BucketIndex(final long value) {
+            if (value < SUB_COUNT)
+                return (int)value;
+            int shift = (63 - Long.numberOfLeadingZeros(value)) - (SUB_BITS - 1);
+            return SUB_COUNT + (shift - 1) * HALF_COUNT + (int)((value >>> shift) - HALF_COUNT);
+        }
+
+        private static long BucketUpperBound(final int index) {
+            if (index < SUB_COUNT)
+                return index;
+            int shift = (index - SUB_COUNT) / HALF_COUNT + 1;
+            long sub = (index - SUB_COUNT) % HALF_COUNT + HALF_COUNT;
+            return ((sub + 1) << shift) - 1;
+        }
+    }
+
+    /**
+     * Aggregated metrics for one API path
+     */
+    public static class EndpointStats {
+        public final Histogram totalTime = new Histogram();
+        public final Histogram queueTime = new Histogram();
+        public final Histogram connectTime = new Histogram();
+        public final Histogram timeToFirstByte = new Histogram();
+        public final Histogram requestBytes = new Histogram();
+        public final Histogram responseBytes = new Histogram();
+        public final AtomicLong retries = new AtomicLong();
+        private final AtomicLongArray errors = new AtomicLongArray(PlayFabErrorCode.values().length);
+
+        void Record(final RequestMetrics metrics) {
+            totalTime.Record(metrics.totalTimeNanos);
+            queueTime.Record(metrics.queueTimeNanos);
+            connectTime.Record(metrics.connectTimeNanos);
+            timeToFirstByte.Record(metrics.timeToFirstByteNanos);
+            requestBytes.Record(metrics.requestBytes);
+            responseBytes.Record(metrics.responseBytes);
+            if (metrics.retryCount > 0)
+                retries.addAndGet(metrics.retryCount);
+            if (metrics.pfErrorCode != null && metrics.pfErrorCode != PlayFabErrorCode.Success)
+                errors.incrementAndGet(metrics.pfErrorCode.ordinal());
+        }
+
+        public long GetCalls() {
+            return totalTime.GetCount();
+        }
+
+        public long GetErrorCount(final PlayFabErrorCode errorCode) {
+            return errors.get(errorCode.ordinal());
+        }
+
+        public long GetErrorCount() {
+            long total = 0;
+            for (int i = 0; i < errors.length(); i++)
+                total += errors.get(i);
+            return total;
+        }
+    }
+
+    /**
+     * Default MetricsCallback: keeps per-endpoint histograms that can be scraped with GetStats or printed with Dump.
+     * Install with PlayFabSettings.GlobalMetricsHandler = new PlayFabMetrics.HistogramMetrics();
+     */
+    public static class HistogramMetrics implements MetricsCallback {
+        private final ConcurrentHashMap<String, EndpointStats> endpoints = new ConcurrentHashMap<String, EndpointStats>();
+
+        public void callback(final RequestMetrics metrics) {
+            EndpointStats stats = endpoints.get(metrics.endpoint);
+            if (stats == null) {
+                endpoints.putIfAbsent(metrics.endpoint, new EndpointStats());
+                stats = endpoints.get(metrics.endpoint);
+            }
+            stats.Record(metrics);
+        }
+
+        public Set<String> GetEndpoints() {
+            return new TreeSet<String>(endpoints.keySet());
+        }
+
+        public EndpointStats GetStats(final String endpoint) {
+            return endpoints.get(endpoint);
+        }
+
+        public void Reset() {
+            endpoints.clear();
+        }
+
+        /**
+         * One line per endpoint: calls, errors, latency percentiles in milliseconds and mean payload sizes
+         */
+        public String Dump() {
+            StringBuilder output = new StringBuilder();
+            output.append("endpoint calls errors retries p50ms p90ms p99ms maxms queueP99ms ttfbP99ms reqBytesAvg respBytesAvg\n");
+            for (String endpoint : GetEndpoints()) {
+                EndpointStats stats = endpoints.get(endpoint);
+                output.append(endpoint)
+                    .append(' ').append(stats.GetCalls())
+                    .append(' ').append(stats.GetErrorCount())
+                    .append(' ').append(stats.retries.get())
+                    .append(' ').append(Millis(stats.totalTime.GetPercentile(50)))
+                    .append(' ').append(Millis(stats.totalTime.GetPercentile(90)))
+                    .append(' ').append(Millis(stats.totalTime.GetPercentile(99)))
+                    .append(' ').append(Millis(stats.totalTime.GetMax()))
+                    .append(' ').append(Millis(stats.queueTime.GetPercentile(99)))
+                    .append(' ').append(Millis(stats.timeToFirstByte.GetPercentile(99)))
+                    .append(' ').append(Math.round(stats.requestBytes.GetMean()))
+                    .append(' ').append(Math.round(stats.responseBytes.GetMean()))
+                    .append('\n');
+                for (PlayFabErrorCode errorCode : PlayFabErrorCode.values()) {
+                    long errors = stats.GetErrorCount(errorCode);
+                    if (errors > 0)
+                        output.append("  ").append(errorCode.name()).append(' ').append(errors).append('\n');
+                }
+            }
+            return output.toString();
+        }
+
+        private static String Millis(final long nanos) {
+            return String.format("%.3f", nanos / (double)TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+}
@@ -0,0 +1,575 @@
+package com.playfab;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import com.playfab.PlayFabErrors.PlayFabError;
+import com.playfab.PlayFabErrors.PlayFabErrorCode;
+import com.playfab.PlayFabErrors.PlayFabResult;
+import com.playfab.PlayFabServerModels.*;
+
+/**
+ * Exports every player in a segment, enriched with statistics, read-only data and inventory, to a columnar file.
+ *
+ * GetPlayersInSegment is read one page at a time.  The players of a page are enriched on a fixed pool of threads
+ * behind a PlayFabRateLimiter, then the page is written as one block: each column's values stored together, numbers
+ * as varints and strings through a per-block dictionary, so repeated values such as inventory loadouts are stored
+ * once per block.  Only one page is held in memory, whatever the size of the segment.
+ *
+ * After each block the file is synced and a checkpoint next to it records its length and the page's continuation
+ * token.  Exporting to the same file again resumes from there, after cutting off any partly written block; this only
+ * works while the continuation token is alive.  Use Reader to read the file back.
+ */
+public class PlayFabPlayerExport {
+    public static enum ColumnType { Text, Number }
+
+    public static final class Column {
+        public final String Name;
+        public final ColumnType Type;
+
+        Column(final String name, final ColumnType type) {
+            this.Name = name;
+            this.Type = type;
+        }
+    }
+
+    /**
+     * Outcome of an export; Pages and Players count the whole file, including what earlier runs wrote
+     */
+    public static final class Report {
+        public int Pages;
+        public long Players;
+        public long Bytes;
+        public boolean Resumed;
+        public long ElapsedMillis;
+    }
+
+    private static final int MAGIC = 0x50465850;
+    private static final int VERSION = 1;
+    private static final long TOKEN_SECONDS_TO_LIVE = 5400;
+    private static final long RETRY_BACKOFF_MILLIS = 500;
+
+    private final PlayFabServerAPI serverApi;
+    private final List<String> statisticNames;
+    private final List<String> readOnlyDataKeys;
+    private final List<Column> columns = new ArrayList<Column>();
+    private final int parallelism;
+    private final double callsPerSecond;
+    private final int maxAttempts;
+
+    /**
+     * @param statisticNames statistics exported as Number columns named "stat.<name>"
+     * @param readOnlyDataKeys read-only data exported as Text columns named "data.<key>"; when empty,
+     *        GetUserReadOnlyData is not called
+     * @param parallelism players enriched at once
+     * @param callsPerSecond sustained rate of enrichment calls; bursts of up to parallelism calls are allowed
+     * @param maxAttempts tries of each call before the export stops
+     */
+    public PlayFabPlayerExport(final PlayFabServerAPI serverApi, final List<String> statisticNames, final List<String> readOnlyDataKeys,
+            final int parallelism, final double callsPerSecond, final int maxAttempts) {
+        if (parallelism < 1) throw new IllegalArgumentException("parallelism must be at least 1");
+        if (callsPerSecond <= 0) throw new IllegalArgumentException("callsPerSecond must be positive");
+        if (maxAttempts < 1) throw new IllegalArgumentException("maxAttempts must be at least 1");
+        this.serverApi = serverApi;
+        this.statisticNames = new ArrayList<String>(statisticNames);
+        this.readOnlyDataKeys = new ArrayList<String>(readOnlyDataKeys);
+        this.parallelism = parallelism;
+        this.callsPerSecond = callsPerSecond;
+        this.maxAttempts = maxAttempts;
+
+        columns.add(new Column("PlayFabId", ColumnType.Text));
+        columns.add(new Column("Created", ColumnType.Number));
+        columns.add(new Column("LastLogin", ColumnType.Number));
+        for (String name : this.statisticNames)
+            columns.add(new Column("stat." + name, ColumnType.Number));
+        for (String key : this.readOnlyDataKeys)
+            columns.add(new Column("data." + key, ColumnType.Text));
+        columns.add(new Column("inventory.Count", ColumnType.Number));
+        // Sorted ItemIds joined by commas, so identical inventories share a dictionary entry
+        columns.add(new Column("inventory.ItemIds", ColumnType.Text));
+    }
+
+    public List<Column> GetColumns() {
+        return Collections.unmodifiableList(columns);
+    }
+
+    /**
+     * Exports segmentId to output, resuming an earlier export of the same segment and columns if one was interrupted
+     *
+     * @param pageSize players per GetPlayersInSegment page, and so per block
+     * @return the report, or the first error; whatever was checkpointed before it is kept for the next run
+     */
+    public PlayFabResult<Report> Export(final String segmentId, final File output, final int pageSize) {
+        long startNanos = System.nanoTime();
+        PlayFabResult<Report> result = new PlayFabResult<Report>();
+        Report report = new Report();
+        File checkpointFile = new File(output.getPath() + ".checkpoint");
+        ExecutorService pool = null;
+        try {
+            Properties checkpoint = Load(checkpointFile);
+            String token = null;
+            long length = 0;
+            if (checkpoint != null && segmentId.equals(checkpoint.getProperty("segmentId")) && Schema().equals(checkpoint.getProperty("schema"))) {
+                length = Long.parseLong(checkpoint.getProperty("length"));
+                report.Resumed = output.length() >= length;
+            }
+            if (report.Resumed) {
+                token = checkpoint.getProperty("token");
+                report.Pages = Integer.parseInt(checkpoint.getProperty("pages"));
+                report.Players = Long.parseLong(checkpoint.getProperty("players"));
+                if (Boolean.parseBoolean(checkpoint.getProperty("done"))) {
+                    report.Bytes = length;
+                    report.ElapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+                    result.Result = report;
+                    return result;
+                }
+            }
+
+            RandomAccessFile file = new RandomAccessFile(output, "rw");
+            try {
+                if (report.Resumed) {
+                    file.setLength(length);
+                } else {
+                    file.setLength(0);
+                    file.write(Header());
+                    checkpoint = new Properties();
+                    checkpoint.setProperty("segmentId", segmentId);
+                    checkpoint.setProperty("schema", Schema());
+                    Checkpoint(checkpoint, file, report, null, false, checkpointFile);
+                }
+                file.seek(file.length());
+
+                final PlayFabRateLimiter limiter = new PlayFabRateLimiter(callsPerSecond, parallelism);
+                pool = Executors.newFixedThreadPool(parallelism, DaemonThreads("PlayFabPlayerExport"));
+                do {
+                    final GetPlayersInSegmentRequest request = new GetPlayersInSegmentRequest();
+                    request.SegmentId = segmentId;
+                    request.MaxBatchSize = (long)pageSize;
+                    request.SecondsToLive = TOKEN_SECONDS_TO_LIVE;
+                    request.ContinuationToken = token;
+                    PlayFabResult<GetPlayersInSegmentResult> page = Call(null, new Callable<PlayFabResult<GetPlayersInSegmentResult>>() {
+                        public PlayFabResult<GetPlayersInSegmentResult> call() {
+                            return serverApi.GetPlayersInSegment(request);
+                        }
+                    });
+                    if (page == null || page.Error != null || page.Result == null) {
+                        result.Error = Failure(page, "GetPlayersInSegment failed");
+                        return result;
+                    }
+                    List<PlayerProfile> profiles = page.Result.PlayerProfiles != null ? page.Result.PlayerProfiles : Collections.<PlayerProfile>emptyList();
+
+                    List<Future<Object>> rows = new ArrayList<Future<Object>>(profiles.size());
+                    for (final PlayerProfile profile : profiles) {
+                        rows.add(pool.submit(new Callable<Object>() {
+                            public Object call() throws Exception {
+                                return Enrich(limiter, profile);
+                            }
+                        }));
+                    }
+                    List<Object[]> block = new ArrayList<Object[]>(rows.size());
+                    for (Future<Object> row : rows) {
+                        Object enriched = row.get();
+                        if (enriched instanceof PlayFabError) {
+                            result.Error = (PlayFabError)enriched;
+                            return result;
+                        }
+                        block.add((Object[])enriched);
+                    }
+
+                    if (!block.isEmpty()) {
+                        file.write(Block(block));
+                        report.Pages++;
+                        report.Players += block.size();
+                    }
+                    token = page.Result.ContinuationToken;
+                    Checkpoint(checkpoint, file, report, token, token == null, checkpointFile);
+                } while (token != null);
+                report.Bytes = file.length();
+            } finally {
+                file.close();
+            }
+        } catch (Exception e) {
+            result.Error = Failure(null, "Player export failed: " + e.getMessage());
+            return result;
+        } finally {
+            if (pool != null)
+                pool.shutdownNow();
+        }
+        report.ElapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        result.Result = report;
+        return result;
+    }
+
+    /**
+     * Builds the row of one player, in column order, or returns the error of the call that failed
+     */
+    private Object Enrich(final PlayFabRateLimiter limiter, final PlayerProfile profile) throws Exception {
+        final String playFabId = profile.PlayerId;
+        Object[] row = new Object[columns.size()];
+        int column = 0;
+        row[column++] = playFabId;
+        row[column++] = profile.Created != null ? profile.Created.getTime() : null;
+        row[column++] = profile.LastLogin != null ? profile.LastLogin.getTime() : null;
+
+        // Segment profiles usually carry statistics already, which saves a GetPlayerStatistics per player
+        Map<String, Integer> statistics = profile.Statistics;
+        if (statistics == null && !statisticNames.isEmpty()) {
+            final GetPlayerStatisticsRequest request = new GetPlayerStatisticsRequest();
+            request.PlayFabId = playFabId;
+            request.StatisticNames = new ArrayList<String>(statisticNames);
+            PlayFabResult<GetPlayerStatisticsResult> fetched = Call(limiter, new Callable<PlayFabResult<GetPlayerStatisticsResult>>() {
+                public PlayFabResult<GetPlayerStatisticsResult> call() {
+                    return serverApi.GetPlayerStatistics(request);
+                }
+            });
+            if (fetched == null || fetched.Error != null)
+                return Failure(fetched, "GetPlayerStatistics failed for " + playFabId);
+            statistics = new HashMap<String, Integer>();
+            if (fetched.Result.Statistics != null)
+                for (StatisticValue value : fetched.Result.Statistics)
+                    statistics.put(value.StatisticName, value.Value);
+        }
+        for (String name : statisticNames) {
+            Integer value = statistics != null ? statistics.get(name) : null;
+            row[column++] = value != null ? Long.valueOf(value) : null;
+        }
+
+        if (!readOnlyDataKeys.isEmpty()) {
+            final GetUserDataRequest request = new GetUserDataRequest();
+            request.PlayFabId = playFabId;
+            request.Keys = new ArrayList<String>(readOnlyDataKeys);
+            PlayFabResult<GetUserDataResult> data = Call(limiter, new Callable<PlayFabResult<GetUserDataResult>>() {
+                public PlayFabResult<GetUserDataResult> call() {
+                    return serverApi.GetUserReadOnlyData(request);
+                }
+            });
+            if (data == null || data.Error != null)
+                return Failure(data, "GetUserReadOnlyData failed for " + playFabId);
+            for (String key : readOnlyDataKeys) {
+                UserDataRecord record = data.Result.Data != null ? data.Result.Data.get(key) : null;
+                row[column++] = record != null ? record.Value : null;
+            }
+        }
+
+        final GetUserInventoryRequest request = new GetUserInventoryRequest();
+        request.PlayFabId = playFabId;
+        PlayFabResult<GetUserInventoryResult> inventory = Call(limiter, new Callable<PlayFabResult<GetUserInventoryResult>>() {
+            public PlayFabResult<GetUserInventoryResult> call() {
+                return serverApi.GetUserInventory(request);
+            }
+        });
+        if (inventory == null || inventory.Error != null)
+            return Failure(inventory, "GetUserInventory failed for " + playFabId);
+        List<String> itemIds = new ArrayList<String>();
+        if (inventory.Result.Inventory != null)
+            for (ItemInstance item : inventory.Result.Inventory)
+                itemIds.add(item.ItemId);
+        Collections.sort(itemIds);
+        StringBuilder joined = new StringBuilder();
+        for (String itemId : itemIds)
+            joined.append(joined.length() > 0 ? "," : "").append(itemId);
+        row[column++] = Long.valueOf(itemIds.size());
+        row[column++] = joined.toString();
+        return row;
+    }
+
+    /**
+     * Makes a call, trying again after a growing back-off until it succeeds or maxAttempts is reached
+     */
+    private <T> PlayFabResult<T> Call(final PlayFabRateLimiter limiter, final Callable<PlayFabResult<T>> call) throws Exception {
+        PlayFabResult<T> result = null;
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            if (attempt > 1)
+                Thread.sleep(RETRY_BACKOFF_MILLIS * (attempt - 1));
+            if (limiter != null)
+                limiter.Acquire();
+            result = call.call();
+            if (result != null && result.Error == null && result.Result != null)
+                break;
+        }
+        return result;
+    }
+
+    private void Checkpoint(final Properties checkpoint, final RandomAccessFile file, final Report report, final String token, final boolean done, final File checkpointFile) throws IOException {
+        // The blocks must be on disk before the checkpoint that counts them
+        file.getFD().sync();
+        checkpoint.setProperty("length", Long.toString(file.length()));
+        checkpoint.setProperty("pages", Integer.toString(report.Pages));
+        checkpoint.setProperty("players", Long.toString(report.Players));
+        if (token != null)
+            checkpoint.setProperty("token", token);
+        else
+            checkpoint.remove("token");
+        checkpoint.setProperty("done", Boolean.toString(done));
+        Save(checkpoint, checkpointFile);
+    }
+
+    private String Schema() {
+        StringBuilder schema = new StringBuilder();
+        for (Column column : columns)
+            schema.append(column.Type).append(':').append(column.Name).append('\n');
+        return schema.toString();
+    }
+
+    private byte[] Header() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        WriteVarLong(out, columns.size());
+        for (Column column : columns) {
+            out.writeByte(column.Type.ordinal());
+            WriteString(out, column.Name);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Encodes rows as a length-prefixed block of columns.  Each value is a varint that is 0 for a missing value;
+     * numbers are otherwise zigzag encoded plus one, strings an index into the column's dictionary plus one.
+     */
+    private byte[] Block(final List<Object[]> rows) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0);
+        WriteVarLong(out, rows.size());
+        for (int column = 0; column < columns.size(); column++) {
+            if (columns.get(column).Type == ColumnType.Number) {
+                for (Object[] row : rows) {
+                    Long value = (Long)row[column];
+                    WriteVarLong(out, value == null ? 0 : ((value << 1) ^ (value >> 63)) + 1);
+                }
+                continue;
+            }
+            Map<String, Integer> dictionary = new LinkedHashMap<String, Integer>();
+            long[] ids = new long[rows.size()];
+            for (int i = 0; i < rows.size(); i++) {
+                String value = (String)rows.get(i)[column];
+                if (value == null)
+                    continue;
+                Integer id = dictionary.get(value);
+                if (id == null) {
+                    id = dictionary.size();
+                    dictionary.put(value, id);
+                }
+                ids[i] = id + 1;
+            }
+            WriteVarLong(out, dictionary.size());
+            for (String value : dictionary.keySet())
+                WriteString(out, value);
+            for (long id : ids)
+                WriteVarLong(out, id);
+        }
+        out.flush();
+        byte[] block = bytes.toByteArray();
+        int length = block.length - 4;
+        block[0] = (byte)(length >>> 24);
+        block[1] = (byte)(length >>> 16);
+        block[2] = (byte)(length >>> 8);
+        block[3] = (byte)length;
+        return block;
+    }
+
+    /**
+     * Reads an export file back one block at a time
+     */
+    public static final class Reader implements Closeable {
+        private final DataInputStream input;
+        private final List<Column> columns = new ArrayList<Column>();
+        private final long[][] values;
+        private final String[][] dictionaries;
+        private int rowCount;
+        private int row = -1;
+
+        public Reader(final File file) throws IOException {
+            input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                if (input.readInt() != MAGIC || input.readInt() != VERSION)
+                    throw new IOException("Not a player export file: " + file);
+                int count = (int)ReadVarLong(input);
+                for (int i = 0; i < count; i++) {
+                    ColumnType type = ColumnType.values()[input.readUnsignedByte()];
+                    columns.add(new Column(ReadString(input), type));
+                }
+            } catch (IOException e) {
+                input.close();
+                throw e;
+            }
+            values = new long[columns.size()][];
+            dictionaries = new String[columns.size()][];
+        }
+
+        public List<Column> GetColumns() {
+            return Collections.unmodifiableList(columns);
+        }
+
+        /**
+         * Index of the named column, or -1
+         */
+        public int GetColumnIndex(final String name) {
+            for (int i = 0; i < columns.size(); i++)
+                if (columns.get(i).Name.equals(name))
+                    return i;
+            return -1;
+        }
+
+        /**
+         * Moves to the next row; false at the end of the file
+         */
+        public boolean Next() throws IOException {
+            while (++row >= rowCount) {
+                if (!ReadBlock())
+                    return false;
+            }
+            return true;
+        }
+
+        public boolean IsNull(final int column) {
+            return values[column][row] == 0;
+        }
+
+        public String GetText(final int column) {
+            long id = values[column][row];
+            return id == 0 ? null : dictionaries[column][(int)id - 1];
+        }
+
+        public long GetNumber(final int column, final long fallback) {
+            long encoded = values[column][row];
+            if (encoded == 0)
+                return fallback;
+            encoded--;
+            return (encoded >>> 1) ^ -(encoded & 1);
+        }
+
+        private boolean ReadBlock() throws IOException {
+            int length;
+            try {
+                length = input.readInt();
+            } catch (EOFException e) {
+                return false;
+            }
+            if (length < 0)
+                throw new IOException("Corrupt block length " + length);
+            rowCount = (int)ReadVarLong(input);
+            row = -1;
+            for (int column = 0; column < columns.size(); column++) {
+                if (columns.get(column).Type == ColumnType.Text) {
+                    String[] dictionary = new String[(int)ReadVarLong(input)];
+                    for (int i = 0; i < dictionary.length; i++)
+                        dictionary[i] = ReadString(input);
+                    dictionaries[column] = dictionary;
+                }
+                long[] block = new long[rowCount];
+                for (int i = 0; i < rowCount; i++)
+                    block[i] = ReadVarLong(input);
+                values[column] = block;
+            }
+            return true;
+        }
+
+        public void close() throws IOException {
+            input.close();
+        }
+    }
+
+    private static void WriteVarLong(final DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int)(value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int)value);
+    }
+
+    private static long ReadVarLong(final DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long)(b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private static void WriteString(final DataOutput out, final String value) throws IOException {
+        byte[] bytes = value.getBytes("UTF-8");
+        WriteVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String ReadString(final DataInput in) throws IOException {
+        byte[] bytes = new byte[(int)ReadVarLong(in)];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    private static Properties Load(final File file) throws IOException {
+        if (!file.exists())
+            return null;
+        Properties properties = new Properties();
+        FileInputStream input = new FileInputStream(file);
+        try {
+            properties.load(input);
+        } finally {
+            input.close();
+        }
+        return properties;
+    }
+
+    private static void Save(final Properties properties, final File file) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        FileOutputStream output = new FileOutputStream(temp);
+        try {
+            properties.store(output, null);
+        } finally {
+            output.close();
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static PlayFabError Failure(final PlayFabResult<?> result, final String message) {
+        if (result != null && result.Error != null)
+            return result.Error;
+        PlayFabError error = new PlayFabError();
+        error.pfErrorCode = PlayFabErrorCode.Unknown;
+        error.errorMessage = message;
+        return error;
+    }
+
+    private static ThreadFactory DaemonThreads(final String name) {
+        return new ThreadFactory() {
+            public Thread newThread(final Runnable runnable) {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+}
@@ -0,0 +1,268 @@
+package com.playfab;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.playfab.PlayFabErrors.PlayFabError;
+import com.playfab.PlayFabErrors.PlayFabErrorCode;
+import com.playfab.PlayFabErrors.PlayFabResult;
+import com.playfab.PlayFabServerModels.*;
+
+/**
+ * Evaluates random result tables locally, instead of calling PlayFabServerAPI.EvaluateRandomResultTable per roll.
+ *
+ * Refresh fetches the table definitions with GetRandomResultTables and compiles each table into an alias-method
+ * sampler, so a roll is one random int, one random double and two array reads per table level.  Nested TableId nodes
+ * are resolved at compile time; a table that references itself, directly or not, is rejected.  When only some tables
+ * are loaded, Refresh also fetches the tables they reference, however deeply nested.  Compiled tables are immutable and
+ * swapped in atomically together with their catalog version, so rolls never block and never see a partial refresh.
+ */
+public class PlayFabRandomResultTables {
+    private static class CompiledTable {
+        final String tableId;
+        final double[] probability;
+        final int[] alias;
+        // Per node: the granted ItemId, or null when the node points at another table
+        final String[] itemIds;
+        final CompiledTable[] tables;
+        final String[] tableRefs;
+
+        CompiledTable(final String tableId, final List<ResultTableNode> nodes) {
+            this.tableId = tableId;
+            int count = nodes.size();
+            probability = new double[count];
+            alias = new int[count];
+            itemIds = new String[count];
+            tables = new CompiledTable[count];
+            tableRefs = new String[count];
+
+            double total = 0;
+            for (int i = 0; i < count; i++) {
+                ResultTableNode node = nodes.get(i);
+                total += node.Weight;
+                if (node.ResultItemType == ResultTableNodeType.TableId)
+                    tableRefs[i] = node.ResultItem;
+                else
+                    itemIds[i] = node.ResultItem;
+            }
+
+            // Vose's alias method
+            double[] scaled = new double[count];
+            ArrayDeque<Integer> small = new ArrayDeque<Integer>();
+            ArrayDeque<Integer> large = new ArrayDeque<Integer>();
+            for (int i = 0; i < count; i++) {
+                scaled[i] = nodes.get(i).Weight * count / total;
+                if (scaled[i] < 1.0)
+                    small.add(i);
+                else
+                    large.add(i);
+            }
+            while (!small.isEmpty() && !large.isEmpty()) {
+                int less = small.poll();
+                int more = large.poll();
+                probability[less] = scaled[less];
+                alias[less] = more;
+                scaled[more] = (scaled[more] + scaled[less]) - 1.0;
+                if (scaled[more] < 1.0)
+                    small.add(more);
+                else
+                    large.add(more);
+            }
+            while (!large.isEmpty())
+                probability[large.poll()] = 1.0;
+            while (!small.isEmpty())
+                probability[small.poll()] = 1.0; // only reachable through floating point rounding
+        }
+
+        String Roll(final Random random) {
+            CompiledTable table = this;
+            while (true) {
+                int column = random.nextInt(table.probability.length);
+                int node = random.nextDouble() < table.probability[column] ? column : table.alias[column];
+                if (table.itemIds[node] != null)
+                    return table.itemIds[node];
+                table = table.tables[node];
+            }
+        }
+    }
+
+    // The compiled tables of one catalog version, published as a whole
+    private static class Loaded {
+        final String catalogVersion;
+        final Map<String, CompiledTable> tables;
+
+        Loaded(final String catalogVersion, final Map<String, CompiledTable> tables) {
+            this.catalogVersion = catalogVersion;
+            this.tables = tables;
+        }
+    }
+
+    private final PlayFabServerAPI serverApi;
+    private final ArrayList<String> tableIds;
+    private volatile Loaded loaded = new Loaded(null, new HashMap<String, CompiledTable>());
+
+    /**
+     * @param tableIds the tables to load, or null to load every table in the catalog version
+     */
+    public PlayFabRandomResultTables(final PlayFabServerAPI serverApi, final List<String> tableIds) {
+        this.serverApi = serverApi;
+        this.tableIds = tableIds == null ? null : new ArrayList<String>(tableIds);
+    }
+
+    /**
+     * Fetches and compiles the tables of a catalog version (null for the primary catalog).  On failure the previously
+     * compiled tables stay in use and the error is returned; on success returns null.
+     */
+    public PlayFabError Refresh(final String catalogVersion) {
+        Map<String, RandomResultTableListing> listings = new HashMap<String, RandomResultTableListing>();
+        ArrayList<String> wanted = tableIds;
+        do {
+            GetRandomResultTablesRequest request = new GetRandomResultTablesRequest();
+            request.CatalogVersion = catalogVersion;
+            request.TableIDs = wanted;
+            PlayFabResult<GetRandomResultTablesResult> result = serverApi.GetRandomResultTables(request);
+            if (result == null || result.Error != null) {
+                if (result != null)
+                    return result.Error;
+                PlayFabError error = new PlayFabError();
+                error.pfErrorCode = PlayFabErrorCode.Unknown;
+                error.errorMessage = "GetRandomResultTables failed";
+                return error;
+            }
+            int known = listings.size();
+            if (result.Result.Tables != null)
+                listings.putAll(result.Result.Tables);
+            if (listings.size() == known)
+                break; // anything still missing is reported by Update
+            wanted = tableIds == null ? null : MissingReferences(listings);
+        } while (wanted != null && !wanted.isEmpty());
+
+        try {
+            Update(catalogVersion, listings);
+        } catch (IllegalArgumentException e) {
+            PlayFabError error = new PlayFabError();
+            error.pfErrorCode = PlayFabErrorCode.InvalidDropTable;
+            error.errorMessage = e.getMessage();
+            return error;
+        }
+        return null;
+    }
+
+    /**
+     * Refreshes only if the given catalog version differs from the loaded one, ex: after a catalog publish
+     */
+    public PlayFabError RefreshIfChanged(final String catalogVersion) {
+        String loaded = this.loaded.catalogVersion;
+        if (loaded != null && loaded.equals(catalogVersion))
+            return null;
+        return Refresh(catalogVersion);
+    }
+
+    /**
+     * Compiles already fetched table definitions and swaps them in
+     */
+    public void Update(final String catalogVersion, final Map<String, RandomResultTableListing> listings) {
+        Map<String, CompiledTable> compiled = new HashMap<String, CompiledTable>();
+        if (listings != null) {
+            for (Map.Entry<String, RandomResultTableListing> entry : listings.entrySet()) {
+                List<ResultTableNode> nodes = new ArrayList<ResultTableNode>();
+                if (entry.getValue().Nodes != null)
+                    for (ResultTableNode node : entry.getValue().Nodes)
+                        if (node.Weight != null && node.Weight > 0 && node.ResultItem != null)
+                            nodes.add(node);
+                if (nodes.isEmpty())
+                    throw new IllegalArgumentException("Random result table " + entry.getKey() + " has no weighted nodes");
+                compiled.put(entry.getKey(), new CompiledTable(entry.getKey(), nodes));
+            }
+        }
+
+        for (CompiledTable table : compiled.values()) {
+            for (int i = 0; i < table.tableRefs.length; i++) {
+                if (table.tableRefs[i] == null)
+                    continue;
+                table.tables[i] = compiled.get(table.tableRefs[i]);
+                if (table.tables[i] == null)
+                    throw new IllegalArgumentException("Random result table " + table.tableId + " references unknown table " + table.tableRefs[i]);
+            }
+        }
+        // false while a table is on the DFS path, true once it is known to be acyclic
+        Map<CompiledTable, Boolean> colours = new IdentityHashMap<CompiledTable, Boolean>();
+        for (CompiledTable table : compiled.values())
+            CheckAcyclic(table, colours);
+
+        this.loaded = new Loaded(catalogVersion, compiled);
+    }
+
+    /**
+     * Rolls a table and returns the granted ItemId, or null if the table is not loaded
+     */
+    public String Evaluate(final String tableId) {
+        return Evaluate(tableId, ThreadLocalRandom.current());
+    }
+
+    /**
+     * Rolls a table with the given random source, ex: a seeded Random for replays and tests
+     */
+    public String Evaluate(final String tableId, final Random random) {
+        CompiledTable table = loaded.tables.get(tableId);
+        return table == null ? null : table.Roll(random);
+    }
+
+    /**
+     * Local equivalent of PlayFabServerAPI.EvaluateRandomResultTable
+     */
+    public PlayFabResult<EvaluateRandomResultTableResult> EvaluateRandomResultTable(final EvaluateRandomResultTableRequest request) {
+        PlayFabResult<EvaluateRandomResultTableResult> output = new PlayFabResult<EvaluateRandomResultTableResult>();
+        Loaded current = loaded;
+        String itemId = null;
+        if (request.CatalogVersion == null || request.CatalogVersion.equals(current.catalogVersion)) {
+            CompiledTable table = current.tables.get(request.TableId);
+            if (table != null)
+                itemId = table.Roll(ThreadLocalRandom.current());
+        }
+        if (itemId == null) {
+            output.Error = new PlayFabError();
+            output.Error.pfErrorCode = PlayFabErrorCode.InvalidDropTable;
+            output.Error.errorMessage = "Random result table " + request.TableId + " is not loaded for catalog version " + request.CatalogVersion;
+            return output;
+        }
+        output.Result = new EvaluateRandomResultTableResult();
+        output.Result.ResultItemId = itemId;
+        return output;
+    }
+
+    public String GetCatalogVersion() {
+        return loaded.catalogVersion;
+    }
+
+    private static ArrayList<String> MissingReferences(final Map<String, RandomResultTableListing> listings) {
+        ArrayList<String> missing = new ArrayList<String>();
+        for (RandomResultTableListing listing : listings.values())
+            if (listing.Nodes != null)
+                for (ResultTableNode node : listing.Nodes)
+                    if (node.ResultItemType == ResultTableNodeType.TableId && node.ResultItem != null
+                            && !listings.containsKey(node.ResultItem) && !missing.contains(node.ResultItem))
+                        missing.add(node.ResultItem);
+        return missing;
+    }
+
+    private static void CheckAcyclic(final CompiledTable table, final Map<CompiledTable, Boolean> colours) {
+        Boolean done = colours.get(table);
+        if (done != null) {
+            if (done)
+                return;
+            throw new IllegalArgumentException("Random result table " + table.tableId + " references itself");
+        }
+        colours.put(table, Boolean.FALSE);
+        for (CompiledTable child : table.tables)
+            if (child != null)
+                CheckAcyclic(child, colours);
+        colours.put(table, Boolean.TRUE);
+    }
+}
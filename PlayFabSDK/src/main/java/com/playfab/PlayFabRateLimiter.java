@@ -0,0 +1,37 @@
+package com.playfab;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket shared by the threads of a bulk job, to keep its calls under a title's request rate limit.
+ *
+ * The bucket refills at callsPerSecond up to burst tokens.  Acquire takes a token, sleeping until one is due; tokens
+ * may go negative, so concurrent callers queue up in order instead of all waking at once.
+ */
+public class PlayFabRateLimiter {
+    private final double perNano;
+    private final double capacity;
+    private double tokens;
+    private long lastNanos = System.nanoTime();
+
+    public PlayFabRateLimiter(final double callsPerSecond, final int burst) {
+        if (callsPerSecond <= 0) throw new IllegalArgumentException("callsPerSecond must be positive");
+        if (burst < 1) throw new IllegalArgumentException("burst must be at least 1");
+        this.perNano = callsPerSecond / 1e9;
+        this.capacity = burst;
+        this.tokens = burst;
+    }
+
+    public void Acquire() throws InterruptedException {
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - lastNanos) * perNano);
+            lastNanos = now;
+            tokens -= 1;
+            waitNanos = tokens >= 0 ? 0 : (long)(-tokens / perNano);
+        }
+        if (waitNanos > 0)
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+    }
+}
@@ -0,0 +1,437 @@
+package com.playfab;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipInputStream;
+
+import com.playfab.PlayFabAdminModels.*;
+import com.playfab.PlayFabErrors.PlayFabError;
+import com.playfab.PlayFabErrors.PlayFabErrorCode;
+import com.playfab.PlayFabErrors.PlayFabResult;
+
+/**
+ * Reads a data report from its GetDataReport DownloadUrl row by row, without holding the report in memory.
+ *
+ * The download is decompressed on the fly when it is gzip or zip (the first entry is read), detected from its first
+ * bytes, and parsed as CSV with a header row.  Every row is parsed into the same Row buffer, which only grows to fit
+ * the longest row, so memory stays flat however long the report is; values are only turned into Strings when asked
+ * for, and GetLong and GetDouble parse straight from the buffer.  A Row is only valid until the next call to next().
+ *
+ * A reader is single-threaded.  ForEachParallel reads independent reports, such as the days of a month, on a pool of
+ * threads with one reader each.
+ */
+public class PlayFabReportReader implements Iterator<PlayFabReportReader.Row>, Closeable {
+    /**
+     * One parsed row; reused for every row of a reader
+     */
+    public static final class Row {
+        private char[] chars = new char[256];
+        private int length;
+        private int[] starts = new int[16];
+        private int[] ends = new int[16];
+        private int columns;
+        private long number;
+        private final Map<String, Integer> headerIndex;
+
+        Row(final Map<String, Integer> headerIndex) {
+            this.headerIndex = headerIndex;
+        }
+
+        public int GetColumnCount() {
+            return columns;
+        }
+
+        /**
+         * Data row number, starting at 1 after the header
+         */
+        public long GetRowNumber() {
+            return number;
+        }
+
+        public String Get(final int column) {
+            if (column < 0 || column >= columns)
+                return null;
+            return new String(chars, starts[column], ends[column] - starts[column]);
+        }
+
+        public String Get(final String name) {
+            return Get(Column(name));
+        }
+
+        public boolean IsEmpty(final String name) {
+            int column = Column(name);
+            return column < 0 || column >= columns || starts[column] == ends[column];
+        }
+
+        /**
+         * The column parsed as a whole number, or fallback when it is empty, not a number or out of range for a long
+         */
+        public long GetLong(final String name, final long fallback) {
+            int column = Column(name);
+            if (column < 0 || column >= columns || starts[column] == ends[column])
+                return fallback;
+            int i = starts[column];
+            int end = ends[column];
+            boolean negative = chars[i] == '-';
+            if (negative && ++i == end)
+                return fallback;
+            // Accumulated negatively, as Long.parseLong does, so Long.MIN_VALUE fits
+            long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+            long value = 0;
+            for (; i < end; i++) {
+                char c = chars[i];
+                if (c < '0' || c > '9')
+                    return fallback;
+                int digit = c - '0';
+                if (value < limit / 10 || value * 10 < limit + digit)
+                    return fallback;
+                value = value * 10 - digit;
+            }
+            return negative ? value : -value;
+        }
+
+        /**
+         * The column parsed as a decimal number, or fallback when it is empty or not a number
+         */
+        public double GetDouble(final String name, final double fallback) {
+            int column = Column(name);
+            if (column < 0 || column >= columns || starts[column] == ends[column])
+                return fallback;
+            try {
+                return Double.parseDouble(Get(column));
+            } catch (NumberFormatException e) {
+                return fallback;
+            }
+        }
+
+        private int Column(final String name) {
+            Integer column = headerIndex.get(name);
+            return column == null ? -1 : column;
+        }
+
+        void Reset() {
+            length = 0;
+            columns = 0;
+        }
+
+        void Append(final char c) {
+            if (length == chars.length)
+                chars = Arrays.copyOf(chars, chars.length * 2);
+            chars[length++] = c;
+        }
+
+        void StartField() {
+            if (columns == starts.length) {
+                starts = Arrays.copyOf(starts, starts.length * 2);
+                ends = Arrays.copyOf(ends, ends.length * 2);
+            }
+            starts[columns] = length;
+        }
+
+        void EndField() {
+            ends[columns++] = length;
+        }
+    }
+
+    /**
+     * Turns a row into a typed record; the row must not be kept
+     */
+    public static interface RowMapper<T> {
+        public T Map(Row row);
+    }
+
+    /**
+     * Handles rows from ForEachParallel; called concurrently for different reports
+     */
+    public static interface RowVisitor {
+        public void Visit(GetDataReportRequest report, Row row) throws Exception;
+    }
+
+    private static final int READ_BUFFER_CHARS = 64 * 1024;
+
+    private final Reader reader;
+    private final char[] input = new char[READ_BUFFER_CHARS];
+    private int inputPosition;
+    private int inputLength;
+    private final String[] header;
+    private final Row row;
+    private boolean fetched;
+    private boolean hasRow;
+    private long rows;
+
+    /**
+     * Reads a report from a stream, decompressing it if it is gzip or zip
+     */
+    public PlayFabReportReader(final InputStream stream) throws IOException {
+        this.reader = new InputStreamReader(Decompress(stream), "UTF-8");
+        Map<String, Integer> headerIndex = new HashMap<String, Integer>();
+        Row headerRow = new Row(headerIndex);
+        if (ReadRow(headerRow)) {
+            header = new String[headerRow.GetColumnCount()];
+            for (int i = 0; i < header.length; i++) {
+                header[i] = headerRow.Get(i);
+                if (i == 0 && header[i].startsWith("\uFEFF"))
+                    header[i] = header[i].substring(1);
+                headerIndex.put(header[i], i);
+            }
+        } else {
+            header = new String[0];
+        }
+        row = new Row(headerIndex);
+    }
+
+    /**
+     * Asks GetDataReport for the report and opens its download
+     */
+    public static PlayFabResult<PlayFabReportReader> Open(final PlayFabAdminAPI adminApi, final GetDataReportRequest request) {
+        PlayFabResult<PlayFabReportReader> output = new PlayFabResult<PlayFabReportReader>();
+        PlayFabResult<GetDataReportResult> report = adminApi.GetDataReport(request);
+        if (report == null || report.Error != null || report.Result == null || report.Result.DownloadUrl == null) {
+            output.Error = Failure(report, "GetDataReport failed", 0);
+            return output;
+        }
+        try {
+            HttpURLConnection con = (HttpURLConnection)new URL(report.Result.DownloadUrl).openConnection();
+            int httpCode = con.getResponseCode();
+            if (httpCode != 200) {
+                con.disconnect();
+                output.Error = Failure(null, "Report download failed with HTTP " + httpCode, httpCode);
+                return output;
+            }
+            InputStream stream = con.getInputStream();
+            if ("gzip".equalsIgnoreCase(con.getContentEncoding()))
+                stream = new GZIPInputStream(stream);
+            output.Result = new PlayFabReportReader(stream);
+        } catch (IOException e) {
+            output.Error = Failure(null, "Report download failed: " + e.getMessage(), 503);
+        }
+        return output;
+    }
+
+    public String[] GetHeader() {
+        return header.clone();
+    }
+
+    /**
+     * Data rows read so far
+     */
+    public long GetRowCount() {
+        return rows;
+    }
+
+    public boolean hasNext() {
+        if (!fetched) {
+            try {
+                hasRow = ReadRow(row);
+            } catch (IOException e) {
+                throw new IllegalStateException("Reading the report failed", e);
+            }
+            fetched = true;
+            if (hasRow)
+                row.number = ++rows;
+        }
+        return hasRow;
+    }
+
+    /**
+     * The next row; its contents are replaced by the following call
+     */
+    public Row next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        fetched = false;
+        return row;
+    }
+
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Maps the remaining rows lazily, one per call to next()
+     */
+    public <T> Iterator<T> Map(final RowMapper<T> mapper) {
+        return new Iterator<T>() {
+            public boolean hasNext() {
+                return PlayFabReportReader.this.hasNext();
+            }
+
+            public T next() {
+                return mapper.Map(PlayFabReportReader.this.next());
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * Reads the reports on up to parallelism threads at once, passing every row to visitor
+     *
+     * @return the number of rows read, or the first error; reports after a failed one are still read
+     */
+    public static PlayFabResult<Long> ForEachParallel(final PlayFabAdminAPI adminApi, final List<GetDataReportRequest> reports, final int parallelism, final RowVisitor visitor) {
+        if (parallelism < 1) throw new IllegalArgumentException("parallelism must be at least 1");
+        PlayFabResult<Long> output = new PlayFabResult<Long>();
+        output.Result = 0L;
+        if (reports.isEmpty())
+            return output;
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(parallelism, reports.size()), DaemonThreads("PlayFabReportReader"));
+        List<Future<PlayFabResult<Long>>> reads = new ArrayList<Future<PlayFabResult<Long>>>();
+        try {
+            for (final GetDataReportRequest report : reports) {
+                reads.add(pool.submit(new Callable<PlayFabResult<Long>>() {
+                    public PlayFabResult<Long> call() throws Exception {
+                        PlayFabResult<PlayFabReportReader> opened = Open(adminApi, report);
+                        PlayFabResult<Long> result = new PlayFabResult<Long>();
+                        if (opened.Error != null) {
+                            result.Error = opened.Error;
+                            return result;
+                        }
+                        PlayFabReportReader reader = opened.Result;
+                        try {
+                            while (reader.hasNext())
+                                visitor.Visit(report, reader.next());
+                        } finally {
+                            reader.close();
+                        }
+                        result.Result = reader.GetRowCount();
+                        return result;
+                    }
+                }));
+            }
+            for (Future<PlayFabResult<Long>> read : reads) {
+                PlayFabResult<Long> result;
+                try {
+                    result = read.get();
+                } catch (Exception e) {
+                    result = new PlayFabResult<Long>();
+                    result.Error = Failure(null, "Reading a report failed: " + e.getMessage(), 0);
+                }
+                if (result.Error != null && output.Error == null)
+                    output.Error = result.Error;
+                if (result.Result != null)
+                    output.Result += result.Result;
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return output;
+    }
+
+    /**
+     * Parses one CSV record into target; returns false at the end of the input
+     */
+    private boolean ReadRow(final Row target) throws IOException {
+        target.Reset();
+        int c = Read();
+        if (c < 0)
+            return false;
+        target.StartField();
+        boolean quoted = false;
+        while (true) {
+            if (quoted) {
+                if (c < 0)
+                    break;
+                if (c == '"') {
+                    c = Read();
+                    if (c != '"') {
+                        quoted = false;
+                        continue;
+                    }
+                }
+                target.Append((char)c);
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                target.EndField();
+                target.StartField();
+            } else if (c == '\n' || c < 0) {
+                break;
+            } else if (c == '\r') {
+                c = Read();
+                if (c != '\n' && c >= 0)
+                    inputPosition--;
+                break;
+            } else {
+                target.Append((char)c);
+            }
+            c = Read();
+        }
+        target.EndField();
+        return true;
+    }
+
+    private int Read() throws IOException {
+        if (inputPosition == inputLength) {
+            inputLength = reader.read(input, 0, input.length);
+            inputPosition = 0;
+            if (inputLength <= 0) {
+                inputLength = 0;
+                return -1;
+            }
+        }
+        return input[inputPosition++];
+    }
+
+    private static InputStream Decompress(final InputStream stream) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(stream, READ_BUFFER_CHARS);
+        buffered.mark(2);
+        int first = buffered.read();
+        int second = buffered.read();
+        buffered.reset();
+        if (first == 0x1f && second == 0x8b)
+            return new BufferedInputStream(new GZIPInputStream(buffered, READ_BUFFER_CHARS), READ_BUFFER_CHARS);
+        if (first == 'P' && second == 'K') {
+            ZipInputStream zip = new ZipInputStream(buffered);
+            if (zip.getNextEntry() == null)
+                throw new IOException("Report archive is empty");
+            return new BufferedInputStream(zip, READ_BUFFER_CHARS);
+        }
+        return buffered;
+    }
+
+    private static PlayFabError Failure(final PlayFabResult<?> result, final String message, final int httpCode) {
+        if (result != null && result.Error != null)
+            return result.Error;
+        PlayFabError error = new PlayFabError();
+        error.httpCode = httpCode;
+        error.pfErrorCode = PlayFabErrorCode.Unknown;
+        error.errorMessage = message;
+        return error;
+    }
+
+    private static ThreadFactory DaemonThreads(final String name) {
+        return new ThreadFactory() {
+            public Thread newThread(final Runnable runnable) {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+}
@@ -0,0 +1,274 @@
+package com.playfab;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.playfab.PlayFabErrors.PlayFabErrorCode;
+import com.playfab.PlayFabErrors.PlayFabResult;
+import com.playfab.PlayFabServerModels.*;
+
+/**
+ * Caches PlayFabServerAPI.AuthenticateSessionTicket results, for dedicated servers that validate every connection.
+ *
+ * Valid tickets are kept for ttlMillis, and tickets the server rejected (invalid, banned or unknown account) for
+ * negativeTtlMillis.  Transient failures are never cached.  Concurrent validations of the same ticket share a single
+ * server call.  Banning users through BanUsers on this cache, or calling Revoke, drops their cached tickets at once.
+ * Bans made any other way, such as through PlayFabAdminAPI or Game Manager, are not seen: those tickets stay valid here
+ * until their ttlMillis runs out, unless Revoke is called for the player.
+ *
+ * Cached PlayFabResult objects are shared between callers and must not be modified.
+ */
+public class PlayFabSessionTicketCache {
+    private static class Entry {
+        final String sessionTicket;
+        final PlayFabResult<AuthenticateSessionTicketResult> result;
+        final String playFabId;
+        final long expiresAt;
+
+        Entry(final String sessionTicket, final PlayFabResult<AuthenticateSessionTicketResult> result, final String playFabId, final long expiresAt) {
+            this.sessionTicket = sessionTicket;
+            this.result = result;
+            this.playFabId = playFabId;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final PlayFabServerAPI serverApi;
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final long negativeTtlMillis;
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+    // Entries in insertion order, for eviction; may also hold entries that were since replaced or removed
+    private final ConcurrentLinkedQueue<Entry> insertionOrder = new ConcurrentLinkedQueue<Entry>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final ConcurrentHashMap<String, FutureTask<PlayFabResult<AuthenticateSessionTicketResult>>> inFlight = new ConcurrentHashMap<String, FutureTask<PlayFabResult<AuthenticateSessionTicketResult>>>();
+    // Bumped by every revocation, so that validations which started before it are not cached
+    private final AtomicLong revocations = new AtomicLong();
+    // Cached tickets of each player, so Revoke need not scan the whole cache; guarded by itself
+    private final Map<String, Set<String>> ticketsByPlayer = new HashMap<String, Set<String>>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public PlayFabSessionTicketCache(final PlayFabServerAPI serverApi, final int maxEntries, final long ttlMillis, final long negativeTtlMillis) {
+        if (maxEntries < 1) throw new IllegalArgumentException("maxEntries must be at least 1");
+        this.serverApi = serverApi;
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.negativeTtlMillis = negativeTtlMillis;
+    }
+
+    /**
+     * Returns a task that runs AuthenticateSessionTicket when the caller runs it
+     */
+    public FutureTask<PlayFabResult<AuthenticateSessionTicketResult>> AuthenticateSessionTicketAsync(final AuthenticateSessionTicketRequest request) {
+        return new FutureTask<PlayFabResult<AuthenticateSessionTicketResult>>(new Callable<PlayFabResult<AuthenticateSessionTicketResult>>() {
+            public PlayFabResult<AuthenticateSessionTicketResult> call() throws Exception {
+                return privateAuthenticateSessionTicketAsync(request);
+            }
+        });
+    }
+
+    /**
+     * Returns the cached result for the ticket if it has not expired, otherwise validates it with the server, sharing one
+     * call between concurrent callers of the same ticket.  Returns null if the call threw.
+     */
+    public PlayFabResult<AuthenticateSessionTicketResult> AuthenticateSessionTicket(final AuthenticateSessionTicketRequest request) {
+        try {
+            return privateAuthenticateSessionTicketAsync(request);
+        } catch(Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Bans users through PlayFabServerAPI.BanUsers, and drops their cached session tickets if the ban succeeded
+     */
+    public PlayFabResult<BanUsersResult> BanUsers(final BanUsersRequest request) {
+        PlayFabResult<BanUsersResult> result = serverApi.BanUsers(request);
+        if (result != null && result.Error == null && request.Bans != null)
+            for (BanRequest ban : request.Bans)
+                if (ban.PlayFabId != null)
+                    Revoke(ban.PlayFabId);
+        return result;
+    }
+
+    /**
+     * Drops every cached ticket of a player
+     */
+    public void Revoke(final String playFabId) {
+        revocations.incrementAndGet();
+        Set<String> tickets;
+        synchronized (ticketsByPlayer) {
+            tickets = ticketsByPlayer.remove(playFabId);
+        }
+        if (tickets == null)
+            return;
+        for (String ticket : tickets) {
+            Entry entry = entries.get(ticket);
+            if (entry != null && playFabId.equals(entry.playFabId))
+                entries.remove(ticket, entry);
+        }
+    }
+
+    /**
+     * Drops a single cached ticket
+     */
+    public void Invalidate(final String sessionTicket) {
+        revocations.incrementAndGet();
+        Entry entry = entries.get(sessionTicket);
+        if (entry != null)
+            Remove(entry);
+    }
+
+    public void Clear() {
+        revocations.incrementAndGet();
+        entries.clear();
+        synchronized (ticketsByPlayer) {
+            ticketsByPlayer.clear();
+        }
+    }
+
+    public int GetSize() {
+        return entries.size();
+    }
+
+    public long GetHitCount() {
+        return hits.get();
+    }
+
+    public long GetMissCount() {
+        return misses.get();
+    }
+
+    private PlayFabResult<AuthenticateSessionTicketResult> privateAuthenticateSessionTicketAsync(final AuthenticateSessionTicketRequest request) throws Exception {
+        final String ticket = request.SessionTicket;
+        if (ticket == null)
+            return serverApi.AuthenticateSessionTicket(request);
+
+        Entry entry = entries.get(ticket);
+        if (entry != null) {
+            if (entry.expiresAt > System.currentTimeMillis()) {
+                hits.incrementAndGet();
+                return entry.result;
+            }
+            Remove(entry);
+        }
+
+        FutureTask<PlayFabResult<AuthenticateSessionTicketResult>> task = new FutureTask<PlayFabResult<AuthenticateSessionTicketResult>>(new Callable<PlayFabResult<AuthenticateSessionTicketResult>>() {
+            public PlayFabResult<AuthenticateSessionTicketResult> call() throws Exception {
+                return Validate(request);
+            }
+        });
+        FutureTask<PlayFabResult<AuthenticateSessionTicketResult>> existing = inFlight.putIfAbsent(ticket, task);
+        if (existing != null) {
+            hits.incrementAndGet();
+            return Await(existing);
+        }
+
+        misses.incrementAndGet();
+        try {
+            task.run();
+            return Await(task);
+        } finally {
+            inFlight.remove(ticket, task);
+        }
+    }
+
+    private PlayFabResult<AuthenticateSessionTicketResult> Validate(final AuthenticateSessionTicketRequest request) {
+        long revocationsAtStart = revocations.get();
+        PlayFabResult<AuthenticateSessionTicketResult> result = serverApi.AuthenticateSessionTicket(request);
+        if (result == null)
+            return null;
+
+        long ttl;
+        String playFabId = null;
+        if (result.Error == null && result.Result != null && result.Result.UserInfo != null) {
+            ttl = ttlMillis;
+            playFabId = result.Result.UserInfo.PlayFabId;
+        } else if (result.Error != null && IsDefinitiveRejection(result.Error.pfErrorCode)) {
+            ttl = negativeTtlMillis;
+        } else {
+            return result;
+        }
+
+        if (ttl > 0 && revocations.get() == revocationsAtStart) {
+            Entry entry = new Entry(request.SessionTicket, result, playFabId, System.currentTimeMillis() + ttl);
+            entries.put(entry.sessionTicket, entry);
+            Index(entry);
+            insertionOrder.add(entry);
+            queued.incrementAndGet();
+            // A revocation that landed after the check above may have missed the entry
+            if (revocations.get() != revocationsAtStart)
+                Remove(entry);
+            Trim();
+        }
+        return result;
+    }
+
+    private void Index(final Entry entry) {
+        if (entry.playFabId == null)
+            return;
+        synchronized (ticketsByPlayer) {
+            Set<String> tickets = ticketsByPlayer.get(entry.playFabId);
+            if (tickets == null) {
+                tickets = new HashSet<String>();
+                ticketsByPlayer.put(entry.playFabId, tickets);
+            }
+            tickets.add(entry.sessionTicket);
+        }
+    }
+
+    private void Remove(final Entry entry) {
+        if (!entries.remove(entry.sessionTicket, entry) || entry.playFabId == null)
+            return;
+        synchronized (ticketsByPlayer) {
+            Set<String> tickets = ticketsByPlayer.get(entry.playFabId);
+            if (tickets != null && tickets.remove(entry.sessionTicket) && tickets.isEmpty())
+                ticketsByPlayer.remove(entry.playFabId);
+        }
+    }
+
+    private void Trim() {
+        // Evict oldest-first while over capacity, and drain replaced entries so the queue stays bounded
+        while (entries.size() > maxEntries || queued.get() > 2 * maxEntries) {
+            Entry oldest = insertionOrder.poll();
+            if (oldest == null)
+                return;
+            queued.decrementAndGet();
+            if (entries.get(oldest.sessionTicket) != oldest)
+                continue;
+            if (entries.size() > maxEntries || oldest.expiresAt <= System.currentTimeMillis()) {
+                Remove(oldest);
+            } else {
+                insertionOrder.add(oldest);
+                queued.incrementAndGet();
+            }
+        }
+    }
+
+    private static boolean IsDefinitiveRejection(final PlayFabErrorCode errorCode) {
+        return errorCode == PlayFabErrorCode.InvalidSessionTicket
+            || errorCode == PlayFabErrorCode.AccountBanned
+            || errorCode == PlayFabErrorCode.AccountNotFound;
+    }
+
+    private static PlayFabResult<AuthenticateSessionTicketResult> Await(final FutureTask<PlayFabResult<AuthenticateSessionTicketResult>> task) throws Exception {
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception)
+                throw (Exception)e.getCause();
+            throw e;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.playfab;
 
 import com.playfab.PlayFabErrors.ErrorCallback;
+import com.playfab.PlayFabMetrics.MetricsCallback;
 
 public class PlayFabSettings {
     public static String SdkVersion = "0.46.170313";
@@ -8,6 +9,9 @@ public class PlayFabSettings {
     public static String SdkVersionString = "JavaSDK-0.46.170313";
 
     public static ErrorCallback GlobalErrorHandler;    
+    public static MetricsCallback GlobalMetricsHandler; // Called after every API call with its timings and sizes, see PlayFabMetrics
+    public static PlayFabInterceptor[] Interceptors = null; // Wrap every API call, outermost first; replace the whole array to change it
+    public static PlayFabDispatcher Dispatcher = null; // Set this to limit concurrent API calls and prioritize interactive calls over background traffic
     public static String AdvertisingIdType = null; // Set this to the appropriate AD_TYPE_X constant below
     public static String AdvertisingIdValue = null; // Set this to corresponding device value
 
@@ -19,6 +23,7 @@ public class PlayFabSettings {
 
     public String TitleId;
     public String DeveloperSecretKey;
+    public String ServerURL = null; // Set this to point the API classes at another host, such as a local test server (ex: "http://127.0.0.1:8080")
     
     public PlayFabSettings(final String TitleId, final String DeveloperSecretKey) {
     	this.TitleId = TitleId;
@@ -26,6 +31,8 @@ public class PlayFabSettings {
     }
     
     public String GetURL() {
+        if (this.ServerURL != null)
+            return this.ServerURL;
         return "https://" + this.TitleId + ".playfabapi.com";
     }
     
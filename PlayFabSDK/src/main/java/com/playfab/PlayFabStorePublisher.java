@@ -0,0 +1,274 @@
+package com.playfab;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.playfab.PlayFabAdminModels.*;
+import com.playfab.PlayFabErrors.PlayFabError;
+import com.playfab.PlayFabErrors.PlayFabErrorCode;
+import com.playfab.PlayFabErrors.PlayFabResult;
+
+/**
+ * Publishes a set of stores by sending only the stores, and the entries within them, that changed.
+ *
+ * Each wanted store is an UpdateStoreItemsRequest.  Its current contents come from GetStoreItems; both entry lists
+ * are sorted by StoreItem's ItemId ordering and merged in one pass to find added, changed and removed entries, where
+ * entries are compared by their JSON content.  A store with only added or changed entries, or new marketing data, gets
+ * an UpdateStoreItems carrying just those entries.  Removing an entry needs the full list, so a store with removals, or
+ * one that does not exist yet, gets a SetStoreItems.  Unchanged stores are not written at all.  A wanted store with no
+ * MarketingData leaves the store's current marketing data as it is.
+ *
+ * Stores are read and written on a fixed pool of threads, with every call taken from one PlayFabRateLimiter.
+ */
+public class PlayFabStorePublisher {
+    public static enum Action {
+        None,
+        Update,
+        Set
+    }
+
+    /**
+     * Diff and outcome for one store
+     */
+    public static final class StoreDiff {
+        public final String StoreId;
+        public final List<String> Added = new ArrayList<String>();
+        public final List<String> Changed = new ArrayList<String>();
+        public final List<String> Removed = new ArrayList<String>();
+        public int Unchanged;
+        public boolean MarketingChanged;
+        public Action Action = PlayFabStorePublisher.Action.None;
+        /**
+         * Error reading or writing the store, or null
+         */
+        public PlayFabError Error;
+
+        StoreDiff(final String storeId) {
+            this.StoreId = storeId;
+        }
+    }
+
+    /**
+     * Outcome of a publish; in a dry run nothing was written and each Action is what would have been sent
+     */
+    public static final class Report {
+        public final List<StoreDiff> Stores = new ArrayList<StoreDiff>();
+        public boolean DryRun;
+        public long ElapsedMillis;
+
+        public int GetWriteCount() {
+            int writes = 0;
+            for (StoreDiff store : Stores)
+                if (store.Action != Action.None)
+                    writes++;
+            return writes;
+        }
+
+        public int GetFailureCount() {
+            int failures = 0;
+            for (StoreDiff store : Stores)
+                if (store.Error != null)
+                    failures++;
+            return failures;
+        }
+
+        /**
+         * One line per store, ex: "weekly: Update +1 ~2 -0 =14"
+         */
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            for (StoreDiff store : Stores) {
+                text.append(store.StoreId).append(": ").append(store.Action)
+                    .append(" +").append(store.Added.size())
+                    .append(" ~").append(store.Changed.size())
+                    .append(" -").append(store.Removed.size())
+                    .append(" =").append(store.Unchanged);
+                if (store.MarketingChanged)
+                    text.append(" marketing");
+                if (store.Error != null)
+                    text.append(" failed: ").append(store.Error.errorMessage);
+                text.append('\n');
+            }
+            return text.toString();
+        }
+    }
+
+    private static final Gson gson = new GsonBuilder().setDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").create();
+
+    private final PlayFabAdminAPI adminApi;
+    private final int parallelism;
+    private final double callsPerSecond;
+
+    /**
+     * @param parallelism stores processed at once
+     * @param callsPerSecond combined rate of GetStoreItems and write calls
+     */
+    public PlayFabStorePublisher(final PlayFabAdminAPI adminApi, final int parallelism, final double callsPerSecond) {
+        if (parallelism < 1) throw new IllegalArgumentException("parallelism must be at least 1");
+        if (callsPerSecond <= 0) throw new IllegalArgumentException("callsPerSecond must be positive");
+        this.adminApi = adminApi;
+        this.parallelism = parallelism;
+        this.callsPerSecond = callsPerSecond;
+    }
+
+    /**
+     * Brings every store in wanted in line with it; stores not listed are left alone
+     *
+     * @param dryRun read and diff the stores without writing
+     */
+    public Report Publish(final List<UpdateStoreItemsRequest> wanted, final boolean dryRun) {
+        long startNanos = System.nanoTime();
+        Report report = new Report();
+        report.DryRun = dryRun;
+        if (!wanted.isEmpty()) {
+            final PlayFabRateLimiter limiter = new PlayFabRateLimiter(callsPerSecond, parallelism);
+            ExecutorService pool = Executors.newFixedThreadPool(Math.min(parallelism, wanted.size()), DaemonThreads("PlayFabStorePublisher"));
+            List<Future<StoreDiff>> diffs = new ArrayList<Future<StoreDiff>>();
+            try {
+                for (final UpdateStoreItemsRequest store : wanted) {
+                    diffs.add(pool.submit(new Callable<StoreDiff>() {
+                        public StoreDiff call() throws Exception {
+                            return PublishStore(limiter, store, dryRun);
+                        }
+                    }));
+                }
+                for (int i = 0; i < diffs.size(); i++) {
+                    StoreDiff diff;
+                    try {
+                        diff = diffs.get(i).get();
+                    } catch (Exception e) {
+                        diff = new StoreDiff(wanted.get(i).StoreId);
+                        diff.Error = Failure(null, "Store publish failed: " + e.getMessage());
+                    }
+                    report.Stores.add(diff);
+                }
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+        report.ElapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        return report;
+    }
+
+    private StoreDiff PublishStore(final PlayFabRateLimiter limiter, final UpdateStoreItemsRequest wanted, final boolean dryRun) throws InterruptedException {
+        StoreDiff diff = new StoreDiff(wanted.StoreId);
+        GetStoreItemsRequest request = new GetStoreItemsRequest();
+        request.CatalogVersion = wanted.CatalogVersion;
+        request.StoreId = wanted.StoreId;
+        limiter.Acquire();
+        PlayFabResult<GetStoreItemsResult> current = adminApi.GetStoreItems(request);
+        boolean exists = true;
+        if (current != null && current.Error != null && current.Error.pfErrorCode == PlayFabErrorCode.StoreNotFound) {
+            exists = false;
+        } else if (current == null || current.Error != null) {
+            diff.Error = Failure(current, "GetStoreItems failed");
+            return diff;
+        }
+
+        List<StoreItem> currentItems = exists && current.Result.Store != null ? current.Result.Store : Collections.<StoreItem>emptyList();
+        List<StoreItem> wantedItems = wanted.Store != null ? wanted.Store : Collections.<StoreItem>emptyList();
+        ArrayList<StoreItem> changedItems = Merge(currentItems, wantedItems, diff);
+        StoreMarketingModel currentMarketing = exists ? current.Result.MarketingData : null;
+        diff.MarketingChanged = wanted.MarketingData != null && !Json(currentMarketing).equals(Json(wanted.MarketingData));
+
+        if (!exists || !diff.Removed.isEmpty())
+            diff.Action = Action.Set;
+        else if (!changedItems.isEmpty() || diff.MarketingChanged)
+            diff.Action = Action.Update;
+        if (dryRun || diff.Action == Action.None)
+            return diff;
+
+        UpdateStoreItemsRequest write = new UpdateStoreItemsRequest();
+        write.CatalogVersion = wanted.CatalogVersion;
+        write.StoreId = wanted.StoreId;
+        // SetStoreItems replaces the marketing data too, so carry the current one over when none is wanted
+        write.MarketingData = wanted.MarketingData != null ? wanted.MarketingData : currentMarketing;
+        limiter.Acquire();
+        PlayFabResult<UpdateStoreItemsResult> result;
+        if (diff.Action == Action.Set) {
+            write.Store = new ArrayList<StoreItem>(wantedItems);
+            result = adminApi.SetStoreItems(write);
+        } else {
+            write.Store = changedItems;
+            result = adminApi.UpdateStoreItems(write);
+        }
+        if (result == null || result.Error != null)
+            diff.Error = Failure(result, diff.Action == Action.Set ? "SetStoreItems failed" : "UpdateStoreItems failed");
+        return diff;
+    }
+
+    /**
+     * Merge-diffs the two lists by ItemId, filling in the diff; returns the wanted entries that were added or changed
+     */
+    private static ArrayList<StoreItem> Merge(final List<StoreItem> current, final List<StoreItem> wanted, final StoreDiff diff) {
+        ArrayList<StoreItem> before = new ArrayList<StoreItem>(current);
+        ArrayList<StoreItem> after = new ArrayList<StoreItem>(wanted);
+        Collections.sort(before);
+        Collections.sort(after);
+        ArrayList<StoreItem> changed = new ArrayList<StoreItem>();
+        int i = 0;
+        int j = 0;
+        while (i < before.size() || j < after.size()) {
+            int order;
+            if (i == before.size())
+                order = 1;
+            else if (j == after.size())
+                order = -1;
+            else
+                order = before.get(i).compareTo(after.get(j));
+
+            if (order < 0) {
+                diff.Removed.add(before.get(i++).ItemId);
+            } else if (order > 0) {
+                StoreItem item = after.get(j++);
+                diff.Added.add(item.ItemId);
+                changed.add(item);
+            } else {
+                StoreItem old = before.get(i++);
+                StoreItem item = after.get(j++);
+                if (Json(old).equals(Json(item))) {
+                    diff.Unchanged++;
+                } else {
+                    diff.Changed.add(item.ItemId);
+                    changed.add(item);
+                }
+            }
+        }
+        return changed;
+    }
+
+    private static JsonElement Json(final Object value) {
+        return value == null ? JsonNull.INSTANCE : gson.toJsonTree(value);
+    }
+
+    private static PlayFabError Failure(final PlayFabResult<?> result, final String message) {
+        if (result != null && result.Error != null)
+            return result.Error;
+        PlayFabError error = new PlayFabError();
+        error.pfErrorCode = PlayFabErrorCode.Unknown;
+        error.errorMessage = message;
+        return error;
+    }
+
+    private static ThreadFactory DaemonThreads(final String name) {
+        return new ThreadFactory() {
+            public Thread newThread(final Runnable runnable) {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+}
@@ -0,0 +1,378 @@
+package com.playfab;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.playfab.PlayFabAdminModels.*;
+import com.playfab.PlayFabErrors.PlayFabError;
+import com.playfab.PlayFabErrors.PlayFabErrorCode;
+import com.playfab.PlayFabErrors.PlayFabResult;
+
+/**
+ * Tracks scheduled task instances until they finish, without a thread or a polling loop per instance.
+ *
+ * Watched instances are grouped by task, and each group is checked with a single GetTaskInstances call filtered to
+ * the task and to when its instances started, so any number of instances of a task cost one call per check.  All
+ * checks run on one scheduler thread.  The delay until a group's next check adapts to its instances: half of the
+ * remaining time the service estimates, or that is extrapolated from how fast PercentComplete has been moving,
+ * doubling when nothing moves, always within [minIntervalMillis, maxIntervalMillis].
+ *
+ * Completion is exposed as a Future and, optionally, a Listener.  A Succeeded instance completes with its summary; a
+ * Failed or Aborted one with an error as well as the summary.  Watching an instance twice gives two Futures that
+ * share its checks; cancelling one stops only that watch.  After Close, new watches fail at once.
+ *
+ * Usage: watcher.RunTask(task, listener) after RunTask's setup, or watcher.Watch(task, taskInstanceId, null) for an
+ * instance started elsewhere.  A CreateActionsOnPlayersInSegmentTask task is run by the TaskId it returns.
+ */
+public class PlayFabTaskWatcher {
+    /**
+     * Receives updates of one instance; called on the scheduler thread, so it must not block
+     */
+    public static interface Listener {
+        public void Progress(TaskInstanceBasicSummary summary);
+        public void Completed(PlayFabResult<TaskInstanceBasicSummary> result);
+    }
+
+    private static class Watch extends FutureTask<PlayFabResult<TaskInstanceBasicSummary>> {
+        private static final Callable<PlayFabResult<TaskInstanceBasicSummary>> NONE = new Callable<PlayFabResult<TaskInstanceBasicSummary>>() {
+            public PlayFabResult<TaskInstanceBasicSummary> call() {
+                return null;
+            }
+        };
+
+        final String taskInstanceId;
+        final Listener listener;
+        final long watchedAtMillis = System.currentTimeMillis();
+        Date startedAt;
+        Double lastPercent;
+        long lastProgressNanos = System.nanoTime();
+        long intervalMillis;
+
+        Watch(final String taskInstanceId, final Listener listener, final long intervalMillis) {
+            super(NONE);
+            this.taskInstanceId = taskInstanceId;
+            this.listener = listener;
+            this.intervalMillis = intervalMillis;
+        }
+
+        void Complete(final PlayFabResult<TaskInstanceBasicSummary> result) {
+            set(result);
+        }
+
+        @Override
+        protected void done() {
+            if (listener == null || isCancelled())
+                return;
+            try {
+                listener.Completed(get());
+            } catch (Exception e) {
+                // Completed with a result, so get cannot fail
+            }
+        }
+    }
+
+    // The watched instances of one task, all checked by the same call
+    private static class Group {
+        final NameIdentifier task;
+        final List<Watch> watches = new ArrayList<Watch>();
+        ScheduledFuture<?> nextCheck;
+        long nextCheckMillis;
+        int errors;
+
+        Group(final NameIdentifier task) {
+            this.task = task;
+        }
+    }
+
+    // Instances can appear to start a little before RunTask was called when the clocks disagree
+    private static final long START_SLACK_MILLIS = 5 * 60 * 1000;
+    private static final int MAX_CONSECUTIVE_ERRORS = 5;
+
+    private final PlayFabAdminAPI adminApi;
+    private final long minIntervalMillis;
+    private final long maxIntervalMillis;
+    private final ScheduledThreadPoolExecutor executor;
+
+    private final Object lock = new Object();
+    private final Map<String, Group> groups = new HashMap<String, Group>();
+    private boolean closed;
+    private final AtomicLong checks = new AtomicLong();
+
+    /**
+     * @param minIntervalMillis shortest delay between checks of a task, also used for the first check
+     * @param maxIntervalMillis longest delay between checks of a task
+     */
+    public PlayFabTaskWatcher(final PlayFabAdminAPI adminApi, final long minIntervalMillis, final long maxIntervalMillis) {
+        if (minIntervalMillis < 1) throw new IllegalArgumentException("minIntervalMillis must be at least 1");
+        if (maxIntervalMillis < minIntervalMillis) throw new IllegalArgumentException("maxIntervalMillis must not be less than minIntervalMillis");
+        this.adminApi = adminApi;
+        this.minIntervalMillis = minIntervalMillis;
+        this.maxIntervalMillis = maxIntervalMillis;
+        this.executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            public Thread newThread(final Runnable runnable) {
+                Thread thread = new Thread(runnable, "PlayFabTaskWatcher");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.executor.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Runs a task and watches the instance it starts; a failed RunTask completes the Future with its error
+     *
+     * @param listener may be null
+     */
+    public Future<PlayFabResult<TaskInstanceBasicSummary>> RunTask(final NameIdentifier task, final Listener listener) {
+        synchronized (lock) {
+            if (closed)
+                return Failed(null, listener, Failure(null, "PlayFabTaskWatcher is closed"));
+        }
+        RunTaskRequest request = new RunTaskRequest();
+        request.Identifier = task;
+        PlayFabResult<RunTaskResult> run = adminApi.RunTask(request);
+        if (run == null || run.Error != null || run.Result == null || run.Result.TaskInstanceId == null)
+            return Failed(null, listener, Failure(run, "RunTask failed"));
+        return Watch(task, run.Result.TaskInstanceId, listener);
+    }
+
+    /**
+     * Watches an instance of task until it finishes
+     *
+     * @param task identifies the task by Id or, if Id is null, by Name; it must match how the instance's task is known
+     * @param listener may be null
+     */
+    public Future<PlayFabResult<TaskInstanceBasicSummary>> Watch(final NameIdentifier task, final String taskInstanceId, final Listener listener) {
+        Watch watch = new Watch(taskInstanceId, listener, minIntervalMillis);
+        String key = Key(task);
+        synchronized (lock) {
+            if (!closed) {
+                Group group = groups.get(key);
+                if (group == null) {
+                    group = new Group(task);
+                    groups.put(key, group);
+                }
+                group.watches.add(watch);
+                // A new instance gets its first check soon, even if the rest of its group is checked rarely
+                if (group.nextCheck == null || group.nextCheckMillis > System.currentTimeMillis() + minIntervalMillis)
+                    Schedule(key, group, minIntervalMillis);
+                return watch;
+            }
+        }
+        // Failed outside the lock, as the listener is called on this thread
+        return Failed(taskInstanceId, listener, Failure(null, "PlayFabTaskWatcher is closed"));
+    }
+
+    /**
+     * Watches not yet finished; an instance watched twice counts twice
+     */
+    public int GetWatchCount() {
+        int count = 0;
+        synchronized (lock) {
+            for (Group group : groups.values())
+                count += group.watches.size();
+        }
+        return count;
+    }
+
+    /**
+     * GetTaskInstances calls made so far
+     */
+    public long GetCheckCount() {
+        return checks.get();
+    }
+
+    /**
+     * Stops watching; the Futures of unfinished instances are cancelled, and later watches fail
+     */
+    public void Close() {
+        List<Watch> unfinished = new ArrayList<Watch>();
+        synchronized (lock) {
+            closed = true;
+            for (Group group : groups.values())
+                unfinished.addAll(group.watches);
+            groups.clear();
+        }
+        executor.shutdownNow();
+        for (Watch watch : unfinished)
+            watch.cancel(false);
+    }
+
+    // Called with lock held
+    private void Schedule(final String key, final Group group, final long delayMillis) {
+        if (group.nextCheck != null)
+            group.nextCheck.cancel(false);
+        group.nextCheckMillis = System.currentTimeMillis() + delayMillis;
+        group.nextCheck = executor.schedule(new Runnable() {
+            public void run() {
+                Check(key);
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void Check(final String key) {
+        GetTaskInstancesRequest request = new GetTaskInstancesRequest();
+        synchronized (lock) {
+            Group group = groups.get(key);
+            if (group == null)
+                return;
+            group.nextCheck = null;
+            long from = Long.MAX_VALUE;
+            for (Watch watch : group.watches)
+                from = Math.min(from, watch.startedAt != null ? watch.startedAt.getTime() : watch.watchedAtMillis - START_SLACK_MILLIS);
+            request.TaskIdentifier = group.task;
+            request.StartedAtRangeFrom = new Date(from);
+        }
+
+        checks.incrementAndGet();
+        PlayFabResult<GetTaskInstancesResult> result;
+        try {
+            result = adminApi.GetTaskInstances(request);
+        } catch (Exception e) {
+            result = null;
+        }
+
+        List<Watch> finished = new ArrayList<Watch>();
+        List<PlayFabResult<TaskInstanceBasicSummary>> outcomes = new ArrayList<PlayFabResult<TaskInstanceBasicSummary>>();
+        List<Watch> progressed = new ArrayList<Watch>();
+        List<TaskInstanceBasicSummary> progress = new ArrayList<TaskInstanceBasicSummary>();
+        synchronized (lock) {
+            Group group = groups.get(key);
+            if (group == null)
+                return;
+            for (Iterator<Watch> watches = group.watches.iterator(); watches.hasNext(); )
+                if (watches.next().isCancelled())
+                    watches.remove();
+
+            long delayMillis;
+            if (result == null || result.Error != null || result.Result == null) {
+                // Back off on errors, and give up on the group once they persist
+                if (++group.errors >= MAX_CONSECUTIVE_ERRORS) {
+                    PlayFabResult<TaskInstanceBasicSummary> failed = new PlayFabResult<TaskInstanceBasicSummary>();
+                    failed.Error = Failure(result, "GetTaskInstances failed");
+                    for (Watch watch : group.watches) {
+                        finished.add(watch);
+                        outcomes.add(failed);
+                    }
+                    group.watches.clear();
+                }
+                delayMillis = Math.min(maxIntervalMillis, minIntervalMillis << Math.min(group.errors, 20));
+            } else {
+                group.errors = 0;
+                long now = System.nanoTime();
+                delayMillis = maxIntervalMillis;
+                Map<String, TaskInstanceBasicSummary> summaries = new HashMap<String, TaskInstanceBasicSummary>();
+                if (result.Result.Summaries != null)
+                    for (TaskInstanceBasicSummary summary : result.Result.Summaries)
+                        summaries.put(summary.TaskInstanceId, summary);
+                for (Iterator<Watch> watches = group.watches.iterator(); watches.hasNext(); ) {
+                    Watch watch = watches.next();
+                    TaskInstanceBasicSummary summary = summaries.get(watch.taskInstanceId);
+                    if (summary == null) {
+                        // Not listed yet
+                        watch.intervalMillis = Clamp(watch.intervalMillis * 2);
+                    } else if (IsFinished(summary.Status)) {
+                        watches.remove();
+                        finished.add(watch);
+                        outcomes.add(Outcome(summary));
+                        continue;
+                    } else {
+                        if (watch.startedAt == null)
+                            watch.startedAt = summary.StartedAt;
+                        if (Advanced(watch, summary)) {
+                            progressed.add(watch);
+                            progress.add(summary);
+                        }
+                        watch.intervalMillis = NextInterval(watch, summary, now);
+                    }
+                    delayMillis = Math.min(delayMillis, watch.intervalMillis);
+                }
+            }
+
+            if (group.watches.isEmpty())
+                groups.remove(key);
+            else if (group.nextCheck == null)
+                Schedule(key, group, delayMillis);
+        }
+
+        // Callbacks run outside the lock, so a listener may watch further instances
+        for (int i = 0; i < progressed.size(); i++)
+            if (progressed.get(i).listener != null)
+                progressed.get(i).listener.Progress(progress.get(i));
+        for (int i = 0; i < finished.size(); i++)
+            finished.get(i).Complete(outcomes.get(i));
+    }
+
+    private static Watch Failed(final String taskInstanceId, final Listener listener, final PlayFabError error) {
+        Watch failed = new Watch(taskInstanceId, listener, 0);
+        PlayFabResult<TaskInstanceBasicSummary> result = new PlayFabResult<TaskInstanceBasicSummary>();
+        result.Error = error;
+        failed.Complete(result);
+        return failed;
+    }
+
+    private static boolean Advanced(final Watch watch, final TaskInstanceBasicSummary summary) {
+        Double percent = summary.PercentComplete;
+        return percent != null && (watch.lastPercent == null || percent > watch.lastPercent);
+    }
+
+    /**
+     * Half the expected time to completion, from the service's estimate or the observed rate of progress; twice the
+     * last interval when neither is known
+     */
+    private long NextInterval(final Watch watch, final TaskInstanceBasicSummary summary, final long nowNanos) {
+        double remainingMillis = -1;
+        if (summary.EstimatedSecondsRemaining != null && summary.EstimatedSecondsRemaining > 0) {
+            remainingMillis = summary.EstimatedSecondsRemaining * 1000;
+        } else if (Advanced(watch, summary) && watch.lastPercent != null) {
+            double percentPerMilli = (summary.PercentComplete - watch.lastPercent) / Math.max(1, TimeUnit.NANOSECONDS.toMillis(nowNanos - watch.lastProgressNanos));
+            remainingMillis = (100 - summary.PercentComplete) / percentPerMilli;
+        }
+        if (Advanced(watch, summary)) {
+            watch.lastPercent = summary.PercentComplete;
+            watch.lastProgressNanos = nowNanos;
+        }
+        return Clamp(remainingMillis >= 0 ? (long)(remainingMillis / 2) : watch.intervalMillis * 2);
+    }
+
+    private long Clamp(final long intervalMillis) {
+        return Math.max(minIntervalMillis, Math.min(maxIntervalMillis, intervalMillis));
+    }
+
+    private static boolean IsFinished(final TaskInstanceStatus status) {
+        return status == TaskInstanceStatus.Succeeded || status == TaskInstanceStatus.Failed || status == TaskInstanceStatus.Aborted;
+    }
+
+    private static PlayFabResult<TaskInstanceBasicSummary> Outcome(final TaskInstanceBasicSummary summary) {
+        PlayFabResult<TaskInstanceBasicSummary> result = new PlayFabResult<TaskInstanceBasicSummary>();
+        result.Result = summary;
+        if (summary.Status != TaskInstanceStatus.Succeeded)
+            result.Error = Failure(null, "Task instance " + summary.TaskInstanceId + " " + summary.Status);
+        return result;
+    }
+
+    private static String Key(final NameIdentifier task) {
+        return task.Id != null ? "id:" + task.Id : "name:" + task.Name;
+    }
+
+    private static PlayFabError Failure(final PlayFabResult<?> result, final String message) {
+        if (result != null && result.Error != null)
+            return result.Error;
+        PlayFabError error = new PlayFabError();
+        error.pfErrorCode = PlayFabErrorCode.Unknown;
+        error.errorMessage = message;
+        return error;
+    }
+}
@@ -0,0 +1,281 @@
+package com.playfab;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import com.playfab.PlayFabErrors.PlayFabError;
+import com.playfab.PlayFabErrors.PlayFabErrorCode;
+import com.playfab.PlayFabErrors.PlayFabResult;
+
+/**
+ * Brings a title's data in line with a wanted key/value map using as few calls as possible.
+ *
+ * A sync reads the current data with one GetTitleData (or GetTitleInternalData) call, diffs it against the wanted
+ * map, and issues SetTitleData only for keys that were added or changed, plus a null-value SetTitleData for each key
+ * to delete.  Those calls run on a fixed pool of threads behind a PlayFabRateLimiter, so a large deploy goes out in
+ * parallel without tripping the title's request rate limit; calls that hit it anyway are retried after a back-off.
+ */
+public class PlayFabTitleDataSync {
+    /**
+     * Reads and writes one kind of title data
+     */
+    public static interface TitleDataStore {
+        public PlayFabResult<Map<String, String>> Get() throws Exception;
+        /**
+         * Sets a key, or deletes it when value is null; returns the error, or null on success
+         */
+        public PlayFabError Set(String key, String value) throws Exception;
+    }
+
+    /**
+     * Outcome of a sync; in a dry run the lists hold what would have been sent
+     */
+    public static final class Report {
+        public final List<String> Added = new ArrayList<String>();
+        public final List<String> Changed = new ArrayList<String>();
+        public final List<String> Removed = new ArrayList<String>();
+        public int Unchanged;
+        public final Map<String, PlayFabError> Failures = new TreeMap<String, PlayFabError>();
+        public boolean DryRun;
+        public long ElapsedMillis;
+
+        /**
+         * Number of SetTitleData calls the sync needed
+         */
+        public int GetWriteCount() {
+            return Added.size() + Changed.size() + Removed.size();
+        }
+    }
+
+    private static final long RETRY_BACKOFF_MILLIS = 500;
+
+    private final TitleDataStore store;
+    private final int parallelism;
+    private final double callsPerSecond;
+    private final int maxRetries;
+
+    /**
+     * @param parallelism SetTitleData calls in flight at once
+     * @param callsPerSecond sustained SetTitleData rate; bursts of up to parallelism calls are allowed
+     * @param maxRetries retries of a call rejected by the rate limit, with a doubling back-off
+     */
+    public PlayFabTitleDataSync(final TitleDataStore store, final int parallelism, final double callsPerSecond, final int maxRetries) {
+        if (parallelism < 1) throw new IllegalArgumentException("parallelism must be at least 1");
+        if (callsPerSecond <= 0) throw new IllegalArgumentException("callsPerSecond must be positive");
+        if (maxRetries < 0) throw new IllegalArgumentException("maxRetries must not be negative");
+        this.store = store;
+        this.parallelism = parallelism;
+        this.callsPerSecond = callsPerSecond;
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * Makes the title data match wanted
+     *
+     * @param deleteMissing also delete keys that are not in wanted; otherwise they are left alone
+     * @param dryRun compute and report the diff without writing anything
+     * @return the report, or the error if the current data could not be read; keys that failed to write are in
+     *         Report.Failures and still in their Added, Changed or Removed list
+     */
+    public PlayFabResult<Report> Sync(final Map<String, String> wanted, final boolean deleteMissing, final boolean dryRun) {
+        long startNanos = System.nanoTime();
+        PlayFabResult<Report> output = new PlayFabResult<Report>();
+        PlayFabResult<Map<String, String>> current;
+        try {
+            current = store.Get();
+        } catch (Exception e) {
+            current = null;
+        }
+        if (current == null || current.Error != null) {
+            output.Error = Failure(current, "GetTitleData failed");
+            return output;
+        }
+        Map<String, String> existing = current.Result != null ? current.Result : Collections.<String, String>emptyMap();
+
+        Report report = new Report();
+        report.DryRun = dryRun;
+        // Sorted, so reports and the order of writes are stable between runs
+        Map<String, String> writes = new TreeMap<String, String>();
+        for (Map.Entry<String, String> entry : new TreeMap<String, String>(wanted).entrySet()) {
+            String key = entry.getKey();
+            String value = entry.getValue();
+            String old = existing.get(key);
+            if (value == null) {
+                // A null wanted value asks for the key to be gone
+                if (old != null) {
+                    report.Removed.add(key);
+                    writes.put(key, null);
+                }
+            } else if (old == null) {
+                report.Added.add(key);
+                writes.put(key, value);
+            } else if (!old.equals(value)) {
+                report.Changed.add(key);
+                writes.put(key, value);
+            } else {
+                report.Unchanged++;
+            }
+        }
+        if (deleteMissing) {
+            for (String key : new TreeMap<String, String>(existing).keySet()) {
+                if (!wanted.containsKey(key)) {
+                    report.Removed.add(key);
+                    writes.put(key, null);
+                }
+            }
+        }
+
+        if (!dryRun && !writes.isEmpty())
+            Apply(writes, report);
+        report.ElapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        output.Result = report;
+        return output;
+    }
+
+    private void Apply(final Map<String, String> writes, final Report report) {
+        final PlayFabRateLimiter limiter = new PlayFabRateLimiter(callsPerSecond, parallelism);
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(parallelism, writes.size()), DaemonThreads("PlayFabTitleDataSync"));
+        Map<String, Future<PlayFabError>> calls = new TreeMap<String, Future<PlayFabError>>();
+        try {
+            for (final Map.Entry<String, String> write : writes.entrySet()) {
+                calls.put(write.getKey(), pool.submit(new Callable<PlayFabError>() {
+                    public PlayFabError call() throws Exception {
+                        return Write(limiter, write.getKey(), write.getValue());
+                    }
+                }));
+            }
+            for (Map.Entry<String, Future<PlayFabError>> call : calls.entrySet()) {
+                PlayFabError error;
+                try {
+                    error = call.getValue().get();
+                } catch (Exception e) {
+                    error = Failure(null, e.getMessage());
+                }
+                if (error != null)
+                    report.Failures.put(call.getKey(), error);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private PlayFabError Write(final PlayFabRateLimiter limiter, final String key, final String value) throws Exception {
+        long backoffMillis = RETRY_BACKOFF_MILLIS;
+        for (int attempt = 0; ; attempt++) {
+            limiter.Acquire();
+            PlayFabError error = store.Set(key, value);
+            if (error == null || attempt >= maxRetries || !IsRateLimited(error))
+                return error;
+            Thread.sleep(backoffMillis);
+            backoffMillis *= 2;
+        }
+    }
+
+    private static boolean IsRateLimited(final PlayFabError error) {
+        return error.pfErrorCode == PlayFabErrorCode.APIClientRequestRateLimitExceeded || error.httpCode == 429;
+    }
+
+    private static PlayFabError Failure(final PlayFabResult<?> result, final String message) {
+        if (result != null && result.Error != null)
+            return result.Error;
+        PlayFabError error = new PlayFabError();
+        error.pfErrorCode = PlayFabErrorCode.Unknown;
+        error.errorMessage = message;
+        return error;
+    }
+
+    private static PlayFabError SetFailure(final PlayFabResult<?> result) {
+        return result == null || result.Error != null ? Failure(result, "SetTitleData failed") : null;
+    }
+
+    private static ThreadFactory DaemonThreads(final String name) {
+        return new ThreadFactory() {
+            public Thread newThread(final Runnable runnable) {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    public static TitleDataStore AdminTitleData(final PlayFabAdminAPI adminApi) {
+        return new TitleDataStore() {
+            public PlayFabResult<Map<String, String>> Get() {
+                return Data(adminApi.GetTitleData(new PlayFabAdminModels.GetTitleDataRequest()));
+            }
+
+            public PlayFabError Set(final String key, final String value) {
+                PlayFabAdminModels.SetTitleDataRequest request = new PlayFabAdminModels.SetTitleDataRequest();
+                request.Key = key;
+                request.Value = value;
+                return SetFailure(adminApi.SetTitleData(request));
+            }
+        };
+    }
+
+    public static TitleDataStore AdminTitleInternalData(final PlayFabAdminAPI adminApi) {
+        return new TitleDataStore() {
+            public PlayFabResult<Map<String, String>> Get() {
+                return Data(adminApi.GetTitleInternalData(new PlayFabAdminModels.GetTitleDataRequest()));
+            }
+
+            public PlayFabError Set(final String key, final String value) {
+                PlayFabAdminModels.SetTitleDataRequest request = new PlayFabAdminModels.SetTitleDataRequest();
+                request.Key = key;
+                request.Value = value;
+                return SetFailure(adminApi.SetTitleInternalData(request));
+            }
+        };
+    }
+
+    public static TitleDataStore ServerTitleData(final PlayFabServerAPI serverApi) {
+        return new TitleDataStore() {
+            public PlayFabResult<Map<String, String>> Get() {
+                return Data(serverApi.GetTitleData(new PlayFabServerModels.GetTitleDataRequest()));
+            }
+
+            public PlayFabError Set(final String key, final String value) {
+                PlayFabServerModels.SetTitleDataRequest request = new PlayFabServerModels.SetTitleDataRequest();
+                request.Key = key;
+                request.Value = value;
+                return SetFailure(serverApi.SetTitleData(request));
+            }
+        };
+    }
+
+    public static TitleDataStore ServerTitleInternalData(final PlayFabServerAPI serverApi) {
+        return new TitleDataStore() {
+            public PlayFabResult<Map<String, String>> Get() {
+                return Data(serverApi.GetTitleInternalData(new PlayFabServerModels.GetTitleDataRequest()));
+            }
+
+            public PlayFabError Set(final String key, final String value) {
+                PlayFabServerModels.SetTitleDataRequest request = new PlayFabServerModels.SetTitleDataRequest();
+                request.Key = key;
+                request.Value = value;
+                return SetFailure(serverApi.SetTitleInternalData(request));
+            }
+        };
+    }
+
+    private static PlayFabResult<Map<String, String>> Data(final PlayFabResult<?> result) {
+        if (result == null)
+            return null;
+        PlayFabResult<Map<String, String>> output = new PlayFabResult<Map<String, String>>();
+        output.Error = result.Error;
+        if (result.Result instanceof PlayFabAdminModels.GetTitleDataResult)
+            output.Result = ((PlayFabAdminModels.GetTitleDataResult)result.Result).Data;
+        else if (result.Result instanceof PlayFabServerModels.GetTitleDataResult)
+            output.Result = ((PlayFabServerModels.GetTitleDataResult)result.Result).Data;
+        return output;
+    }
+}
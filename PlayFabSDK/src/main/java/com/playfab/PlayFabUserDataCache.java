@@ -0,0 +1,462 @@
+package com.playfab;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.playfab.PlayFabErrors.PlayFabError;
+import com.playfab.PlayFabErrors.PlayFabErrorCode;
+import com.playfab.PlayFabErrors.PlayFabResult;
+
+/**
+ * Caches one kind of per-player data (user data, read-only data, ...) together with its DataVersion.
+ *
+ * Reads revalidate with IfChangedFromDataVersion, so an unchanged player costs a response with no records in it and
+ * the cached records are served as they are.  Writes made through the same front (ServerUserData or ClientUserData)
+ * are patched in when their new DataVersion directly follows the cached one, and otherwise drop the cached copy.
+ *
+ * R is the UserDataRecord model of the API the data comes from.  Cached maps are shared and must not be modified.
+ */
+public class PlayFabUserDataCache<R> {
+    /**
+     * All keys of a player's data at one DataVersion
+     */
+    public static final class Versioned<R> {
+        public final Long DataVersion;
+        public final Map<String, R> Data;
+
+        public Versioned(final Long dataVersion, final Map<String, R> data) {
+            this.DataVersion = dataVersion;
+            this.Data = data;
+        }
+    }
+
+    /**
+     * Reads all keys of a player's data.  When the data has not changed since ifChangedFromDataVersion, the result
+     * may carry no Data.
+     */
+    public static interface Source<R> {
+        public PlayFabResult<Versioned<R>> Fetch(String playFabId, Long ifChangedFromDataVersion) throws Exception;
+    }
+
+    private static final class Entry<R> {
+        Versioned<R> data;
+        long validatedAt;
+    }
+
+    private final Source<R> source;
+    private final long maxAgeMillis;
+    private final LinkedHashMap<String, Entry<R>> entries;
+    private final AtomicLong localHits = new AtomicLong();
+    private final AtomicLong unchangedResponses = new AtomicLong();
+    private final AtomicLong fullResponses = new AtomicLong();
+
+    /**
+     * @param maxPlayers players kept, least recently used are dropped first
+     * @param maxAgeMillis time after a read during which the cached copy is served without revalidating, or 0 to always revalidate
+     */
+    public PlayFabUserDataCache(final Source<R> source, final int maxPlayers, final long maxAgeMillis) {
+        if (maxPlayers < 1) throw new IllegalArgumentException("maxPlayers must be at least 1");
+        this.source = source;
+        this.maxAgeMillis = maxAgeMillis;
+        this.entries = new LinkedHashMap<String, Entry<R>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Entry<R>> eldest) {
+                return size() > maxPlayers;
+            }
+        };
+    }
+
+    /**
+     * Returns all of a player's data, revalidating the cached copy with a conditional read
+     */
+    public PlayFabResult<Versioned<R>> Get(final String playFabId) {
+        Entry<R> entry = GetEntry(playFabId);
+        synchronized (entry) {
+            PlayFabResult<Versioned<R>> output = new PlayFabResult<Versioned<R>>();
+            if (entry.data != null && maxAgeMillis > 0 && System.currentTimeMillis() - entry.validatedAt < maxAgeMillis) {
+                localHits.incrementAndGet();
+                output.Result = entry.data;
+                return output;
+            }
+
+            Long cachedVersion = entry.data == null ? null : entry.data.DataVersion;
+            PlayFabResult<Versioned<R>> result;
+            try {
+                result = source.Fetch(playFabId, cachedVersion);
+            } catch (Exception e) {
+                result = null;
+            }
+            if (result == null || result.Error != null || result.Result == null) {
+                output.Error = result != null && result.Error != null ? result.Error : Failure();
+                return output;
+            }
+
+            boolean unchanged = cachedVersion != null && (result.Result.Data == null || cachedVersion.equals(result.Result.DataVersion));
+            if (unchanged) {
+                unchangedResponses.incrementAndGet();
+            } else {
+                fullResponses.incrementAndGet();
+                Map<String, R> data = result.Result.Data == null ? Collections.<String, R>emptyMap() : Collections.unmodifiableMap(new HashMap<String, R>(result.Result.Data));
+                entry.data = new Versioned<R>(result.Result.DataVersion, data);
+            }
+            entry.validatedAt = System.currentTimeMillis();
+            output.Result = entry.data;
+            return output;
+        }
+    }
+
+    /**
+     * Applies a write that produced newDataVersion; drops the cached copy instead if other writes happened in between
+     */
+    public void Patch(final String playFabId, final Map<String, R> written, final Collection<String> removed, final Long newDataVersion) {
+        Entry<R> entry;
+        synchronized (entries) {
+            entry = entries.get(playFabId);
+        }
+        if (entry == null)
+            return;
+        synchronized (entry) {
+            Versioned<R> current = entry.data;
+            if (current == null)
+                return;
+            if (newDataVersion == null || current.DataVersion == null || newDataVersion != current.DataVersion + 1) {
+                entry.data = null;
+                return;
+            }
+            Map<String, R> data = new HashMap<String, R>(current.Data);
+            if (written != null)
+                data.putAll(written);
+            if (removed != null)
+                for (String key : removed)
+                    data.remove(key);
+            entry.data = new Versioned<R>(newDataVersion, Collections.unmodifiableMap(data));
+        }
+    }
+
+    /**
+     * Stores data read elsewhere, ex: from GetPlayerCombinedInfo with all keys requested, unless a newer copy is cached
+     */
+    public void Seed(final String playFabId, final Map<String, R> data, final Long dataVersion) {
+        if (data == null || dataVersion == null)
+            return;
+        Entry<R> entry = GetEntry(playFabId);
+        synchronized (entry) {
+            if (entry.data != null && entry.data.DataVersion != null && entry.data.DataVersion >= dataVersion)
+                return;
+            entry.data = new Versioned<R>(dataVersion, Collections.unmodifiableMap(new HashMap<String, R>(data)));
+            entry.validatedAt = System.currentTimeMillis();
+        }
+    }
+
+    public void Invalidate(final String playFabId) {
+        synchronized (entries) {
+            entries.remove(playFabId);
+        }
+    }
+
+    /**
+     * Reads served from memory within maxAgeMillis, without a request
+     */
+    public long GetLocalHitCount() {
+        return localHits.get();
+    }
+
+    /**
+     * Conditional reads that found the cached copy current
+     */
+    public long GetUnchangedCount() {
+        return unchangedResponses.get();
+    }
+
+    /**
+     * Reads that returned the player's records
+     */
+    public long GetFullReadCount() {
+        return fullResponses.get();
+    }
+
+    private Entry<R> GetEntry(final String playFabId) {
+        synchronized (entries) {
+            Entry<R> entry = entries.get(playFabId);
+            if (entry == null) {
+                entry = new Entry<R>();
+                entries.put(playFabId, entry);
+            }
+            return entry;
+        }
+    }
+
+    private static PlayFabError Failure() {
+        PlayFabError error = new PlayFabError();
+        error.pfErrorCode = PlayFabErrorCode.Unknown;
+        error.errorMessage = "User data read failed";
+        return error;
+    }
+
+    // GetPlayerCombinedInfo returned every key of a kind of data, so the result can stand in for a full read
+    private static boolean AllKeys(final Boolean requested, final List<String> keys) {
+        return requested != null && requested && (keys == null || keys.isEmpty());
+    }
+
+    private static <R> Map<String, R> Select(final Map<String, R> data, final List<String> keys) {
+        if (keys == null || keys.isEmpty())
+            return new HashMap<String, R>(data);
+        Map<String, R> selected = new HashMap<String, R>();
+        for (String key : keys) {
+            R record = data.get(key);
+            if (record != null)
+                selected.put(key, record);
+        }
+        return selected;
+    }
+
+    /**
+     * Drop-in replacement for the PlayFabServerAPI user data calls, backed by one cache per kind of data
+     */
+    public static class ServerUserData {
+        private final PlayFabServerAPI serverApi;
+        public final PlayFabUserDataCache<PlayFabServerModels.UserDataRecord> userData;
+        public final PlayFabUserDataCache<PlayFabServerModels.UserDataRecord> readOnlyData;
+        public final PlayFabUserDataCache<PlayFabServerModels.UserDataRecord> internalData;
+
+        public ServerUserData(final PlayFabServerAPI serverApi, final int maxPlayers, final long maxAgeMillis) {
+            this.serverApi = serverApi;
+            this.userData = new PlayFabUserDataCache<PlayFabServerModels.UserDataRecord>(new Source<PlayFabServerModels.UserDataRecord>() {
+                public PlayFabResult<Versioned<PlayFabServerModels.UserDataRecord>> Fetch(final String playFabId, final Long ifChangedFromDataVersion) {
+                    return Versioned(serverApi.GetUserData(Request(playFabId, ifChangedFromDataVersion)));
+                }
+            }, maxPlayers, maxAgeMillis);
+            this.readOnlyData = new PlayFabUserDataCache<PlayFabServerModels.UserDataRecord>(new Source<PlayFabServerModels.UserDataRecord>() {
+                public PlayFabResult<Versioned<PlayFabServerModels.UserDataRecord>> Fetch(final String playFabId, final Long ifChangedFromDataVersion) {
+                    return Versioned(serverApi.GetUserReadOnlyData(Request(playFabId, ifChangedFromDataVersion)));
+                }
+            }, maxPlayers, maxAgeMillis);
+            this.internalData = new PlayFabUserDataCache<PlayFabServerModels.UserDataRecord>(new Source<PlayFabServerModels.UserDataRecord>() {
+                public PlayFabResult<Versioned<PlayFabServerModels.UserDataRecord>> Fetch(final String playFabId, final Long ifChangedFromDataVersion) {
+                    return Versioned(serverApi.GetUserInternalData(Request(playFabId, ifChangedFromDataVersion)));
+                }
+            }, maxPlayers, maxAgeMillis);
+        }
+
+        public PlayFabResult<PlayFabServerModels.GetUserDataResult> GetUserData(final PlayFabServerModels.GetUserDataRequest request) {
+            return Read(userData, request);
+        }
+
+        public PlayFabResult<PlayFabServerModels.GetUserDataResult> GetUserReadOnlyData(final PlayFabServerModels.GetUserDataRequest request) {
+            return Read(readOnlyData, request);
+        }
+
+        public PlayFabResult<PlayFabServerModels.GetUserDataResult> GetUserInternalData(final PlayFabServerModels.GetUserDataRequest request) {
+            return Read(internalData, request);
+        }
+
+        /**
+         * Calls GetPlayerCombinedInfo, and seeds the caches with any user data it returned for all keys
+         */
+        public PlayFabResult<PlayFabServerModels.GetPlayerCombinedInfoResult> GetPlayerCombinedInfo(final PlayFabServerModels.GetPlayerCombinedInfoRequest request) {
+            PlayFabResult<PlayFabServerModels.GetPlayerCombinedInfoResult> result = serverApi.GetPlayerCombinedInfo(request);
+            PlayFabServerModels.GetPlayerCombinedInfoRequestParams wanted = request.InfoRequestParameters;
+            if (result == null || result.Error != null || result.Result == null || result.Result.InfoResultPayload == null || wanted == null)
+                return result;
+            PlayFabServerModels.GetPlayerCombinedInfoResultPayload payload = result.Result.InfoResultPayload;
+            if (AllKeys(wanted.GetUserData, wanted.UserDataKeys))
+                userData.Seed(request.PlayFabId, payload.UserData, payload.UserDataVersion);
+            if (AllKeys(wanted.GetUserReadOnlyData, wanted.UserReadOnlyDataKeys))
+                readOnlyData.Seed(request.PlayFabId, payload.UserReadOnlyData, payload.UserReadOnlyDataVersion);
+            return result;
+        }
+
+        public PlayFabResult<PlayFabServerModels.UpdateUserDataResult> UpdateUserData(final PlayFabServerModels.UpdateUserDataRequest request) {
+            PlayFabResult<PlayFabServerModels.UpdateUserDataResult> result = serverApi.UpdateUserData(request);
+            Written(userData, request.PlayFabId, request.Data, request.KeysToRemove, request.Permission, result);
+            return result;
+        }
+
+        public PlayFabResult<PlayFabServerModels.UpdateUserDataResult> UpdateUserReadOnlyData(final PlayFabServerModels.UpdateUserDataRequest request) {
+            PlayFabResult<PlayFabServerModels.UpdateUserDataResult> result = serverApi.UpdateUserReadOnlyData(request);
+            Written(readOnlyData, request.PlayFabId, request.Data, request.KeysToRemove, request.Permission, result);
+            return result;
+        }
+
+        public PlayFabResult<PlayFabServerModels.UpdateUserDataResult> UpdateUserInternalData(final PlayFabServerModels.UpdateUserInternalDataRequest request) {
+            PlayFabResult<PlayFabServerModels.UpdateUserDataResult> result = serverApi.UpdateUserInternalData(request);
+            Written(internalData, request.PlayFabId, request.Data, request.KeysToRemove, null, result);
+            return result;
+        }
+
+        private static PlayFabServerModels.GetUserDataRequest Request(final String playFabId, final Long ifChangedFromDataVersion) {
+            PlayFabServerModels.GetUserDataRequest request = new PlayFabServerModels.GetUserDataRequest();
+            request.PlayFabId = playFabId;
+            request.IfChangedFromDataVersion = ifChangedFromDataVersion;
+            return request;
+        }
+
+        private static PlayFabResult<Versioned<PlayFabServerModels.UserDataRecord>> Versioned(final PlayFabResult<PlayFabServerModels.GetUserDataResult> result) {
+            if (result == null)
+                return null;
+            PlayFabResult<Versioned<PlayFabServerModels.UserDataRecord>> output = new PlayFabResult<Versioned<PlayFabServerModels.UserDataRecord>>();
+            output.Error = result.Error;
+            if (result.Result != null)
+                output.Result = new Versioned<PlayFabServerModels.UserDataRecord>(result.Result.DataVersion, result.Result.Data);
+            return output;
+        }
+
+        private static PlayFabResult<PlayFabServerModels.GetUserDataResult> Read(final PlayFabUserDataCache<PlayFabServerModels.UserDataRecord> cache, final PlayFabServerModels.GetUserDataRequest request) {
+            PlayFabResult<Versioned<PlayFabServerModels.UserDataRecord>> cached = cache.Get(request.PlayFabId);
+            PlayFabResult<PlayFabServerModels.GetUserDataResult> output = new PlayFabResult<PlayFabServerModels.GetUserDataResult>();
+            output.Error = cached.Error;
+            if (cached.Result != null) {
+                output.Result = new PlayFabServerModels.GetUserDataResult();
+                output.Result.PlayFabId = request.PlayFabId;
+                output.Result.DataVersion = cached.Result.DataVersion;
+                // Callers that pass their own version still get the "unchanged" answer they expect
+                if (request.IfChangedFromDataVersion == null || cached.Result.DataVersion == null || request.IfChangedFromDataVersion < cached.Result.DataVersion)
+                    output.Result.Data = Select(cached.Result.Data, request.Keys);
+            }
+            return output;
+        }
+
+        private static void Written(final PlayFabUserDataCache<PlayFabServerModels.UserDataRecord> cache, final String playFabId, final Map<String, String> data, final List<String> keysToRemove, final PlayFabServerModels.UserDataPermission permission, final PlayFabResult<PlayFabServerModels.UpdateUserDataResult> result) {
+            if (result == null || result.Error != null || result.Result == null) {
+                cache.Invalidate(playFabId);
+                return;
+            }
+            Map<String, PlayFabServerModels.UserDataRecord> written = new HashMap<String, PlayFabServerModels.UserDataRecord>();
+            if (data != null) {
+                Date now = new Date();
+                for (Map.Entry<String, String> value : data.entrySet()) {
+                    PlayFabServerModels.UserDataRecord record = new PlayFabServerModels.UserDataRecord();
+                    record.Value = value.getValue();
+                    record.LastUpdated = now;
+                    record.Permission = permission;
+                    written.put(value.getKey(), record);
+                }
+            }
+            cache.Patch(playFabId, written, keysToRemove, result.Result.DataVersion);
+        }
+    }
+
+    /**
+     * Drop-in replacement for the PlayFabClientAPI user data calls.  Requests without a PlayFabId read the calling player,
+     * and so do requests with the player's own PlayFabId once it is known, from SetPlayFabId or GetPlayerCombinedInfo.
+     */
+    public static class ClientUserData {
+        private static final String SELF = "";
+
+        private final PlayFabClientAPI clientApi;
+        private volatile String playFabId;
+        public final PlayFabUserDataCache<PlayFabClientModels.UserDataRecord> userData;
+        public final PlayFabUserDataCache<PlayFabClientModels.UserDataRecord> readOnlyData;
+
+        public ClientUserData(final PlayFabClientAPI clientApi, final int maxPlayers, final long maxAgeMillis) {
+            this.clientApi = clientApi;
+            this.userData = new PlayFabUserDataCache<PlayFabClientModels.UserDataRecord>(new Source<PlayFabClientModels.UserDataRecord>() {
+                public PlayFabResult<Versioned<PlayFabClientModels.UserDataRecord>> Fetch(final String playFabId, final Long ifChangedFromDataVersion) {
+                    return Versioned(clientApi.GetUserData(Request(playFabId, ifChangedFromDataVersion)));
+                }
+            }, maxPlayers, maxAgeMillis);
+            this.readOnlyData = new PlayFabUserDataCache<PlayFabClientModels.UserDataRecord>(new Source<PlayFabClientModels.UserDataRecord>() {
+                public PlayFabResult<Versioned<PlayFabClientModels.UserDataRecord>> Fetch(final String playFabId, final Long ifChangedFromDataVersion) {
+                    return Versioned(clientApi.GetUserReadOnlyData(Request(playFabId, ifChangedFromDataVersion)));
+                }
+            }, maxPlayers, maxAgeMillis);
+        }
+
+        /**
+         * The logged in player's PlayFabId, ex: from LoginResult, so reads that name it share the cached copy of reads that do not
+         */
+        public void SetPlayFabId(final String playFabId) {
+            this.playFabId = playFabId;
+        }
+
+        public PlayFabResult<PlayFabClientModels.GetUserDataResult> GetUserData(final PlayFabClientModels.GetUserDataRequest request) {
+            return Read(userData, Key(request.PlayFabId), request);
+        }
+
+        public PlayFabResult<PlayFabClientModels.GetUserDataResult> GetUserReadOnlyData(final PlayFabClientModels.GetUserDataRequest request) {
+            return Read(readOnlyData, Key(request.PlayFabId), request);
+        }
+
+        /**
+         * Calls GetPlayerCombinedInfo, and seeds the caches with any user data it returned for all keys
+         */
+        public PlayFabResult<PlayFabClientModels.GetPlayerCombinedInfoResult> GetPlayerCombinedInfo(final PlayFabClientModels.GetPlayerCombinedInfoRequest request) {
+            PlayFabResult<PlayFabClientModels.GetPlayerCombinedInfoResult> result = clientApi.GetPlayerCombinedInfo(request);
+            if (result == null || result.Error != null || result.Result == null)
+                return result;
+            if (request.PlayFabId == null && result.Result.PlayFabId != null)
+                playFabId = result.Result.PlayFabId;
+            PlayFabClientModels.GetPlayerCombinedInfoRequestParams wanted = request.InfoRequestParameters;
+            PlayFabClientModels.GetPlayerCombinedInfoResultPayload payload = result.Result.InfoResultPayload;
+            if (wanted == null || payload == null)
+                return result;
+            String key = Key(request.PlayFabId);
+            if (AllKeys(wanted.GetUserData, wanted.UserDataKeys))
+                userData.Seed(key, payload.UserData, payload.UserDataVersion);
+            if (AllKeys(wanted.GetUserReadOnlyData, wanted.UserReadOnlyDataKeys))
+                readOnlyData.Seed(key, payload.UserReadOnlyData, payload.UserReadOnlyDataVersion);
+            return result;
+        }
+
+        public PlayFabResult<PlayFabClientModels.UpdateUserDataResult> UpdateUserData(final PlayFabClientModels.UpdateUserDataRequest request) {
+            PlayFabResult<PlayFabClientModels.UpdateUserDataResult> result = clientApi.UpdateUserData(request);
+            if (result == null || result.Error != null || result.Result == null) {
+                userData.Invalidate(SELF);
+                return result;
+            }
+            Map<String, PlayFabClientModels.UserDataRecord> written = new HashMap<String, PlayFabClientModels.UserDataRecord>();
+            if (request.Data != null) {
+                Date now = new Date();
+                for (Map.Entry<String, String> value : request.Data.entrySet()) {
+                    PlayFabClientModels.UserDataRecord record = new PlayFabClientModels.UserDataRecord();
+                    record.Value = value.getValue();
+                    record.LastUpdated = now;
+                    record.Permission = request.Permission;
+                    written.put(value.getKey(), record);
+                }
+            }
+            userData.Patch(SELF, written, request.KeysToRemove, result.Result.DataVersion);
+            return result;
+        }
+
+        private String Key(final String requested) {
+            return requested == null || requested.equals(playFabId) ? SELF : requested;
+        }
+
+        private static PlayFabClientModels.GetUserDataRequest Request(final String playFabId, final Long ifChangedFromDataVersion) {
+            PlayFabClientModels.GetUserDataRequest request = new PlayFabClientModels.GetUserDataRequest();
+            request.PlayFabId = SELF.equals(playFabId) ? null : playFabId;
+            request.IfChangedFromDataVersion = ifChangedFromDataVersion;
+            return request;
+        }
+
+        private static PlayFabResult<Versioned<PlayFabClientModels.UserDataRecord>> Versioned(final PlayFabResult<PlayFabClientModels.GetUserDataResult> result) {
+            if (result == null)
+                return null;
+            PlayFabResult<Versioned<PlayFabClientModels.UserDataRecord>> output = new PlayFabResult<Versioned<PlayFabClientModels.UserDataRecord>>();
+            output.Error = result.Error;
+            if (result.Result != null)
+                output.Result = new Versioned<PlayFabClientModels.UserDataRecord>(result.Result.DataVersion, result.Result.Data);
+            return output;
+        }
+
+        private static PlayFabResult<PlayFabClientModels.GetUserDataResult> Read(final PlayFabUserDataCache<PlayFabClientModels.UserDataRecord> cache, final String key, final PlayFabClientModels.GetUserDataRequest request) {
+            PlayFabResult<Versioned<PlayFabClientModels.UserDataRecord>> cached = cache.Get(key);
+            PlayFabResult<PlayFabClientModels.GetUserDataResult> output = new PlayFabResult<PlayFabClientModels.GetUserDataResult>();
+            output.Error = cached.Error;
+            if (cached.Result != null) {
+                output.Result = new PlayFabClientModels.GetUserDataResult();
+                output.Result.DataVersion = cached.Result.DataVersion;
+                if (request.IfChangedFromDataVersion == null || cached.Result.DataVersion == null || request.IfChangedFromDataVersion < cached.Result.DataVersion)
+                    output.Result.Data = Select(cached.Result.Data, request.Keys);
+            }
+            return output;
+        }
+    }
+}
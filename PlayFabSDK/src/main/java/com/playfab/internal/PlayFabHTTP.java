@@ -6,11 +6,15 @@ import java.net.*;
 import java.io.*;
 import com.google.gson.*;
 
+import com.playfab.PlayFabDispatcher;
+import com.playfab.PlayFabInterceptor;
 import com.playfab.PlayFabSettings;
 import com.playfab.PlayFabErrors.PlayFabError;
 import com.playfab.PlayFabErrors.PlayFabErrorCode;
 import com.playfab.PlayFabErrors.PlayFabJsonError;
 import com.playfab.PlayFabErrors.PlayFabJsonSuccess;
+import com.playfab.PlayFabMetrics.MetricsCallback;
+import com.playfab.PlayFabMetrics.RequestMetrics;
 
 public class PlayFabHTTP {
     private static Gson gson = new GsonBuilder().setDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").create();
@@ -23,7 +27,67 @@ public class PlayFabHTTP {
         });
     }
 
+    private static final PlayFabInterceptor.Transport transport = new PlayFabInterceptor.Transport() {
+        public Object execute(PlayFabInterceptor.Call call) throws Exception {
+            return doPostTransport(call);
+        }
+    };
+
     private static Object doPostPrivate(String url, Object request, String authType, String authKey) throws Exception {
+        PlayFabInterceptor.Call call = new PlayFabInterceptor.Call(url, request, authType, authKey, PlayFabSettings.Interceptors, transport);
+        return call.proceed();
+    }
+
+    private static Object doPostTransport(PlayFabInterceptor.Call call) throws Exception {
+        String url = call.url;
+        MetricsCallback metricsHandler = PlayFabSettings.GlobalMetricsHandler;
+        MetricsCallback callMetricsHandler = call.GetMetricsHandler();
+        RequestMetrics metrics = null;
+        long startTime = 0;
+        if (metricsHandler != null || callMetricsHandler != null) {
+            metrics = new RequestMetrics();
+            metrics.endpoint = getApiPath(url);
+            metrics.retryCount = call.GetAttempts() - 1;
+            startTime = System.nanoTime();
+        }
+
+        Object result;
+        PlayFabDispatcher dispatcher = PlayFabSettings.Dispatcher;
+        if (dispatcher == null) {
+            result = doPostExchange(url, call.request, call.authType, call.authKey, call.GetHeaders(), metrics, startTime);
+        } else {
+            PlayFabDispatcher.Priority priority = dispatcher.Acquire(url);
+            try {
+                result = doPostExchange(url, call.request, call.authType, call.authKey, call.GetHeaders(), metrics, startTime);
+            } finally {
+                dispatcher.Release(priority);
+            }
+        }
+
+        if (metrics != null) {
+            metrics.totalTimeNanos = System.nanoTime() - startTime;
+            if (result instanceof PlayFabError) {
+                metrics.httpCode = ((PlayFabError)result).httpCode;
+                metrics.pfErrorCode = ((PlayFabError)result).pfErrorCode;
+            } else {
+                metrics.httpCode = 200;
+                metrics.pfErrorCode = PlayFabErrorCode.Success;
+            }
+            if (callMetricsHandler != null)
+                callMetricsHandler.callback(metrics);
+            if (metricsHandler != null)
+                metricsHandler.callback(metrics);
+        }
+        return result;
+    }
+
+    private static Object doPostExchange(String url, Object request, String authType, String authKey, Map<String, String> headers, RequestMetrics metrics, long startTime) throws Exception {
+        long exchangeStart = 0;
+        if (metrics != null) {
+            exchangeStart = System.nanoTime();
+            metrics.queueTimeNanos = exchangeStart - startTime;
+        }
+
         String bodyString = null;
 
         if(request == null) {
@@ -35,6 +99,12 @@ public class PlayFabHTTP {
         else {
             bodyString = gson.toJson(request);
         }
+        if (metrics != null)
+            metrics.serializeTimeNanos = System.nanoTime() - exchangeStart;
+        // Encoded with the platform charset, as OutputStreamWriter did before
+        byte[] bodyBytes = bodyString.getBytes();
+        if (metrics != null)
+            metrics.requestBytes = bodyBytes.length;
 
         // System.out.println("Sending: " + bodyString);
 
@@ -45,27 +115,43 @@ public class PlayFabHTTP {
             con.setRequestProperty(authType, authKey);
         }
         con.setRequestProperty("X-PlayFabSDK", PlayFabSettings.SdkVersionString);
+        if(headers != null) {
+            for (Map.Entry<String, String> header : headers.entrySet())
+                con.setRequestProperty(header.getKey(), header.getValue());
+        }
         con.setDoOutput(true);
         con.setDoInput(true);
 
         // Make the API-Call and get the normal response httpCode
         int httpCode = 503; // default to SERVICE_UNAVAILABLE
         try {
-            OutputStreamWriter writer = new OutputStreamWriter(con.getOutputStream());
-            writer.write(bodyString);
-            writer.close();
+            if (metrics != null) {
+                long connectStart = System.nanoTime();
+                con.connect();
+                metrics.connectTimeNanos = System.nanoTime() - connectStart;
+            }
+            OutputStream output = con.getOutputStream();
+            output.write(bodyBytes);
+            output.close();
             httpCode = con.getResponseCode();
+            if (metrics != null)
+                metrics.timeToFirstByteNanos = System.nanoTime() - exchangeStart;
         } catch(Exception e) {
             return GeneratePfError(httpCode, PlayFabErrorCode.ServiceUnavailable, "Failed to post to server: " + url, null);
         }
 
         // Get the response string
         String responseString = null;
+        CountingInputStream counted = null;
         try {
-            responseString = receive(con.getInputStream());
+            InputStream in = con.getInputStream();
+            responseString = receive(metrics != null ? (counted = new CountingInputStream(in)) : in);
         } catch(IOException e) {
-            responseString = receive(con.getErrorStream());
+            InputStream in = con.getErrorStream();
+            responseString = receive(metrics != null && in != null ? (counted = new CountingInputStream(in)) : in);
         }
+        if (counted != null && responseString != null)
+            metrics.responseBytes = counted.count;
 
         // Check for normal error results
         if(httpCode != 200 || responseString == null || responseString.isEmpty()) {
@@ -99,6 +185,42 @@ public class PlayFabHTTP {
         return recieved.toString();
     }
 
+    // Counts the bytes of a response as they are read, whether or not the server sent a Content-Length
+    private static class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0)
+                count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0)
+                count += read;
+            return read;
+        }
+    }
+
+    /**
+     * Returns the API path of a call url, ex: "/Client/LoginWithCustomID"
+     */
+    public static String getApiPath(String url) {
+        int last = url.lastIndexOf('/');
+        if (last <= 0)
+            return url;
+        int api = url.lastIndexOf('/', last - 1);
+        return api < 0 ? url : url.substring(api);
+    }
+
     public static PlayFabError GeneratePfError(int httpCode, PlayFabErrorCode pfErrorCode, String errorMessage, Map<String, List<String>> errorDetails) {
         PlayFabError output =  new PlayFabError();
 
@@ -0,0 +1,137 @@
+package com.playfab.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.playfab.PlayFabAdminAPI;
+import com.playfab.PlayFabAdminModels.*;
+import com.playfab.PlayFabBuildUploader;
+import com.playfab.PlayFabErrors.PlayFabResult;
+
+public class PlayFabBuildUploaderTest
+{
+    private static PlayFabFakeServer server;
+    private static PlayFabAdminAPI adminApi;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void oneTimeSetUp() throws Exception
+    {
+        server = PlayFabFakeServer.Started(2);
+        adminApi = new PlayFabAdminAPI(server.NewSettings());
+    }
+
+    @AfterClass
+    public static void oneTimeTearDown()
+    {
+        server.Stop();
+    }
+
+    @Test
+    public void RetriesThenAddsVerifiedBuild() throws Exception
+    {
+        byte[] data = new byte[300000];
+        new Random(7).nextBytes(data);
+        File archive = folder.newFile("build.zip");
+        FileOutputStream out = new FileOutputStream(archive);
+        out.write(data);
+        out.close();
+
+        // The first transfer is rejected by the storage and sent again in full
+        server.FailContentUploads(1);
+        final AtomicLong lastProgress = new AtomicLong();
+        PlayFabBuildUploader uploader = new PlayFabBuildUploader(adminApi, 32 * 1024, 2);
+        AddServerBuildRequest build = new AddServerBuildRequest();
+        build.BuildId = "build-42";
+        build.MaxGamesPerHost = 4;
+        ModifyServerBuildRequest modify = new ModifyServerBuildRequest();
+        modify.Comment = "verified";
+        PlayFabResult<PlayFabBuildUploader.Report> report = uploader.Upload(archive, build, modify, new PlayFabBuildUploader.ProgressListener() {
+            public void Progress(long sentBytes, long totalBytes, double bytesPerSecond) {
+                // Each attempt reports from its first segment again
+                assertTrue(sentBytes > lastProgress.get() || sentBytes <= 32 * 1024);
+                lastProgress.set(sentBytes);
+            }
+        });
+
+        assertNull(report.Error);
+        assertEquals(2, report.Result.Attempts);
+        assertEquals(300000, lastProgress.get());
+        assertEquals(2, server.GetRequestCount("/Admin/GetServerBuildUploadUrl"));
+        assertArrayEquals(data, server.GetContent("builds/build-42"));
+        StringBuilder sha256 = new StringBuilder();
+        for (byte b : MessageDigest.getInstance("SHA-256").digest(data))
+            sha256.append(String.format("%02x", b));
+        assertEquals(sha256.toString(), report.Result.Sha256);
+        assertEquals("build-42", report.Result.Build.BuildId);
+        assertEquals("verified", report.Result.Modified.Comment);
+        // The caller's request is copied, not pointed at the build
+        assertNull(modify.BuildId);
+        assertTrue(report.Result.BytesPerSecond > 0);
+
+        // A build whose upload never succeeds is not added
+        server.FailContentUploads(2);
+        build.BuildId = "build-43";
+        PlayFabResult<PlayFabBuildUploader.Report> failed = uploader.Upload(archive, build, null, null);
+        assertNotNull(failed.Error);
+        assertEquals(1, server.GetRequestCount("/Admin/AddServerBuild"));
+    }
+
+    @Test
+    public void StopsAtOnceWhenTheArchiveShrinks() throws Exception
+    {
+        // Own server, so the request counts checked above are left alone
+        PlayFabFakeServer own = PlayFabFakeServer.Started(2);
+        try
+        {
+            final File archive = folder.newFile("shrinking.zip");
+            FileOutputStream out = new FileOutputStream(archive);
+            out.write(new byte[100000]);
+            out.close();
+
+            PlayFabBuildUploader uploader = new PlayFabBuildUploader(new PlayFabAdminAPI(own.NewSettings()), 16 * 1024, 3);
+            AddServerBuildRequest build = new AddServerBuildRequest();
+            build.BuildId = "build-shrinking";
+            PlayFabResult<PlayFabBuildUploader.Report> report = uploader.Upload(archive, build, null, new PlayFabBuildUploader.ProgressListener() {
+                public void Progress(long sentBytes, long totalBytes, double bytesPerSecond) {
+                    if (sentBytes == 16 * 1024) {
+                        try {
+                            RandomAccessFile file = new RandomAccessFile(archive, "rw");
+                            file.setLength(20000);
+                            file.close();
+                        } catch (Exception e) {
+                            throw new RuntimeException(e);
+                        }
+                    }
+                }
+            });
+
+            assertNotNull(report.Error);
+            assertEquals("Archive shrank while uploading", report.Error.errorMessage);
+            assertEquals(1, own.GetRequestCount("/Admin/GetServerBuildUploadUrl"));
+            assertEquals(0, own.GetRequestCount("/Admin/AddServerBuild"));
+        }
+        finally
+        {
+            own.Stop();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.playfab.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.playfab.PlayFabCatalogIndex;
+import com.playfab.PlayFabErrors.PlayFabError;
+import com.playfab.PlayFabErrors.PlayFabResult;
+import com.playfab.PlayFabServerModels.CatalogItem;
+import com.playfab.PlayFabServerModels.CatalogItemBundleInfo;
+
+public class PlayFabCatalogIndexTest
+{
+    private static CatalogItem Item(String itemId, String itemClass, long gold, String... tags)
+    {
+        CatalogItem item = new CatalogItem();
+        item.ItemId = itemId;
+        item.ItemClass = itemClass;
+        item.Tags = new ArrayList<String>(Arrays.asList(tags));
+        item.VirtualCurrencyPrices = new HashMap<String, Long>();
+        item.VirtualCurrencyPrices.put("GC", gold);
+        return item;
+    }
+
+    private static CatalogItem Bundle(String itemId, String... contents)
+    {
+        CatalogItem item = Item(itemId, "bundle", 500);
+        item.Bundle = new CatalogItemBundleInfo();
+        item.Bundle.BundledItems = new ArrayList<String>(Arrays.asList(contents));
+        return item;
+    }
+
+    @Test
+    public void IndexesAndExpandsBundles() throws Exception
+    {
+        final List<CatalogItem> catalog = new ArrayList<CatalogItem>();
+        catalog.add(Item("sword", "weapon", 100, "melee", "starter"));
+        catalog.add(Item("bow", "weapon", 150, "ranged"));
+        catalog.add(Item("potion", "consumable", 10, "starter"));
+        catalog.add(Bundle("potion_pack", "potion", "potion"));
+        catalog.add(Bundle("starter_pack", "sword", "potion_pack"));
+
+        PlayFabCatalogIndex<CatalogItem> index = new PlayFabCatalogIndex<CatalogItem>("Main", new PlayFabCatalogIndex.ServerItemAccessor(), new PlayFabCatalogIndex.CatalogLoader<CatalogItem>() {
+            public PlayFabResult<List<CatalogItem>> Load(String catalogVersion) {
+                PlayFabResult<List<CatalogItem>> result = new PlayFabResult<List<CatalogItem>>();
+                result.Result = catalog;
+                return result;
+            }
+        });
+        assertNull(index.GetItem("sword"));
+        assertNull(index.Refresh());
+
+        assertSame(catalog.get(0), index.GetItem("sword"));
+        assertEquals(2, index.GetItemsOfClass("weapon").size());
+        assertEquals(2, index.GetItemsWithTag("starter").size());
+        assertEquals(Long.valueOf(150), index.GetPrice("bow", "GC"));
+        assertNull(index.GetPrice("bow", "RM"));
+        assertEquals(Arrays.asList("sword", "potion", "potion"), index.GetBundleContents("starter_pack"));
+        assertEquals(0, index.GetBundleContents("sword").size());
+    }
+
+    @Test
+    public void SlowerOlderRefreshDoesNotWin() throws Exception
+    {
+        final CountDownLatch firstStarted = new CountDownLatch(1);
+        final CountDownLatch releaseFirst = new CountDownLatch(1);
+        final AtomicInteger loads = new AtomicInteger();
+        final PlayFabCatalogIndex<CatalogItem> index = new PlayFabCatalogIndex<CatalogItem>("Main", new PlayFabCatalogIndex.ServerItemAccessor(), new PlayFabCatalogIndex.CatalogLoader<CatalogItem>() {
+            public PlayFabResult<List<CatalogItem>> Load(String catalogVersion) throws Exception {
+                PlayFabResult<List<CatalogItem>> result = new PlayFabResult<List<CatalogItem>>();
+                result.Result = new ArrayList<CatalogItem>();
+                if (loads.incrementAndGet() == 1)
+                {
+                    firstStarted.countDown();
+                    releaseFirst.await();
+                    result.Result.add(Item("old", "weapon", 1));
+                }
+                else
+                {
+                    result.Result.add(Item("new", "weapon", 2));
+                }
+                return result;
+            }
+        });
+
+        FutureTask<PlayFabError> first = new FutureTask<PlayFabError>(new Callable<PlayFabError>() {
+            public PlayFabError call() throws Exception {
+                return index.Refresh();
+            }
+        });
+        new Thread(first).start();
+        firstStarted.await();
+        assertNull(index.Refresh());
+        releaseFirst.countDown();
+        assertNull(first.get(5, TimeUnit.SECONDS));
+
+        assertNull(index.GetItem("old"));
+        assertEquals("new", index.GetItem("new").ItemId);
+    }
+}
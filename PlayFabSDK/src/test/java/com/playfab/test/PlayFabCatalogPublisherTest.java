@@ -0,0 +1,99 @@
+package com.playfab.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.playfab.PlayFabAdminAPI;
+import com.playfab.PlayFabAdminModels.*;
+import com.playfab.PlayFabCatalogPublisher;
+import com.playfab.PlayFabErrors.PlayFabResult;
+import com.playfab.PlayFabServerModels;
+
+public class PlayFabCatalogPublisherTest
+{
+    private static PlayFabFakeServer server;
+    private static PlayFabAdminAPI adminApi;
+
+    @BeforeClass
+    public static void oneTimeSetUp() throws Exception
+    {
+        server = PlayFabFakeServer.Started(2);
+        adminApi = new PlayFabAdminAPI(server.NewSettings());
+
+        List<PlayFabServerModels.CatalogItem> live = new ArrayList<PlayFabServerModels.CatalogItem>();
+        for (int i = 0; i < 30; i++)
+        {
+            PlayFabServerModels.CatalogItem item = new PlayFabServerModels.CatalogItem();
+            item.ItemId = "item" + i;
+            item.CatalogVersion = "Publish";
+            item.DisplayName = "Item " + i;
+            item.VirtualCurrencyPrices = new HashMap<String, Long>();
+            item.VirtualCurrencyPrices.put("GO", 10L * i);
+            item.VirtualCurrencyPrices.put("AU", 5L);
+            live.add(item);
+        }
+        server.SetCatalog("Publish", live);
+    }
+
+    @AfterClass
+    public static void oneTimeTearDown()
+    {
+        server.Stop();
+    }
+
+    private static CatalogItem Item(int i, String displayName)
+    {
+        CatalogItem item = new CatalogItem();
+        item.ItemId = "item" + i;
+        item.DisplayName = displayName;
+        // Inserted in the other order from the live catalog; the hash must not care
+        item.VirtualCurrencyPrices = new HashMap<String, Long>();
+        item.VirtualCurrencyPrices.put("AU", 5L);
+        item.VirtualCurrencyPrices.put("GO", 10L * i);
+        return item;
+    }
+
+    @Test
+    public void UploadsOnlyChangedItemsInChunks()
+    {
+        List<CatalogItem> wanted = new ArrayList<CatalogItem>();
+        for (int i = 0; i < 29; i++)
+            wanted.add(Item(i, i % 10 == 4 ? "Renamed " + i : "Item " + i));
+        wanted.add(Item(40, "Item 40"));
+        assertNotEquals(PlayFabCatalogPublisher.Hash(Item(4, "Item 4")), PlayFabCatalogPublisher.Hash(wanted.get(4)));
+
+        // Each item is around 80 bytes, so at most two fit a chunk
+        PlayFabCatalogPublisher publisher = new PlayFabCatalogPublisher(adminApi, 200);
+        PlayFabResult<PlayFabCatalogPublisher.Report> report = publisher.Publish("Publish", wanted, false);
+        assertNull(report.Error);
+        assertEquals(Arrays.asList("item40"), report.Result.Added);
+        assertEquals(Arrays.asList("item4", "item14", "item24"), report.Result.Changed);
+        assertEquals(26, report.Result.Unchanged);
+        assertEquals(Arrays.asList("item29"), report.Result.Orphaned);
+        assertTrue(report.Result.Failures.isEmpty());
+        assertEquals(2, report.Result.Chunks);
+        assertEquals(2, server.GetRequestCount("/Admin/UpdateCatalogItems"));
+
+        GetCatalogItemsRequest request = new GetCatalogItemsRequest();
+        request.CatalogVersion = "Publish";
+        List<CatalogItem> catalog = adminApi.GetCatalogItems(request).Result.Catalog;
+        assertEquals(31, catalog.size());
+
+        // Published content now matches, so a second publish sends nothing
+        PlayFabResult<PlayFabCatalogPublisher.Report> again = publisher.Publish("Publish", wanted, false);
+        assertEquals(30, again.Result.Unchanged);
+        assertEquals(0, again.Result.Chunks);
+        assertEquals(2, server.GetRequestCount("/Admin/UpdateCatalogItems"));
+    }
+}
@@ -0,0 +1,98 @@
+package com.playfab.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.playfab.PlayFabClockSync;
+import com.playfab.PlayFabErrors.PlayFabResult;
+
+public class PlayFabClockSyncTest
+{
+    @Test
+    public void EstimatesOffsetAndKeepsShortestRoundTrip() throws Exception
+    {
+        final AtomicInteger calls = new AtomicInteger();
+        PlayFabClockSync clock = new PlayFabClockSync(new PlayFabClockSync.TimeSource() {
+            public PlayFabResult<Date> GetTime() throws Exception {
+                // The first sample has a slow, lopsided round trip and must lose to the later ones
+                boolean slow = calls.getAndIncrement() == 0;
+                PlayFabResult<Date> result = new PlayFabResult<Date>();
+                result.Result = new Date(System.currentTimeMillis() + 5000);
+                Thread.sleep(slow ? 200 : 2);
+                return result;
+            }
+        }, 4, 50, 100);
+
+        assertTrue(Double.isInfinite(clock.GetErrorBoundMillis()));
+        assertNull(clock.Sync());
+        assertEquals(4, calls.get());
+        assertEquals(5000, clock.GetOffsetMillis(), 20);
+        assertTrue(clock.GetErrorBoundMillis() < 20);
+        assertEquals(System.currentTimeMillis() + 5000, clock.ServerNow(), 20);
+        assertEquals(4, calls.get());
+    }
+
+    @Test
+    public void BlocksOnlyForTheFirstAttempt() throws Exception
+    {
+        final AtomicInteger calls = new AtomicInteger();
+        PlayFabClockSync clock = new PlayFabClockSync(new PlayFabClockSync.TimeSource() {
+            public PlayFabResult<Date> GetTime() throws Exception {
+                PlayFabResult<Date> result = new PlayFabResult<Date>();
+                // The first attempt fails; later ones are slow, so a blocking ServerNow would show
+                if (calls.getAndIncrement() > 0)
+                {
+                    Thread.sleep(300);
+                    result.Result = new Date(System.currentTimeMillis() + 5000);
+                }
+                return result;
+            }
+        }, 1, 1000, 100);
+
+        assertEquals(System.currentTimeMillis(), clock.ServerNow(), 20);
+        assertEquals(1, calls.get());
+        // Retries wait out the retry interval, then run in the background
+        assertEquals(System.currentTimeMillis(), clock.ServerNow(), 20);
+        assertEquals(1, calls.get());
+        Thread.sleep(1000);
+        long started = System.currentTimeMillis();
+        assertEquals(started, clock.ServerNow(), 20);
+        assertTrue(System.currentTimeMillis() - started < 100);
+        for (int i = 0; i < 100 && Double.isInfinite(clock.GetErrorBoundMillis()); i++)
+            Thread.sleep(20);
+        assertEquals(System.currentTimeMillis() + 5000, clock.ServerNow(), 200);
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void BacksOffWhileResyncsFail() throws Exception
+    {
+        final AtomicInteger calls = new AtomicInteger();
+        PlayFabClockSync clock = new PlayFabClockSync(new PlayFabClockSync.TimeSource() {
+            public PlayFabResult<Date> GetTime() throws Exception {
+                // Only the very first sample succeeds
+                PlayFabResult<Date> result = new PlayFabResult<Date>();
+                if (calls.getAndIncrement() == 0)
+                    result.Result = new Date(System.currentTimeMillis() + 5000);
+                return result;
+            }
+        }, 2, 0, 100);
+
+        assertNull(clock.Sync());
+        assertEquals(2, calls.get());
+        // The bound is always past maxErrorMillis, so every call wants a re-sync
+        long end = System.currentTimeMillis() + 1500;
+        while (System.currentTimeMillis() < end)
+            clock.ServerNow();
+        // The first estimate is still served
+        assertEquals(System.currentTimeMillis() + 5000, clock.ServerNow(), 50);
+        // One re-sync right away and one after the retry interval, two samples each
+        assertTrue(calls.get() <= 2 + 2 * 2);
+    }
+}
@@ -0,0 +1,146 @@
+package com.playfab.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Date;
+import java.util.Random;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.playfab.PlayFabContentDownloader;
+import com.playfab.PlayFabErrors.PlayFabResult;
+import com.playfab.PlayFabServerAPI;
+
+public class PlayFabContentDownloaderTest
+{
+    private static PlayFabFakeServer server;
+    private static PlayFabServerAPI serverApi;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void oneTimeSetUp() throws Exception
+    {
+        server = PlayFabFakeServer.Started(4);
+        serverApi = new PlayFabServerAPI(server.NewSettings());
+    }
+
+    @AfterClass
+    public static void oneTimeTearDown()
+    {
+        server.Stop();
+    }
+
+    private static byte[] RandomBytes(int size, int seed)
+    {
+        byte[] data = new byte[size];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+
+    @Test
+    public void DownloadsInRangesResumesAndCaches() throws Exception
+    {
+        byte[] original = RandomBytes(100000, 1);
+        server.PutContent("maps/world.bin", original);
+        PlayFabContentDownloader downloader = new PlayFabContentDownloader(
+            PlayFabContentDownloader.ServerContent(serverApi), folder.newFolder("cache"), 10000, 3, 1);
+
+        // Three of the ten ranges fail; the seven that arrived are kept
+        server.FailContentDownloads(3);
+        PlayFabResult<File> failed = downloader.Download("maps/world.bin", null);
+        assertNotNull(failed.Error);
+        assertEquals(10, server.GetRequestCount("GET /content/"));
+
+        PlayFabResult<File> resumed = downloader.Download("maps/world.bin", null);
+        assertNull(resumed.Error);
+        assertEquals(13, server.GetRequestCount("GET /content/"));
+        assertArrayEquals(original, Files.readAllBytes(resumed.Result.toPath()));
+        assertEquals(100000, downloader.GetDownloadedBytes());
+
+        // Without a LastModified the probe's ETag confirms the cached copy
+        assertEquals(resumed.Result, downloader.Download("maps/world.bin", null).Result);
+        assertEquals(14, server.GetRequestCount("GET /content/"));
+
+        // With one, a cached copy known to match needs no call at all
+        Date lastModified = new Date(1500000000000L);
+        downloader.Download("maps/world.bin", lastModified);
+        long urlCalls = server.GetRequestCount("/Server/GetContentDownloadUrl");
+        downloader.Download("maps/world.bin", lastModified);
+        assertEquals(urlCalls, server.GetRequestCount("/Server/GetContentDownloadUrl"));
+        assertEquals(15, server.GetRequestCount("GET /content/"));
+        assertEquals(3, downloader.GetCacheHitCount());
+
+        byte[] updated = RandomBytes(25000, 2);
+        server.PutContent("maps/world.bin", updated);
+        PlayFabResult<File> fresh = downloader.Download("maps/world.bin", new Date(1500000060000L));
+        assertArrayEquals(updated, Files.readAllBytes(fresh.Result.toPath()));
+        assertEquals(18, server.GetRequestCount("GET /content/"));
+        downloader.Close();
+    }
+
+    @Test
+    public void DownloadsEmptyContent() throws Exception
+    {
+        // Own server, so the request counts checked above are left alone
+        PlayFabFakeServer own = PlayFabFakeServer.Started(2);
+        try
+        {
+            own.PutContent("maps/empty.bin", new byte[0]);
+            PlayFabContentDownloader downloader = new PlayFabContentDownloader(
+                PlayFabContentDownloader.ServerContent(new PlayFabServerAPI(own.NewSettings())), folder.newFolder("cache"), 10000, 3, 1);
+
+            PlayFabResult<File> result = downloader.Download("maps/empty.bin", null);
+            assertNull(result.Error);
+            assertEquals(0, result.Result.length());
+            downloader.Close();
+        }
+        finally
+        {
+            own.Stop();
+        }
+    }
+
+    @Test
+    public void RestartsWhenThePartialFileIsGone() throws Exception
+    {
+        PlayFabFakeServer own = PlayFabFakeServer.Started(2);
+        try
+        {
+            byte[] original = RandomBytes(50000, 3);
+            own.PutContent("maps/lost.bin", original);
+            File cache = folder.newFolder("cache");
+            PlayFabContentDownloader downloader = new PlayFabContentDownloader(
+                PlayFabContentDownloader.ServerContent(new PlayFabServerAPI(own.NewSettings())), cache, 10000, 3, 1);
+
+            own.FailContentDownloads(2);
+            assertNotNull(downloader.Download("maps/lost.bin", null).Error);
+            boolean deleted = false;
+            for (File file : cache.listFiles())
+                if (file.getName().endsWith(".part"))
+                    deleted = file.delete();
+            assertTrue(deleted);
+
+            // The state alone would claim parts that are no longer on disk
+            PlayFabResult<File> restarted = downloader.Download("maps/lost.bin", null);
+            assertNull(restarted.Error);
+            assertArrayEquals(original, Files.readAllBytes(restarted.Result.toPath()));
+            downloader.Close();
+        }
+        finally
+        {
+            own.Stop();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.playfab.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.playfab.PlayFabAdminAPI;
+import com.playfab.PlayFabContentUploader;
+import com.playfab.PlayFabErrors.PlayFabResult;
+
+public class PlayFabContentUploaderTest
+{
+    private static PlayFabFakeServer server;
+    private static PlayFabAdminAPI adminApi;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void oneTimeSetUp() throws Exception
+    {
+        server = PlayFabFakeServer.Started(4);
+        adminApi = new PlayFabAdminAPI(server.NewSettings());
+    }
+
+    @AfterClass
+    public static void oneTimeTearDown()
+    {
+        server.Stop();
+    }
+
+    private File WriteFile(String name, int size, int seed) throws Exception
+    {
+        byte[] data = new byte[size];
+        new Random(seed).nextBytes(data);
+        File file = folder.newFile(name);
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(data);
+        out.close();
+        return file;
+    }
+
+    @Test
+    public void UploadsResumesAndSkipsUnchanged() throws Exception
+    {
+        Map<String, File> files = new TreeMap<String, File>();
+        for (int i = 0; i < 6; i++)
+            files.put("levels/level" + i + ".bin", WriteFile("level" + i + ".bin", 100000 + i * 1000, i));
+        File manifest = new File(folder.getRoot(), "upload.manifest");
+
+        // The first upload attempt fails and is not retried, so one key is left over
+        server.FailContentUploads(1);
+        PlayFabContentUploader uploader = new PlayFabContentUploader(adminApi, manifest, 3, 1);
+        PlayFabResult<PlayFabContentUploader.Report> first = uploader.Upload(files);
+        assertEquals(5, first.Result.Uploaded.size());
+        assertEquals(1, first.Result.Failures.size());
+        String failed = first.Result.Failures.keySet().iterator().next();
+
+        // A fresh uploader picks up the manifest and only sends the failed key
+        PlayFabContentUploader resumed = new PlayFabContentUploader(adminApi, manifest, 3, 1);
+        PlayFabResult<PlayFabContentUploader.Report> second = resumed.Upload(files);
+        assertEquals(Arrays.asList(failed), second.Result.Uploaded);
+        assertEquals(5, second.Result.Skipped.size());
+        assertTrue(second.Result.Failures.isEmpty());
+        assertEquals(7, server.GetRequestCount("PUT /content/"));
+
+        byte[] expected = Files.readAllBytes(files.get("levels/level3.bin").toPath());
+        assertArrayEquals(expected, server.GetContent("levels/level3.bin"));
+
+        // A changed file of the same size is sent again
+        files.put("levels/level2.bin", WriteFile("level2-edited.bin", 102000, 99));
+        PlayFabResult<PlayFabContentUploader.Report> third = resumed.Upload(files);
+        assertEquals(Arrays.asList("levels/level2.bin"), third.Result.Uploaded);
+        assertEquals(102000, third.Result.UploadedBytes);
+        assertEquals(8, server.GetRequestCount("PUT /content/"));
+        // The appended lines are compacted to one per key when a run ends
+        assertEquals(6, Files.readAllLines(manifest.toPath(), Charset.forName("UTF-8")).size());
+    }
+}
@@ -0,0 +1,66 @@
+package com.playfab.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.playfab.PlayFabDispatcher;
+import com.playfab.PlayFabDispatcher.Priority;
+
+public class PlayFabDispatcherTest
+{
+    private static final String LOGIN_URL = "https://test.playfabapi.com/Client/LoginWithCustomID";
+    private static final String EVENT_URL = "https://test.playfabapi.com/Server/WritePlayerEvent";
+    private static final String DATA_URL = "https://test.playfabapi.com/Server/GetUserData";
+
+    @Test
+    public void ClassifiesByApiPath()
+    {
+        PlayFabDispatcher dispatcher = new PlayFabDispatcher(4);
+        assertEquals(Priority.Interactive, dispatcher.GetPriority(LOGIN_URL));
+        assertEquals(Priority.Background, dispatcher.GetPriority(EVENT_URL));
+        assertEquals(Priority.Normal, dispatcher.GetPriority(DATA_URL));
+
+        dispatcher.SetPriority("/Server/GetUserData", Priority.Interactive);
+        assertEquals(Priority.Interactive, dispatcher.GetPriority(DATA_URL));
+    }
+
+    /**
+     *  Background traffic must not be able to take the slots reserved for interactive calls
+     */
+    @Test
+    public void BackgroundCannotUseReservedSlots() throws Exception
+    {
+        final PlayFabDispatcher dispatcher = new PlayFabDispatcher(2, 8, 3, 1, 1);
+        Priority first = dispatcher.Acquire(EVENT_URL);
+
+        final CountDownLatch backgroundAdmitted = new CountDownLatch(1);
+        Thread background = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    Priority priority = dispatcher.Acquire(EVENT_URL);
+                    backgroundAdmitted.countDown();
+                    dispatcher.Release(priority);
+                } catch (InterruptedException e) {
+                }
+            }
+        });
+        background.start();
+        assertTrue(!backgroundAdmitted.await(100, TimeUnit.MILLISECONDS));
+        assertEquals(1, dispatcher.GetQueueDepth(Priority.Background));
+
+        // The interactive call goes straight through on the reserved slot
+        Priority login = dispatcher.Acquire(LOGIN_URL);
+        assertEquals(2, dispatcher.GetInFlight());
+        dispatcher.Release(login);
+
+        dispatcher.Release(first);
+        assertTrue(backgroundAdmitted.await(1, TimeUnit.SECONDS));
+        background.join();
+        assertEquals(0, dispatcher.GetInFlight());
+    }
+}
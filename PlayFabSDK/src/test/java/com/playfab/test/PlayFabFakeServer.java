@@ -0,0 +1,1659 @@
+package com.playfab.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.playfab.PlayFabAdminModels;
+import com.playfab.PlayFabErrors.PlayFabErrorCode;
+import com.playfab.PlayFabServerModels;
+import com.playfab.PlayFabServerModels.CatalogItem;
+import com.playfab.PlayFabServerModels.ItemInstance;
+import com.playfab.PlayFabServerModels.UserDataRecord;
+import com.playfab.PlayFabSettings;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * In-process stand-in for the PlayFab API, for offline tests and benchmarks.
+ *
+ * Implements the JSON contract for the commonly used Client, Server, Admin and Matchmaker calls on top of in-memory
+ * state.  Point a PlayFabSettings at it by setting settings.ServerURL = server.GetURL().  Latency, error injection and
+ * throttling can be changed while the server is running.
+ */
+public class PlayFabFakeServer
+{
+    private static Gson gson = new GsonBuilder().setDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").create();
+    private static final String CONTENT_PATH = "/content/";
+
+    /**
+     * Produces the artificial delay applied to each request
+     */
+    public static interface LatencyModel
+    {
+        long NextDelayMicros(Random random);
+    }
+
+    public static LatencyModel FixedLatency(final long millis)
+    {
+        return new LatencyModel() {
+            public long NextDelayMicros(Random random) {
+                return millis * 1000;
+            }
+        };
+    }
+
+    public static LatencyModel UniformLatency(final long minMillis, final long maxMillis)
+    {
+        return new LatencyModel() {
+            public long NextDelayMicros(Random random) {
+                return (minMillis * 1000) + (long)(random.nextDouble() * (maxMillis - minMillis) * 1000);
+            }
+        };
+    }
+
+    /**
+     * Long-tailed latency: median of medianMillis, with sigma controlling the spread of the tail
+     */
+    public static LatencyModel LogNormalLatency(final double medianMillis, final double sigma)
+    {
+        return new LatencyModel() {
+            public long NextDelayMicros(Random random) {
+                return (long)(medianMillis * Math.exp(sigma * random.nextGaussian()) * 1000);
+            }
+        };
+    }
+
+    /**
+     * Handles one API path.  Throw FakeError to send a PlayFab error response.
+     */
+    public static interface Handler
+    {
+        Object Handle(String body, String sessionTicket) throws FakeError;
+    }
+
+    public static class FakeError extends Exception
+    {
+        private static final long serialVersionUID = 1L;
+        public final int httpCode;
+        public final PlayFabErrorCode errorCode;
+
+        public FakeError(int httpCode, PlayFabErrorCode errorCode, String message)
+        {
+            super(message);
+            this.httpCode = httpCode;
+            this.errorCode = errorCode;
+        }
+    }
+
+    private static class PlayerState
+    {
+        final String playFabId;
+        final Date created = new Date();
+        final Map<String, UserDataRecord> userData = new HashMap<String, UserDataRecord>();
+        final Map<String, UserDataRecord> readOnlyData = new HashMap<String, UserDataRecord>();
+        final Map<String, Integer> statistics = new HashMap<String, Integer>();
+        final List<ItemInstance> inventory = new ArrayList<ItemInstance>();
+        final Map<String, List<ItemInstance>> characterInventories = new HashMap<String, List<ItemInstance>>();
+        final Map<String, Integer> virtualCurrency = new HashMap<String, Integer>();
+        long dataVersion;
+        long readOnlyDataVersion;
+        boolean banned;
+
+        PlayerState(String playFabId)
+        {
+            this.playFabId = playFabId;
+        }
+    }
+
+    // Body of SetCatalogItems and UpdateCatalogItems, read into the server catalog model
+    private static class CatalogUpload
+    {
+        public String CatalogVersion;
+        public ArrayList<CatalogItem> Catalog;
+    }
+
+    // Body of SetStoreItems and UpdateStoreItems, and the stored state of a store
+    private static class StoreUpload
+    {
+        public String CatalogVersion;
+        public String StoreId;
+        public JsonObject MarketingData;
+        public ArrayList<JsonObject> Store;
+    }
+
+    // An object uploaded through a GetContentUploadUrl URL
+    private static class ContentState
+    {
+        final byte[] data;
+        final String contentType;
+        final Date lastModified;
+
+        ContentState(byte[] data, String contentType, Date lastModified)
+        {
+            this.data = data;
+            this.contentType = contentType;
+            this.lastModified = lastModified;
+        }
+    }
+
+    private final Map<String, Handler> handlers = new ConcurrentHashMap<String, Handler>();
+    private final ConcurrentHashMap<String, AtomicLong> requestCounts = new ConcurrentHashMap<String, AtomicLong>();
+    private final Random random = new Random(1234);
+
+    // All game state is guarded by the server instance
+    private final Map<String, PlayerState> players = new HashMap<String, PlayerState>();
+    private final Map<String, String> customIds = new HashMap<String, String>();
+    private final Map<String, String> sessionTickets = new HashMap<String, String>();
+    private final Map<String, String> titleData = new HashMap<String, String>();
+    private final Map<String, String> titleInternalData = new HashMap<String, String>();
+    private final Map<String, List<CatalogItem>> catalogs = new HashMap<String, List<CatalogItem>>();
+    private final Map<String, StoreUpload> stores = new HashMap<String, StoreUpload>();
+    private final Map<String, Map<String, PlayFabServerModels.RandomResultTableListing>> randomResultTables = new HashMap<String, Map<String, PlayFabServerModels.RandomResultTableListing>>();
+    private final Map<String, ContentState> contents = new TreeMap<String, ContentState>();
+    private final Map<String, JsonObject> builds = new HashMap<String, JsonObject>();
+    private final Map<String, String> taskNames = new HashMap<String, String>();
+    private final Map<String, PlayFabAdminModels.TaskInstanceBasicSummary> taskInstances = new TreeMap<String, PlayFabAdminModels.TaskInstanceBasicSummary>();
+    private int contentFailures;
+    private int downloadFailures;
+    private final Map<String, int[]> requestFailures = new HashMap<String, int[]>();
+    private final Map<String, String> lobbies = new HashMap<String, String>();
+    private String defaultCatalogVersion = "Main";
+    private long nextItemInstance = 1;
+    private long nextCharacter = 1;
+
+    private volatile LatencyModel latency = null;
+    private volatile double errorRate = 0;
+    private volatile PlayFabErrorCode injectedError = PlayFabErrorCode.InternalServerError;
+    private volatile int throttlePerSecond = 0;
+    private long throttleWindowStart;
+    private int throttleWindowCount;
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public PlayFabFakeServer()
+    {
+        RegisterDefaultHandlers();
+    }
+
+    /**
+     * Binds to an ephemeral loopback port and starts serving with the given number of worker threads
+     */
+    public void Start(int threads) throws IOException
+    {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 256);
+        executor = Executors.newFixedThreadPool(threads);
+        server.setExecutor(executor);
+        server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                Serve(exchange);
+            }
+        });
+        server.createContext(CONTENT_PATH, new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                ServeContent(exchange);
+            }
+        });
+        server.start();
+    }
+
+    /**
+     * Creates a server and starts it, the usual setup of a test class
+     */
+    public static PlayFabFakeServer Started(int threads) throws IOException
+    {
+        PlayFabFakeServer server = new PlayFabFakeServer();
+        server.Start(threads);
+        return server;
+    }
+
+    /**
+     * Settings for a fake title whose calls go to this server
+     */
+    public PlayFabSettings NewSettings()
+    {
+        PlayFabSettings settings = new PlayFabSettings("FAKE", "fake-secret-key");
+        settings.ServerURL = GetURL();
+        return settings;
+    }
+
+    public void Stop()
+    {
+        if (server != null)
+            server.stop(0);
+        if (executor != null)
+            executor.shutdownNow();
+    }
+
+    public String GetURL()
+    {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public void SetLatency(LatencyModel latency)
+    {
+        this.latency = latency;
+    }
+
+    /**
+     * Fails the given fraction of requests (0..1) with the given error code
+     */
+    public void SetErrorInjection(double errorRate, PlayFabErrorCode errorCode)
+    {
+        this.injectedError = errorCode;
+        this.errorRate = errorRate;
+    }
+
+    /**
+     * Rejects requests beyond the given rate with APIClientRequestRateLimitExceeded, or 0 to disable
+     */
+    public void SetThrottle(int requestsPerSecond)
+    {
+        this.throttlePerSecond = requestsPerSecond;
+    }
+
+    public void SetHandler(String apiPath, Handler handler)
+    {
+        handlers.put(apiPath, handler);
+    }
+
+    public long GetRequestCount(String apiPath)
+    {
+        AtomicLong count = requestCounts.get(apiPath);
+        return count == null ? 0 : count.get();
+    }
+
+    // Seeding helpers for tests and benchmarks
+
+    public synchronized String AddPlayer(String customId)
+    {
+        return GetOrCreatePlayer(customId).playFabId;
+    }
+
+    public synchronized String AddCharacter(String playFabId)
+    {
+        String characterId = String.format("C%015X", nextCharacter++);
+        players.get(playFabId).characterInventories.put(characterId, new ArrayList<ItemInstance>());
+        return characterId;
+    }
+
+    public synchronized String AddLobby(String gameMode)
+    {
+        String lobbyId = Integer.toString(lobbies.size() + 1);
+        lobbies.put(lobbyId, gameMode);
+        return lobbyId;
+    }
+
+    public synchronized String CreateSessionTicket(String playFabId)
+    {
+        String ticket = playFabId + "-" + UUID.randomUUID().toString();
+        sessionTickets.put(ticket, playFabId);
+        return ticket;
+    }
+
+    public synchronized void SetCatalog(String catalogVersion, List<CatalogItem> items)
+    {
+        catalogs.put(catalogVersion, new ArrayList<CatalogItem>(items));
+    }
+
+    public synchronized void SetRandomResultTables(String catalogVersion, Map<String, PlayFabServerModels.RandomResultTableListing> tables)
+    {
+        randomResultTables.put(catalogVersion, new HashMap<String, PlayFabServerModels.RandomResultTableListing>(tables));
+    }
+
+    /**
+     * Sets a store from StoreItem-shaped entries of any model
+     */
+    public synchronized void SetStore(String catalogVersion, String storeId, List<?> items)
+    {
+        StoreUpload store = new StoreUpload();
+        store.CatalogVersion = catalogVersion;
+        store.StoreId = storeId;
+        store.Store = new ArrayList<JsonObject>();
+        for (Object item : items)
+            store.Store.add(gson.toJsonTree(item).getAsJsonObject());
+        stores.put(StoreKey(catalogVersion, storeId), store);
+    }
+
+    private String StoreKey(String catalogVersion, String storeId)
+    {
+        return (catalogVersion != null ? catalogVersion : defaultCatalogVersion) + "/" + storeId;
+    }
+
+    public synchronized void SetTitleData(String key, String value)
+    {
+        titleData.put(key, value);
+    }
+
+    public synchronized void SetStatistic(String playFabId, String statisticName, int value)
+    {
+        players.get(playFabId).statistics.put(statisticName, value);
+    }
+
+    /**
+     * Fails the next count content uploads with a 500
+     */
+    public synchronized void FailContentUploads(int count)
+    {
+        contentFailures = count;
+    }
+
+    /**
+     * Fails the next count ranged content downloads that do not start at byte 0 with a 500, so the first part of a
+     * download, which also reports the size, still succeeds
+     */
+    public synchronized void FailContentDownloads(int count)
+    {
+        downloadFailures = count;
+    }
+
+    /**
+     * Moves a task instance started by RunTask along; a terminal status also sets its CompletedAt
+     */
+    public synchronized void SetTaskInstance(String taskInstanceId, PlayFabAdminModels.TaskInstanceStatus status, double percentComplete)
+    {
+        PlayFabAdminModels.TaskInstanceBasicSummary instance = taskInstances.get(taskInstanceId);
+        instance.Status = status;
+        instance.PercentComplete = percentComplete;
+        if (status != PlayFabAdminModels.TaskInstanceStatus.InProgress && status != PlayFabAdminModels.TaskInstanceStatus.Starting
+                && status != PlayFabAdminModels.TaskInstanceStatus.Pending)
+            instance.CompletedAt = new Date();
+    }
+
+    /**
+     * Lets the next skip requests to apiPath through, then fails count of them with InternalServerError
+     */
+    public synchronized void FailRequests(String apiPath, int skip, int count)
+    {
+        requestFailures.put(apiPath, new int[] { skip, count });
+    }
+
+    private synchronized void CheckRequestFailure(String path) throws FakeError
+    {
+        int[] failure = requestFailures.get(path);
+        if (failure == null)
+            return;
+        if (failure[0] > 0) {
+            failure[0]--;
+            return;
+        }
+        if (--failure[1] <= 0)
+            requestFailures.remove(path);
+        throw new FakeError(500, PlayFabErrorCode.InternalServerError, "Injected failure of " + path);
+    }
+
+    public synchronized void PutContent(String key, byte[] data)
+    {
+        contents.put(key, new ContentState(data, "application/octet-stream", new Date()));
+    }
+
+    /**
+     * Makes a report, in whatever encoding the test wants to serve, available to GetDataReport
+     */
+    public void PutReport(String reportName, int year, int month, int day, byte[] data)
+    {
+        PutContent(ReportKey(reportName, year, month, day), data);
+    }
+
+    private static String ReportKey(String reportName, Integer year, Integer month, Integer day)
+    {
+        return "reports/" + reportName + "/" + year + "-" + month + "-" + day;
+    }
+
+    /**
+     * Bytes stored under a content key, or null
+     */
+    public synchronized byte[] GetContent(String key)
+    {
+        ContentState content = contents.get(key);
+        return content == null ? null : content.data;
+    }
+
+    private void CountRequest(String path)
+    {
+        AtomicLong count = requestCounts.get(path);
+        if (count == null) {
+            requestCounts.putIfAbsent(path, new AtomicLong());
+            count = requestCounts.get(path);
+        }
+        count.incrementAndGet();
+    }
+
+    // Stands in for the storage behind pre-signed content URLs: PUT stores the body, GET returns it or a byte range of it
+    private void ServeContent(HttpExchange exchange) throws IOException
+    {
+        String path = exchange.getRequestURI().getPath();
+        String key = path.substring(CONTENT_PATH.length());
+        String method = exchange.getRequestMethod();
+        CountRequest(method + " " + CONTENT_PATH);
+        Delay();
+
+        if (method.equals("PUT")) {
+            byte[] data = ReadBytes(exchange.getRequestBody());
+            boolean fail;
+            synchronized (this) {
+                fail = contentFailures > 0;
+                if (fail)
+                    contentFailures--;
+                else
+                    contents.put(key, new ContentState(data, exchange.getRequestHeaders().getFirst("Content-Type"), new Date()));
+            }
+            if (fail) {
+                exchange.sendResponseHeaders(500, -1);
+            } else {
+                exchange.getResponseHeaders().set("ETag", "\"" + Md5Hex(data) + "\"");
+                exchange.sendResponseHeaders(200, -1);
+            }
+            exchange.close();
+            return;
+        }
+
+        ContentState content;
+        synchronized (this) {
+            content = contents.get(key);
+        }
+        if (!method.equals("GET") || content == null) {
+            ReadBytes(exchange.getRequestBody());
+            exchange.sendResponseHeaders(content == null ? 404 : 405, -1);
+            exchange.close();
+            return;
+        }
+        ReadBytes(exchange.getRequestBody());
+
+        // A single "bytes=first-last" range, as the storage behind download URLs supports
+        int first = 0;
+        int last = content.data.length - 1;
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        if (range != null && range.startsWith("bytes=")) {
+            String[] bounds = range.substring(6).split("-", 2);
+            first = Integer.parseInt(bounds[0]);
+            if (bounds.length > 1 && !bounds[1].isEmpty())
+                last = Math.min(last, Integer.parseInt(bounds[1]));
+            if (first > last) {
+                exchange.getResponseHeaders().set("Content-Range", "bytes */" + content.data.length);
+                exchange.sendResponseHeaders(416, -1);
+                exchange.close();
+                return;
+            }
+            boolean fail = false;
+            synchronized (this) {
+                if (first > 0 && downloadFailures > 0) {
+                    downloadFailures--;
+                    fail = true;
+                }
+            }
+            if (fail) {
+                exchange.sendResponseHeaders(500, -1);
+                exchange.close();
+                return;
+            }
+        }
+
+        SimpleDateFormat httpDate = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US);
+        httpDate.setTimeZone(TimeZone.getTimeZone("GMT"));
+        exchange.getResponseHeaders().set("Content-Type", content.contentType != null ? content.contentType : "application/octet-stream");
+        exchange.getResponseHeaders().set("ETag", "\"" + Md5Hex(content.data) + "\"");
+        exchange.getResponseHeaders().set("Last-Modified", httpDate.format(content.lastModified));
+        exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+        int length = last - first + 1;
+        if (range != null) {
+            exchange.getResponseHeaders().set("Content-Range", "bytes " + first + "-" + last + "/" + content.data.length);
+            exchange.sendResponseHeaders(206, length);
+        } else {
+            exchange.sendResponseHeaders(200, length);
+        }
+        OutputStream out = exchange.getResponseBody();
+        out.write(content.data, first, length);
+        out.close();
+    }
+
+    private static String Md5Hex(byte[] data)
+    {
+        try {
+            StringBuilder hex = new StringBuilder();
+            for (byte b : MessageDigest.getInstance("MD5").digest(data))
+                hex.append(String.format("%02x", b));
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void Serve(HttpExchange exchange) throws IOException
+    {
+        String path = exchange.getRequestURI().getPath();
+        CountRequest(path);
+
+        String body = ReadAll(exchange.getRequestBody());
+        String responseJson;
+        int httpCode = 200;
+        try {
+            Delay();
+            CheckThrottle();
+            CheckInjectedError();
+            CheckRequestFailure(path);
+
+            Handler handler = handlers.get(path);
+            if (handler == null)
+                throw new FakeError(404, PlayFabErrorCode.Unknown, "No fake handler for " + path);
+            Object data = handler.Handle(body, exchange.getRequestHeaders().getFirst("X-Authorization"));
+
+            JsonObject envelope = new JsonObject();
+            envelope.addProperty("code", 200);
+            envelope.addProperty("status", "OK");
+            envelope.add("data", data == null ? new JsonObject() : gson.toJsonTree(data));
+            responseJson = gson.toJson(envelope);
+        } catch (FakeError e) {
+            httpCode = e.httpCode;
+            JsonObject error = new JsonObject();
+            error.addProperty("code", e.httpCode);
+            error.addProperty("status", "Error");
+            error.addProperty("error", e.errorCode.name());
+            error.addProperty("errorCode", e.errorCode.id);
+            error.addProperty("errorMessage", e.getMessage());
+            responseJson = gson.toJson(error);
+        }
+
+        byte[] bytes = responseJson.getBytes("UTF-8");
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(httpCode, bytes.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(bytes);
+        out.close();
+    }
+
+    private void Delay()
+    {
+        LatencyModel model = latency;
+        if (model == null)
+            return;
+        long micros;
+        synchronized (random) {
+            micros = model.NextDelayMicros(random);
+        }
+        if (micros <= 0)
+            return;
+        try {
+            Thread.sleep(micros / 1000, (int)(micros % 1000) * 1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized void CheckThrottle() throws FakeError
+    {
+        int limit = throttlePerSecond;
+        if (limit <= 0)
+            return;
+        long now = System.currentTimeMillis();
+        if (now - throttleWindowStart >= 1000) {
+            throttleWindowStart = now;
+            throttleWindowCount = 0;
+        }
+        if (++throttleWindowCount > limit)
+            throw new FakeError(429, PlayFabErrorCode.APIClientRequestRateLimitExceeded, "The request rate limit was exceeded");
+    }
+
+    private void CheckInjectedError() throws FakeError
+    {
+        double rate = errorRate;
+        if (rate <= 0)
+            return;
+        boolean fail;
+        synchronized (random) {
+            fail = random.nextDouble() < rate;
+        }
+        if (fail)
+            throw new FakeError(500, injectedError, "Injected failure");
+    }
+
+    private static String ReadAll(InputStream in) throws IOException
+    {
+        return new String(ReadBytes(in), "UTF-8");
+    }
+
+    private static byte[] ReadBytes(InputStream in) throws IOException
+    {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        byte[] chunk = new byte[4096];
+        int read;
+        while ((read = in.read(chunk)) > 0)
+            buffer.write(chunk, 0, read);
+        in.close();
+        return buffer.toByteArray();
+    }
+
+    private PlayerState GetOrCreatePlayer(String customId)
+    {
+        String playFabId = customIds.get(customId);
+        if (playFabId == null) {
+            playFabId = String.format("%016X", players.size() + 1);
+            customIds.put(customId, playFabId);
+            players.put(playFabId, new PlayerState(playFabId));
+        }
+        return players.get(playFabId);
+    }
+
+    private PlayerState RequirePlayer(String playFabId) throws FakeError
+    {
+        PlayerState player = playFabId == null ? null : players.get(playFabId);
+        if (player == null)
+            throw new FakeError(400, PlayFabErrorCode.AccountNotFound, "User not found");
+        return player;
+    }
+
+    private List<ItemInstance> RequireCharacter(PlayerState player, String characterId) throws FakeError
+    {
+        List<ItemInstance> inventory = characterId == null ? null : player.characterInventories.get(characterId);
+        if (inventory == null)
+            throw new FakeError(400, PlayFabErrorCode.CharacterNotFound, "Character not found");
+        return inventory;
+    }
+
+    private static void MoveItem(List<ItemInstance> from, List<ItemInstance> to, String itemInstanceId) throws FakeError
+    {
+        for (int i = 0; i < from.size(); i++) {
+            if (from.get(i).ItemInstanceId.equals(itemInstanceId)) {
+                to.add(from.remove(i));
+                return;
+            }
+        }
+        throw new FakeError(400, PlayFabErrorCode.ItemNotFound, "Item instance not found: " + itemInstanceId);
+    }
+
+    private PlayerState RequireSession(String sessionTicket) throws FakeError
+    {
+        String playFabId = sessionTicket == null ? null : sessionTickets.get(sessionTicket);
+        if (playFabId == null)
+            throw new FakeError(401, PlayFabErrorCode.NotAuthenticated, "This API method requires a logged in user");
+        return players.get(playFabId);
+    }
+
+    private <T> T Parse(String body, Class<T> type) throws FakeError
+    {
+        try {
+            T request = gson.fromJson(body, type);
+            if (request == null)
+                throw new FakeError(400, PlayFabErrorCode.InvalidParams, "Empty request");
+            return request;
+        } catch (RuntimeException e) {
+            throw new FakeError(400, PlayFabErrorCode.InvalidParams, "Invalid request: " + e.getMessage());
+        }
+    }
+
+    private static Map<String, UserDataRecord> SelectData(Map<String, UserDataRecord> data, List<String> keys)
+    {
+        Map<String, UserDataRecord> output = new HashMap<String, UserDataRecord>();
+        for (Map.Entry<String, UserDataRecord> entry : data.entrySet())
+            if (keys == null || keys.isEmpty() || keys.contains(entry.getKey()))
+                output.put(entry.getKey(), entry.getValue());
+        return output;
+    }
+
+    private static Map<String, String> SelectTitleData(Map<String, String> data, List<String> keys)
+    {
+        Map<String, String> output = new HashMap<String, String>();
+        for (Map.Entry<String, String> entry : data.entrySet())
+            if (keys == null || keys.isEmpty() || keys.contains(entry.getKey()))
+                output.put(entry.getKey(), entry.getValue());
+        return output;
+    }
+
+    private PlayFabServerModels.GetUserDataResult GetUserData(PlayerState player, PlayFabServerModels.GetUserDataRequest request, boolean readOnly)
+    {
+        long version = readOnly ? player.readOnlyDataVersion : player.dataVersion;
+        PlayFabServerModels.GetUserDataResult result = new PlayFabServerModels.GetUserDataResult();
+        result.PlayFabId = player.playFabId;
+        result.DataVersion = version;
+        if (request.IfChangedFromDataVersion == null || request.IfChangedFromDataVersion < version)
+            result.Data = SelectData(readOnly ? player.readOnlyData : player.userData, request.Keys);
+        return result;
+    }
+
+    private PlayFabServerModels.GetPlayerCombinedInfoResult GetPlayerCombinedInfo(PlayerState player, PlayFabServerModels.GetPlayerCombinedInfoRequestParams wanted)
+    {
+        PlayFabServerModels.GetPlayerCombinedInfoResult result = new PlayFabServerModels.GetPlayerCombinedInfoResult();
+        result.PlayFabId = player.playFabId;
+        result.InfoResultPayload = new PlayFabServerModels.GetPlayerCombinedInfoResultPayload();
+        if (wanted == null)
+            return result;
+        if (wanted.GetUserData != null && wanted.GetUserData) {
+            result.InfoResultPayload.UserData = SelectData(player.userData, wanted.UserDataKeys);
+            result.InfoResultPayload.UserDataVersion = player.dataVersion;
+        }
+        if (wanted.GetUserReadOnlyData != null && wanted.GetUserReadOnlyData) {
+            result.InfoResultPayload.UserReadOnlyData = SelectData(player.readOnlyData, wanted.UserReadOnlyDataKeys);
+            result.InfoResultPayload.UserReadOnlyDataVersion = player.readOnlyDataVersion;
+        }
+        return result;
+    }
+
+    private long UpdateUserData(PlayerState player, PlayFabServerModels.UpdateUserDataRequest request, boolean readOnly)
+    {
+        Map<String, UserDataRecord> data = readOnly ? player.readOnlyData : player.userData;
+        Date now = new Date();
+        if (request.Data != null) {
+            for (Map.Entry<String, String> entry : request.Data.entrySet()) {
+                UserDataRecord record = new UserDataRecord();
+                record.Value = entry.getValue();
+                record.LastUpdated = now;
+                record.Permission = request.Permission;
+                data.put(entry.getKey(), record);
+            }
+        }
+        if (request.KeysToRemove != null)
+            for (String key : request.KeysToRemove)
+                data.remove(key);
+        return readOnly ? ++player.readOnlyDataVersion : ++player.dataVersion;
+    }
+
+    private ItemInstance GrantItem(List<ItemInstance> inventory, String catalogVersion, String itemId, String annotation) throws FakeError
+    {
+        String version = catalogVersion != null ? catalogVersion : defaultCatalogVersion;
+        CatalogItem catalogItem = null;
+        List<CatalogItem> catalog = catalogs.get(version);
+        if (catalog != null)
+            for (CatalogItem each : catalog)
+                if (each.ItemId.equals(itemId))
+                    catalogItem = each;
+        if (catalogItem == null)
+            throw new FakeError(400, PlayFabErrorCode.ItemNotFound, "Item not found: " + itemId);
+
+        ItemInstance instance = new ItemInstance();
+        instance.ItemId = itemId;
+        instance.ItemInstanceId = String.format("%016X", nextItemInstance++);
+        instance.ItemClass = catalogItem.ItemClass;
+        instance.CatalogVersion = version;
+        instance.DisplayName = catalogItem.DisplayName;
+        instance.PurchaseDate = new Date();
+        instance.Annotation = annotation;
+        if (catalogItem.Consumable != null && catalogItem.Consumable.UsageCount != null)
+            instance.RemainingUses = catalogItem.Consumable.UsageCount.intValue();
+        inventory.add(instance);
+        return instance;
+    }
+
+    private List<CatalogItem> GetCatalog(String catalogVersion)
+    {
+        List<CatalogItem> catalog = catalogs.get(catalogVersion != null ? catalogVersion : defaultCatalogVersion);
+        return catalog == null ? Collections.<CatalogItem>emptyList() : catalog;
+    }
+
+    private void RegisterDefaultHandlers()
+    {
+        final Handler getTime = new Handler() {
+            public Object Handle(String body, String sessionTicket) {
+                PlayFabServerModels.GetTimeResult result = new PlayFabServerModels.GetTimeResult();
+                result.Time = new Date();
+                return result;
+            }
+        };
+        final Handler writeEvent = new Handler() {
+            public Object Handle(String body, String sessionTicket) {
+                PlayFabServerModels.WriteEventResponse result = new PlayFabServerModels.WriteEventResponse();
+                result.EventId = UUID.randomUUID().toString();
+                return result;
+            }
+        };
+        final Handler getCatalogItems = new Handler() {
+            public Object Handle(String body, String sessionTicket) throws FakeError {
+                PlayFabServerModels.GetCatalogItemsRequest request = Parse(body, PlayFabServerModels.GetCatalogItemsRequest.class);
+                PlayFabServerModels.GetCatalogItemsResult result = new PlayFabServerModels.GetCatalogItemsResult();
+                synchronized (PlayFabFakeServer.this) {
+                    result.Catalog = new ArrayList<CatalogItem>(GetCatalog(request.CatalogVersion));
+                }
+                return result;
+            }
+        };
+
+        // Client API
+        SetHandler("/Client/LoginWithCustomID", new Handler() {
+            public Object Handle(String body, String sessionTicket) throws FakeError {
+                JsonObject request = Parse(body, JsonObject.class);
+                if (!request.has("CustomId"))
+                    throw new FakeError(400, PlayFabErrorCode.InvalidParams, "CustomId is required");
+                String customId = request.get("CustomId").getAsString();
+                synchronized (PlayFabFakeServer.this) {
+                    boolean exists = customIds.containsKey(customId);
+                    boolean create = request.has("CreateAccount") && request.get("CreateAccount").getAsBoolean();
+                    if (!exists && !create)
+                        throw new FakeError(400, PlayFabErrorCode.AccountNotFound, "User not found");
+                    PlayerState player = GetOrCreatePlayer(customId);
+
+                    JsonObject result = new JsonObject();
+                    result.addProperty("SessionTicket", CreateSessionTicket(player.playFabId));
+                    result.addProperty("PlayFabId", player.playFabId);
+                    result.addProperty("NewlyCreated", !exists);
+                    JsonObject settings = new JsonObject();
+                    settings.addProperty("NeedsAttribution", false);
+                    result.add("SettingsForUser", settings);
+                    return result;
+                }
+            }
+        });
+        SetHandler("/Client/GetTime", getTime);
+        SetHandler("/Client/GetCatalogItems", getCatalogItems);
+        SetHandler("/Client/WritePlayerEvent", writeEvent);
+        SetHandler("/Client/GetTitleData", new Handler() {
+            public Object Handle(String body, String sessionTicket) throws FakeError {
+                PlayFabServerModels.GetTitleDataRequest request = Parse(body, PlayFabServerModels.GetTitleDataRequest.class);
+                PlayFabServerModels.GetTitleDataResult result = new PlayFabServerModels.GetTitleDataResult();
+                synchronized (PlayFabFakeServer.this) {
+                    result.Data = SelectTitleData(titleData, request.Keys);
+                }
+                return result;
+            }
+        });
+        SetHandler("/Client/GetUserData", new Handler() {
+            public Object Handle(String body, String sessionTicket) throws FakeError {
+                PlayFabServerModels.GetUserDataRequest request = Parse(body, PlayFabServerModels.GetUserDataRequest.class);
+                synchronized (PlayFabFakeServer.this) {
+                    PlayerState player = request.PlayFabId != null ? RequirePlayer(request.PlayFabId) : RequireSession(sessionTicket);
+                    return GetUserData(player, request, false);
+                }
+            }
+        });
+        SetHandler("/Client/UpdateUserData", new Handler() {
+            public Object Handle(String body, String sessionTicket) throws FakeError {
+                PlayFabServerModels.UpdateUserDataRequest request = Parse(body, PlayFabServerModels.UpdateUserDataRequest.class);
+                PlayFabServerModels.UpdateUserDataResult result = new PlayFabServerModels.UpdateUserDataResult();
+                synchronized (PlayFabFakeServer.this) {
+                    result.DataVersion = UpdateUserData(RequireSession(sessionTicket), request, false);
+                }
+                return result;
+            }
+        });
+        SetHandler("/Client/GetPlayerCombinedInfo", new Handler() {
+            public Object Handle(String body, String sessionTicket) throws FakeError {
+                PlayFabServerModels.GetPlayerCombinedInfoRequest request = Parse(body, PlayFabServerModels.GetPlayerCombinedInfoRequest.class);
+                synchronized (PlayFabFakeServer.this) {
+                    PlayerState player = request.PlayFabId != null ? RequirePlayer(request.PlayFabId) : RequireSession(sessionTicket);
+                    return GetPlayerCombinedInfo(player, request.InfoRequestParameters);
+                }
+            }
+        });
+        SetHandler("/Client/GetUserInventory", new Handler() {
+            public Object Handle(String body, String sessionTicket) throws FakeError {
+                PlayFabServerModels.GetUserInventoryResult result = new PlayFabServerModels.GetUserInventoryResult();
+                synchronized (PlayFabFakeServer.this) {
+                    PlayerState player = RequireSession(sessionTicket);
+                    result.PlayFabId = player.playFabId;
+                    result.Inventory = new ArrayList<ItemInstance>(player.inventory);
+                    result.VirtualCurrency = new HashMap<String, Integer>(player.virtualCurrency);
+                }
+                return result;
+            }
+        });
+        SetHandler("/Client/PurchaseItem", new Handler() {
+            public Object Handle(String body, String sessionTicket) throws FakeError {
+                JsonObject request = Parse(body, JsonObject.class);
+                String itemId = request.get("ItemId").getAsString();
+                String currency = request.get("VirtualCurrency").getAsString();
+                int price = request.get("Price").getAsInt();
+                String catalogVersion = request.has("CatalogVersion") ? request.get("CatalogVersion").getAsString() : null;
+                synchronized (PlayFabFakeServer.this) {
+                    PlayerState player = RequireSession(sessionTicket);
+                    Integer balance = player.virtualCurrency.get(currency);
+                    if (balance == null || balance < price)
+                        throw new FakeError(400, PlayFabErrorCode.InsufficientFunds, "Insufficient funds");
+                    ItemInstance item = GrantItem(player.inventory, catalogVersion, itemId, null);
+                    player.virtualCurrency.put(currency, balance - price);
+                    item.UnitCurrency = currency;
+                    item.UnitPrice = (long)price;
+
+                    JsonObject result = new JsonObject();
+                    result.add("Items", gson.toJsonTree(Collections.singletonList(item)));
+                    return result;
+                }
+            }
+        });
+
+        // Server API
+        SetHandler("/Server/GetTime", getTime);
+        SetHandler("/Server/GetCatalogItems", getCatalogItems);
+        SetHandler("/Server/WritePlayerEvent", writeEvent);
+        SetHandler("/Server/AuthenticateSessionTicket", new Handler() {
+            public Object Handle(String body, String sessionTicket) throws FakeError {
+                PlayFabServerModels.AuthenticateSessionTicketRequest request = Parse(body, PlayFabServerModels.AuthenticateSessionTicketRequest.class);
+                synchronized (PlayFabFakeServer.this) {
+                    String playFabId = request.SessionTicket == null ? null : sessionTickets.get(request.SessionTicket);
+                    if (playFabId == null)
+                        throw new FakeError(400, PlayFabErrorCode.InvalidSessionTicket, "Invalid session ticket");
+                    PlayerState player = players.get(playFabId);
+                    if (player.banned)
+                        throw new FakeError(400, PlayFabErrorCode.AccountBanned, "Account banned");
+                    PlayFabServerModels.AuthenticateSessionTicketResult result = new PlayFabServerModels.AuthenticateSessionTicketResult();
+                    result.UserInfo = new PlayFabServerModels.UserAccountInfo();
+                    result.UserInfo.PlayFabId = playFabId;
+                    result.UserInfo.Created = player.created;
+                    return result;
+                }
+            }
+        });
+        SetHandler("/Server/GetRandomResultTables", new Handler() {
+            public Object Handle(String body, String sessionTicket) throws FakeError {
+                PlayFabServerModels.GetRandomResultTablesRequest request = Parse(body, PlayFabServerModels.GetRandomResultTablesRequest.class);
+                PlayFabServerModels.GetRandomResultTablesResult result = new PlayFabServerModels.GetRandomResultTablesResult();
+                result.Tables = new HashMap<String, PlayFabServerModels.RandomResultTableListing>();
+                synchronized (PlayFabFakeServer.this) {
+                    Map<String, PlayFabServerModels.RandomResultTableListing> tables = randomResultTables.get(request.CatalogVersion == null ? defaultCatalogVersion : request.CatalogVersion);
+                    if (tables != null)
+                        for (Map.Entry<String, PlayFabServerModels.RandomResultTableListing> entry : tables.entrySet())
+                            if (request.TableIDs == null || request.TableIDs.contains(entry.getKey()))
+                                result.Tables.put(entry.getKey(), entry.getValue());
+                }
+                return result;
+            }
+        });
+        SetHandler("/Server/GetPlayerCombinedInfo", new Handler() {
+            public Object Handle(String body, String sessionTicket) throws FakeError {
+                PlayFabServerModels.GetPlayerCombinedInfoRequest request = Parse(body, PlayFabServerModels.GetPlayerCombinedInfoRequest.class);
+                synchronized (PlayFabFakeServer.this) {
+                    return GetPlayerCombinedInfo(RequirePlayer(request.PlayFabId), request.InfoRequestParameters);
+                }
+            }
+        });
+        SetHandler("/Server/BanUsers", new Handler() {
+            public Object Handle(String body, String sessionTicket) throws FakeError {
+                PlayFabServerModels.BanUsersRequest request = Parse(body, PlayFabServerModels.BanUsersRequest.class);
+                PlayFabServerModels.BanUsersResult result = new PlayFabServerModels.BanUsersResult();
+                result.BanData = new ArrayList<PlayFabServerModels.BanInfo>();
+                synchronized (PlayFabFakeServer.this) {
+                    for (PlayFabServerModels.BanRequest ban : request.Bans) {
+                        RequirePlayer(ban.PlayFabId).banned = true;
+                        PlayFabServerModels.BanInfo info = new PlayFabServerModels.BanInfo();
+                        info.PlayFabId = ban.PlayFabId;
+                        info.BanId = UUID.randomUUID().toString();
+                        info.Reason = ban.Reason;
+                        info.Active = true;
+                        result.BanData.add(info);
+                    }
+                }
+                return result;
+            }
+        });
+        SetHandler("/Server/GetUserData", new Handler() {
+            public Object Handle(String body, String sessionTicket) throws FakeError {
+                PlayFabServerModels.GetUserDataRequest request = Parse(body, PlayFabServerModels.GetUserDataRequest.class);
+                synchronized (PlayFabFakeServer.this) {
+                    return GetUserData(RequirePlayer(request.PlayFabId), request, false);
+                }
+            }
+        });
+        SetHandler("/Server/GetUserReadOnlyData", new Handler() {
+            public Object Handle(String body, String sessionTicket) throws FakeError {
+                PlayFabServerModels.GetUserDataRequest request = Parse(body, PlayFabServerModels.GetUserDataRequest.class);
+                synchronized (PlayFabFakeServer.this) {
+                    return GetUserData(RequirePlayer(request.PlayFabId), request, true);
+                }
+            }
+        });
+        SetHandler("/Server/UpdateUserData", new Handler() {
+            public Object Handle(String body, String sessionTicket) throws FakeError {
+                PlayFabServerModels.UpdateUserDataRequest request = Parse(body, PlayFabServerModels.UpdateUserDataRequest.class);
+                PlayFabServerModels.UpdateUserDataResult result = new PlayFabServerModels.UpdateUserDataResult();
+                synchronized (PlayFabFakeServer.this) {
+                    result.DataVersion = UpdateUserData(RequirePlayer(request.PlayFabId), request, false);
+                }
+                return result;
+            }
+        });
+        SetHandler("/Server/UpdateUserReadOnlyData", new Handler() {
+            public Object Handle(String body, String sessionTicket) throws FakeError {
+                PlayFabServerModels.UpdateUserDataRequest request = Parse(body, PlayFabServerModels.UpdateUserDataRequest.class);
+                PlayFabServerModels.UpdateUserDataResult result = new PlayFabServerModels.UpdateUserDataResult();
+                synchronized (PlayFabFakeServer.this) {
+                    result.DataVersion = UpdateUserData(RequirePlayer(request.PlayFabId), request, true);
+                }
+                return result;
+            }
+        });
+        SetHandler("/Server/GetUserInventory", new Handler() {
+            public Object Handle(String body, String sessionTicket) throws FakeError {
+                PlayFabServerModels.GetUserInventoryRequest request = Parse(body, PlayFabServerModels.GetUserInventoryRequest.class);
+                PlayFabServerModels.GetUserInventoryResult result = new PlayFabServerModels.GetUserInventoryResult();
+                synchronized (PlayFabFakeServer.this) {
+                    PlayerState player = RequirePlayer(request.PlayFabId);
+                    result.PlayFabId = player.playFabId;
+                    result.Inventory = new ArrayList<ItemInstance>(player.inventory);
+                    result.VirtualCurrency = new HashMap<String, Integer>(player.virtualCurrency);
+                }
+                return result;
+            }
+        });
+        SetHandler("/Server/AddUserVirtualCurrency", new Handler() {
+            public Object Handle(String body, String sessionTicket) throws FakeError {
+                JsonObject request = Parse(body, JsonObject.class);
+                String currency = request.get("VirtualCurrency").getAsString();
+                int amount = request.get("Amount").getAsInt();
+                synchronized (PlayFabFakeServer.this) {
+                    PlayerState player = RequirePlayer(request.get("PlayFabId").getAsString());
+                    Integer balance = player.virtualCurrency.get(currency);
+                    int updated = (balance == null ? 0 : balance) + amount;
+                    player.virtualCurrency.put(currency, updated);
+
+                    PlayFabServerModels.ModifyUserVirtualCurrencyResult result = new PlayFabServerModels.ModifyUserVirtualCurrencyResult();
+                    result.PlayFabId = player.playFabId;
+                    result.VirtualCurrency = currency;
+                    result.BalanceChange = amount;
+                    result.Balance = updated;
+                    return result;
+                }
+            }
+        });
+        SetHandler("/Server/GrantItemsToUser", new Handler() {
+            public Object Handle(String body, String sessionTicket) throws FakeError {
+                PlayFabServerModels.GrantItemsToUserRequest request = Parse(body, PlayFabServerModels.GrantItemsToUserRequest.class);
+                PlayFabServerModels.GrantItemsToUserResult result = new PlayFabServerModels.GrantItemsToUserResult();
+                result.ItemGrantResults = new ArrayList<PlayFabServerModels.GrantedItemInstance>();
+                synchronized (PlayFabFakeServer.this) {
+                    PlayerState player = RequirePlayer(request.PlayFabId);
+                    for (String itemId : request.ItemIds) {
+                        ItemInstance item = GrantItem(player.inventory, request.CatalogVersion, itemId, request.Annotation);
+                        PlayFabServerModels.GrantedItemInstance granted = new PlayFabServerModels.GrantedItemInstance();
+                        granted.PlayFabId = player.playFabId;
+                        granted.Result = true;
+                        granted.ItemId = item.ItemId;
+                        granted.ItemInstanceId = item.ItemInstanceId;
+                        granted.ItemClass = item.ItemClass;
+                        granted.CatalogVersion = item.CatalogVersion;
+                        granted.PurchaseDate = item.PurchaseDate;
+                        granted.RemainingUses = item.RemainingUses;
+                        granted.Annotation = item.Annotation;
+                        result.ItemGrantResults.add(granted);
+                    }
+                }
+                return result;
+            }
+        });
+        SetHandler("/Server/ConsumeItem", new Handler() {
+            public Object Handle(String body, String sessionTicket) throws FakeError {
+                PlayFabServerModels.ConsumeItemRequest request = Parse(body, PlayFabServerModels.ConsumeItemRequest.class);
+                synchronized (PlayFabFakeServer.this) {
+                    PlayerState player = RequirePlayer(request.PlayFabId);
+                    for (int i = 0; i < player.inventory.size(); i++) {
+                        ItemInstance item = player.inventory.get(i);
+                        if (!item.ItemInstanceId.equals(request.ItemInstanceId))
+                            continue;
+                        int remaining = item.RemainingUses == null ? 0 : item.RemainingUses;
+                        if (remaining < request.ConsumeCount)
+                            throw new FakeError(400, PlayFabErrorCode.NoRemainingUses, "Not enough remaining uses");
+                        item.RemainingUses = remaining - request.ConsumeCount;
+                        if (item.RemainingUses == 0)
+                            player.inventory.remove(i);
+
+                        PlayFabServerModels.ConsumeItemResult result = new PlayFabServerModels.ConsumeItemResult();
+                        result.ItemInstanceId = item.ItemInstanceId;
+                        result.RemainingUses = item.RemainingUses;
+                        return result;
+                    }
+                    throw new FakeError(400, PlayFabErrorCode.ItemNotFound, "Item instance not found: " + request.ItemInstanceId);
+                }
+            }
+        });
+        SetHandler("/Server/GetCharacterInventory", new Handler() {
+            public Object Handle(String body, String sessionTicket) throws FakeError {
+                PlayFabServerModels.GetCharacterInventoryRequest request = Parse(body, PlayFabServerModels.GetCharacterInventoryRequest.class);
+                PlayFabServerModels.GetCharacterInventoryResult result = new PlayFabServerModels.GetCharacterInventoryResult();
+                synchronized (PlayFabFakeServer.this) {
+                    PlayerState player = RequirePlayer(request.PlayFabId);
+                    result.PlayFabId = player.playFabId;
+                    result.CharacterId = request.CharacterId;
+                    result.Inventory = new ArrayList<ItemInstance>(RequireCharacter(player, request.CharacterId));
+                    result.VirtualCurrency = new HashMap<String, Integer>();
+                }
+                return result;
+            }
+        });
+        SetHandler("/Server/GrantItemsToCharacter", new Handler() {
+            public Object Handle(String body, String sessionTicket) throws FakeError {
+                PlayFabServerModels.GrantItemsToCharacterRequest request = Parse(body, PlayFabServerModels.GrantItemsToCharacterRequest.class);
+                PlayFabServerModels.GrantItemsToCharacterResult result = new PlayFabServerModels.GrantItemsToCharacterResult();
+                result.ItemGrantResults = new ArrayList<PlayFabServerModels.GrantedItemInstance>();
+                synchronized (PlayFabFakeServer.this) {
+                    PlayerState player = RequirePlayer(request.PlayFabId);
+                    List<ItemInstance> inventory = RequireCharacter(player, request.CharacterId);
+                    for (String itemId : request.ItemIds) {
+                        ItemInstance item = GrantItem(inventory, request.CatalogVersion, itemId, request.Annotation);
+                        PlayFabServerModels.GrantedItemInstance granted = new PlayFabServerModels.GrantedItemInstance();
+                        granted.PlayFabId = player.playFabId;
+                        granted.CharacterId = request.CharacterId;
+                        granted.Result = true;
+                        granted.ItemId = item.ItemId;
+                        granted.ItemInstanceId = item.ItemInstanceId;
+                        granted.ItemClass = item.ItemClass;
+                        granted.CatalogVersion = item.CatalogVersion;
+                        granted.PurchaseDate = item.PurchaseDate;
+                        granted.RemainingUses = item.RemainingUses;
+                        granted.Annotation = item.Annotation;
+                        result.ItemGrantResults.add(granted);
+                    }
+                }
+                return result;
+            }
+        });
+        SetHandler("/Server/MoveItemToCharacterFromUser", new Handler() {
+            public Object Handle(String body, String sessionTicket) throws FakeError {
+                PlayFabServerModels.MoveItemToCharacterFromUserRequest request = Parse(body, PlayFabServerModels.MoveItemToCharacterFromUserRequest.class);
+                synchronized (PlayFabFakeServer.this) {
+                    PlayerState player = RequirePlayer(request.PlayFabId);
+                    MoveItem(player.inventory, RequireCharacter(player, request.CharacterId), request.ItemInstanceId);
+                }
+                return new PlayFabServerModels.MoveItemToCharacterFromUserResult();
+            }
+        });
+        SetHandler("/Server/MoveItemToUserFromCharacter", new Handler() {
+            public Object Handle(String body, String sessionTicket) throws FakeError {
+                PlayFabServerModels.MoveItemToUserFromCharacterRequest request = Parse(body, PlayFabServerModels.MoveItemToUserFromCharacterRequest.class);
+                synchronized (PlayFabFakeServer.this) {
+                    PlayerState player = RequirePlayer(request.PlayFabId);
+                    MoveItem(RequireCharacter(player, request.CharacterId), player.inventory, request.ItemInstanceId);
+                }
+                return new PlayFabServerModels.MoveItemToUserFromCharacterResult();
+            }
+        });
+        SetHandler("/Server/GrantItemsToUsers", new Handler() {
+            public Object Handle(String body, String sessionTicket) throws FakeError {
+                PlayFabServerModels.GrantItemsToUsersRequest request = Parse(body, PlayFabServerModels.GrantItemsToUsersRequest.class);
+                PlayFabServerModels.GrantItemsToUsersResult result = new PlayFabServerModels.GrantItemsToUsersResult();
+                result.ItemGrantResults = new ArrayList<PlayFabServerModels.GrantedItemInstance>();
+                synchronized (PlayFabFakeServer.this) {
+                    for (PlayFabServerModels.ItemGrant grant : request.ItemGrants) {
+                        PlayFabServerModels.GrantedItemInstance granted = new PlayFabServerModels.GrantedItemInstance();
+                        granted.PlayFabId = grant.PlayFabId;
+                        granted.ItemId = grant.ItemId;
+                        granted.Result = false;
+                        PlayerState player = players.get(grant.PlayFabId);
+                        if (player != null) {
+                            try {
+                                ItemInstance item = GrantItem(player.inventory, request.CatalogVersion, grant.ItemId, grant.Annotation);
+                                granted.Result = true;
+                                granted.ItemInstanceId = item.ItemInstanceId;
+                                granted.ItemClass = item.ItemClass;
+                                granted.CatalogVersion = item.CatalogVersion;
+                                granted.PurchaseDate = item.PurchaseDate;
+                                granted.RemainingUses = item.RemainingUses;
+                                granted.Annotation = item.Annotation;
+                            } catch (FakeError e) {
+                                // Unknown items are reported per grant, not for the whole batch
+                            }
+                        }
+                        result.ItemGrantResults.add(granted);
+                    }
+                }
+                return result;
+            }
+        });
+        SetHandler("/Server/UpdatePlayerStatistics", new Handler() {
+            public Object Handle(String body, String sessionTicket) throws FakeError {
+                PlayFabServerModels.UpdatePlayerStatisticsRequest request = Parse(body, PlayFabServerModels.UpdatePlayerStatisticsRequest.class);
+                synchronized (PlayFabFakeServer.this) {
+                    PlayerState player = RequirePlayer(request.PlayFabId);
+                    if (request.Statistics != null)
+                        for (PlayFabServerModels.StatisticUpdate update : request.Statistics)
+                            player.statistics.put(update.StatisticName, update.Value);
+                }
+                return null;
+            }
+        });
+        SetHandler("/Server/GetPlayerStatistics", new Handler() {
+            public Object Handle(String body, String sessionTicket) throws FakeError {
+                PlayFabServerModels.GetPlayerStatisticsRequest request = Parse(body, PlayFabServerModels.GetPlayerStatisticsRequest.class);
+                PlayFabServerModels.GetPlayerStatisticsResult result = new PlayFabServerModels.GetPlayerStatisticsResult();
+                result.Statistics = new ArrayList<PlayFabServerModels.StatisticValue>();
+                synchronized (PlayFabFakeServer.this) {
+                    PlayerState player = RequirePlayer(request.PlayFabId);
+                    result.PlayFabId = player.playFabId;
+                    for (Map.Entry<String, Integer> entry : player.statistics.entrySet()) {
+                        if (request.StatisticNames != null && !request.StatisticNames.contains(entry.getKey()))
+                            continue;
+                        PlayFabServerModels.StatisticValue value = new PlayFabServerModels.StatisticValue();
+                        value.StatisticName = entry.getKey();
+                        value.Value = entry.getValue();
+                        value.Version = 0L;
+                        result.Statistics.add(value);
+                    }
+                }
+                return result;
+            }
+        });
+        SetHandler("/Server/GetLeaderboard", new Handler() {
+            public Object Handle(String body, String sessionTicket) throws FakeError {
+                PlayFabServerModels.GetLeaderboardRequest request = Parse(body, PlayFabServerModels.GetLeaderboardRequest.class);
+                PlayFabServerModels.GetLeaderboardResult result = new PlayFabServerModels.GetLeaderboardResult();
+                result.Leaderboard = new ArrayList<PlayFabServerModels.PlayerLeaderboardEntry>();
+                result.Version = 0;
+                synchronized (PlayFabFakeServer.this) {
+                    List<PlayerState> ranked = new ArrayList<PlayerState>();
+                    for (PlayerState player : players.values())
+                        if (player.statistics.containsKey(request.StatisticName))
+                            ranked.add(player);
+                    final String statistic = request.StatisticName;
+                    Collections.sort(ranked, new Comparator<PlayerState>() {
+                        public int compare(PlayerState a, PlayerState b) {
+                            int byValue = b.statistics.get(statistic).compareTo(a.statistics.get(statistic));
+                            return byValue != 0 ? byValue : a.playFabId.compareTo(b.playFabId);
+                        }
+                    });
+                    int start = request.StartPosition == null ? 0 : request.StartPosition;
+                    int max = request.MaxResultsCount == null ? 10 : request.MaxResultsCount;
+                    for (int i = start; i < ranked.size() && i < start + max; i++) {
+                        PlayFabServerModels.PlayerLeaderboardEntry entry = new PlayFabServerModels.PlayerLeaderboardEntry();
+                        entry.PlayFabId = ranked.get(i).playFabId;
+                        entry.StatValue = ranked.get(i).statistics.get(statistic);
+                        entry.Position = i;
+                        result.Leaderboard.add(entry);
+                    }
+                }
+                return result;
+            }
+        });
+        SetHandler("/Server/GetPlayersInSegment", new Handler() {
+            public Object Handle(String body, String sessionTicket) throws FakeError {
+                PlayFabServerModels.GetPlayersInSegmentRequest request = Parse(body, PlayFabServerModels.GetPlayersInSegmentRequest.class);
+                PlayFabServerModels.GetPlayersInSegmentResult result = new PlayFabServerModels.GetPlayersInSegmentResult();
+                result.PlayerProfiles = new ArrayList<PlayFabServerModels.PlayerProfile>();
+                synchronized (PlayFabFakeServer.this) {
+                    // Every player is in every segment; continuation tokens are offsets into the sorted player list
+                    List<String> ids = new ArrayList<String>(new TreeMap<String, PlayerState>(players).keySet());
+                    int start = request.ContinuationToken == null ? 0 : Integer.parseInt(request.ContinuationToken);
+                    int max = request.MaxBatchSize == null ? 10000 : request.MaxBatchSize.intValue();
+                    int end = Math.min(ids.size(), start + max);
+                    for (int i = start; i < end; i++) {
+                        PlayerState player = players.get(ids.get(i));
+                        PlayFabServerModels.PlayerProfile profile = new PlayFabServerModels.PlayerProfile();
+                        profile.PlayerId = player.playFabId;
+                        profile.Created = player.created;
+                        profile.Statistics = new HashMap<String, Integer>(player.statistics);
+                        profile.VirtualCurrencyBalances = new HashMap<String, Integer>(player.virtualCurrency);
+                        result.PlayerProfiles.add(profile);
+                    }
+                    result.ProfilesInSegment = ids.size();
+                    result.ContinuationToken = end < ids.size() ? Integer.toString(end) : null;
+                }
+                return result;
+            }
+        });
+
+        // Title data is shared by the Server and Admin APIs
+        for (final String api : new String[] { "/Server", "/Admin" }) {
+            SetHandler(api + "/GetTitleData", new Handler() {
+                public Object Handle(String body, String sessionTicket) throws FakeError {
+                    PlayFabServerModels.GetTitleDataRequest request = Parse(body, PlayFabServerModels.GetTitleDataRequest.class);
+                    PlayFabServerModels.GetTitleDataResult result = new PlayFabServerModels.GetTitleDataResult();
+                    synchronized (PlayFabFakeServer.this) {
+                        result.Data = SelectTitleData(titleData, request.Keys);
+                    }
+                    return result;
+                }
+            });
+            SetHandler(api + "/GetTitleInternalData", new Handler() {
+                public Object Handle(String body, String sessionTicket) throws FakeError {
+                    PlayFabServerModels.GetTitleDataRequest request = Parse(body, PlayFabServerModels.GetTitleDataRequest.class);
+                    PlayFabServerModels.GetTitleDataResult result = new PlayFabServerModels.GetTitleDataResult();
+                    synchronized (PlayFabFakeServer.this) {
+                        result.Data = SelectTitleData(titleInternalData, request.Keys);
+                    }
+                    return result;
+                }
+            });
+            SetHandler(api + "/SetTitleData", new Handler() {
+                public Object Handle(String body, String sessionTicket) throws FakeError {
+                    PlayFabServerModels.SetTitleDataRequest request = Parse(body, PlayFabServerModels.SetTitleDataRequest.class);
+                    synchronized (PlayFabFakeServer.this) {
+                        if (request.Value == null)
+                            titleData.remove(request.Key);
+                        else
+                            titleData.put(request.Key, request.Value);
+                    }
+                    return null;
+                }
+            });
+            SetHandler(api + "/SetTitleInternalData", new Handler() {
+                public Object Handle(String body, String sessionTicket) throws FakeError {
+                    PlayFabServerModels.SetTitleDataRequest request = Parse(body, PlayFabServerModels.SetTitleDataRequest.class);
+                    synchronized (PlayFabFakeServer.this) {
+                        if (request.Value == null)
+                            titleInternalData.remove(request.Key);
+                        else
+                            titleInternalData.put(request.Key, request.Value);
+                    }
+                    return null;
+                }
+            });
+        }
+
+        // Admin API
+        SetHandler("/Admin/GetCatalogItems", getCatalogItems);
+        SetHandler("/Admin/SetCatalogItems", new Handler() {
+            public Object Handle(String body, String sessionTicket) throws FakeError {
+                CatalogUpload request = Parse(body, CatalogUpload.class);
+                String version = request.CatalogVersion != null ? request.CatalogVersion : defaultCatalogVersion;
+                synchronized (PlayFabFakeServer.this) {
+                    catalogs.put(version, request.Catalog == null ? new ArrayList<CatalogItem>() : new ArrayList<CatalogItem>(request.Catalog));
+                }
+                return null;
+            }
+        });
+        SetHandler("/Admin/UpdateCatalogItems", new Handler() {
+            public Object Handle(String body, String sessionTicket) throws FakeError {
+                CatalogUpload request = Parse(body, CatalogUpload.class);
+                String version = request.CatalogVersion != null ? request.CatalogVersion : defaultCatalogVersion;
+                synchronized (PlayFabFakeServer.this) {
+                    List<CatalogItem> catalog = catalogs.get(version);
+                    if (catalog == null) {
+                        catalog = new ArrayList<CatalogItem>();
+                        catalogs.put(version, catalog);
+                    }
+                    if (request.Catalog != null) {
+                        for (CatalogItem update : request.Catalog) {
+                            boolean replaced = false;
+                            for (int i = 0; i < catalog.size() && !replaced; i++) {
+                                if (catalog.get(i).ItemId.equals(update.ItemId)) {
+                                    catalog.set(i, update);
+                                    replaced = true;
+                                }
+                            }
+                            if (!replaced)
+                                catalog.add(update);
+                        }
+                    }
+                }
+                return null;
+            }
+        });
+
+        Handler getContentDownloadUrl = new Handler() {
+            public Object Handle(String body, String sessionTicket) throws FakeError {
+                JsonObject request = Parse(body, JsonObject.class);
+                String key = request.has("Key") ? request.get("Key").getAsString() : null;
+                synchronized (PlayFabFakeServer.this) {
+                    if (key == null || !contents.containsKey(key))
+                        throw new FakeError(400, PlayFabErrorCode.InvalidParams, "Content not found");
+                }
+                JsonObject result = new JsonObject();
+                result.addProperty("URL", GetURL() + CONTENT_PATH + key);
+                return result;
+            }
+        };
+        SetHandler("/Client/GetContentDownloadUrl", getContentDownloadUrl);
+        SetHandler("/Server/GetContentDownloadUrl", getContentDownloadUrl);
+        SetHandler("/Admin/GetContentUploadUrl", new Handler() {
+            public Object Handle(String body, String sessionTicket) throws FakeError {
+                JsonObject request = Parse(body, JsonObject.class);
+                if (!request.has("Key"))
+                    throw new FakeError(400, PlayFabErrorCode.InvalidParams, "Key is required");
+                JsonObject result = new JsonObject();
+                result.addProperty("URL", GetURL() + CONTENT_PATH + request.get("Key").getAsString());
+                return result;
+            }
+        });
+        SetHandler("/Admin/GetContentList", new Handler() {
+            public Object Handle(String body, String sessionTicket) throws FakeError {
+                JsonObject request = Parse(body, JsonObject.class);
+                String prefix = request.has("Prefix") ? request.get("Prefix").getAsString() : "";
+                PlayFabAdminModels.GetContentListResult result = new PlayFabAdminModels.GetContentListResult();
+                result.Contents = new ArrayList<PlayFabAdminModels.ContentInfo>();
+                long totalSize = 0;
+                synchronized (PlayFabFakeServer.this) {
+                    for (Map.Entry<String, ContentState> entry : contents.entrySet()) {
+                        if (!entry.getKey().startsWith(prefix))
+                            continue;
+                        PlayFabAdminModels.ContentInfo info = new PlayFabAdminModels.ContentInfo();
+                        info.Key = entry.getKey();
+                        info.Size = (long)entry.getValue().data.length;
+                        info.LastModified = entry.getValue().lastModified;
+                        result.Contents.add(info);
+                        totalSize += info.Size;
+                    }
+                }
+                result.ItemCount = result.Contents.size();
+                result.TotalSize = totalSize;
+                return result;
+            }
+        });
+        SetHandler("/Admin/GetDataReport", new Handler() {
+            public Object Handle(String body, String sessionTicket) throws FakeError {
+                PlayFabAdminModels.GetDataReportRequest request = Parse(body, PlayFabAdminModels.GetDataReportRequest.class);
+                String key = ReportKey(request.ReportName, request.Year, request.Month, request.Day);
+                synchronized (PlayFabFakeServer.this) {
+                    if (!contents.containsKey(key))
+                        throw new FakeError(400, PlayFabErrorCode.ReportNotAvailable, "Report not available");
+                }
+                PlayFabAdminModels.GetDataReportResult result = new PlayFabAdminModels.GetDataReportResult();
+                result.DownloadUrl = GetURL() + CONTENT_PATH + key;
+                return result;
+            }
+        });
+        SetHandler("/Admin/GetServerBuildUploadUrl", new Handler() {
+            public Object Handle(String body, String sessionTicket) throws FakeError {
+                JsonObject request = Parse(body, JsonObject.class);
+                if (!request.has("BuildId"))
+                    throw new FakeError(400, PlayFabErrorCode.InvalidParams, "BuildId is required");
+                JsonObject result = new JsonObject();
+                result.addProperty("URL", GetURL() + CONTENT_PATH + "builds/" + request.get("BuildId").getAsString());
+                return result;
+            }
+        });
+        SetHandler("/Admin/AddServerBuild", new Handler() {
+            public Object Handle(String body, String sessionTicket) throws FakeError {
+                JsonObject request = Parse(body, JsonObject.class);
+                String buildId = request.has("BuildId") ? request.get("BuildId").getAsString() : "";
+                synchronized (PlayFabFakeServer.this) {
+                    if (!contents.containsKey("builds/" + buildId))
+                        throw new FakeError(400, PlayFabErrorCode.BuildPackageDoesNotExist, "Build package does not exist");
+                    if (builds.containsKey(buildId))
+                        throw new FakeError(400, PlayFabErrorCode.BuildAlreadyExists, "Build already exists");
+                    request.addProperty("TitleId", "FAKE");
+                    request.addProperty("Status", "Available");
+                    builds.put(buildId, request);
+                    return request;
+                }
+            }
+        });
+        SetHandler("/Admin/ModifyServerBuild", new Handler() {
+            public Object Handle(String body, String sessionTicket) throws FakeError {
+                JsonObject request = Parse(body, JsonObject.class);
+                String buildId = request.has("BuildId") ? request.get("BuildId").getAsString() : "";
+                synchronized (PlayFabFakeServer.this) {
+                    JsonObject build = builds.get(buildId);
+                    if (build == null)
+                        throw new FakeError(400, PlayFabErrorCode.BuildNotFound, "Build not found");
+                    for (Map.Entry<String, JsonElement> field : request.entrySet())
+                        build.add(field.getKey(), field.getValue());
+                    return build;
+                }
+            }
+        });
+        SetHandler("/Admin/GetStoreItems", new Handler() {
+            public Object Handle(String body, String sessionTicket) throws FakeError {
+                StoreUpload request = Parse(body, StoreUpload.class);
+                synchronized (PlayFabFakeServer.this) {
+                    StoreUpload store = stores.get(StoreKey(request.CatalogVersion, request.StoreId));
+                    if (store == null)
+                        throw new FakeError(400, PlayFabErrorCode.StoreNotFound, "Store not found");
+                    JsonObject result = gson.toJsonTree(store).getAsJsonObject();
+                    result.addProperty("Source", "Admin");
+                    return result;
+                }
+            }
+        });
+        SetHandler("/Admin/SetStoreItems", new Handler() {
+            public Object Handle(String body, String sessionTicket) throws FakeError {
+                StoreUpload request = Parse(body, StoreUpload.class);
+                if (request.Store == null)
+                    request.Store = new ArrayList<JsonObject>();
+                synchronized (PlayFabFakeServer.this) {
+                    stores.put(StoreKey(request.CatalogVersion, request.StoreId), request);
+                }
+                return null;
+            }
+        });
+        SetHandler("/Admin/UpdateStoreItems", new Handler() {
+            public Object Handle(String body, String sessionTicket) throws FakeError {
+                StoreUpload request = Parse(body, StoreUpload.class);
+                synchronized (PlayFabFakeServer.this) {
+                    StoreUpload store = stores.get(StoreKey(request.CatalogVersion, request.StoreId));
+                    if (store == null)
+                        throw new FakeError(400, PlayFabErrorCode.StoreNotFound, "Store not found");
+                    if (request.MarketingData != null)
+                        store.MarketingData = request.MarketingData;
+                    if (request.Store != null) {
+                        for (JsonObject update : request.Store) {
+                            String itemId = update.get("ItemId").getAsString();
+                            boolean replaced = false;
+                            for (int i = 0; i < store.Store.size() && !replaced; i++) {
+                                if (store.Store.get(i).get("ItemId").getAsString().equals(itemId)) {
+                                    store.Store.set(i, update);
+                                    replaced = true;
+                                }
+                            }
+                            if (!replaced)
+                                store.Store.add(update);
+                        }
+                    }
+                }
+                return null;
+            }
+        });
+
+        SetHandler("/Admin/CreateActionsOnPlayersInSegmentTask", new Handler() {
+            public Object Handle(String body, String sessionTicket) throws FakeError {
+                PlayFabAdminModels.CreateActionsOnPlayerSegmentTaskRequest request = Parse(body, PlayFabAdminModels.CreateActionsOnPlayerSegmentTaskRequest.class);
+                PlayFabAdminModels.CreateTaskResult result = new PlayFabAdminModels.CreateTaskResult();
+                synchronized (PlayFabFakeServer.this) {
+                    if (request.Name == null || taskNames.containsValue(request.Name))
+                        throw new FakeError(400, PlayFabErrorCode.ScheduledTaskNameConflict, "Task name conflict");
+                    result.TaskId = "task-" + (taskNames.size() + 1);
+                    taskNames.put(result.TaskId, request.Name);
+                }
+                return result;
+            }
+        });
+        SetHandler("/Admin/RunTask", new Handler() {
+            public Object Handle(String body, String sessionTicket) throws FakeError {
+                PlayFabAdminModels.RunTaskRequest request = Parse(body, PlayFabAdminModels.RunTaskRequest.class);
+                PlayFabAdminModels.RunTaskResult result = new PlayFabAdminModels.RunTaskResult();
+                synchronized (PlayFabFakeServer.this) {
+                    // Tasks run by name that were never created are treated as existing, with an ID derived from the name
+                    PlayFabAdminModels.NameIdentifier task = new PlayFabAdminModels.NameIdentifier();
+                    if (request.Identifier == null)
+                        throw new FakeError(400, PlayFabErrorCode.TaskNotFound, "Task not found");
+                    if (request.Identifier.Id != null) {
+                        if (!taskNames.containsKey(request.Identifier.Id))
+                            throw new FakeError(400, PlayFabErrorCode.TaskNotFound, "Task not found");
+                        task.Id = request.Identifier.Id;
+                        task.Name = taskNames.get(task.Id);
+                    } else {
+                        task.Name = request.Identifier.Name;
+                        task.Id = "task-" + task.Name;
+                        for (Map.Entry<String, String> entry : taskNames.entrySet())
+                            if (entry.getValue().equals(task.Name))
+                                task.Id = entry.getKey();
+                    }
+                    PlayFabAdminModels.TaskInstanceBasicSummary instance = new PlayFabAdminModels.TaskInstanceBasicSummary();
+                    instance.TaskInstanceId = String.format("instance-%04d", taskInstances.size() + 1);
+                    instance.TaskIdentifier = task;
+                    instance.StartedAt = new Date();
+                    instance.Status = PlayFabAdminModels.TaskInstanceStatus.Starting;
+                    instance.PercentComplete = 0.0;
+                    taskInstances.put(instance.TaskInstanceId, instance);
+                    result.TaskInstanceId = instance.TaskInstanceId;
+                }
+                return result;
+            }
+        });
+        SetHandler("/Admin/GetTaskInstances", new Handler() {
+            public Object Handle(String body, String sessionTicket) throws FakeError {
+                PlayFabAdminModels.GetTaskInstancesRequest request = Parse(body, PlayFabAdminModels.GetTaskInstancesRequest.class);
+                PlayFabAdminModels.GetTaskInstancesResult result = new PlayFabAdminModels.GetTaskInstancesResult();
+                result.Summaries = new ArrayList<PlayFabAdminModels.TaskInstanceBasicSummary>();
+                synchronized (PlayFabFakeServer.this) {
+                    for (PlayFabAdminModels.TaskInstanceBasicSummary instance : taskInstances.values()) {
+                        PlayFabAdminModels.NameIdentifier task = request.TaskIdentifier;
+                        if (task != null && (task.Id != null ? !task.Id.equals(instance.TaskIdentifier.Id) : !instance.TaskIdentifier.Name.equals(task.Name)))
+                            continue;
+                        if (request.StatusFilter != null && request.StatusFilter != instance.Status)
+                            continue;
+                        if (request.StartedAtRangeFrom != null && instance.StartedAt.before(request.StartedAtRangeFrom))
+                            continue;
+                        if (request.StartedAtRangeTo != null && instance.StartedAt.after(request.StartedAtRangeTo))
+                            continue;
+                        result.Summaries.add(gson.fromJson(gson.toJson(instance), PlayFabAdminModels.TaskInstanceBasicSummary.class));
+                    }
+                }
+                return result;
+            }
+        });
+
+        // Matchmaker API
+        SetHandler("/Matchmaker/AuthUser", new Handler() {
+            public Object Handle(String body, String sessionTicket) throws FakeError {
+                JsonObject request = Parse(body, JsonObject.class);
+                String ticket = request.has("AuthorizationTicket") ? request.get("AuthorizationTicket").getAsString() : null;
+                JsonObject result = new JsonObject();
+                synchronized (PlayFabFakeServer.this) {
+                    String playFabId = ticket == null ? null : sessionTickets.get(ticket);
+                    result.addProperty("Authorized", playFabId != null);
+                    if (playFabId != null)
+                        result.addProperty("PlayFabId", playFabId);
+                }
+                return result;
+            }
+        });
+        SetHandler("/Matchmaker/RegisterGame", new Handler() {
+            public Object Handle(String body, String sessionTicket) throws FakeError {
+                JsonObject request = Parse(body, JsonObject.class);
+                JsonObject result = new JsonObject();
+                synchronized (PlayFabFakeServer.this) {
+                    String lobbyId = Integer.toString(lobbies.size() + 1);
+                    lobbies.put(lobbyId, request.has("GameMode") ? request.get("GameMode").getAsString() : null);
+                    result.addProperty("LobbyId", lobbyId);
+                }
+                return result;
+            }
+        });
+        final Handler lobbyMembership = new Handler() {
+            public Object Handle(String body, String sessionTicket) throws FakeError {
+                JsonObject request = Parse(body, JsonObject.class);
+                synchronized (PlayFabFakeServer.this) {
+                    if (!request.has("LobbyId") || !lobbies.containsKey(request.get("LobbyId").getAsString()))
+                        throw new FakeError(400, PlayFabErrorCode.GameNotFound, "Lobby not found");
+                }
+                return null;
+            }
+        };
+        SetHandler("/Matchmaker/PlayerJoined", lobbyMembership);
+        SetHandler("/Matchmaker/PlayerLeft", lobbyMembership);
+        SetHandler("/Server/RefreshGameServerInstanceHeartbeat", lobbyMembership);
+        SetHandler("/Server/SetGameServerInstanceState", lobbyMembership);
+        SetHandler("/Server/SetGameServerInstanceData", lobbyMembership);
+    }
+}
@@ -0,0 +1,82 @@
+package com.playfab.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.playfab.PlayFabClientAPI;
+import com.playfab.PlayFabClientModels;
+import com.playfab.PlayFabErrors.PlayFabErrorCode;
+import com.playfab.PlayFabErrors.PlayFabResult;
+import com.playfab.PlayFabServerAPI;
+import com.playfab.PlayFabServerModels;
+import com.playfab.PlayFabSettings;
+
+/**
+ *  Exercises the API classes end-to-end against PlayFabFakeServer, without a live title
+ */
+public class PlayFabFakeServerTest
+{
+    private static PlayFabFakeServer server;
+    private static PlayFabSettings settings;
+
+    @BeforeClass
+    public static void oneTimeSetUp() throws Exception
+    {
+        server = PlayFabFakeServer.Started(4);
+        settings = server.NewSettings();
+    }
+
+    @AfterClass
+    public static void oneTimeTearDown()
+    {
+        server.Stop();
+    }
+
+    @Test
+    public void LoginAndAuthenticateSessionTicket()
+    {
+        PlayFabClientAPI clientApi = new PlayFabClientAPI(settings);
+        PlayFabClientModels.LoginWithCustomIDRequest login = new PlayFabClientModels.LoginWithCustomIDRequest();
+        login.CustomId = "fake-login";
+        login.CreateAccount = true;
+        PlayFabResult<PlayFabClientModels.LoginResult> loginResult = clientApi.LoginWithCustomID(login);
+        assertNull(loginResult.Error);
+        assertNotNull(loginResult.Result.SessionTicket);
+
+        PlayFabServerAPI serverApi = new PlayFabServerAPI(settings);
+        PlayFabServerModels.AuthenticateSessionTicketRequest auth = new PlayFabServerModels.AuthenticateSessionTicketRequest();
+        auth.SessionTicket = loginResult.Result.SessionTicket;
+        PlayFabResult<PlayFabServerModels.AuthenticateSessionTicketResult> authResult = serverApi.AuthenticateSessionTicket(auth);
+        assertNull(authResult.Error);
+        assertEquals(loginResult.Result.PlayFabId, authResult.Result.UserInfo.PlayFabId);
+
+        auth.SessionTicket = "not-a-ticket";
+        authResult = serverApi.AuthenticateSessionTicket(auth);
+        assertEquals(PlayFabErrorCode.InvalidSessionTicket, authResult.Error.pfErrorCode);
+    }
+
+    @Test
+    public void TitleDataRoundTrip()
+    {
+        PlayFabServerAPI serverApi = new PlayFabServerAPI(settings);
+        PlayFabServerModels.SetTitleDataRequest set = new PlayFabServerModels.SetTitleDataRequest();
+        set.Key = "motd";
+        set.Value = "hello";
+        assertNull(serverApi.SetTitleData(set).Error);
+
+        PlayFabServerModels.GetTitleDataRequest get = new PlayFabServerModels.GetTitleDataRequest();
+        get.Keys = new ArrayList<String>(Arrays.asList("motd"));
+        PlayFabResult<PlayFabServerModels.GetTitleDataResult> result = serverApi.GetTitleData(get);
+        assertEquals("hello", result.Result.Data.get("motd"));
+        assertTrue(server.GetRequestCount("/Server/GetTitleData") >= 1);
+    }
+}
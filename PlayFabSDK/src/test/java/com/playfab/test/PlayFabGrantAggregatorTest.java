@@ -0,0 +1,150 @@
+package com.playfab.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.playfab.PlayFabErrors.PlayFabResult;
+import com.playfab.PlayFabGrantAggregator;
+import com.playfab.PlayFabServerAPI;
+import com.playfab.PlayFabServerModels.CatalogItem;
+import com.playfab.PlayFabServerModels.GrantItemsToUsersRequest;
+import com.playfab.PlayFabServerModels.GrantItemsToUsersResult;
+import com.playfab.PlayFabServerModels.GrantedItemInstance;
+import com.playfab.PlayFabServerModels.ItemGrant;
+
+public class PlayFabGrantAggregatorTest
+{
+    private static PlayFabFakeServer server;
+    private static PlayFabServerAPI serverApi;
+
+    @BeforeClass
+    public static void oneTimeSetUp() throws Exception
+    {
+        server = PlayFabFakeServer.Started(2);
+        serverApi = new PlayFabServerAPI(server.NewSettings());
+
+        List<CatalogItem> catalog = new ArrayList<CatalogItem>();
+        for (String itemId : new String[] { "trophy", "banner" })
+        {
+            CatalogItem item = new CatalogItem();
+            item.ItemId = itemId;
+            catalog.add(item);
+        }
+        server.SetCatalog("Main", catalog);
+    }
+
+    @AfterClass
+    public static void oneTimeTearDown()
+    {
+        server.Stop();
+    }
+
+    @Test
+    public void MapsBatchedResultsBackToEachGrant() throws Exception
+    {
+        String alice = server.AddPlayer("grant-alice");
+        String bob = server.AddPlayer("grant-bob");
+        PlayFabGrantAggregator aggregator = new PlayFabGrantAggregator(PlayFabGrantAggregator.ServerSender(serverApi), 100, 1000, 2);
+
+        Future<PlayFabResult<List<GrantedItemInstance>>> aliceTrophy = aggregator.Grant(alice, "trophy");
+        Future<PlayFabResult<List<GrantedItemInstance>>> bobTrophy = aggregator.Grant(bob, "trophy");
+        Future<PlayFabResult<List<GrantedItemInstance>>> aliceBanner = aggregator.Grant(alice, "banner");
+        Future<PlayFabResult<List<GrantedItemInstance>>> bobUnknown = aggregator.Grant(bob, "not-in-catalog");
+        aggregator.Close();
+
+        assertEquals(1, aggregator.GetBatchCount());
+        assertEquals(1, server.GetRequestCount("/Server/GrantItemsToUsers"));
+        assertGranted(aliceTrophy.get(), alice, "trophy");
+        assertGranted(bobTrophy.get(), bob, "trophy");
+        assertGranted(aliceBanner.get(), alice, "banner");
+        assertNull(bobUnknown.get().Error);
+        assertFalse(bobUnknown.get().Result.get(0).Result);
+    }
+
+    @Test
+    public void MatchesBundleContentsByParentAndFailsAfterClose() throws Exception
+    {
+        final AtomicInteger concurrent = new AtomicInteger();
+        final AtomicInteger maxConcurrent = new AtomicInteger();
+        // Both bundles come first and their contents after, in the opposite order
+        PlayFabGrantAggregator.GrantSender sender = new PlayFabGrantAggregator.GrantSender() {
+            public PlayFabResult<GrantItemsToUsersResult> Send(GrantItemsToUsersRequest request) throws Exception {
+                maxConcurrent.set(Math.max(maxConcurrent.get(), concurrent.incrementAndGet()));
+                Thread.sleep(50);
+                concurrent.decrementAndGet();
+                PlayFabResult<GrantItemsToUsersResult> result = new PlayFabResult<GrantItemsToUsersResult>();
+                result.Result = new GrantItemsToUsersResult();
+                result.Result.ItemGrantResults = new ArrayList<GrantedItemInstance>();
+                if (request.ItemGrants.size() == 2)
+                {
+                    result.Result.ItemGrantResults.add(Granted("p1", "pack", "first", null));
+                    result.Result.ItemGrantResults.add(Granted("p1", "pack", "second", null));
+                    result.Result.ItemGrantResults.add(Granted("p1", "potion", "second-a", "second"));
+                    result.Result.ItemGrantResults.add(Granted("p1", "gem", "second-b", "second-a"));
+                    result.Result.ItemGrantResults.add(Granted("p1", "sword", "first-a", "first"));
+                }
+                return result;
+            }
+        };
+        PlayFabGrantAggregator aggregator = new PlayFabGrantAggregator(sender, 100, 60000, 1);
+        Future<PlayFabResult<List<GrantedItemInstance>>> first = aggregator.Grant("p1", "pack");
+        Future<PlayFabResult<List<GrantedItemInstance>>> second = aggregator.Grant("p1", "pack");
+        ItemGrant other = new ItemGrant();
+        other.PlayFabId = "p2";
+        other.ItemId = "pack";
+        Future<PlayFabResult<List<GrantedItemInstance>>> otherCatalog = aggregator.Grant("Other", other);
+        aggregator.Flush();
+        assertTrue(otherCatalog.isDone());
+        // Flush used the single batch thread rather than sending both catalogs at once
+        assertEquals(1, maxConcurrent.get());
+
+        assertEquals(Arrays.asList("first", "first-a"), InstanceIds(first.get().Result));
+        assertEquals(Arrays.asList("second", "second-a", "second-b"), InstanceIds(second.get().Result));
+
+        aggregator.Close();
+        PlayFabResult<List<GrantedItemInstance>> late = aggregator.Grant("p1", "pack").get();
+        assertNotNull(late.Error);
+        assertEquals(2, aggregator.GetBatchCount());
+    }
+
+    private static GrantedItemInstance Granted(String playFabId, String itemId, String instanceId, String bundleParent)
+    {
+        GrantedItemInstance granted = new GrantedItemInstance();
+        granted.PlayFabId = playFabId;
+        granted.ItemId = itemId;
+        granted.ItemInstanceId = instanceId;
+        granted.BundleParent = bundleParent;
+        granted.Result = true;
+        return granted;
+    }
+
+    private static List<String> InstanceIds(List<GrantedItemInstance> granted)
+    {
+        List<String> ids = new ArrayList<String>();
+        for (GrantedItemInstance item : granted)
+            ids.add(item.ItemInstanceId);
+        return ids;
+    }
+
+    private static void assertGranted(PlayFabResult<List<GrantedItemInstance>> result, String playFabId, String itemId)
+    {
+        assertNull(result.Error);
+        assertEquals(1, result.Result.size());
+        assertTrue(result.Result.get(0).Result);
+        assertEquals(playFabId, result.Result.get(0).PlayFabId);
+        assertEquals(itemId, result.Result.get(0).ItemId);
+    }
+}
@@ -0,0 +1,66 @@
+package com.playfab.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.playfab.PlayFabHeartbeatScheduler;
+import com.playfab.PlayFabServerAPI;
+import com.playfab.PlayFabServerModels.GameInstanceState;
+
+public class PlayFabHeartbeatSchedulerTest
+{
+    private static PlayFabFakeServer server;
+    private static PlayFabServerAPI serverApi;
+
+    @BeforeClass
+    public static void oneTimeSetUp() throws Exception
+    {
+        server = PlayFabFakeServer.Started(4);
+        serverApi = new PlayFabServerAPI(server.NewSettings());
+    }
+
+    @AfterClass
+    public static void oneTimeTearDown()
+    {
+        server.Stop();
+    }
+
+    @Test
+    public void BeatsEveryInstanceAndCoalescesChanges() throws Exception
+    {
+        PlayFabHeartbeatScheduler scheduler = new PlayFabHeartbeatScheduler(serverApi, 200, 10, 4);
+        List<String> lobbies = new ArrayList<String>();
+        for (int i = 0; i < 20; i++)
+        {
+            String lobbyId = server.AddLobby("deathmatch");
+            lobbies.add(lobbyId);
+            scheduler.Register(lobbyId);
+        }
+        String lobby = lobbies.get(0);
+        scheduler.SetState(lobby, GameInstanceState.Closed);
+        scheduler.SetState(lobby, GameInstanceState.Open);
+        scheduler.SetData(lobby, "map=1");
+        scheduler.SetData(lobby, "map=2");
+
+        Thread.sleep(500);
+        scheduler.SetState(lobby, GameInstanceState.Open);
+        scheduler.SetData(lobby, "map=2");
+        Thread.sleep(250);
+        scheduler.Close();
+
+        // At least two full rotations reached every instance
+        assertTrue(scheduler.GetHeartbeatCount() >= 40);
+        assertEquals(1, scheduler.GetStateSendCount());
+        assertEquals(1, scheduler.GetDataSendCount());
+        assertEquals(2, scheduler.GetSkippedSendCount());
+        assertEquals(0, scheduler.GetFailureCount());
+        assertEquals(1, server.GetRequestCount("/Server/SetGameServerInstanceState"));
+    }
+}
@@ -0,0 +1,117 @@
+package com.playfab.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.playfab.PlayFabErrors.PlayFabResult;
+import com.playfab.PlayFabIdLoader;
+
+public class PlayFabIdLoaderTest
+{
+    @Test
+    public void BatchesDeduplicatesAndCaches() throws Exception
+    {
+        final List<Integer> batchSizes = new ArrayList<Integer>();
+        PlayFabIdLoader loader = new PlayFabIdLoader(new PlayFabIdLoader.BatchFunction() {
+            public PlayFabResult<Map<String, String>> Load(List<String> ids) {
+                synchronized (batchSizes) {
+                    batchSizes.add(ids.size());
+                }
+                PlayFabResult<Map<String, String>> result = new PlayFabResult<Map<String, String>>();
+                result.Result = new HashMap<String, String>();
+                for (String id : ids)
+                    if (!id.startsWith("unlinked"))
+                        result.Result.put(id, "PF-" + id);
+                return result;
+            }
+        }, 4, 50, 100);
+
+        List<Future<PlayFabResult<String>>> lookups = new ArrayList<Future<PlayFabResult<String>>>();
+        for (int i = 0; i < 6; i++)
+            lookups.add(loader.LoadAsync("steam" + i));
+        lookups.add(loader.LoadAsync("steam5"));
+        lookups.add(loader.LoadAsync("unlinked"));
+
+        for (int i = 0; i < 6; i++)
+            assertEquals("PF-steam" + i, lookups.get(i).get().Result);
+        assertEquals("PF-steam5", lookups.get(6).get().Result);
+        assertNull(lookups.get(7).get().Result);
+        // One full batch of 4, then the remaining 3 distinct IDs when the window closed
+        assertEquals(2, loader.GetBatchCount());
+        assertEquals(Integer.valueOf(4), batchSizes.get(0));
+        assertEquals(Integer.valueOf(3), batchSizes.get(1));
+
+        assertEquals("PF-steam2", loader.Load("steam2").Result);
+        assertEquals(1, loader.GetCacheHitCount());
+        assertEquals(2, loader.GetBatchCount());
+        loader.Close();
+    }
+
+    @Test
+    public void CallersOfOneIdCancelIndependently() throws Exception
+    {
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<String> threads = new ArrayList<String>();
+        PlayFabIdLoader loader = new PlayFabIdLoader(new PlayFabIdLoader.BatchFunction() {
+            public PlayFabResult<Map<String, String>> Load(List<String> ids) throws Exception {
+                synchronized (threads) {
+                    threads.add(Thread.currentThread().getName());
+                }
+                release.await();
+                PlayFabResult<Map<String, String>> result = new PlayFabResult<Map<String, String>>();
+                result.Result = new HashMap<String, String>();
+                for (String id : ids)
+                    result.Result.put(id, "PF-" + id);
+                return result;
+            }
+        }, 10, 20, 100, 3);
+
+        Future<PlayFabResult<String>> first = loader.LoadAsync("steam1");
+        Future<PlayFabResult<String>> second = loader.LoadAsync("steam1");
+        assertTrue(first.cancel(true));
+        assertFalse(second.isCancelled());
+        release.countDown();
+        assertEquals("PF-steam1", second.get(5, TimeUnit.SECONDS).Result);
+        assertEquals(1, loader.GetBatchCount());
+        // The window timer hands the batch to a sender thread
+        assertEquals("PlayFabIdLoader", threads.get(0));
+        loader.Close();
+    }
+
+    @Test
+    public void LookupsAfterCloseFailAtOnce() throws Exception
+    {
+        PlayFabIdLoader loader = new PlayFabIdLoader(new PlayFabIdLoader.BatchFunction() {
+            public PlayFabResult<Map<String, String>> Load(List<String> ids) {
+                PlayFabResult<Map<String, String>> result = new PlayFabResult<Map<String, String>>();
+                result.Result = new HashMap<String, String>();
+                for (String id : ids)
+                    result.Result.put(id, "PF-" + id);
+                return result;
+            }
+        }, 10, 20, 100);
+        assertEquals("PF-steam1", loader.Load("steam1").Result);
+        loader.Close();
+
+        Future<PlayFabResult<String>> closed = loader.LoadAsync("steam2");
+        assertTrue(closed.isDone());
+        assertNotNull(closed.get().Error);
+        assertNotNull(loader.Load("steam2").Error);
+        // Cached pairs are still answered
+        assertEquals("PF-steam1", loader.Load("steam1").Result);
+        assertEquals(1, loader.GetBatchCount());
+    }
+}
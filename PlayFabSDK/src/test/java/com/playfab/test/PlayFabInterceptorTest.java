@@ -0,0 +1,91 @@
+package com.playfab.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.playfab.PlayFabErrors.PlayFabError;
+import com.playfab.PlayFabErrors.PlayFabErrorCode;
+import com.playfab.PlayFabErrors.PlayFabResult;
+import com.playfab.PlayFabInterceptor;
+import com.playfab.PlayFabServerAPI;
+import com.playfab.PlayFabServerModels;
+import com.playfab.PlayFabSettings;
+
+public class PlayFabInterceptorTest
+{
+    private PlayFabFakeServer server;
+
+    @After
+    public void tearDown()
+    {
+        PlayFabSettings.Interceptors = null;
+        if (server != null)
+            server.Stop();
+    }
+
+    private PlayFabServerAPI StartServer() throws Exception
+    {
+        server = PlayFabFakeServer.Started(2);
+        return new PlayFabServerAPI(server.NewSettings());
+    }
+
+    @Test
+    public void InterceptorsRunInOrderAndCanRetry() throws Exception
+    {
+        PlayFabServerAPI serverApi = StartServer();
+        server.SetErrorInjection(1.0, PlayFabErrorCode.InternalServerError);
+
+        final List<String> trace = new ArrayList<String>();
+        final int[] attempts = new int[1];
+        PlayFabSettings.Interceptors = new PlayFabInterceptor[] {
+            new PlayFabInterceptor() {
+                public Object intercept(Call call) throws Exception {
+                    trace.add("outer");
+                    Object result = call.proceed();
+                    if (result instanceof PlayFabError) {
+                        server.SetErrorInjection(0, PlayFabErrorCode.InternalServerError);
+                        result = call.proceed();
+                    }
+                    attempts[0] = call.GetAttempts();
+                    return result;
+                }
+            },
+            new PlayFabInterceptor() {
+                public Object intercept(Call call) throws Exception {
+                    trace.add("inner");
+                    call.SetHeader("X-Test", "1");
+                    return call.proceed();
+                }
+            }
+        };
+
+        PlayFabResult<PlayFabServerModels.GetTimeResult> result = serverApi.GetTime(new PlayFabServerModels.GetTimeRequest());
+        assertNull(result.Error);
+        assertEquals(2, attempts[0]);
+        assertEquals("[outer, inner, inner]", trace.toString());
+        assertEquals(2, server.GetRequestCount("/Server/GetTime"));
+    }
+
+    @Test
+    public void InterceptorCanShortCircuit() throws Exception
+    {
+        PlayFabServerAPI serverApi = StartServer();
+        PlayFabSettings.Interceptors = new PlayFabInterceptor[] {
+            new PlayFabInterceptor() {
+                public Object intercept(Call call) throws Exception {
+                    return "{\"code\":200,\"status\":\"OK\",\"data\":{\"Data\":{\"cached\":\"yes\"}}}";
+                }
+            }
+        };
+
+        PlayFabResult<PlayFabServerModels.GetTitleDataResult> result = serverApi.GetTitleData(new PlayFabServerModels.GetTitleDataRequest());
+        assertEquals("yes", result.Result.Data.get("cached"));
+        assertEquals(0, server.GetRequestCount("/Server/GetTitleData"));
+    }
+}
@@ -0,0 +1,227 @@
+package com.playfab.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.playfab.PlayFabErrors.PlayFabErrorCode;
+import com.playfab.PlayFabErrors.PlayFabResult;
+import com.playfab.PlayFabInventoryMirror;
+import com.playfab.PlayFabServerAPI;
+import com.playfab.PlayFabServerModels.*;
+
+public class PlayFabInventoryMirrorTest
+{
+    private static PlayFabFakeServer server;
+    private static PlayFabServerAPI serverApi;
+
+    @BeforeClass
+    public static void oneTimeSetUp() throws Exception
+    {
+        server = PlayFabFakeServer.Started(2);
+        serverApi = new PlayFabServerAPI(server.NewSettings());
+
+        CatalogItem potion = new CatalogItem();
+        potion.ItemId = "potion";
+        potion.ItemClass = "consumable";
+        potion.Consumable = new CatalogItemConsumableInfo();
+        potion.Consumable.UsageCount = 3L;
+        List<CatalogItem> catalog = new ArrayList<CatalogItem>();
+        catalog.add(potion);
+        server.SetCatalog("Main", catalog);
+    }
+
+    @AfterClass
+    public static void oneTimeTearDown()
+    {
+        server.Stop();
+    }
+
+    private static GetUserInventoryRequest User(String playFabId)
+    {
+        GetUserInventoryRequest request = new GetUserInventoryRequest();
+        request.PlayFabId = playFabId;
+        return request;
+    }
+
+    private static GetCharacterInventoryRequest Character(String playFabId, String characterId)
+    {
+        GetCharacterInventoryRequest request = new GetCharacterInventoryRequest();
+        request.PlayFabId = playFabId;
+        request.CharacterId = characterId;
+        return request;
+    }
+
+    // Remaining uses by ItemInstanceId, so inventories compare regardless of order
+    private static Map<String, Integer> Uses(List<ItemInstance> items)
+    {
+        Map<String, Integer> uses = new HashMap<String, Integer>();
+        for (ItemInstance item : items)
+            assertNull(uses.put(item.ItemInstanceId, item.RemainingUses));
+        return uses;
+    }
+
+    // Checks both mirrored inventories against a fresh fetch, without letting the mirror refetch
+    private static void AssertMirrored(PlayFabInventoryMirror mirror, String playFabId, String characterId, int userItems, int characterItems)
+    {
+        long userFetches = server.GetRequestCount("/Server/GetUserInventory");
+        long characterFetches = server.GetRequestCount("/Server/GetCharacterInventory");
+        List<ItemInstance> mirroredUser = mirror.GetUserInventory(User(playFabId)).Result.Inventory;
+        List<ItemInstance> mirroredCharacter = mirror.GetCharacterInventory(Character(playFabId, characterId)).Result.Inventory;
+        assertEquals(userFetches, server.GetRequestCount("/Server/GetUserInventory"));
+        assertEquals(characterFetches, server.GetRequestCount("/Server/GetCharacterInventory"));
+
+        assertEquals(userItems, mirroredUser.size());
+        assertEquals(characterItems, mirroredCharacter.size());
+        assertEquals(Uses(serverApi.GetUserInventory(User(playFabId)).Result.Inventory), Uses(mirroredUser));
+        assertEquals(Uses(serverApi.GetCharacterInventory(Character(playFabId, characterId)).Result.Inventory), Uses(mirroredCharacter));
+    }
+
+    private static void AssertMirroredUser(PlayFabInventoryMirror mirror, String playFabId, String itemInstanceId)
+    {
+        List<ItemInstance> mirrored = mirror.GetUserInventory(User(playFabId)).Result.Inventory;
+        assertEquals(1, mirrored.size());
+        assertEquals(itemInstanceId, mirrored.get(0).ItemInstanceId);
+        assertEquals(3, (int)mirrored.get(0).RemainingUses);
+    }
+
+    @Test
+    public void AppliesMutationsWithoutRefetching()
+    {
+        String playFabId = server.AddPlayer("inventory-mirror");
+        PlayFabInventoryMirror mirror = new PlayFabInventoryMirror(serverApi, 100, 0);
+        assertEquals(0, (int)mirror.GetBalance(playFabId, null, "GC"));
+
+        GrantItemsToUserRequest grant = new GrantItemsToUserRequest();
+        grant.PlayFabId = playFabId;
+        grant.CatalogVersion = "Main";
+        grant.ItemIds = new ArrayList<String>(Arrays.asList("potion", "potion"));
+        PlayFabResult<GrantItemsToUserResult> granted = mirror.GrantItemsToUser(grant);
+        assertNull(granted.Error);
+        assertEquals(2, mirror.GetItemInstances(playFabId, null, "potion").size());
+
+        ConsumeItemRequest consume = new ConsumeItemRequest();
+        consume.PlayFabId = playFabId;
+        consume.ItemInstanceId = granted.Result.ItemGrantResults.get(0).ItemInstanceId;
+        consume.ConsumeCount = 1;
+        assertNull(mirror.ConsumeItem(consume).Error);
+        assertEquals(2, (int)mirror.GetItemInstance(playFabId, null, consume.ItemInstanceId).RemainingUses);
+        consume.ConsumeCount = 2;
+        assertNull(mirror.ConsumeItem(consume).Error);
+        assertNull(mirror.GetItemInstance(playFabId, null, consume.ItemInstanceId));
+
+        AddUserVirtualCurrencyRequest add = new AddUserVirtualCurrencyRequest();
+        add.PlayFabId = playFabId;
+        add.VirtualCurrency = "GC";
+        add.Amount = 25;
+        assertNull(mirror.AddUserVirtualCurrency(add).Error);
+        assertEquals(25, (int)mirror.GetBalance(playFabId, null, "GC"));
+        assertEquals(4, mirror.GetVersion(playFabId, null));
+
+        GetUserInventoryRequest get = new GetUserInventoryRequest();
+        get.PlayFabId = playFabId;
+        long fetches = server.GetRequestCount("/Server/GetUserInventory");
+        assertEquals(1, mirror.GetUserInventory(get).Result.Inventory.size());
+        assertEquals(fetches, server.GetRequestCount("/Server/GetUserInventory"));
+
+        // A failed mutation leaves the mirror suspect, so the next read reconciles with a full fetch
+        assertEquals(PlayFabErrorCode.ItemNotFound, mirror.ConsumeItem(consume).Error.pfErrorCode);
+        assertEquals(1, mirror.GetUserInventory(get).Result.Inventory.size());
+        assertEquals(fetches + 1, server.GetRequestCount("/Server/GetUserInventory"));
+        assertEquals(0, mirror.GetVersion(playFabId, null));
+    }
+
+    @Test
+    public void MovesItemsBetweenUserAndCharacter()
+    {
+        String playFabId = server.AddPlayer("inventory-mover");
+        String characterId = server.AddCharacter(playFabId);
+        PlayFabInventoryMirror mirror = new PlayFabInventoryMirror(serverApi, 100, 0);
+        assertNull(mirror.GetUserInventory(User(playFabId)).Error);
+        assertNull(mirror.GetCharacterInventory(Character(playFabId, characterId)).Error);
+
+        GrantItemsToUserRequest grantUser = new GrantItemsToUserRequest();
+        grantUser.PlayFabId = playFabId;
+        grantUser.ItemIds = new ArrayList<String>(Arrays.asList("potion", "potion"));
+        PlayFabResult<GrantItemsToUserResult> userGrants = mirror.GrantItemsToUser(grantUser);
+        assertNull(userGrants.Error);
+        GrantItemsToCharacterRequest grantCharacter = new GrantItemsToCharacterRequest();
+        grantCharacter.PlayFabId = playFabId;
+        grantCharacter.CharacterId = characterId;
+        grantCharacter.ItemIds = new ArrayList<String>(Arrays.asList("potion"));
+        PlayFabResult<GrantItemsToCharacterResult> characterGrants = mirror.GrantItemsToCharacter(grantCharacter);
+        assertNull(characterGrants.Error);
+        AssertMirrored(mirror, playFabId, characterId, 2, 1);
+
+        // A used-up potion keeps its remaining uses on the way over
+        String toCharacter = userGrants.Result.ItemGrantResults.get(0).ItemInstanceId;
+        ConsumeItemRequest consume = new ConsumeItemRequest();
+        consume.PlayFabId = playFabId;
+        consume.ItemInstanceId = toCharacter;
+        consume.ConsumeCount = 1;
+        assertNull(mirror.ConsumeItem(consume).Error);
+        MoveItemToCharacterFromUserRequest give = new MoveItemToCharacterFromUserRequest();
+        give.PlayFabId = playFabId;
+        give.CharacterId = characterId;
+        give.ItemInstanceId = toCharacter;
+        assertNull(mirror.MoveItemToCharacterFromUser(give).Error);
+        AssertMirrored(mirror, playFabId, characterId, 1, 2);
+        assertNull(mirror.GetItemInstance(playFabId, null, toCharacter));
+        assertEquals(2, (int)mirror.GetItemInstance(playFabId, characterId, toCharacter).RemainingUses);
+
+        String toUser = characterGrants.Result.ItemGrantResults.get(0).ItemInstanceId;
+        MoveItemToUserFromCharacterRequest take = new MoveItemToUserFromCharacterRequest();
+        take.PlayFabId = playFabId;
+        take.CharacterId = characterId;
+        take.ItemInstanceId = toUser;
+        assertNull(mirror.MoveItemToUserFromCharacter(take).Error);
+        AssertMirrored(mirror, playFabId, characterId, 2, 1);
+        assertNull(mirror.GetItemInstance(playFabId, characterId, toUser));
+        assertEquals(2, mirror.GetItemInstances(playFabId, null, "potion").size());
+        assertEquals(3, mirror.GetVersion(playFabId, characterId));
+
+        // A move that fails changes neither side, and the next reads reconcile both
+        long userFetches = server.GetRequestCount("/Server/GetUserInventory");
+        long characterFetches = server.GetRequestCount("/Server/GetCharacterInventory");
+        assertEquals(PlayFabErrorCode.ItemNotFound, mirror.MoveItemToUserFromCharacter(take).Error.pfErrorCode);
+        assertEquals(2, mirror.GetUserInventory(User(playFabId)).Result.Inventory.size());
+        assertEquals(1, mirror.GetCharacterInventory(Character(playFabId, characterId)).Result.Inventory.size());
+        assertEquals(userFetches + 1, server.GetRequestCount("/Server/GetUserInventory"));
+        assertEquals(characterFetches + 1, server.GetRequestCount("/Server/GetCharacterInventory"));
+    }
+
+    @Test
+    public void MoveFromAnUnmirroredInventoryRefetchesTheTarget()
+    {
+        String playFabId = server.AddPlayer("inventory-unmirrored");
+        String characterId = server.AddCharacter(playFabId);
+        PlayFabInventoryMirror mirror = new PlayFabInventoryMirror(serverApi, 100, 0);
+
+        GrantItemsToCharacterRequest grant = new GrantItemsToCharacterRequest();
+        grant.PlayFabId = playFabId;
+        grant.CharacterId = characterId;
+        grant.ItemIds = new ArrayList<String>(Arrays.asList("potion"));
+        String itemInstanceId = serverApi.GrantItemsToCharacter(grant).Result.ItemGrantResults.get(0).ItemInstanceId;
+        assertEquals(0, mirror.GetUserInventory(User(playFabId)).Result.Inventory.size());
+
+        // Only the user inventory is mirrored, so the moved item's details have to come from the server
+        MoveItemToUserFromCharacterRequest take = new MoveItemToUserFromCharacterRequest();
+        take.PlayFabId = playFabId;
+        take.CharacterId = characterId;
+        take.ItemInstanceId = itemInstanceId;
+        assertNull(mirror.MoveItemToUserFromCharacter(take).Error);
+        long userFetches = server.GetRequestCount("/Server/GetUserInventory");
+        AssertMirroredUser(mirror, playFabId, itemInstanceId);
+        assertEquals(userFetches + 1, server.GetRequestCount("/Server/GetUserInventory"));
+        assertEquals(0, mirror.GetCharacterInventory(Character(playFabId, characterId)).Result.Inventory.size());
+    }
+}
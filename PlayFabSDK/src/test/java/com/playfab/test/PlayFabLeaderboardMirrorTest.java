@@ -0,0 +1,116 @@
+package com.playfab.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.playfab.PlayFabErrors.PlayFabResult;
+import com.playfab.PlayFabLeaderboardMirror;
+import com.playfab.PlayFabServerAPI;
+import com.playfab.PlayFabServerModels.*;
+
+public class PlayFabLeaderboardMirrorTest
+{
+    private static PlayFabFakeServer server;
+    private static PlayFabServerAPI serverApi;
+    private static List<String> players = new ArrayList<String>();
+
+    @BeforeClass
+    public static void oneTimeSetUp() throws Exception
+    {
+        server = PlayFabFakeServer.Started(4);
+        serverApi = new PlayFabServerAPI(server.NewSettings());
+
+        // Scores 250, 240, ... 10: players[i] is ranked i
+        for (int i = 0; i < 25; i++)
+        {
+            String playFabId = server.AddPlayer("leaderboard-" + i);
+            server.SetStatistic(playFabId, "score", 250 - 10 * i);
+            players.add(playFabId);
+        }
+    }
+
+    @AfterClass
+    public static void oneTimeTearDown()
+    {
+        server.Stop();
+    }
+
+    @Test
+    public void ServesWindowsAndRanksFromMemory()
+    {
+        PlayFabLeaderboardMirror mirror = new PlayFabLeaderboardMirror(serverApi, "score", 10, 2, 1000, 60000);
+        assertNull(mirror.Sync());
+        assertEquals(25, mirror.GetSize());
+        long pages = server.GetRequestCount("/Server/GetLeaderboard");
+
+        GetLeaderboardRequest top = new GetLeaderboardRequest();
+        top.StatisticName = "score";
+        top.StartPosition = 5;
+        top.MaxResultsCount = 3;
+        PlayFabResult<GetLeaderboardResult> window = mirror.GetLeaderboard(top);
+        assertEquals(3, window.Result.Leaderboard.size());
+        assertEquals(players.get(5), window.Result.Leaderboard.get(0).PlayFabId);
+        assertEquals(Integer.valueOf(7), window.Result.Leaderboard.get(2).Position);
+
+        GetLeaderboardAroundUserRequest around = new GetLeaderboardAroundUserRequest();
+        around.StatisticName = "score";
+        around.PlayFabId = players.get(12);
+        around.MaxResultsCount = 5;
+        PlayFabResult<GetLeaderboardAroundUserResult> neighbours = mirror.GetLeaderboardAroundUser(around);
+        assertEquals(players.get(10), neighbours.Result.Leaderboard.get(0).PlayFabId);
+        assertEquals(players.get(14), neighbours.Result.Leaderboard.get(4).PlayFabId);
+        assertEquals(pages, server.GetRequestCount("/Server/GetLeaderboard"));
+
+        // A local score change moves the player without a sync
+        mirror.Update(players.get(20), null, 245);
+        assertEquals(Integer.valueOf(1), mirror.GetPosition(players.get(20)));
+        assertEquals(Integer.valueOf(2), mirror.GetPosition(players.get(1)));
+        assertEquals(2, mirror.GetPositionForValue(241));
+
+        List<PlayerLeaderboardEntry> friends = mirror.GetEntries(Arrays.asList(players.get(3), "unknown", players.get(20)));
+        assertEquals(2, friends.size());
+        assertEquals(players.get(20), friends.get(0).PlayFabId);
+        assertEquals(Integer.valueOf(4), friends.get(1).Position);
+        mirror.Close();
+    }
+
+    @Test
+    public void ServesStaleCopyWhenSyncFails() throws Exception
+    {
+        PlayFabLeaderboardMirror mirror = new PlayFabLeaderboardMirror(serverApi, "score", 10, 2, 1000, 50);
+        GetLeaderboardRequest top = new GetLeaderboardRequest();
+        top.StatisticName = "score";
+        top.MaxResultsCount = 3;
+
+        // Never synced: the error is all there is to return
+        server.FailRequests("/Server/GetLeaderboard", 0, 1);
+        assertNotNull(mirror.GetLeaderboard(top).Error);
+
+        assertNull(mirror.GetLeaderboard(top).Error);
+        assertFalse(mirror.IsStale());
+        Thread.sleep(60);
+
+        server.FailRequests("/Server/GetLeaderboard", 0, 1);
+        PlayFabResult<GetLeaderboardResult> stale = mirror.GetLeaderboard(top);
+        assertNull(stale.Error);
+        assertEquals(players.get(0), stale.Result.Leaderboard.get(0).PlayFabId);
+        assertTrue(mirror.IsStale());
+        assertNotNull(mirror.GetLastSyncError());
+
+        assertNull(mirror.Sync());
+        assertFalse(mirror.IsStale());
+        assertNull(mirror.GetLastSyncError());
+        mirror.Close();
+    }
+}
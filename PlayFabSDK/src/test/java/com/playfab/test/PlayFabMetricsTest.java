@@ -0,0 +1,62 @@
+package com.playfab.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.playfab.PlayFabErrors.PlayFabErrorCode;
+import com.playfab.PlayFabMetrics;
+import com.playfab.PlayFabServerAPI;
+import com.playfab.PlayFabServerModels;
+import com.playfab.PlayFabSettings;
+
+public class PlayFabMetricsTest
+{
+    @Test
+    public void HistogramPercentilesAreWithinBucketPrecision()
+    {
+        PlayFabMetrics.Histogram histogram = new PlayFabMetrics.Histogram();
+        for (long i = 1; i <= 1000; i++)
+            histogram.Record(i * 1000);
+
+        assertEquals(1000, histogram.GetCount());
+        assertEquals(1000000, histogram.GetMax());
+        long p50 = histogram.GetPercentile(50);
+        long p99 = histogram.GetPercentile(99);
+        assertTrue(String.valueOf(p50), p50 >= 500000 && p50 <= 500000 * 1.07);
+        assertTrue(String.valueOf(p99), p99 >= 990000 && p99 <= 1000000);
+        assertEquals(500500.0, histogram.GetMean(), 0.001);
+    }
+
+    @Test
+    public void TransportReportsEveryCall() throws Exception
+    {
+        PlayFabFakeServer server = PlayFabFakeServer.Started(2);
+        PlayFabMetrics.HistogramMetrics metrics = new PlayFabMetrics.HistogramMetrics();
+        PlayFabSettings.GlobalMetricsHandler = metrics;
+        try {
+            PlayFabServerAPI serverApi = new PlayFabServerAPI(server.NewSettings());
+
+            serverApi.GetTime(new PlayFabServerModels.GetTimeRequest());
+            PlayFabServerModels.AuthenticateSessionTicketRequest auth = new PlayFabServerModels.AuthenticateSessionTicketRequest();
+            auth.SessionTicket = "not-a-ticket";
+            serverApi.AuthenticateSessionTicket(auth);
+
+            PlayFabMetrics.EndpointStats time = metrics.GetStats("/Server/GetTime");
+            assertNotNull(time);
+            assertEquals(1, time.GetCalls());
+            assertEquals(0, time.GetErrorCount());
+            assertTrue(time.responseBytes.GetMax() > 0);
+            assertTrue(time.totalTime.GetMax() >= time.timeToFirstByte.GetMax());
+
+            PlayFabMetrics.EndpointStats auths = metrics.GetStats("/Server/AuthenticateSessionTicket");
+            assertEquals(1, auths.GetErrorCount(PlayFabErrorCode.InvalidSessionTicket));
+            assertTrue(metrics.Dump().contains("InvalidSessionTicket 1"));
+        } finally {
+            PlayFabSettings.GlobalMetricsHandler = null;
+            server.Stop();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.playfab.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.playfab.PlayFabErrors.PlayFabResult;
+import com.playfab.PlayFabPlayerExport;
+import com.playfab.PlayFabServerAPI;
+import com.playfab.PlayFabServerModels.*;
+
+public class PlayFabPlayerExportTest
+{
+    private static PlayFabFakeServer server;
+    private static PlayFabServerAPI serverApi;
+    private static Map<String, Integer> levels = new HashMap<String, Integer>();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void oneTimeSetUp() throws Exception
+    {
+        server = PlayFabFakeServer.Started(4);
+        serverApi = new PlayFabServerAPI(server.NewSettings());
+
+        CatalogItem sword = new CatalogItem();
+        sword.ItemId = "sword";
+        server.SetCatalog("Main", Arrays.asList(sword));
+        // Player i is at level i, every other player is gold tier and every third owns a sword
+        for (int i = 0; i < 25; i++)
+        {
+            String playFabId = server.AddPlayer("export-" + i);
+            levels.put(playFabId, i);
+            server.SetStatistic(playFabId, "level", i);
+            UpdateUserDataRequest data = new UpdateUserDataRequest();
+            data.PlayFabId = playFabId;
+            data.Data = new HashMap<String, String>();
+            data.Data.put("tier", i % 2 == 0 ? "gold" : "silver");
+            assertNull(serverApi.UpdateUserReadOnlyData(data).Error);
+            if (i % 3 == 0)
+            {
+                GrantItemsToUserRequest grant = new GrantItemsToUserRequest();
+                grant.PlayFabId = playFabId;
+                grant.ItemIds = new ArrayList<String>(Arrays.asList("sword"));
+                assertNull(serverApi.GrantItemsToUser(grant).Error);
+            }
+        }
+    }
+
+    @AfterClass
+    public static void oneTimeTearDown()
+    {
+        server.Stop();
+    }
+
+    @Test
+    public void ExportsResumesAndReadsBack() throws Exception
+    {
+        File output = new File(folder.getRoot(), "players.pfx");
+        PlayFabPlayerExport export = new PlayFabPlayerExport(serverApi, Arrays.asList("level"), Arrays.asList("tier"), 4, 1000, 1);
+
+        // The second page fails part way; only the first is kept
+        server.FailRequests("/Server/GetUserInventory", 12, 1);
+        PlayFabResult<PlayFabPlayerExport.Report> failed = export.Export("all", output, 10);
+        assertNotNull(failed.Error);
+        assertEquals(2, server.GetRequestCount("/Server/GetPlayersInSegment"));
+
+        PlayFabResult<PlayFabPlayerExport.Report> resumed = export.Export("all", output, 10);
+        assertNull(resumed.Error);
+        assertTrue(resumed.Result.Resumed);
+        assertEquals(3, resumed.Result.Pages);
+        assertEquals(25, resumed.Result.Players);
+        assertEquals(output.length(), resumed.Result.Bytes);
+        assertEquals(4, server.GetRequestCount("/Server/GetPlayersInSegment"));
+        // Statistics come with the segment profiles
+        assertEquals(0, server.GetRequestCount("/Server/GetPlayerStatistics"));
+
+        // A finished export is not run again
+        assertNull(export.Export("all", output, 10).Error);
+        assertEquals(4, server.GetRequestCount("/Server/GetPlayersInSegment"));
+
+        PlayFabPlayerExport.Reader reader = new PlayFabPlayerExport.Reader(output);
+        assertEquals(export.GetColumns().size(), reader.GetColumns().size());
+        int id = reader.GetColumnIndex("PlayFabId");
+        int level = reader.GetColumnIndex("stat.level");
+        int tier = reader.GetColumnIndex("data.tier");
+        int count = reader.GetColumnIndex("inventory.Count");
+        int items = reader.GetColumnIndex("inventory.ItemIds");
+        Map<String, Integer> seen = new HashMap<String, Integer>();
+        while (reader.Next())
+        {
+            String playFabId = reader.GetText(id);
+            int i = levels.get(playFabId);
+            assertNull(seen.put(playFabId, i));
+            assertEquals(i, reader.GetNumber(level, -1));
+            assertEquals(i % 2 == 0 ? "gold" : "silver", reader.GetText(tier));
+            assertEquals(i % 3 == 0 ? 1 : 0, reader.GetNumber(count, -1));
+            assertEquals(i % 3 == 0 ? "sword" : "", reader.GetText(items));
+            assertTrue(reader.IsNull(reader.GetColumnIndex("LastLogin")));
+            assertFalse(reader.IsNull(reader.GetColumnIndex("Created")));
+        }
+        reader.close();
+        assertEquals(levels, seen);
+    }
+}
@@ -0,0 +1,135 @@
+package com.playfab.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.playfab.PlayFabRandomResultTables;
+import com.playfab.PlayFabServerAPI;
+import com.playfab.PlayFabServerModels.RandomResultTableListing;
+import com.playfab.PlayFabServerModels.ResultTableNode;
+import com.playfab.PlayFabServerModels.ResultTableNodeType;
+
+public class PlayFabRandomResultTablesTest
+{
+    private static void AddNode(Map<String, RandomResultTableListing> tables, String tableId, ResultTableNodeType type, String result, int weight)
+    {
+        RandomResultTableListing table = tables.get(tableId);
+        if (table == null)
+        {
+            table = new RandomResultTableListing();
+            table.TableId = tableId;
+            table.Nodes = new ArrayList<ResultTableNode>();
+            tables.put(tableId, table);
+        }
+        ResultTableNode node = new ResultTableNode();
+        node.ResultItemType = type;
+        node.ResultItem = result;
+        node.Weight = weight;
+        table.Nodes.add(node);
+    }
+
+    @Test
+    public void RollsMatchWeightsThroughNestedTables()
+    {
+        Map<String, RandomResultTableListing> tables = new HashMap<String, RandomResultTableListing>();
+        AddNode(tables, "chest", ResultTableNodeType.ItemId, "gold", 6);
+        AddNode(tables, "chest", ResultTableNodeType.TableId, "rare", 3);
+        AddNode(tables, "chest", ResultTableNodeType.ItemId, "nothing", 0);
+        AddNode(tables, "rare", ResultTableNodeType.ItemId, "sword", 1);
+        AddNode(tables, "rare", ResultTableNodeType.ItemId, "shield", 2);
+
+        PlayFabRandomResultTables engine = new PlayFabRandomResultTables(null, null);
+        engine.Update("Main", tables);
+        assertEquals("Main", engine.GetCatalogVersion());
+        assertNull(engine.Evaluate("missing"));
+
+        Random random = new Random(42);
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        int rolls = 90000;
+        for (int i = 0; i < rolls; i++)
+        {
+            String itemId = engine.Evaluate("chest", random);
+            Integer count = counts.get(itemId);
+            counts.put(itemId, count == null ? 1 : count + 1);
+        }
+        assertNull(counts.get("nothing"));
+        assertEquals(rolls * 6 / 9, counts.get("gold"), rolls / 100);
+        assertEquals(rolls * 1 / 9, counts.get("sword"), rolls / 100);
+        assertEquals(rolls * 2 / 9, counts.get("shield"), rolls / 100);
+    }
+
+    @Test
+    public void RejectsCyclesAndKeepsPreviousTables()
+    {
+        Map<String, RandomResultTableListing> good = new HashMap<String, RandomResultTableListing>();
+        AddNode(good, "chest", ResultTableNodeType.ItemId, "gold", 1);
+        PlayFabRandomResultTables engine = new PlayFabRandomResultTables(null, null);
+        engine.Update("1", good);
+
+        Map<String, RandomResultTableListing> cyclic = new HashMap<String, RandomResultTableListing>();
+        AddNode(cyclic, "a", ResultTableNodeType.TableId, "b", 1);
+        AddNode(cyclic, "b", ResultTableNodeType.ItemId, "gold", 1);
+        AddNode(cyclic, "b", ResultTableNodeType.TableId, "a", 1);
+        try
+        {
+            engine.Update("2", cyclic);
+            fail("cycle accepted");
+        }
+        catch (IllegalArgumentException e)
+        {
+        }
+        assertEquals("1", engine.GetCatalogVersion());
+        assertEquals("gold", engine.Evaluate("chest"));
+    }
+
+    @Test
+    public void RefreshFetchesNestedTablesOfASubset() throws Exception
+    {
+        Map<String, RandomResultTableListing> tables = new HashMap<String, RandomResultTableListing>();
+        AddNode(tables, "chest", ResultTableNodeType.TableId, "rare", 1);
+        AddNode(tables, "rare", ResultTableNodeType.TableId, "epic", 1);
+        AddNode(tables, "epic", ResultTableNodeType.ItemId, "crown", 1);
+        AddNode(tables, "unrelated", ResultTableNodeType.ItemId, "rock", 1);
+
+        PlayFabFakeServer server = PlayFabFakeServer.Started(1);
+        try
+        {
+            server.SetRandomResultTables("Main", tables);
+            PlayFabRandomResultTables engine = new PlayFabRandomResultTables(new PlayFabServerAPI(server.NewSettings()), Arrays.asList("chest"));
+            assertNull(engine.Refresh("Main"));
+            assertEquals("crown", engine.Evaluate("chest"));
+            assertNull(engine.Evaluate("unrelated"));
+            assertEquals(3, server.GetRequestCount("/Server/GetRandomResultTables"));
+        }
+        finally
+        {
+            server.Stop();
+        }
+    }
+
+    @Test
+    public void AcceptsSharedSubtables()
+    {
+        // Every level points twice at the next, which a path-only check walks 2^depth times
+        Map<String, RandomResultTableListing> tables = new HashMap<String, RandomResultTableListing>();
+        for (int level = 0; level < 40; level++)
+        {
+            AddNode(tables, "level" + level, ResultTableNodeType.TableId, "level" + (level + 1), 1);
+            AddNode(tables, "level" + level, ResultTableNodeType.TableId, "level" + (level + 1), 1);
+        }
+        AddNode(tables, "level40", ResultTableNodeType.ItemId, "gold", 1);
+
+        PlayFabRandomResultTables engine = new PlayFabRandomResultTables(null, null);
+        engine.Update("Main", tables);
+        assertEquals("gold", engine.Evaluate("level0"));
+    }
+}
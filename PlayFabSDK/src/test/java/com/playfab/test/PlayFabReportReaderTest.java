@@ -0,0 +1,129 @@
+package com.playfab.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.playfab.PlayFabAdminAPI;
+import com.playfab.PlayFabAdminModels.*;
+import com.playfab.PlayFabErrors.PlayFabResult;
+import com.playfab.PlayFabReportReader;
+
+public class PlayFabReportReaderTest
+{
+    private static PlayFabFakeServer server;
+    private static PlayFabAdminAPI adminApi;
+
+    @BeforeClass
+    public static void oneTimeSetUp() throws Exception
+    {
+        server = PlayFabFakeServer.Started(4);
+        adminApi = new PlayFabAdminAPI(server.NewSettings());
+
+        // Day d has d * 100 rows; odd days are served gzipped
+        for (int day = 1; day <= 5; day++)
+        {
+            StringBuilder csv = new StringBuilder("Timestamp,PlayFabId,Event,Value\r\n");
+            for (int i = 0; i < day * 100; i++)
+                csv.append("2017-03-0").append(day).append(",P").append(i).append(",\"level, \"\"hard\"\"\",").append(i).append("\r\n");
+            byte[] data = csv.toString().getBytes("UTF-8");
+            if (day % 2 == 1)
+            {
+                ByteArrayOutputStream zipped = new ByteArrayOutputStream();
+                GZIPOutputStream gzip = new GZIPOutputStream(zipped);
+                gzip.write(data);
+                gzip.close();
+                data = zipped.toByteArray();
+            }
+            server.PutReport("DailyEvents", 2017, 3, day, data);
+        }
+    }
+
+    @AfterClass
+    public static void oneTimeTearDown()
+    {
+        server.Stop();
+    }
+
+    private static GetDataReportRequest Day(int day)
+    {
+        GetDataReportRequest request = new GetDataReportRequest();
+        request.ReportName = "DailyEvents";
+        request.Year = 2017;
+        request.Month = 3;
+        request.Day = day;
+        return request;
+    }
+
+    @Test
+    public void ParsesCompressedReportLazily() throws Exception
+    {
+        PlayFabResult<PlayFabReportReader> opened = PlayFabReportReader.Open(adminApi, Day(3));
+        assertNull(opened.Error);
+        PlayFabReportReader reader = opened.Result;
+        assertArrayEquals(new String[] { "Timestamp", "PlayFabId", "Event", "Value" }, reader.GetHeader());
+
+        Iterator<String> ids = reader.Map(new PlayFabReportReader.RowMapper<String>() {
+            public String Map(PlayFabReportReader.Row row) {
+                assertEquals("level, \"hard\"", row.Get("Event"));
+                assertEquals(row.GetRowNumber() - 1, row.GetLong("Value", -1));
+                return row.Get("PlayFabId");
+            }
+        });
+        List<String> read = new ArrayList<String>();
+        while (ids.hasNext())
+            read.add(ids.next());
+        reader.close();
+        assertEquals(300, read.size());
+        assertEquals("P299", read.get(299));
+        assertFalse(ids.hasNext());
+
+        assertNotNull(PlayFabReportReader.Open(adminApi, Day(9)).Error);
+    }
+
+    @Test
+    public void ReadsDaysInParallel()
+    {
+        List<GetDataReportRequest> days = new ArrayList<GetDataReportRequest>();
+        for (int day = 1; day <= 5; day++)
+            days.add(Day(day));
+        final AtomicLong valueSum = new AtomicLong();
+        PlayFabResult<Long> rows = PlayFabReportReader.ForEachParallel(adminApi, days, 3, new PlayFabReportReader.RowVisitor() {
+            public void Visit(GetDataReportRequest report, PlayFabReportReader.Row row) {
+                valueSum.addAndGet(row.GetLong("Value", 0));
+            }
+        });
+        assertNull(rows.Error);
+        assertEquals(Long.valueOf(1500), rows.Result);
+        long expected = 0;
+        for (int day = 1; day <= 5; day++)
+            expected += (long)(day * 100) * (day * 100 - 1) / 2;
+        assertEquals(expected, valueSum.get());
+    }
+
+    @Test
+    public void LongsOutOfRangeFallBack() throws Exception
+    {
+        String csv = "Value\r\n9223372036854775807\r\n-9223372036854775808\r\n9223372036854775808\r\n-9223372036854775809\r\n99999999999999999999\r\n";
+        PlayFabReportReader reader = new PlayFabReportReader(new ByteArrayInputStream(csv.getBytes("UTF-8")));
+        long[] expected = { Long.MAX_VALUE, Long.MIN_VALUE, -1, -1, -1 };
+        for (long value : expected)
+            assertEquals(value, reader.next().GetLong("Value", -1));
+        assertFalse(reader.hasNext());
+        reader.close();
+    }
+}
@@ -0,0 +1,169 @@
+package com.playfab.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.playfab.PlayFabErrors.PlayFabErrorCode;
+import com.playfab.PlayFabErrors.PlayFabResult;
+import com.playfab.PlayFabServerAPI;
+import com.playfab.PlayFabServerModels.*;
+import com.playfab.PlayFabSessionTicketCache;
+
+public class PlayFabSessionTicketCacheTest
+{
+    private static final String AUTHENTICATE = "/Server/AuthenticateSessionTicket";
+
+    private static PlayFabFakeServer server;
+    private static PlayFabServerAPI serverApi;
+
+    @BeforeClass
+    public static void oneTimeSetUp() throws Exception
+    {
+        server = PlayFabFakeServer.Started(8);
+        serverApi = new PlayFabServerAPI(server.NewSettings());
+    }
+
+    @AfterClass
+    public static void oneTimeTearDown()
+    {
+        server.Stop();
+    }
+
+    @After
+    public void tearDown()
+    {
+        server.SetLatency(null);
+    }
+
+    private static AuthenticateSessionTicketRequest Ticket(String sessionTicket)
+    {
+        AuthenticateSessionTicketRequest request = new AuthenticateSessionTicketRequest();
+        request.SessionTicket = sessionTicket;
+        return request;
+    }
+
+    @Test
+    public void ConcurrentValidationsShareOneCall() throws Exception
+    {
+        final PlayFabSessionTicketCache cache = new PlayFabSessionTicketCache(serverApi, 100, 60000, 1000);
+        String playFabId = server.AddPlayer("single-flight");
+        final String ticket = server.CreateSessionTicket(playFabId);
+        long before = server.GetRequestCount(AUTHENTICATE);
+        server.SetLatency(PlayFabFakeServer.FixedLatency(200));
+
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<PlayFabResult<AuthenticateSessionTicketResult>>> results = new ArrayList<Future<PlayFabResult<AuthenticateSessionTicketResult>>>();
+        for (int i = 0; i < 8; i++)
+        {
+            final FutureTask<PlayFabResult<AuthenticateSessionTicketResult>> task = cache.AuthenticateSessionTicketAsync(Ticket(ticket));
+            results.add(task);
+            pool.execute(new Runnable() {
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    task.run();
+                }
+            });
+        }
+        start.countDown();
+        for (Future<PlayFabResult<AuthenticateSessionTicketResult>> result : results)
+            assertEquals(playFabId, result.get(5, TimeUnit.SECONDS).Result.UserInfo.PlayFabId);
+        pool.shutdown();
+
+        assertEquals(before + 1, server.GetRequestCount(AUTHENTICATE));
+        assertEquals(1, cache.GetMissCount());
+        assertEquals(7, cache.GetHitCount());
+    }
+
+    @Test
+    public void EntriesExpireAfterTheirTtl() throws Exception
+    {
+        PlayFabSessionTicketCache cache = new PlayFabSessionTicketCache(serverApi, 100, 100, 1000);
+        String ticket = server.CreateSessionTicket(server.AddPlayer("expiry"));
+        long before = server.GetRequestCount(AUTHENTICATE);
+
+        PlayFabResult<AuthenticateSessionTicketResult> first = cache.AuthenticateSessionTicket(Ticket(ticket));
+        assertNull(first.Error);
+        assertSame(first, cache.AuthenticateSessionTicket(Ticket(ticket)));
+        assertEquals(before + 1, server.GetRequestCount(AUTHENTICATE));
+
+        Thread.sleep(150);
+        assertNull(cache.AuthenticateSessionTicket(Ticket(ticket)).Error);
+        assertEquals(before + 2, server.GetRequestCount(AUTHENTICATE));
+    }
+
+    @Test
+    public void BanAndRevokeEvictTickets() throws Exception
+    {
+        PlayFabSessionTicketCache cache = new PlayFabSessionTicketCache(serverApi, 100, 60000, 60000);
+        String banned = server.AddPlayer("banned");
+        String revoked = server.AddPlayer("revoked");
+        String kept = server.AddPlayer("kept");
+        String bannedTicket = server.CreateSessionTicket(banned);
+        String revokedTicket = server.CreateSessionTicket(revoked);
+        String keptTicket = server.CreateSessionTicket(kept);
+        for (String ticket : new String[] { bannedTicket, revokedTicket, keptTicket })
+            assertNull(cache.AuthenticateSessionTicket(Ticket(ticket)).Error);
+        assertEquals(3, cache.GetSize());
+
+        BanUsersRequest request = new BanUsersRequest();
+        request.Bans = new ArrayList<BanRequest>();
+        BanRequest ban = new BanRequest();
+        ban.PlayFabId = banned;
+        ban.Reason = "cheating";
+        request.Bans.add(ban);
+        assertNull(cache.BanUsers(request).Error);
+        assertEquals(2, cache.GetSize());
+
+        cache.Revoke(revoked);
+        assertEquals(1, cache.GetSize());
+
+        // The banned ticket goes back to the server, and is now rejected
+        long before = server.GetRequestCount(AUTHENTICATE);
+        assertEquals(PlayFabErrorCode.AccountBanned, cache.AuthenticateSessionTicket(Ticket(bannedTicket)).Error.pfErrorCode);
+        assertNull(cache.AuthenticateSessionTicket(Ticket(revokedTicket)).Error);
+        assertNull(cache.AuthenticateSessionTicket(Ticket(keptTicket)).Error);
+        assertEquals(before + 2, server.GetRequestCount(AUTHENTICATE));
+    }
+
+    @Test
+    public void RevocationDuringValidationIsNotCached() throws Exception
+    {
+        PlayFabSessionTicketCache cache = new PlayFabSessionTicketCache(serverApi, 100, 60000, 1000);
+        String playFabId = server.AddPlayer("in-flight");
+        String ticket = server.CreateSessionTicket(playFabId);
+        long before = server.GetRequestCount(AUTHENTICATE);
+        server.SetLatency(PlayFabFakeServer.FixedLatency(300));
+
+        FutureTask<PlayFabResult<AuthenticateSessionTicketResult>> validation = cache.AuthenticateSessionTicketAsync(Ticket(ticket));
+        new Thread(validation).start();
+        Thread.sleep(100);
+        cache.Revoke(playFabId);
+        assertNull(validation.get(5, TimeUnit.SECONDS).Error);
+        assertEquals(0, cache.GetSize());
+
+        server.SetLatency(null);
+        assertNull(cache.AuthenticateSessionTicket(Ticket(ticket)).Error);
+        assertEquals(before + 2, server.GetRequestCount(AUTHENTICATE));
+        assertEquals(1, cache.GetSize());
+    }
+}
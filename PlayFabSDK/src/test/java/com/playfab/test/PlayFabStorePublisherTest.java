@@ -0,0 +1,147 @@
+package com.playfab.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.playfab.PlayFabAdminAPI;
+import com.playfab.PlayFabAdminModels.*;
+import com.playfab.PlayFabStorePublisher;
+
+public class PlayFabStorePublisherTest
+{
+    private static PlayFabFakeServer server;
+    private static PlayFabAdminAPI adminApi;
+
+    @BeforeClass
+    public static void oneTimeSetUp() throws Exception
+    {
+        server = PlayFabFakeServer.Started(4);
+        adminApi = new PlayFabAdminAPI(server.NewSettings());
+
+        for (String storeId : Arrays.asList("daily", "weekly", "event"))
+        {
+            List<StoreItem> items = new ArrayList<StoreItem>();
+            for (int i = 0; i < 10; i++)
+                items.add(Entry("item" + i, 100 + i));
+            server.SetStore("Main", storeId, items);
+        }
+    }
+
+    @AfterClass
+    public static void oneTimeTearDown()
+    {
+        server.Stop();
+    }
+
+    private static StoreItem Entry(String itemId, long price)
+    {
+        StoreItem item = new StoreItem();
+        item.ItemId = itemId;
+        item.VirtualCurrencyPrices = new HashMap<String, Long>();
+        item.VirtualCurrencyPrices.put("GO", price);
+        return item;
+    }
+
+    private static UpdateStoreItemsRequest Store(String storeId, List<StoreItem> items)
+    {
+        UpdateStoreItemsRequest store = new UpdateStoreItemsRequest();
+        store.CatalogVersion = "Main";
+        store.StoreId = storeId;
+        store.Store = new ArrayList<StoreItem>(items);
+        return store;
+    }
+
+    @Test
+    public void WritesOnlyChangedStores()
+    {
+        // Listed out of order; the diff sorts by ItemId
+        List<StoreItem> unchanged = new ArrayList<StoreItem>();
+        for (int i = 9; i >= 0; i--)
+            unchanged.add(Entry("item" + i, 100 + i));
+        List<StoreItem> repriced = new ArrayList<StoreItem>(unchanged);
+        repriced.set(0, Entry("item9", 50));
+        repriced.add(Entry("item10", 110));
+        List<StoreItem> shrunk = new ArrayList<StoreItem>(unchanged.subList(0, 8));
+        Collections.shuffle(shrunk);
+
+        List<UpdateStoreItemsRequest> wanted = Arrays.asList(
+            Store("daily", unchanged), Store("weekly", repriced), Store("event", shrunk), Store("sale", unchanged));
+        PlayFabStorePublisher publisher = new PlayFabStorePublisher(adminApi, 3, 100);
+
+        PlayFabStorePublisher.Report dryRun = publisher.Publish(wanted, true);
+        assertEquals(3, dryRun.GetWriteCount());
+        assertEquals(0, server.GetRequestCount("/Admin/UpdateStoreItems") + server.GetRequestCount("/Admin/SetStoreItems"));
+
+        PlayFabStorePublisher.Report report = publisher.Publish(wanted, false);
+        assertEquals(0, report.GetFailureCount());
+        PlayFabStorePublisher.StoreDiff daily = report.Stores.get(0);
+        PlayFabStorePublisher.StoreDiff weekly = report.Stores.get(1);
+        PlayFabStorePublisher.StoreDiff event = report.Stores.get(2);
+        assertEquals(PlayFabStorePublisher.Action.None, daily.Action);
+        assertEquals(10, daily.Unchanged);
+        assertEquals(PlayFabStorePublisher.Action.Update, weekly.Action);
+        assertEquals(Arrays.asList("item10"), weekly.Added);
+        assertEquals(Arrays.asList("item9"), weekly.Changed);
+        assertEquals(PlayFabStorePublisher.Action.Set, event.Action);
+        assertEquals(Arrays.asList("item0", "item1"), event.Removed);
+        assertEquals(PlayFabStorePublisher.Action.Set, report.Stores.get(3).Action);
+        assertTrue(report.toString().startsWith("daily: None +0 ~0 -0 =10\n"));
+        assertEquals(1, server.GetRequestCount("/Admin/UpdateStoreItems"));
+        assertEquals(2, server.GetRequestCount("/Admin/SetStoreItems"));
+
+        GetStoreItemsRequest request = new GetStoreItemsRequest();
+        request.CatalogVersion = "Main";
+        request.StoreId = "weekly";
+        List<StoreItem> weeklyItems = adminApi.GetStoreItems(request).Result.Store;
+        assertEquals(11, weeklyItems.size());
+
+        // Everything now matches
+        assertEquals(0, publisher.Publish(wanted, false).GetWriteCount());
+    }
+
+    @Test
+    public void LeavesMarketingDataAloneWhenNoneIsWanted() throws Exception
+    {
+        // A server of its own, so the request counts of the other test are not disturbed
+        PlayFabFakeServer own = PlayFabFakeServer.Started(1);
+        try
+        {
+            PlayFabAdminAPI ownApi = new PlayFabAdminAPI(own.NewSettings());
+            List<StoreItem> items = Arrays.asList(Entry("gem", 5), Entry("coin", 1));
+            UpdateStoreItemsRequest initial = Store("featured", items);
+            initial.MarketingData = new StoreMarketingModel();
+            initial.MarketingData.DisplayName = "Featured";
+            assertNull(ownApi.SetStoreItems(initial).Error);
+
+            // A removal forces SetStoreItems, which must carry the marketing data over
+            PlayFabStorePublisher publisher = new PlayFabStorePublisher(ownApi, 1, 100);
+            PlayFabStorePublisher.Report report = publisher.Publish(Arrays.asList(Store("featured", items.subList(0, 1))), false);
+            assertEquals(0, report.GetFailureCount());
+            assertEquals(PlayFabStorePublisher.Action.Set, report.Stores.get(0).Action);
+            assertFalse(report.Stores.get(0).MarketingChanged);
+
+            GetStoreItemsRequest request = new GetStoreItemsRequest();
+            request.CatalogVersion = "Main";
+            request.StoreId = "featured";
+            GetStoreItemsResult featured = ownApi.GetStoreItems(request).Result;
+            assertEquals(1, featured.Store.size());
+            assertEquals("Featured", featured.MarketingData.DisplayName);
+        }
+        finally
+        {
+            own.Stop();
+        }
+    }
+}
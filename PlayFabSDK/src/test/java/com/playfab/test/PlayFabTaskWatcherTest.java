@@ -0,0 +1,138 @@
+package com.playfab.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.playfab.PlayFabAdminAPI;
+import com.playfab.PlayFabAdminModels.*;
+import com.playfab.PlayFabErrors.PlayFabErrorCode;
+import com.playfab.PlayFabErrors.PlayFabResult;
+import com.playfab.PlayFabTaskWatcher;
+
+public class PlayFabTaskWatcherTest
+{
+    private static PlayFabFakeServer server;
+    private static PlayFabAdminAPI adminApi;
+
+    @BeforeClass
+    public static void oneTimeSetUp() throws Exception
+    {
+        server = PlayFabFakeServer.Started(2);
+        adminApi = new PlayFabAdminAPI(server.NewSettings());
+    }
+
+    @AfterClass
+    public static void oneTimeTearDown()
+    {
+        server.Stop();
+    }
+
+    private static NameIdentifier Named(String name)
+    {
+        NameIdentifier task = new NameIdentifier();
+        task.Name = name;
+        return task;
+    }
+
+    @Test
+    public void WatchesInstancesWithBatchedChecks() throws Exception
+    {
+        CreateActionsOnPlayerSegmentTaskRequest create = new CreateActionsOnPlayerSegmentTaskRequest();
+        create.Name = "ban-cheaters";
+        NameIdentifier segmentTask = new NameIdentifier();
+        segmentTask.Id = adminApi.CreateActionsOnPlayersInSegmentTask(create).Result.TaskId;
+
+        final AtomicInteger progressCalls = new AtomicInteger();
+        final CountDownLatch completed = new CountDownLatch(3);
+        PlayFabTaskWatcher.Listener listener = new PlayFabTaskWatcher.Listener() {
+            public void Progress(TaskInstanceBasicSummary summary) {
+                progressCalls.incrementAndGet();
+            }
+            public void Completed(PlayFabResult<TaskInstanceBasicSummary> result) {
+                completed.countDown();
+            }
+        };
+        PlayFabTaskWatcher watcher = new PlayFabTaskWatcher(adminApi, 10, 100);
+        Future<PlayFabResult<TaskInstanceBasicSummary>> first = watcher.RunTask(Named("nightly"), listener);
+        Future<PlayFabResult<TaskInstanceBasicSummary>> second = watcher.RunTask(Named("nightly"), listener);
+        Future<PlayFabResult<TaskInstanceBasicSummary>> segment = watcher.RunTask(segmentTask, listener);
+        assertEquals(3, watcher.GetWatchCount());
+
+        // Instances are numbered in the order they were run
+        for (int percent = 10; percent <= 90; percent += 20)
+        {
+            for (String instance : new String[] { "instance-0001", "instance-0002", "instance-0003" })
+                server.SetTaskInstance(instance, TaskInstanceStatus.InProgress, percent);
+            Thread.sleep(40);
+        }
+        server.SetTaskInstance("instance-0001", TaskInstanceStatus.Succeeded, 100);
+        server.SetTaskInstance("instance-0002", TaskInstanceStatus.Failed, 90);
+        server.SetTaskInstance("instance-0003", TaskInstanceStatus.Succeeded, 100);
+
+        PlayFabResult<TaskInstanceBasicSummary> succeeded = first.get(5, TimeUnit.SECONDS);
+        assertNull(succeeded.Error);
+        assertEquals(TaskInstanceStatus.Succeeded, succeeded.Result.Status);
+        PlayFabResult<TaskInstanceBasicSummary> failed = second.get(5, TimeUnit.SECONDS);
+        assertNotNull(failed.Error);
+        assertEquals(TaskInstanceStatus.Failed, failed.Result.Status);
+        assertEquals("ban-cheaters", segment.get(5, TimeUnit.SECONDS).Result.TaskIdentifier.Name);
+        assertTrue(completed.await(5, TimeUnit.SECONDS));
+        assertTrue(progressCalls.get() > 0);
+
+        // Status came only from the batched GetTaskInstances calls
+        assertEquals(0, watcher.GetWatchCount());
+        assertEquals(watcher.GetCheckCount(), server.GetRequestCount("/Admin/GetTaskInstances"));
+        assertEquals(0, server.GetRequestCount("/Admin/GetActionsOnPlayersInSegmentTaskInstance"));
+
+        NameIdentifier missing = new NameIdentifier();
+        missing.Id = "no-such-task";
+        assertEquals(PlayFabErrorCode.TaskNotFound, watcher.RunTask(missing, null).get().Error.pfErrorCode);
+        watcher.Close();
+    }
+
+    @Test
+    public void WatchesOfOneInstanceAreIndependentAndFailAfterClose() throws Exception
+    {
+        // Own server, so the instance numbers and check counts above are left alone
+        PlayFabFakeServer own = PlayFabFakeServer.Started(2);
+        try
+        {
+            PlayFabTaskWatcher watcher = new PlayFabTaskWatcher(new PlayFabAdminAPI(own.NewSettings()), 10, 100);
+            Future<PlayFabResult<TaskInstanceBasicSummary>> first = watcher.RunTask(Named("nightly"), null);
+            Future<PlayFabResult<TaskInstanceBasicSummary>> second = watcher.Watch(Named("nightly"), "instance-0001", null);
+            Future<PlayFabResult<TaskInstanceBasicSummary>> third = watcher.Watch(Named("nightly"), "instance-0001", null);
+            assertEquals(3, watcher.GetWatchCount());
+
+            // Cancelling one watch leaves the others on the instance
+            assertTrue(first.cancel(false));
+            own.SetTaskInstance("instance-0001", TaskInstanceStatus.Succeeded, 100);
+            assertEquals(TaskInstanceStatus.Succeeded, second.get(5, TimeUnit.SECONDS).Result.Status);
+            assertEquals(TaskInstanceStatus.Succeeded, third.get(5, TimeUnit.SECONDS).Result.Status);
+            assertEquals(0, watcher.GetWatchCount());
+
+            watcher.Close();
+            Future<PlayFabResult<TaskInstanceBasicSummary>> late = watcher.Watch(Named("nightly"), "instance-0002", null);
+            assertTrue(late.isDone());
+            assertNotNull(late.get().Error);
+            long runs = own.GetRequestCount("/Admin/RunTask");
+            assertNotNull(watcher.RunTask(Named("nightly"), null).get().Error);
+            assertEquals(runs, own.GetRequestCount("/Admin/RunTask"));
+            assertTrue(first.isCancelled());
+        }
+        finally
+        {
+            own.Stop();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.playfab.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.playfab.PlayFabAdminAPI;
+import com.playfab.PlayFabAdminModels.*;
+import com.playfab.PlayFabErrors.PlayFabResult;
+import com.playfab.PlayFabTitleDataSync;
+
+public class PlayFabTitleDataSyncTest
+{
+    private static PlayFabFakeServer server;
+    private static PlayFabAdminAPI adminApi;
+
+    @BeforeClass
+    public static void oneTimeSetUp() throws Exception
+    {
+        server = PlayFabFakeServer.Started(4);
+        adminApi = new PlayFabAdminAPI(server.NewSettings());
+    }
+
+    @AfterClass
+    public static void oneTimeTearDown()
+    {
+        server.Stop();
+    }
+
+    @Test
+    public void WritesOnlyTheDiff()
+    {
+        for (int i = 0; i < 20; i++)
+            server.SetTitleData("key" + i, "value" + i);
+
+        Map<String, String> wanted = new HashMap<String, String>();
+        for (int i = 0; i < 18; i++)
+            wanted.put("key" + i, "value" + i);
+        wanted.put("key3", "changed");
+        wanted.put("key5", null);
+        wanted.put("added", "new");
+
+        PlayFabTitleDataSync sync = new PlayFabTitleDataSync(PlayFabTitleDataSync.AdminTitleData(adminApi), 4, 1000, 2);
+        PlayFabResult<PlayFabTitleDataSync.Report> dryRun = sync.Sync(wanted, true, true);
+        assertTrue(dryRun.Result.DryRun);
+        assertEquals(5, dryRun.Result.GetWriteCount());
+        assertEquals(0, server.GetRequestCount("/Admin/SetTitleData"));
+
+        PlayFabResult<PlayFabTitleDataSync.Report> report = sync.Sync(wanted, true, false);
+        assertNull(report.Error);
+        assertEquals(Arrays.asList("added"), report.Result.Added);
+        assertEquals(Arrays.asList("key3"), report.Result.Changed);
+        assertEquals(Arrays.asList("key5", "key18", "key19"), report.Result.Removed);
+        assertEquals(16, report.Result.Unchanged);
+        assertTrue(report.Result.Failures.isEmpty());
+        assertEquals(5, server.GetRequestCount("/Admin/SetTitleData"));
+
+        Map<String, String> data = adminApi.GetTitleData(new GetTitleDataRequest()).Result.Data;
+        assertEquals("changed", data.get("key3"));
+        assertEquals("new", data.get("added"));
+        assertFalse(data.containsKey("key5"));
+        assertFalse(data.containsKey("key19"));
+        assertEquals(18, data.size());
+
+        // A second run finds nothing to do
+        assertEquals(0, sync.Sync(wanted, true, false).Result.GetWriteCount());
+        assertEquals(5, server.GetRequestCount("/Admin/SetTitleData"));
+    }
+}
@@ -0,0 +1,102 @@
+package com.playfab.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.HashMap;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.playfab.PlayFabClientAPI;
+import com.playfab.PlayFabClientModels;
+import com.playfab.PlayFabErrors.PlayFabResult;
+import com.playfab.PlayFabServerAPI;
+import com.playfab.PlayFabServerModels.*;
+import com.playfab.PlayFabUserDataCache;
+
+public class PlayFabUserDataCacheTest
+{
+    private static PlayFabFakeServer server;
+    private static PlayFabServerAPI serverApi;
+
+    @BeforeClass
+    public static void oneTimeSetUp() throws Exception
+    {
+        server = PlayFabFakeServer.Started(2);
+        serverApi = new PlayFabServerAPI(server.NewSettings());
+    }
+
+    @AfterClass
+    public static void oneTimeTearDown()
+    {
+        server.Stop();
+    }
+
+    private static UpdateUserDataRequest Update(String playFabId, String key, String value)
+    {
+        UpdateUserDataRequest request = new UpdateUserDataRequest();
+        request.PlayFabId = playFabId;
+        request.Data = new HashMap<String, String>();
+        request.Data.put(key, value);
+        return request;
+    }
+
+    @Test
+    public void RevalidatesAndPatchesOwnWrites()
+    {
+        String playFabId = server.AddPlayer("user-data-cache");
+        PlayFabUserDataCache.ServerUserData cache = new PlayFabUserDataCache.ServerUserData(serverApi, 100, 0);
+        assertNull(cache.UpdateUserData(Update(playFabId, "level", "1")).Error);
+
+        GetUserDataRequest get = new GetUserDataRequest();
+        get.PlayFabId = playFabId;
+        assertEquals("1", cache.GetUserData(get).Result.Data.get("level").Value);
+        assertEquals(1, cache.userData.GetFullReadCount());
+
+        // Unchanged: the conditional read returns no records and the cached ones are served
+        assertEquals("1", cache.GetUserData(get).Result.Data.get("level").Value);
+        assertEquals(1, cache.userData.GetUnchangedCount());
+
+        // A write through the cache directly follows the cached version, so it is patched in
+        assertNull(cache.UpdateUserData(Update(playFabId, "level", "2")).Error);
+        PlayFabResult<GetUserDataResult> patched = cache.GetUserData(get);
+        assertEquals("2", patched.Result.Data.get("level").Value);
+        assertEquals(2, cache.userData.GetUnchangedCount());
+
+        // A write made elsewhere shows up on the next conditional read
+        assertNull(serverApi.UpdateUserData(Update(playFabId, "level", "3")).Error);
+        assertEquals("3", cache.GetUserData(get).Result.Data.get("level").Value);
+        assertEquals(2, cache.userData.GetFullReadCount());
+    }
+
+    @Test
+    public void ClientSeedsFromCombinedInfoAndSharesOwnId()
+    {
+        PlayFabClientAPI clientApi = new PlayFabClientAPI(server.NewSettings());
+        PlayFabClientModels.LoginWithCustomIDRequest login = new PlayFabClientModels.LoginWithCustomIDRequest();
+        login.CustomId = "user-data-client";
+        login.CreateAccount = true;
+        assertNull(clientApi.LoginWithCustomID(login).Error);
+        PlayFabUserDataCache.ClientUserData cache = new PlayFabUserDataCache.ClientUserData(clientApi, 100, 60000);
+        PlayFabClientModels.UpdateUserDataRequest update = new PlayFabClientModels.UpdateUserDataRequest();
+        update.Data = new HashMap<String, String>();
+        update.Data.put("level", "7");
+        assertNull(clientApi.UpdateUserData(update).Error);
+
+        PlayFabClientModels.GetPlayerCombinedInfoRequest combined = new PlayFabClientModels.GetPlayerCombinedInfoRequest();
+        combined.InfoRequestParameters = new PlayFabClientModels.GetPlayerCombinedInfoRequestParams();
+        combined.InfoRequestParameters.GetUserData = true;
+        PlayFabResult<PlayFabClientModels.GetPlayerCombinedInfoResult> info = cache.GetPlayerCombinedInfo(combined);
+        assertNull(info.Error);
+
+        // Reads by the player's own id and with no id both come from the seeded copy
+        PlayFabClientModels.GetUserDataRequest own = new PlayFabClientModels.GetUserDataRequest();
+        own.PlayFabId = info.Result.PlayFabId;
+        assertEquals("7", cache.GetUserData(own).Result.Data.get("level").Value);
+        assertEquals("7", cache.GetUserData(new PlayFabClientModels.GetUserDataRequest()).Result.Data.get("level").Value);
+        assertEquals(2, cache.userData.GetLocalHitCount());
+        assertEquals(0, server.GetRequestCount("/Client/GetUserData"));
+    }
+}